@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.corelang;
+
+import com.github.explainable.jmh.Cursor;
+import com.github.explainable.jmh.WorkloadState;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the containment checks that dominate labeling. The inputs are the pairs of query
+ * views and security views that {@link com.github.explainable.labeler.policy.PolicyLabeler}
+ * actually compares for the workload's queries. This class lives in the {@code corelang} package
+ * so that it can call {@link Conjunction#findHomomorphism} directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class CorelangBenchmark {
+	/**
+	 * Upper bound on the number of pairs of each kind, to keep setup time and memory in check.
+	 */
+	private static final int MAX_PAIRS = 1 << 14;
+
+	@State(Scope.Benchmark)
+	public static class Pairs {
+		ImmutableList<View> queryViews;
+
+		ImmutableList<View> securityViews;
+
+		ImmutableList<Conjunction> sources;
+
+		ImmutableList<Conjunction> targets;
+
+		@Setup
+		public void setUp(WorkloadState workload) {
+			List<View> queryViewList = Lists.newArrayList();
+			List<View> securityViewList = Lists.newArrayList();
+			List<Conjunction> sourceList = Lists.newArrayList();
+			List<Conjunction> targetList = Lists.newArrayList();
+
+			outer:
+			for (List<View> views : workload.extractedViews) {
+				for (View view : views) {
+					for (View securityView : workload.labeler.securityViewsFor(view.bodyRelation())) {
+						if (queryViewList.size() >= MAX_PAIRS) {
+							break outer;
+						}
+						queryViewList.add(view);
+						securityViewList.add(securityView);
+
+						// Same inputs as the homomorphism search in View.precedes.
+						Specialization spec
+								= new Specialization().extend(securityView.body(), view.body());
+						if (spec != null) {
+							sourceList.add(conjunction(securityView).apply(spec));
+							targetList.add(conjunction(view));
+						}
+					}
+				}
+			}
+
+			if (queryViewList.isEmpty() || sourceList.isEmpty()) {
+				throw new IllegalStateException("Workload has no comparable views");
+			}
+
+			queryViews = ImmutableList.copyOf(queryViewList);
+			securityViews = ImmutableList.copyOf(securityViewList);
+			sources = ImmutableList.copyOf(sourceList);
+			targets = ImmutableList.copyOf(targetList);
+		}
+
+		private static Conjunction conjunction(View view) {
+			List<Atom> atoms = Lists.newArrayList();
+			atoms.add(view.body());
+			atoms.addAll(view.conditions());
+			return Conjunction.create(atoms);
+		}
+	}
+
+	@Benchmark
+	public boolean precedes(Pairs pairs, Cursor cursor) {
+		int i = cursor.next(pairs.queryViews.size());
+		return pairs.queryViews.get(i).precedes(pairs.securityViews.get(i));
+	}
+
+	@Benchmark
+	public Homomorphism findHomomorphism(Pairs pairs, Cursor cursor) {
+		int i = cursor.next(pairs.sources.size());
+		return pairs.sources.get(i).findHomomorphism(pairs.targets.get(i));
+	}
+
+	@Benchmark
+	public Atom unifyWith(Pairs pairs, Cursor cursor) {
+		int i = cursor.next(pairs.queryViews.size());
+		return pairs.queryViews.get(i).body().unifyWith(pairs.securityViews.get(i).body());
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.jmh;
+
+import com.github.explainable.labeler.policy.Policy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link com.github.explainable.labeler.policy.PolicyLabeler} and for the
+ * operations on the {@link Policy} objects that it produces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LabelerBenchmark {
+	@Benchmark
+	public Policy label(WorkloadState state, Cursor cursor) {
+		return state.labeler.label(state.extractedViews.get(cursor.next(state.queryCount)));
+	}
+
+	@Benchmark
+	public Policy labelAndSimplify(WorkloadState state, Cursor cursor) {
+		return state.labeler.label(state.extractedViews.get(cursor.next(state.queryCount)))
+				.simplify();
+	}
+
+	@Benchmark
+	public Policy simplify(WorkloadState state, Cursor cursor) {
+		return state.policies.get(cursor.next(state.queryCount)).simplify();
+	}
+
+	@Benchmark
+	public boolean evaluate(WorkloadState state, Cursor cursor) {
+		return state.policies.get(cursor.next(state.queryCount)).evaluate(state.granted);
+	}
+
+	@Benchmark
+	public Policy whySo(WorkloadState state, Cursor cursor) {
+		return state.policies.get(cursor.next(state.queryCount)).whySo(state.granted);
+	}
+
+	@Benchmark
+	public Policy whyNot(WorkloadState state, Cursor cursor) {
+		return state.policies.get(cursor.next(state.queryCount)).whyNot(state.granted);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.jmh;
+
+import com.github.explainable.benchmark.ConjunctionGenerator;
+import com.github.explainable.benchmark.ConjunctionToSql;
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.benchmark.cowsql.CowSqlSchema;
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.util.RandomSampler;
+import com.google.common.collect.ImmutableList;
+import net.sf.jsqlparser.JSQLParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The workloads in the {@code data} directory that the benchmarks can be parameterized by. The
+ * directory is read from the {@code explainable.data} system property, and defaults to {@code data}
+ * in the working directory.
+ */
+public enum Workload {
+	/**
+	 * Random conjunctive queries over the mock Facebook schema, generated from templates like
+	 * {@link com.github.explainable.benchmark.mockfb.FBBenchmarkDriver} does.
+	 */
+	FB(FBFlatSchema.SCHEMA, "fb-templates.sql", "fb-security-views.sql") {
+		@Override
+		ImmutableList<String> queries(int count, long seed) throws IOException, JSQLParserException {
+			ConjunctionGenerator generator = ConjunctionGenerator.create(
+					SecurityViewReader.readViews(templateFile(), schema()),
+					new Random(seed));
+
+			ImmutableList.Builder<String> queries = ImmutableList.builder();
+			int generated = 0;
+			while (generated < count) {
+				Conjunction conjunction = generator.nextWithRandomDist(3.0);
+				if (conjunction != null && !conjunction.atoms().isEmpty()) {
+					queries.add(ConjunctionToSql.convert(conjunction));
+					generated++;
+				}
+			}
+			return queries.build();
+		}
+	},
+
+	/**
+	 * Queries sampled from the hand-written prototypes over the cow book's sailors schema, like
+	 * {@link com.github.explainable.benchmark.cowsql.CowBenchmarkDriver} does.
+	 */
+	COW(CowSqlSchema.SCHEMA, "cow-templates.sql", "cow-security-views.sql") {
+		@Override
+		ImmutableList<String> queries(int count, long seed) throws IOException {
+			List<String> prototypes = SecurityViewReader.readSqlViews(templateFile(), schema());
+			RandomSampler sampler = RandomSampler.create(new Random(seed));
+
+			ImmutableList.Builder<String> queries = ImmutableList.builder();
+			for (int i = 0; i < count; i++) {
+				queries.add(sampler.choice(prototypes));
+			}
+			return queries.build();
+		}
+	};
+
+	private final Schema schema;
+
+	private final String templateFileName;
+
+	private final String securityViewFileName;
+
+	Workload(Schema schema, String templateFileName, String securityViewFileName) {
+		this.schema = schema;
+		this.templateFileName = templateFileName;
+		this.securityViewFileName = securityViewFileName;
+	}
+
+	/**
+	 * Generate {@code count} SQL queries. The same seed always produces the same queries.
+	 */
+	abstract ImmutableList<String> queries(int count, long seed)
+			throws IOException, JSQLParserException;
+
+	public Schema schema() {
+		return schema;
+	}
+
+	public File templateFile() {
+		return new File(dataDirectory(), templateFileName);
+	}
+
+	public File securityViewFile() {
+		return new File(dataDirectory(), securityViewFileName);
+	}
+
+	private static File dataDirectory() {
+		return new File(System.getProperty("explainable.data", "data"));
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.jmh;
+
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.util.RandomSampler;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Fixtures shared by all the benchmarks: a workload's security views, plus a fixed set of queries
+ * at every stage of processing. Benchmarks cycle through the queries so that a single unusual
+ * query doesn't dominate the results. Everything is computed once per trial from {@link #seed},
+ * so runs with the same parameters measure the same inputs.
+ */
+@State(Scope.Benchmark)
+public class WorkloadState {
+	@Param({"FB", "COW"})
+	public Workload workload;
+
+	@Param("256")
+	public int queryCount;
+
+	@Param("42")
+	public long seed;
+
+	public ImmutableList<View> securityViews;
+
+	public PolicyLabeler labeler;
+
+	/**
+	 * Half of the security views, chosen at random.
+	 */
+	public ImmutableSet<View> granted;
+
+	public ImmutableList<String> queries;
+
+	public ImmutableList<Select> selects;
+
+	public ImmutableList<ImmutableList<View>> extractedViews;
+
+	/**
+	 * Simplified policy of each query.
+	 */
+	public ImmutableList<Policy> policies;
+
+	@Setup
+	public void setUp() throws Exception {
+		securityViews = ImmutableList.copyOf(
+				SecurityViewReader.readViews(workload.securityViewFile(), workload.schema()));
+		labeler = PolicyLabeler.create(securityViews);
+		granted = ImmutableSet.copyOf(RandomSampler.create(new Random(seed))
+				.sample(securityViews, securityViews.size() / 2));
+
+		queries = workload.queries(queryCount, seed);
+
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(workload.schema());
+
+		ImmutableList.Builder<Select> selectsBuilder = ImmutableList.builder();
+		ImmutableList.Builder<ImmutableList<View>> viewsBuilder = ImmutableList.builder();
+		ImmutableList.Builder<Policy> policiesBuilder = ImmutableList.builder();
+		for (String sql : queries) {
+			Select select = (Select) parser.parse(new StringReader(sql));
+			ImmutableList<View> views = pipeline.execute(select);
+
+			selectsBuilder.add(select);
+			viewsBuilder.add(views);
+			policiesBuilder.add(labeler.label(views).simplify());
+		}
+
+		selects = selectsBuilder.build();
+		extractedViews = viewsBuilder.build();
+		policies = policiesBuilder.build();
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline.passes;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.jmh.Cursor;
+import com.github.explainable.jmh.WorkloadState;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.sql.converter.SelectStatementConverter;
+import com.github.explainable.sql.pipeline.TransformationPass;
+import com.google.common.collect.ImmutableList;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for turning SQL into views: parsing, conversion to our AST, each stage of {@link
+ * ViewExtractionPipeline} on its own, and the pipeline as a whole. This class lives in the {@code
+ * passes} package so that it can run the package-private stages directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PipelineBenchmark {
+	@State(Scope.Thread)
+	public static class Parser {
+		final CCJSqlParserManager parser = new CCJSqlParserManager();
+
+		final SelectStatementConverter converter = SelectStatementConverter.create();
+
+		ViewExtractionPipeline pipeline;
+
+		@Setup
+		public void setUp(WorkloadState workload) {
+			pipeline = ViewExtractionPipeline.create(workload.workload.schema());
+		}
+	}
+
+	/**
+	 * A batch of ASTs that have been through every stage before {@link #pass}, ready for that stage
+	 * to run. Stages modify the AST, so a fresh batch is prepared before each iteration, and each
+	 * iteration runs the stage once on every AST in the batch.
+	 */
+	@State(Scope.Thread)
+	public static class PassInput {
+		static final int BATCH_SIZE = 1000;
+
+		@Param({
+				"ColumnResolver",
+				"CorrelatedColumnFinder",
+				"AggTypeChecker",
+				"TypeChecker",
+				"TermInitializer",
+				"CondGraphInitializer",
+				"CondGraphAnnotator",
+				"ViewExtractor"})
+		public String pass;
+
+		final SelectStatementConverter converter = SelectStatementConverter.create();
+
+		final SqlSelectStmt[] selects = new SqlSelectStmt[BATCH_SIZE];
+
+		ImmutableList<TransformationPass> before;
+
+		TransformationPass transformation;
+
+		ViewExtractor output;
+
+		@Setup
+		public void setUp(WorkloadState workload) {
+			List<TransformationPass> stages
+					= ViewExtractionPipeline.requiredTransformations(workload.workload.schema());
+
+			if (pass.equals(ViewExtractor.class.getSimpleName())) {
+				before = ImmutableList.copyOf(stages);
+				output = new ViewExtractor();
+				return;
+			}
+
+			for (int i = 0; i < stages.size(); i++) {
+				if (stages.get(i).getClass().getSimpleName().equals(pass)) {
+					before = ImmutableList.copyOf(stages.subList(0, i));
+					transformation = stages.get(i);
+					return;
+				}
+			}
+			throw new IllegalArgumentException("Not a stage of ViewExtractionPipeline: " + pass);
+		}
+
+		@Setup(Level.Iteration)
+		public void prepare(WorkloadState workload, Cursor cursor) {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				SqlSelectStmt select
+						= converter.convert(workload.selects.get(cursor.next(workload.queryCount)));
+				for (TransformationPass stage : before) {
+					stage.execute(select);
+				}
+				selects[i] = select;
+			}
+		}
+	}
+
+	@Benchmark
+	public Statement parse(WorkloadState workload, Parser parser, Cursor cursor) throws Exception {
+		return parser.parser.parse(
+				new StringReader(workload.queries.get(cursor.next(workload.queryCount))));
+	}
+
+	@Benchmark
+	public SqlSelectStmt convert(WorkloadState workload, Parser parser, Cursor cursor) {
+		return parser.converter.convert(workload.selects.get(cursor.next(workload.queryCount)));
+	}
+
+	/**
+	 * Runs a single stage on a batch of prepared ASTs. Each AST can only be used once, so every
+	 * iteration is a single invocation that goes through the whole batch, and the score is the
+	 * average time per AST.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OperationsPerInvocation(PassInput.BATCH_SIZE)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public void pass(PassInput input, Blackhole blackhole) {
+		for (SqlSelectStmt select : input.selects) {
+			if (input.output != null) {
+				blackhole.consume(input.output.execute(select));
+			} else {
+				input.transformation.execute(select);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<View> extractViews(WorkloadState workload, Parser parser, Cursor cursor) {
+		return parser.pipeline.execute(workload.selects.get(cursor.next(workload.queryCount)));
+	}
+}
@@ -0,0 +1,389 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.batch;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.parser.TokenMgrError;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Labels every statement in a {@link SqlLog} against a fixed set of security views using a pool of
+ * worker threads, and streams one line of output per statement:
+ *
+ * <pre>
+ * offset	ALLOW	policy
+ * offset	DENY	policy
+ * offset	ERROR	message
+ * </pre>
+ *
+ * <p>where {@code offset} is the byte offset of the statement in the log, {@code ALLOW} and {@code
+ * DENY} say whether the granted security views are enough to answer the statement, and {@code
+ * policy} is the statement's policy in the format of {@link PolicyFormatter}. Statements that only
+ * contain whitespace and comments produce no output.
+ *
+ * <p>At most {@code queueCapacity} statements are in flight (being labeled or waiting to be written)
+ * at any time, which bounds memory use regardless of the size of the log. If {@code preserveOrder}
+ * is set, the output is in the same order as the log; otherwise lines are written as soon as they
+ * are ready.
+ *
+ * <p>Instances are thread-safe, but each call to {@link #run} creates its own worker pool.
+ */
+public final class BulkLabeler {
+	private final Schema schema;
+
+	private final PolicyLabeler labeler;
+
+	private final PolicyFormatter formatter;
+
+	private final ImmutableSet<View> grantedViews;
+
+	private final int threadCount;
+
+	private final int queueCapacity;
+
+	private final boolean preserveOrder;
+
+	private BulkLabeler(Builder builder) {
+		this.schema = builder.schema;
+		this.labeler = PolicyLabeler.create(builder.securityViews);
+		this.formatter = PolicyFormatter.create(builder.securityViews);
+		this.grantedViews = ImmutableSet.copyOf(builder.grantedViews);
+		this.threadCount = builder.threadCount;
+		this.queueCapacity = builder.queueCapacity;
+		this.preserveOrder = builder.preserveOrder;
+	}
+
+	public static Builder builder(Schema schema, List<View> securityViews) {
+		return new Builder(schema, securityViews);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		private final ImmutableList<View> securityViews;
+
+		private ImmutableSet<View> grantedViews = ImmutableSet.of();
+
+		private int threadCount = Runtime.getRuntime().availableProcessors();
+
+		private int queueCapacity = 1024;
+
+		private boolean preserveOrder = true;
+
+		private Builder(Schema schema, List<View> securityViews) {
+			this.schema = Preconditions.checkNotNull(schema);
+			this.securityViews = ImmutableList.copyOf(securityViews);
+		}
+
+		/**
+		 * Set the security views that the principal has been granted. Statements whose policies are
+		 * satisfied by these views are reported as {@code ALLOW}, and the others as {@code DENY}.
+		 */
+		public Builder setGrantedViews(Collection<View> grantedViews) {
+			this.grantedViews = ImmutableSet.copyOf(grantedViews);
+			return this;
+		}
+
+		public Builder setThreadCount(int threadCount) {
+			Preconditions.checkArgument(threadCount > 0);
+			this.threadCount = threadCount;
+			return this;
+		}
+
+		public Builder setQueueCapacity(int queueCapacity) {
+			Preconditions.checkArgument(queueCapacity > 0);
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public Builder setPreserveOrder(boolean preserveOrder) {
+			this.preserveOrder = preserveOrder;
+			return this;
+		}
+
+		public BulkLabeler build() {
+			return new BulkLabeler(this);
+		}
+	}
+
+	/**
+	 * Summary of a call to {@link #run}.
+	 */
+	public static final class Summary {
+		private final int allowed;
+
+		private final int denied;
+
+		private final int errors;
+
+		private Summary(int allowed, int denied, int errors) {
+			this.allowed = allowed;
+			this.denied = denied;
+			this.errors = errors;
+		}
+
+		public int allowed() {
+			return allowed;
+		}
+
+		public int denied() {
+			return denied;
+		}
+
+		public int errors() {
+			return errors;
+		}
+
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+					.add("allowed", allowed)
+					.add("denied", denied)
+					.add("errors", errors)
+					.toString();
+		}
+	}
+
+	private enum Outcome {
+		ALLOW,
+		DENY,
+		ERROR,
+		BLANK
+	}
+
+	private static final class Result {
+		final int index;
+
+		final long offset;
+
+		final Outcome outcome;
+
+		final String detail;
+
+		Result(int index, long offset, Outcome outcome, String detail) {
+			this.index = index;
+			this.offset = offset;
+			this.outcome = outcome;
+			this.detail = detail;
+		}
+	}
+
+	/**
+	 * Label every statement in {@code log} and write the results to {@code out}. The calling thread
+	 * does the writing, and returns once every statement has been written. The writer is flushed
+	 * but not closed.
+	 */
+	public Summary run(File log, Writer out) throws IOException {
+		Preconditions.checkNotNull(log);
+		Preconditions.checkNotNull(out);
+
+		ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+		try {
+			return run(SqlLog.open(log, workers), workers, out);
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	private Summary run(final SqlLog log, final ExecutorService workers, Writer out)
+			throws IOException {
+		final Semaphore inFlight = new Semaphore(queueCapacity);
+		final BlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+		final ThreadLocal<ViewExtractionPipeline> pipelines = new ThreadLocal<ViewExtractionPipeline>() {
+			@Override
+			protected ViewExtractionPipeline initialValue() {
+				return ViewExtractionPipeline.create(schema);
+			}
+		};
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < log.statementCount(); i++) {
+						inFlight.acquire();
+
+						final int index = i;
+						workers.execute(new Runnable() {
+							@Override
+							public void run() {
+								Result result = null;
+								try {
+									result = label(log, index, pipelines.get());
+								} finally {
+									// Always report back, or the writer would wait forever.
+									results.add((result != null)
+											? result
+											: new Result(index, log.statementOffset(index),
+													Outcome.ERROR, "Labeling failed"));
+								}
+							}
+						});
+					}
+				} catch (InterruptedException e) {
+					// The writer gave up; stop submitting work.
+					Thread.currentThread().interrupt();
+				} catch (RejectedExecutionException e) {
+					// The worker pool was shut down because the writer gave up.
+				}
+			}
+		}, "BulkLabeler-producer");
+		producer.setDaemon(true);
+		producer.start();
+
+		int allowed = 0;
+		int denied = 0;
+		int errors = 0;
+
+		try {
+			Map<Integer, Result> pending = Maps.newHashMap();
+			int nextIndex = 0;
+			int written = 0;
+
+			while (written < log.statementCount()) {
+				Result result = results.take();
+
+				if (preserveOrder) {
+					pending.put(result.index, result);
+					result = pending.remove(nextIndex);
+					if (result == null) {
+						continue;
+					}
+					nextIndex++;
+				}
+
+				do {
+					switch (result.outcome) {
+						case ALLOW:
+							allowed++;
+							break;
+						case DENY:
+							denied++;
+							break;
+						case ERROR:
+							errors++;
+							break;
+						default:
+							break;
+					}
+
+					if (result.outcome != Outcome.BLANK) {
+						out.write(result.offset + "\t" + result.outcome + "\t" + result.detail + "\n");
+					}
+
+					written++;
+					inFlight.release();
+
+					result = preserveOrder ? pending.remove(nextIndex) : null;
+					if (result != null) {
+						nextIndex++;
+					}
+				} while (result != null);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while labeling " + log.file());
+		} finally {
+			producer.interrupt();
+		}
+
+		out.flush();
+		return new Summary(allowed, denied, errors);
+	}
+
+	private Result label(SqlLog log, int index, ViewExtractionPipeline pipeline) {
+		long offset = log.statementOffset(index);
+
+		try {
+			String sql = log.statement(index);
+			if (sql.isEmpty()) {
+				return new Result(index, offset, Outcome.BLANK, "");
+			}
+
+			Statement statement = new CCJSqlParserManager().parse(new StringReader(sql));
+			if (!(statement instanceof Select)) {
+				return new Result(index, offset, Outcome.ERROR, "Not a SELECT statement");
+			}
+
+			Policy policy = labeler.label(pipeline.execute((Select) statement)).simplify();
+			Outcome outcome = policy.evaluate(grantedViews) ? Outcome.ALLOW : Outcome.DENY;
+			return new Result(index, offset, outcome, formatter.format(policy));
+		} catch (JSQLParserException e) {
+			Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+			return error(index, offset, cause);
+		} catch (TokenMgrError e) {
+			return error(index, offset, e);
+		} catch (SqlException e) {
+			return error(index, offset, e);
+		} catch (RuntimeException e) {
+			// Keep going: one unexpected failure shouldn't abort an audit of millions of queries.
+			return error(index, offset, e);
+		}
+	}
+
+	private static Result error(int index, long offset, Throwable cause) {
+		String message = (cause.getMessage() != null)
+				? cause.getClass().getSimpleName() + ": " + cause.getMessage()
+				: cause.getClass().getSimpleName();
+		return new Result(index, offset, Outcome.ERROR, message.replaceAll("\\s+", " "));
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("grantedViews", grantedViews.size())
+				.add("threadCount", threadCount)
+				.add("queueCapacity", queueCapacity)
+				.add("preserveOrder", preserveOrder)
+				.toString();
+	}
+}
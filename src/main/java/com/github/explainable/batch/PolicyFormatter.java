@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.batch;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders {@link Policy} objects compactly by replacing each security view with its position
+ * ({@code 1}-based) in the list of security views, so that {@code 3|(1&2)} means "security view 3,
+ * or both security views 1 and 2".
+ *
+ * <p>The output is canonical: nested chains of the same operator are flattened and their operands
+ * are sorted, so policies that differ only in the order of their operands (which depends on hash
+ * codes, and thus varies from process to process) are formatted the same way.
+ */
+public final class PolicyFormatter implements PolicyMatcher<String> {
+	private final ImmutableMap<View, Integer> ids;
+
+	private PolicyFormatter(ImmutableMap<View, Integer> ids) {
+		this.ids = Preconditions.checkNotNull(ids);
+	}
+
+	public static PolicyFormatter create(List<View> securityViews) {
+		// If a security view appears more than once, it's identified by its first position.
+		Map<View, Integer> ids = Maps.newHashMap();
+		for (int i = securityViews.size() - 1; i >= 0; i--) {
+			ids.put(securityViews.get(i), i + 1);
+		}
+		return new PolicyFormatter(ImmutableMap.copyOf(ids));
+	}
+
+	public String format(Policy policy) {
+		return policy.match(this);
+	}
+
+	@Override
+	public String matchFalse() {
+		return "false";
+	}
+
+	@Override
+	public String matchTrue() {
+		return "true";
+	}
+
+	@Override
+	public String matchView(View view) {
+		Integer id = ids.get(view);
+		Preconditions.checkArgument(id != null, "Not a security view: %s", view);
+		return id.toString();
+	}
+
+	@Override
+	public String matchAnd(Policy left, Policy right) {
+		return new Chain('&').add(left).add(right).format();
+	}
+
+	@Override
+	public String matchOr(Policy left, Policy right) {
+		return new Chain('|').add(left).add(right).format();
+	}
+
+	/**
+	 * The formatted operands of a chain of {@code operator}s, where an operand whose top-level
+	 * operator is the other one is wrapped in parentheses.
+	 */
+	private final class Chain implements PolicyMatcher<Chain> {
+		private final char operator;
+
+		private final List<String> operands = Lists.newArrayList();
+
+		Chain(char operator) {
+			this.operator = operator;
+		}
+
+		Chain add(Policy policy) {
+			return policy.match(this);
+		}
+
+		String format() {
+			Collections.sort(operands);
+			return Joiner.on(operator).join(operands);
+		}
+
+		@Override
+		public Chain matchFalse() {
+			operands.add(PolicyFormatter.this.matchFalse());
+			return this;
+		}
+
+		@Override
+		public Chain matchTrue() {
+			operands.add(PolicyFormatter.this.matchTrue());
+			return this;
+		}
+
+		@Override
+		public Chain matchView(View view) {
+			operands.add(PolicyFormatter.this.matchView(view));
+			return this;
+		}
+
+		@Override
+		public Chain matchAnd(Policy left, Policy right) {
+			if (operator == '&') {
+				return add(left).add(right);
+			}
+			operands.add("(" + PolicyFormatter.this.matchAnd(left, right) + ")");
+			return this;
+		}
+
+		@Override
+		public Chain matchOr(Policy left, Policy right) {
+			if (operator == '|') {
+				return add(left).add(right);
+			}
+			operands.add("(" + PolicyFormatter.this.matchOr(left, right) + ")");
+			return this;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Read-only, memory-mapped view of a log of {@code ;}-terminated SQL statements. The file is mapped
+ * in fixed-size chunks, and the statement boundaries are found by scanning the chunks in parallel.
+ * A semicolon only ends a statement if it appears outside of a string literal and outside of a
+ * {@code --} comment.
+ *
+ * <p>Since a chunk can start in the middle of a string literal or a comment, the boundaries are
+ * found in two passes. The first pass computes, for each chunk, the lexer state at the end of the
+ * chunk as a function of the state at the start; these functions are composed from left to right
+ * to find the true starting state of every chunk. The second pass then scans each chunk from its
+ * known starting state and records the positions of the semicolons.
+ *
+ * <p>Instances are immutable once {@link #open} returns and may be shared between threads.
+ */
+public final class SqlLog {
+	static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+
+	// Lexer states. The order matters: it's used to index the transition tables.
+	private static final int NORMAL = 0;
+
+	private static final int DASH = 1;
+
+	private static final int QUOTE = 2;
+
+	private static final int COMMENT = 3;
+
+	private static final int STATE_COUNT = 4;
+
+	private final File file;
+
+	private final long size;
+
+	private final int chunkSize;
+
+	private final MappedByteBuffer[] chunks;
+
+	// Statement i occupies the bytes in [starts[i], ends[i]), excluding its terminating semicolon.
+	private final long[] starts;
+
+	private final long[] ends;
+
+	private SqlLog(File file, long size, int chunkSize, MappedByteBuffer[] chunks, long[] boundaries) {
+		this.file = file;
+		this.size = size;
+		this.chunkSize = chunkSize;
+		this.chunks = chunks;
+
+		long lastBoundary = (boundaries.length > 0) ? boundaries[boundaries.length - 1] : -1L;
+		int count = (lastBoundary + 1 < size) ? boundaries.length + 1 : boundaries.length;
+
+		this.starts = new long[count];
+		this.ends = new long[count];
+		for (int i = 0; i < count; i++) {
+			starts[i] = (i == 0) ? 0L : boundaries[i - 1] + 1;
+			ends[i] = (i < boundaries.length) ? boundaries[i] : size;
+		}
+	}
+
+	/**
+	 * Map {@code file} into memory and find its statement boundaries using the threads of {@code
+	 * executor}. The calling thread blocks until the scan is complete.
+	 */
+	public static SqlLog open(File file, ExecutorService executor) throws IOException {
+		return open(file, executor, DEFAULT_CHUNK_SIZE);
+	}
+
+	static SqlLog open(File file, ExecutorService executor, int chunkSize) throws IOException {
+		Preconditions.checkNotNull(file);
+		Preconditions.checkNotNull(executor);
+		Preconditions.checkArgument(chunkSize > 0);
+
+		MappedByteBuffer[] chunks;
+		long size;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			size = channel.size();
+
+			int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+			chunks = new MappedByteBuffer[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long start = (long) i * chunkSize;
+				long length = Math.min(chunkSize, size - start);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+		} finally {
+			// Mappings stay valid after the channel is closed.
+			raf.close();
+		}
+
+		return new SqlLog(file, size, chunkSize, chunks, findBoundaries(chunks, chunkSize, executor));
+	}
+
+	private static long[] findBoundaries(
+			MappedByteBuffer[] chunks,
+			int chunkSize,
+			ExecutorService executor) {
+		// First pass: the end state of each chunk for every possible start state.
+		List<Future<int[]>> transitions = Lists.newArrayList();
+		for (final MappedByteBuffer chunk : chunks) {
+			transitions.add(executor.submit(new Callable<int[]>() {
+				@Override
+				public int[] call() {
+					return endStates(chunk);
+				}
+			}));
+		}
+
+		int[] startStates = new int[chunks.length];
+		int state = NORMAL;
+		for (int i = 0; i < chunks.length; i++) {
+			startStates[i] = state;
+			state = getUnchecked(transitions.get(i))[state];
+		}
+
+		// Second pass: the statement boundaries in each chunk.
+		List<Future<long[]>> boundaries = Lists.newArrayList();
+		for (int i = 0; i < chunks.length; i++) {
+			final MappedByteBuffer chunk = chunks[i];
+			final int startState = startStates[i];
+			final long chunkStart = (long) i * chunkSize;
+			boundaries.add(executor.submit(new Callable<long[]>() {
+				@Override
+				public long[] call() {
+					return boundaries(chunk, chunkStart, startState);
+				}
+			}));
+		}
+
+		List<long[]> chunkBoundaries = Lists.newArrayList();
+		int total = 0;
+		for (Future<long[]> future : boundaries) {
+			long[] next = getUnchecked(future);
+			chunkBoundaries.add(next);
+			total += next.length;
+		}
+
+		long[] result = new long[total];
+		int position = 0;
+		for (long[] next : chunkBoundaries) {
+			System.arraycopy(next, 0, result, position, next.length);
+			position += next.length;
+		}
+
+		return result;
+	}
+
+	private static <V> V getUnchecked(Future<V> future) {
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private static int nextState(int state, byte value) {
+		switch (state) {
+			case NORMAL:
+			case DASH:
+				if (value == '\'') {
+					return QUOTE;
+				} else if (value == '-') {
+					return (state == DASH) ? COMMENT : DASH;
+				} else {
+					return NORMAL;
+				}
+			case QUOTE:
+				// An escaped quote ('') leaves and immediately re-enters the literal.
+				return (value == '\'') ? NORMAL : QUOTE;
+			case COMMENT:
+				return (value == '\n') ? NORMAL : COMMENT;
+			default:
+				throw new AssertionError("Unknown state: " + state);
+		}
+	}
+
+	private static boolean isBoundary(int state, byte value) {
+		return value == ';' && (state == NORMAL || state == DASH);
+	}
+
+	private static int[] endStates(MappedByteBuffer chunk) {
+		int[] states = new int[STATE_COUNT];
+		for (int i = 0; i < STATE_COUNT; i++) {
+			states[i] = i;
+		}
+
+		int limit = chunk.limit();
+		for (int position = 0; position < limit; position++) {
+			byte value = chunk.get(position);
+			for (int i = 0; i < STATE_COUNT; i++) {
+				states[i] = nextState(states[i], value);
+			}
+		}
+
+		return states;
+	}
+
+	private static long[] boundaries(MappedByteBuffer chunk, long chunkStart, int startState) {
+		long[] result = new long[16];
+		int count = 0;
+
+		int state = startState;
+		int limit = chunk.limit();
+		for (int position = 0; position < limit; position++) {
+			byte value = chunk.get(position);
+			if (isBoundary(state, value)) {
+				if (count == result.length) {
+					result = Arrays.copyOf(result, 2 * count);
+				}
+				result[count++] = chunkStart + position;
+			}
+			state = nextState(state, value);
+		}
+
+		return Arrays.copyOf(result, count);
+	}
+
+	public File file() {
+		return file;
+	}
+
+	/**
+	 * Size of the log in bytes.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Number of statements in the log, including statements that consist entirely of whitespace
+	 * and comments.
+	 */
+	public int statementCount() {
+		return starts.length;
+	}
+
+	/**
+	 * Byte offset of the first non-whitespace character of the {@code index}th statement, which
+	 * identifies the statement in the labeling output.
+	 */
+	public long statementOffset(int index) {
+		long position = starts[index];
+		while (position < ends[index] && Character.isWhitespace(byteAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private char byteAt(long position) {
+		return (char) chunks[(int) (position / chunkSize)].get((int) (position % chunkSize));
+	}
+
+	/**
+	 * Get the text of the {@code index}th statement with its comments and terminating semicolon
+	 * removed and surrounding whitespace trimmed. Returns the empty string if the statement only
+	 * consists of whitespace and comments.
+	 */
+	public String statement(int index) {
+		long start = starts[index];
+		long length = ends[index] - start;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Statement at offset " + start + " is too long");
+		}
+
+		byte[] bytes = new byte[(int) length];
+		int copied = 0;
+		while (copied < bytes.length) {
+			long position = start + copied;
+			MappedByteBuffer chunk = chunks[(int) (position / chunkSize)];
+			int offset = (int) (position % chunkSize);
+			int count = Math.min(bytes.length - copied, chunk.limit() - offset);
+
+			// Absolute reads on a duplicate leave the shared buffer untouched.
+			ByteBuffer duplicate = chunk.duplicate();
+			duplicate.position(offset);
+			duplicate.get(bytes, copied, count);
+			copied += count;
+		}
+
+		return stripComments(new String(bytes, Charsets.UTF_8)).trim();
+	}
+
+	/**
+	 * Remove {@code --} comments from {@code sql}, which must start outside of a comment and a
+	 * string literal. Line breaks at the end of comments are kept.
+	 */
+	static String stripComments(String sql) {
+		if (sql.indexOf("--") < 0) {
+			return sql;
+		}
+
+		StringBuilder result = new StringBuilder(sql.length());
+		int state = NORMAL;
+		for (int i = 0; i < sql.length(); i++) {
+			char value = sql.charAt(i);
+			int next = nextState(state, (value < 128) ? (byte) value : (byte) 0);
+
+			if (next == COMMENT) {
+				if (state == DASH) {
+					// Drop the first dash of the comment marker, which was already copied.
+					result.setLength(result.length() - 1);
+				}
+			} else {
+				result.append(value);
+			}
+
+			state = next;
+		}
+
+		return result.toString();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("file", file)
+				.add("size", size)
+				.add("statementCount", starts.length)
+				.toString();
+	}
+}
@@ -0,0 +1,568 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.ContainmentChecks;
+import com.github.explainable.trace.QueryTracer;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the latency and throughput of a {@link BenchmarkWorkload}. For every stage and thread
+ * count, the harness runs a number of trials. In each trial, every thread first runs a fixed number
+ * of warmup operations, then all threads start measuring at the same moment and record the latency
+ * of every operation in a {@link LatencyHistogram}.
+ *
+ * <p>Runs are reproducible: the operation for thread {@code i} is created from a {@link Random}
+ * seeded with a value derived only from the harness's seed and {@code i}, so every trial with the
+ * same seed processes the same queries. Threads come from a single fixed pool that's reused across
+ * trials.
+ */
+public final class BenchmarkHarness {
+	private final BenchmarkWorkload workload;
+
+	private final long seed;
+
+	private final int minThreadCount;
+
+	private final int maxThreadCount;
+
+	private final ImmutableList<BenchmarkStage> stages;
+
+	private final QueryFidelity fidelity;
+
+	private final int trials;
+
+	private final int warmupOperations;
+
+	private final int measuredOperations;
+
+	@Nullable
+	private final QueryTracer tracer;
+
+	private volatile int sink = 0;
+
+	private BenchmarkHarness(Builder builder) {
+		this.workload = builder.workload;
+		this.seed = builder.seed;
+		this.minThreadCount = builder.minThreadCount;
+		this.maxThreadCount = builder.maxThreadCount;
+		this.stages = builder.stages;
+		this.fidelity = builder.fidelity;
+		this.trials = builder.trials;
+		this.warmupOperations = builder.warmupOperations;
+		this.measuredOperations = builder.measuredOperations;
+		this.tracer = builder.tracer;
+	}
+
+	public static Builder builder(BenchmarkWorkload workload) {
+		return new Builder(workload);
+	}
+
+	public static final class Builder {
+		private final BenchmarkWorkload workload;
+
+		private long seed = 1L;
+
+		private int minThreadCount = 1;
+
+		private int maxThreadCount = 8;
+
+		private ImmutableList<BenchmarkStage> stages = ImmutableList.copyOf(BenchmarkStage.values());
+
+		private QueryFidelity fidelity = QueryFidelity.SQL;
+
+		private int trials = 5;
+
+		private int warmupOperations = 10000;
+
+		private int measuredOperations = 1000000;
+
+		@Nullable
+		private QueryTracer tracer = null;
+
+		private Builder(BenchmarkWorkload workload) {
+			this.workload = Preconditions.checkNotNull(workload);
+		}
+
+		public Builder setSeed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Run every stage with each number of threads from {@code min} to {@code max}, inclusive.
+		 */
+		public Builder setThreadCounts(int min, int max) {
+			Preconditions.checkArgument(min > 0 && min <= max);
+			this.minThreadCount = min;
+			this.maxThreadCount = max;
+			return this;
+		}
+
+		/**
+		 * Set the last stages to measure; see {@link BenchmarkStage}.
+		 */
+		public Builder setStages(List<BenchmarkStage> stages) {
+			Preconditions.checkArgument(!stages.isEmpty());
+			this.stages = ImmutableList.copyOf(stages);
+			return this;
+		}
+
+		/**
+		 * Set how the workload produces queries; see {@link QueryFidelity}.
+		 */
+		public Builder setFidelity(QueryFidelity fidelity) {
+			this.fidelity = Preconditions.checkNotNull(fidelity);
+			return this;
+		}
+
+		public Builder setTrials(int trials) {
+			Preconditions.checkArgument(trials > 0);
+			this.trials = trials;
+			return this;
+		}
+
+		/**
+		 * Set the number of unmeasured operations that each thread runs before each trial.
+		 */
+		public Builder setWarmupOperations(int warmupOperations) {
+			Preconditions.checkArgument(warmupOperations >= 0);
+			this.warmupOperations = warmupOperations;
+			return this;
+		}
+
+		/**
+		 * Set the total number of measured operations in each trial, which are divided evenly among
+		 * the threads.
+		 */
+		public Builder setMeasuredOperations(int measuredOperations) {
+			Preconditions.checkArgument(measuredOperations > 0);
+			this.measuredOperations = measuredOperations;
+			return this;
+		}
+
+		/**
+		 * Trace a sample of the measured operations with {@code tracer}, or none if it's {@code
+		 * null} (the default). Tracing adds to the latencies of the sampled operations.
+		 */
+		public Builder setTracer(@Nullable QueryTracer tracer) {
+			this.tracer = tracer;
+			return this;
+		}
+
+		public BenchmarkHarness build() {
+			return new BenchmarkHarness(this);
+		}
+	}
+
+	/**
+	 * Seed of the random number generator for the given thread.
+	 */
+	private long threadSeed(int thread) {
+		return seed + 0x9E3779B97F4A7C15L * (thread + 1);
+	}
+
+	/**
+	 * Run all the trials.
+	 *
+	 * @param progress receives one line of text per trial, or {@code null}
+	 */
+	public ImmutableList<BenchmarkResult> run(Appendable progress) throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(maxThreadCount);
+		try {
+			ImmutableList.Builder<BenchmarkResult> results = ImmutableList.builder();
+			for (BenchmarkStage stage : stages) {
+				for (int threadCount = minThreadCount; threadCount <= maxThreadCount; threadCount++) {
+					for (int trial = 1; trial <= trials; trial++) {
+						BenchmarkResult result = runTrial(threads, stage, threadCount, trial);
+						results.add(result);
+
+						if (progress != null) {
+							progress.append(String.format("# %s %s threads=%d trial=%d: %.0f ops/s, "
+									+ "p50=%.1fus p99=%.1fus max=%.1fus alloc=%.0fB/op gc=%d (%dms)%n",
+									workload.name(), stage, threadCount, trial,
+									result.throughput(),
+									result.latencies().percentile(50.0) / 1e3,
+									result.latencies().percentile(99.0) / 1e3,
+									result.latencies().max() / 1e3,
+									result.allocatedBytesPerOperation(),
+									result.gcCount(),
+									result.gcMillis()));
+						}
+					}
+				}
+			}
+			return results.build();
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	private BenchmarkResult runTrial(
+			ExecutorService threads,
+			final BenchmarkStage stage,
+			int threadCount,
+			int trial) throws Exception {
+		final CountDownLatch ready = new CountDownLatch(threadCount);
+		final CountDownLatch start = new CountDownLatch(1);
+
+		List<Future<Measurement>> futures = Lists.newArrayList();
+		for (int i = 0; i < threadCount; i++) {
+			final Random random = new Random(threadSeed(i));
+			final int operations = measuredOperations / threadCount
+					+ ((i < measuredOperations % threadCount) ? 1 : 0);
+
+			futures.add(threads.submit(new Callable<Measurement>() {
+				@Override
+				public Measurement call() throws Exception {
+					BenchmarkWorkload.Operation operation;
+					try {
+						operation = workload.newOperation(random, fidelity);
+						warmUp(operation, stage);
+					} finally {
+						// Count down even on failure, so the trial doesn't wait forever.
+						ready.countDown();
+					}
+
+					start.await();
+					return measure(operation, stage, operations);
+				}
+			}));
+		}
+
+		Uninterruptibles.awaitUninterruptibly(ready);
+		long gcCountBefore = JvmCounters.gcCount();
+		long gcMillisBefore = JvmCounters.gcMillis();
+		long startNanos = System.nanoTime();
+		start.countDown();
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		long allocatedBytes = 0L;
+		try {
+			for (Future<Measurement> future : futures) {
+				Measurement measurement = Uninterruptibles.getUninterruptibly(future);
+				latencies.add(measurement.latencies);
+				allocatedBytes = (allocatedBytes >= 0L && measurement.allocatedBytes >= 0L)
+						? allocatedBytes + measurement.allocatedBytes
+						: -1L;
+			}
+		} catch (ExecutionException e) {
+			for (Future<Measurement> future : futures) {
+				future.cancel(true);
+			}
+			Throwables.propagateIfPossible(e.getCause(), Exception.class);
+			throw new IllegalStateException(e.getCause());
+		}
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		return new BenchmarkResult(
+				workload.name(), stage, threadCount, trial, seed, elapsedNanos, latencies,
+				allocatedBytes,
+				JvmCounters.gcCount() - gcCountBefore,
+				JvmCounters.gcMillis() - gcMillisBefore);
+	}
+
+	private void warmUp(BenchmarkWorkload.Operation operation, BenchmarkStage stage)
+			throws Exception {
+		int consumed = 0;
+		for (int i = 0; i < warmupOperations; i++) {
+			consumed += consume(operation.run(stage));
+		}
+		sink += consumed;
+	}
+
+	/**
+	 * What one thread measured during a trial.
+	 */
+	private static final class Measurement {
+		final LatencyHistogram latencies;
+
+		final long allocatedBytes;
+
+		Measurement(LatencyHistogram latencies, long allocatedBytes) {
+			this.latencies = latencies;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+
+	private Measurement measure(
+			BenchmarkWorkload.Operation operation,
+			BenchmarkStage stage,
+			int operations) throws Exception {
+		int consumed = 0;
+		LatencyHistogram latencies = new LatencyHistogram();
+		long allocatedBefore = JvmCounters.threadAllocatedBytes();
+		for (int i = 0; i < operations; i++) {
+			long before = System.nanoTime();
+			Object result = (tracer != null)
+					? runTraced(operation, stage)
+					: operation.run(stage);
+			latencies.record(System.nanoTime() - before);
+			consumed += consume(result);
+		}
+		long allocatedAfter = JvmCounters.threadAllocatedBytes();
+
+		sink += consumed;
+		return new Measurement(
+				latencies,
+				(allocatedBefore >= 0L) ? allocatedAfter - allocatedBefore : -1L);
+	}
+
+	private Object runTraced(BenchmarkWorkload.Operation operation, BenchmarkStage stage)
+			throws Exception {
+		boolean traced = tracer.beginRequest(workload.name(), stage.name());
+		try {
+			return operation.run(stage);
+		} finally {
+			if (traced) {
+				tracer.endRequest();
+			}
+		}
+	}
+
+	private static int consume(Object result) {
+		return (result != null) ? System.identityHashCode(result) : 0;
+	}
+
+	/**
+	 * Entry point for benchmark drivers. Recognizes the options {@code --seed N}, {@code --threads
+	 * N} or {@code --threads MIN-MAX}, {@code --stages STAGE,...}, {@code --fidelity
+	 * sql|ast|views}, {@code --trials N}, {@code --warmup N}, {@code --operations N}, {@code
+	 * --format csv|json} and {@code --output FILE}.
+	 * Results go to standard output unless {@code --output} is given; progress goes to standard
+	 * error.
+	 *
+	 * <p>With {@code --trace FILE}, one measured operation in every {@code --trace-interval N}
+	 * (default 100) is traced to {@code FILE}; see {@link QueryTracer}. With {@code --effort-budget
+	 * N}, containment checks give up after {@code N} steps; see {@link ContainmentChecks}. The
+	 * total effort of the containment checks is reported on standard error after the run.
+	 *
+	 * <p>With {@code --gc-heap SIZE} (for example {@code 64m}), the benchmark runs in a child JVM
+	 * whose heap is fixed at {@code SIZE}, so that the garbage collection counts and times in the
+	 * results show how allocation translates into collector work. This requires the workload's
+	 * class to have a main method that calls this one.
+	 */
+	public static void main(BenchmarkWorkload workload, String[] args) throws Exception {
+		Builder builder = builder(workload);
+		ResultFormat format = ResultFormat.CSV;
+		File output = null;
+		String gcHeap = null;
+		File traceFile = null;
+		int traceInterval = 100;
+		List<String> forwardedArgs = Lists.newArrayList();
+
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+
+			if (option.equals("--gc-heap")) {
+				gcHeap = value;
+				continue;
+			}
+			forwardedArgs.add(option);
+			forwardedArgs.add(value);
+
+			if (option.equals("--seed")) {
+				builder.setSeed(Long.parseLong(value));
+			} else if (option.equals("--threads")) {
+				int dash = value.indexOf('-');
+				if (dash < 0) {
+					int count = Integer.parseInt(value);
+					builder.setThreadCounts(count, count);
+				} else {
+					builder.setThreadCounts(
+							Integer.parseInt(value.substring(0, dash)),
+							Integer.parseInt(value.substring(dash + 1)));
+				}
+			} else if (option.equals("--stages")) {
+				List<BenchmarkStage> stages = Lists.newArrayList();
+				for (String stage : value.split(",")) {
+					stages.add(BenchmarkStage.valueOf(stage.trim().toUpperCase()));
+				}
+				builder.setStages(stages);
+			} else if (option.equals("--fidelity")) {
+				builder.setFidelity(QueryFidelity.valueOf(value.toUpperCase()));
+			} else if (option.equals("--trials")) {
+				builder.setTrials(Integer.parseInt(value));
+			} else if (option.equals("--warmup")) {
+				builder.setWarmupOperations(Integer.parseInt(value));
+			} else if (option.equals("--operations")) {
+				builder.setMeasuredOperations(Integer.parseInt(value));
+			} else if (option.equals("--format")) {
+				format = ResultFormat.valueOf(value.toUpperCase());
+			} else if (option.equals("--output")) {
+				output = new File(value);
+			} else if (option.equals("--trace")) {
+				traceFile = new File(value);
+			} else if (option.equals("--trace-interval")) {
+				traceInterval = Integer.parseInt(value);
+			} else if (option.equals("--effort-budget")) {
+				ContainmentChecks.setEffortBudget(Long.parseLong(value));
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+
+		if (gcHeap != null) {
+			runWithHeap(workload, gcHeap, forwardedArgs);
+			return;
+		}
+
+		QueryTracer tracer = null;
+		if (traceFile != null) {
+			tracer = QueryTracer.builder(traceFile).setSamplingInterval(traceInterval).build();
+			builder.setTracer(tracer);
+		}
+
+		BenchmarkHarness harness = builder.build();
+		System.err.format("# Name: %s%n", workload.name());
+		System.err.format("# Date: %s%n", new Date());
+		System.err.format("# Host: %s%n", InetAddress.getLocalHost().getHostName());
+		System.err.format("# Max heap: %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+		System.err.format("# Allocation counting: %s%n",
+				JvmCounters.isAllocationCountingSupported() ? "on" : "unsupported");
+		System.err.format("# Harness: %s%n", harness);
+		System.err.format("# Containment effort budget: %d%n", ContainmentChecks.effortBudget());
+
+		List<BenchmarkResult> results;
+		try {
+			results = harness.run(System.err);
+		} finally {
+			if (tracer != null) {
+				tracer.close();
+			}
+		}
+		System.err.format("# Containment effort: %s%n", ContainmentChecks.totalEffort());
+
+		Writer writer = (output != null)
+				? Files.newWriter(output, Charsets.UTF_8)
+				: new OutputStreamWriter(System.out, Charsets.UTF_8);
+		try {
+			format.write(results, writer);
+		} finally {
+			if (output != null) {
+				writer.close();
+			} else {
+				writer.flush();
+			}
+		}
+	}
+
+	/**
+	 * Run the benchmark in a child JVM whose heap is fixed at {@code heapSize} (in the format of
+	 * {@code -Xmx}), so that it runs under garbage collection pressure. The child runs the main
+	 * method of the workload's class with {@code args}, and its output is passed through.
+	 */
+	private static void runWithHeap(BenchmarkWorkload workload, String heapSize, List<String> args)
+			throws IOException, InterruptedException {
+		List<String> command = Lists.newArrayList();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (!jvmArg.startsWith("-Xmx") && !jvmArg.startsWith("-Xms")) {
+				command.add(jvmArg);
+			}
+		}
+		command.add("-Xms" + heapSize);
+		command.add("-Xmx" + heapSize);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(workload.getClass().getName());
+		command.addAll(args);
+
+		Process process = new ProcessBuilder(command).start();
+		process.getOutputStream().close();
+		Thread stdout = pump(process.getInputStream(), System.out);
+		Thread stderr = pump(process.getErrorStream(), System.err);
+
+		int status = process.waitFor();
+		stdout.join();
+		stderr.join();
+		if (status != 0) {
+			throw new IllegalStateException("Benchmark with heap " + heapSize
+					+ " exited with status " + status);
+		}
+	}
+
+	private static Thread pump(final InputStream from, final OutputStream to) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ByteStreams.copy(from, to);
+					to.flush();
+				} catch (IOException e) {
+					// The child died; its exit status tells the rest of the story.
+				}
+			}
+		}, "BenchmarkHarness-pump");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("workload", workload.name())
+				.add("seed", seed)
+				.add("minThreadCount", minThreadCount)
+				.add("maxThreadCount", maxThreadCount)
+				.add("stages", stages)
+				.add("fidelity", fidelity)
+				.add("trials", trials)
+				.add("tracer", tracer)
+				.toString();
+	}
+}
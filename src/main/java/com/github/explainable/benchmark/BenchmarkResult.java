@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Measurements from one trial of a benchmark: a workload run up to a given stage by a given number
+ * of threads.
+ */
+public final class BenchmarkResult {
+	private final String workload;
+
+	private final BenchmarkStage stage;
+
+	private final int threadCount;
+
+	private final int trial;
+
+	private final long seed;
+
+	private final long elapsedNanos;
+
+	private final LatencyHistogram latencies;
+
+	private final long allocatedBytes;
+
+	private final long gcCount;
+
+	private final long gcMillis;
+
+	BenchmarkResult(
+			String workload,
+			BenchmarkStage stage,
+			int threadCount,
+			int trial,
+			long seed,
+			long elapsedNanos,
+			LatencyHistogram latencies,
+			long allocatedBytes,
+			long gcCount,
+			long gcMillis) {
+		this.workload = Preconditions.checkNotNull(workload);
+		this.stage = Preconditions.checkNotNull(stage);
+		this.threadCount = threadCount;
+		this.trial = trial;
+		this.seed = seed;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = Preconditions.checkNotNull(latencies);
+		this.allocatedBytes = allocatedBytes;
+		this.gcCount = gcCount;
+		this.gcMillis = gcMillis;
+	}
+
+	public String workload() {
+		return workload;
+	}
+
+	public BenchmarkStage stage() {
+		return stage;
+	}
+
+	public int threadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Number of the trial, starting from {@code 1}.
+	 */
+	public int trial() {
+		return trial;
+	}
+
+	public long seed() {
+		return seed;
+	}
+
+	/**
+	 * Number of operations measured across all threads.
+	 */
+	public long operations() {
+		return latencies.count();
+	}
+
+	/**
+	 * Wall-clock time from the moment that all threads started measuring until the last one
+	 * finished.
+	 */
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Operations per second across all threads.
+	 */
+	public double throughput() {
+		return (elapsedNanos > 0) ? operations() * 1e9 / elapsedNanos : 0.0;
+	}
+
+	/**
+	 * Latencies of the individual operations, in nanoseconds.
+	 */
+	public LatencyHistogram latencies() {
+		return latencies;
+	}
+
+	/**
+	 * Bytes allocated on the heap by all the threads while they were measuring, or {@code -1} if
+	 * the JVM doesn't count allocations per thread.
+	 */
+	public long allocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Average number of bytes that each operation allocated, or {@code -1} if unknown. Since each
+	 * stage includes all the earlier ones, the allocations of a single stage are the difference
+	 * between its value and that of the previous stage.
+	 */
+	public double allocatedBytesPerOperation() {
+		if (allocatedBytes < 0 || operations() == 0) {
+			return -1.0;
+		}
+		return (double) allocatedBytes / operations();
+	}
+
+	/**
+	 * Number of garbage collections, over all collectors, that happened during the trial.
+	 */
+	public long gcCount() {
+		return gcCount;
+	}
+
+	/**
+	 * Approximate time spent in garbage collection during the trial, as reported by the JVM's
+	 * collectors.
+	 */
+	public long gcMillis() {
+		return gcMillis;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("workload", workload)
+				.add("stage", stage)
+				.add("threadCount", threadCount)
+				.add("trial", trial)
+				.add("throughput", throughput())
+				.add("latencies", latencies)
+				.add("allocatedBytesPerOperation", allocatedBytesPerOperation())
+				.add("gcCount", gcCount)
+				.add("gcMillis", gcMillis)
+				.toString();
+	}
+}
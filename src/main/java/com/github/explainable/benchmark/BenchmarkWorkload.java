@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import java.util.Random;
+
+/**
+ * A workload that {@link BenchmarkHarness} can measure. Each benchmark thread gets its own {@link
+ * Operation}, so operations don't need to be thread-safe.
+ */
+public interface BenchmarkWorkload {
+	/**
+	 * One thread's view of the workload.
+	 */
+	interface Operation {
+		/**
+		 * Process one query, stopping after {@code lastStage}.
+		 *
+		 * @return the output of the last stage, which the harness consumes so that the JIT can't
+		 * discard the work
+		 */
+		Object run(BenchmarkStage lastStage) throws Exception;
+	}
+
+	/**
+	 * Short name that identifies the workload in reports.
+	 */
+	String name();
+
+	/**
+	 * Create the state for a single benchmark thread. All of the operation's randomness, including
+	 * which queries it produces, must come from {@code random} so that runs can be reproduced.
+	 *
+	 * @param fidelity how the operation should produce queries
+	 * @throws IllegalArgumentException if the workload can't produce queries at {@code fidelity}
+	 */
+	Operation newOperation(Random random, QueryFidelity fidelity);
+}
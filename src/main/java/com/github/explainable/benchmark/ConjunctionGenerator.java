@@ -32,15 +32,20 @@ import com.github.explainable.corelang.TermMap;
 import com.github.explainable.corelang.TermType;
 import com.github.explainable.corelang.Terms;
 import com.github.explainable.corelang.View;
+import com.github.explainable.util.IntUnionFind;
 import com.github.explainable.util.RandomSampler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -48,19 +53,38 @@ import java.util.Set;
 
 /**
  * Class that randomly generates conjunctive queries by recursively selecting and applying templates
- * from a specified list.
+ * from a specified list. Instances are not thread-safe.
  */
 public final class ConjunctionGenerator {
 	private static final int MAX_OUTPUT_SIZE = 10;
 
+	/**
+	 * Number of consecutive failed attempts after which {@link #iterator} gives up.
+	 */
+	private static final int MAX_ATTEMPTS = 1000;
+
 	private final ImmutableList<View> templates;
 
+	private final ImmutableMap<Relation, TemplateIndex> indexes;
+
 	private final RandomSampler sampler;
 
+	// Working space for atom unification; reused across all the candidates we consider.
+	private final IntUnionFind<Term> unionFind;
+
+	// Working space for candidate selection; reused across calls to extendAtomList.
+	private final BitSet candidateBits;
+
+	private final List<View> candidates;
+
 	private ConjunctionGenerator(List<View> templates, Random random) {
 		Preconditions.checkArgument(!templates.isEmpty());
 		this.templates = ImmutableList.copyOf(templates);
+		this.indexes = TemplateIndex.create(this.templates);
 		this.sampler = RandomSampler.create(random);
+		this.unionFind = IntUnionFind.create();
+		this.candidateBits = new BitSet();
+		this.candidates = Lists.newArrayList();
 	}
 
 	public static ConjunctionGenerator create(List<View> templates, Random random) {
@@ -97,6 +121,29 @@ public final class ConjunctionGenerator {
 		return result.apply(new DistVariablePromoter(distArguments));
 	}
 
+	/**
+	 * Return an endless iterator over the conjunctions produced by {@link #nextWithRandomDist}.
+	 * Conjunctions are generated lazily, one per call to {@code next()}, and attempts that fail to
+	 * produce a conjunction are skipped. The iterator shares the state of this generator.
+	 *
+	 * @throws IllegalStateException from {@code next()} if the templates repeatedly fail to produce
+	 * a conjunction
+	 */
+	public Iterator<Conjunction> iterator(final double lambda) {
+		return new AbstractIterator<Conjunction>() {
+			@Override
+			protected Conjunction computeNext() {
+				for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+					Conjunction result = nextWithRandomDist(lambda);
+					if (result != null) {
+						return result;
+					}
+				}
+				throw new IllegalStateException("Templates do not produce any conjunctions");
+			}
+		};
+	}
+
 	/**
 	 * Output a random conjunction without any distinguished variables. Every distinguished variable
 	 * and every set-existential variable in the query will be referenced by the first body atom.
@@ -145,23 +192,34 @@ public final class ConjunctionGenerator {
 	}
 
 	private boolean extendAtomList(List<Atom> atoms, int i) {
-		List<View> candidates = Lists.newArrayListWithCapacity(templates.size());
-		for (View template : templates) {
-			if (atoms.get(i).isCompatibleWith(template.body())) {
-				candidates.add(template);
+		Atom atom = atoms.get(i);
+
+		candidates.clear();
+		TemplateIndex index = indexes.get(atom.relation());
+		if (index != null) {
+			index.findCandidates(atom, candidateBits);
+			for (int k = candidateBits.nextSetBit(0); k >= 0; k = candidateBits.nextSetBit(k + 1)) {
+				View template = index.templates.get(k);
+				if (atom.isCompatibleWith(template.body(), unionFind)) {
+					candidates.add(template);
+				}
 			}
 		}
 
 		if (!candidates.isEmpty()) {
 			View selected = sampler.choice(candidates).freshCopy();
-			Atom unifier = atoms.get(i).unifyWith(selected.body());
+			Atom unifier = atom.unifyWith(selected.body(), unionFind);
 			if (unifier == null) {
 				return false;
 			}
 
-			UnifierMap atomsToUnifier = new UnifierMap(atoms.get(i), unifier);
-			for (int j = 0; j < atoms.size(); j++) {
-				atoms.set(j, atoms.get(j).apply(atomsToUnifier));
+			UnifierMap atomsToUnifier = new UnifierMap(atom, unifier);
+			if (!atomsToUnifier.isIdentity()) {
+				for (int j = 0; j < atoms.size(); j++) {
+					if (atomsToUnifier.changes(atoms.get(j))) {
+						atoms.set(j, atoms.get(j).apply(atomsToUnifier));
+					}
+				}
 			}
 
 			UnifierMap selectedToUnifier = new UnifierMap(selected.body(), unifier);
@@ -188,8 +246,30 @@ public final class ConjunctionGenerator {
 			List<Term> originalArgs = original.arguments();
 			List<Term> unifierArgs = unifier.arguments();
 			for (int i = 0; i < originalArgs.size(); i++) {
-				mapping.put(originalArgs.get(i), unifierArgs.get(i));
+				if (!originalArgs.get(i).equals(unifierArgs.get(i))) {
+					mapping.put(originalArgs.get(i), unifierArgs.get(i));
+				}
+			}
+		}
+
+		/**
+		 * Determine whether the map sends every term to itself.
+		 */
+		boolean isIdentity() {
+			return mapping.isEmpty();
+		}
+
+		/**
+		 * Determine whether applying the map to the arguments of {@code atom} would change any of
+		 * them.
+		 */
+		boolean changes(Atom atom) {
+			for (Term term : atom.arguments()) {
+				if (mapping.containsKey(term)) {
+					return true;
+				}
 			}
+			return false;
 		}
 
 		@Override
@@ -199,6 +279,97 @@ public final class ConjunctionGenerator {
 		}
 	}
 
+	/**
+	 * The templates whose body atoms are over a single relation, indexed by the constants in those
+	 * atoms. An atom can only be compatible with a template if the two have the same constant at
+	 * every position where both have a constant, so the index rules out most incompatible
+	 * templates without unifying anything.
+	 */
+	private static final class TemplateIndex {
+		final ImmutableList<View> templates;
+
+		/**
+		 * For each argument position, the templates that have a constant there, or {@code null} if
+		 * none of them do.
+		 */
+		final BitSet[] withConstant;
+
+		/**
+		 * For each argument position, the templates that have a constant there that differs from a
+		 * given constant. Filled in lazily.
+		 */
+		final List<Map<Term, BitSet>> conflicts;
+
+		private TemplateIndex(List<View> templates, int arity) {
+			this.templates = ImmutableList.copyOf(templates);
+			this.withConstant = new BitSet[arity];
+			this.conflicts = Lists.newArrayListWithCapacity(arity);
+
+			for (int position = 0; position < arity; position++) {
+				conflicts.add(Maps.<Term, BitSet>newHashMap());
+				for (int k = 0; k < templates.size(); k++) {
+					Term term = templates.get(k).body().arguments().get(position);
+					if (term.type() == TermType.CONSTANT) {
+						if (withConstant[position] == null) {
+							withConstant[position] = new BitSet(templates.size());
+						}
+						withConstant[position].set(k);
+					}
+				}
+			}
+		}
+
+		static ImmutableMap<Relation, TemplateIndex> create(List<View> templates) {
+			Map<Relation, List<View>> byRelation = Maps.newLinkedHashMap();
+			for (View template : templates) {
+				List<View> sameRelation = byRelation.get(template.bodyRelation());
+				if (sameRelation == null) {
+					sameRelation = Lists.newArrayList();
+					byRelation.put(template.bodyRelation(), sameRelation);
+				}
+				sameRelation.add(template);
+			}
+
+			ImmutableMap.Builder<Relation, TemplateIndex> result = ImmutableMap.builder();
+			for (Map.Entry<Relation, List<View>> entry : byRelation.entrySet()) {
+				result.put(entry.getKey(),
+						new TemplateIndex(entry.getValue(), entry.getKey().arity()));
+			}
+			return result.build();
+		}
+
+		/**
+		 * Set {@code result} to the positions in {@link #templates} of the templates whose
+		 * constants don't conflict with those of {@code atom}.
+		 */
+		void findCandidates(Atom atom, BitSet result) {
+			result.clear();
+			result.set(0, templates.size());
+
+			for (int position = 0; position < withConstant.length; position++) {
+				Term term = atom.arguments().get(position);
+				if (withConstant[position] != null && term.type() == TermType.CONSTANT) {
+					result.andNot(conflictsWith(position, term));
+				}
+			}
+		}
+
+		private BitSet conflictsWith(int position, Term constant) {
+			Map<Term, BitSet> cache = conflicts.get(position);
+			BitSet result = cache.get(constant);
+			if (result == null) {
+				result = (BitSet) withConstant[position].clone();
+				for (int k = result.nextSetBit(0); k >= 0; k = result.nextSetBit(k + 1)) {
+					if (templates.get(k).body().arguments().get(position).equals(constant)) {
+						result.clear(k);
+					}
+				}
+				cache.put(constant, result);
+			}
+			return result;
+		}
+	}
+
 	/**
 	 * A map that transforms all distinguished variables into fresh set-existential variables and
 	 * keeps all remaining variables the same.
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.corelang.Constant;
+import com.github.explainable.corelang.DistVariable;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.sql.ast.expression.SqlBinaryExpression;
+import com.github.explainable.sql.ast.expression.SqlBinaryExpression.BinaryOperator;
+import com.github.explainable.sql.ast.expression.SqlColumnReference;
+import com.github.explainable.sql.ast.expression.SqlExists;
+import com.github.explainable.sql.ast.expression.SqlExpression;
+import com.github.explainable.sql.ast.expression.SqlNumericConstant;
+import com.github.explainable.sql.ast.expression.SqlStringConstant;
+import com.github.explainable.sql.ast.expression.SqlSubSelect;
+import com.github.explainable.sql.ast.select.SqlFrom;
+import com.github.explainable.sql.ast.select.SqlFromBaseTable;
+import com.github.explainable.sql.ast.select.SqlFromJoin;
+import com.github.explainable.sql.ast.select.SqlFromJoin.SqlJoinKind;
+import com.github.explainable.sql.ast.select.SqlPlainSelect;
+import com.github.explainable.sql.ast.select.SqlSelectColumn;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class for converting a {@link Conjunction} directly to the AST that parsing and
+ * converting the output of {@link ConjunctionToSql#convert} would produce. This skips both
+ * generating the SQL text and parsing it, so benchmarks can feed generated queries to the later
+ * stages of the {@code ViewExtractionPipeline} at a much higher rate.
+ *
+ * WARNING: This class is designed for randomized query generation, and might not preserve the
+ * semantics of the original SQL query.
+ */
+public final class ConjunctionToAst {
+	private final List<SqlFrom> outerQueryTables;
+
+	private final List<SqlFrom> innerQueryTables;
+
+	private final List<SqlExpression> outerQueryEqualityConstraints;
+
+	private final List<SqlExpression> innerQueryEqualityConstraints;
+
+	private final List<SqlColumnReference> distinguished;
+
+	private final Map<Term, SqlColumnReference> firstRefs;
+
+	private int tableInstanceCounter;
+
+	private ConjunctionToAst() {
+		this.outerQueryTables = Lists.newArrayList();
+		this.innerQueryTables = Lists.newArrayList();
+		this.outerQueryEqualityConstraints = Lists.newArrayList();
+		this.innerQueryEqualityConstraints = Lists.newArrayList();
+		this.distinguished = Lists.newArrayList();
+		this.firstRefs = Maps.newHashMap();
+		this.tableInstanceCounter = 0;
+	}
+
+	private String freshTableInstanceName() {
+		tableInstanceCounter++;
+		return "R" + tableInstanceCounter;
+	}
+
+	private void addAtom(Atom atom) {
+		String tableInstanceName = freshTableInstanceName();
+		boolean outer = (atom.getCopyVariable().type() == TermType.MULTISET_VARIABLE);
+
+		SqlFrom table = new SqlFromBaseTable(atom.relation().name(), tableInstanceName);
+		if (outer) {
+			outerQueryTables.add(table);
+		} else {
+			innerQueryTables.add(table);
+		}
+
+		List<String> columnNames = atom.relation().columnNames();
+		for (int i = 0; i < atom.arguments().size(); i++) {
+			Term term = atom.arguments().get(i);
+			registerArgument(outer, term, columnNames.get(i), tableInstanceName);
+		}
+	}
+
+	private void registerArgument(
+			boolean outer,
+			Term term,
+			String columnName,
+			String tableInstanceName) {
+		SqlExpression constraint = null;
+		if (term instanceof Constant) {
+			constraint = new SqlBinaryExpression(
+					new SqlColumnReference(columnName, tableInstanceName),
+					constantExpression((Constant) term),
+					BinaryOperator.EQUALS_TO);
+		} else {
+			SqlColumnReference firstRef = firstRefs.get(term);
+			if (firstRef == null) {
+				firstRefs.put(term, new SqlColumnReference(columnName, tableInstanceName));
+				if (outer && term instanceof DistVariable) {
+					distinguished.add(new SqlColumnReference(columnName, tableInstanceName));
+				}
+			} else {
+				// Every node gets its own column reference, since the passes annotate them.
+				constraint = new SqlBinaryExpression(
+						new SqlColumnReference(firstRef.columnName(), firstRef.tableAlias()),
+						new SqlColumnReference(columnName, tableInstanceName),
+						BinaryOperator.EQUALS_TO);
+			}
+		}
+
+		if (constraint != null) {
+			if (outer) {
+				outerQueryEqualityConstraints.add(constraint);
+			} else {
+				innerQueryEqualityConstraints.add(constraint);
+			}
+		}
+	}
+
+	private static SqlExpression constantExpression(Constant constant) {
+		Object value = constant.value();
+		if (value instanceof Number) {
+			return new SqlNumericConstant((Number) value);
+		} else {
+			return new SqlStringConstant(value.toString());
+		}
+	}
+
+	private SqlSelectStmt outerQuery() {
+		SqlPlainSelect.Builder builder = SqlPlainSelect.builder();
+
+		if (distinguished.isEmpty()) {
+			builder.addSelectItem(new SqlSelectColumn(new SqlNumericConstant(1L), null));
+		} else {
+			for (SqlColumnReference column : distinguished) {
+				builder.addSelectItem(new SqlSelectColumn(column, column.columnName()));
+			}
+		}
+
+		builder.setFrom(crossJoin(outerQueryTables));
+
+		List<SqlExpression> where = Lists.newArrayList(outerQueryEqualityConstraints);
+		if (!innerQueryTables.isEmpty()) {
+			where.add(new SqlExists(new SqlSubSelect(innerQuery(true)), false));
+		}
+		if (!where.isEmpty()) {
+			builder.setWhere(conjunction(where));
+		}
+
+		return builder.build();
+	}
+
+	private SqlSelectStmt innerQuery(boolean correlated) {
+		SqlPlainSelect.Builder builder = SqlPlainSelect.builder();
+		builder.setDistinct(true);
+
+		if (distinguished.isEmpty() || correlated) {
+			builder.addSelectItem(new SqlSelectColumn(new SqlNumericConstant(1L), null));
+		} else {
+			for (SqlColumnReference column : distinguished) {
+				builder.addSelectItem(new SqlSelectColumn(column, column.columnName()));
+			}
+		}
+
+		builder.setFrom(crossJoin(innerQueryTables));
+
+		if (!innerQueryEqualityConstraints.isEmpty()) {
+			builder.setWhere(conjunction(innerQueryEqualityConstraints));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Join {@code tables} from left to right, like the parser does for a comma-separated {@code
+	 * FROM} list.
+	 */
+	private static SqlFrom crossJoin(List<SqlFrom> tables) {
+		SqlFrom from = tables.get(0);
+		for (SqlFrom table : tables.subList(1, tables.size())) {
+			from = new SqlFromJoin(from, table, null, SqlJoinKind.INNER);
+		}
+		return from;
+	}
+
+	/**
+	 * Combine {@code operands} with {@code AND}, pairing adjacent operands until a single expression
+	 * remains. This produces the same balanced tree as the converter does for a parsed chain.
+	 */
+	private static SqlExpression conjunction(List<SqlExpression> operands) {
+		List<SqlExpression> remaining = operands;
+		while (remaining.size() > 1) {
+			List<SqlExpression> combined
+					= Lists.newArrayListWithCapacity((remaining.size() + 1) / 2);
+			for (int i = 0; i + 1 < remaining.size(); i += 2) {
+				combined.add(new SqlBinaryExpression(
+						remaining.get(i), remaining.get(i + 1), BinaryOperator.AND));
+			}
+			if (remaining.size() % 2 != 0) {
+				combined.add(remaining.get(remaining.size() - 1));
+			}
+			remaining = combined;
+		}
+
+		return remaining.get(0);
+	}
+
+	private SqlSelectStmt build() {
+		if (!outerQueryTables.isEmpty()) {
+			return outerQuery();
+		} else if (!innerQueryTables.isEmpty()) {
+			return innerQuery(false);
+		} else {
+			return SqlPlainSelect.builder()
+					.addSelectItem(new SqlSelectColumn(new SqlNumericConstant(1L), null))
+					.build();
+		}
+	}
+
+	/**
+	 * Convert {@code conjunction} to a new AST. The passes of a {@code ViewExtractionPipeline}
+	 * annotate the trees they process, so each tree should only be executed once.
+	 */
+	public static SqlSelectStmt convert(Conjunction conjunction) {
+		ConjunctionToAst converter = new ConjunctionToAst();
+		for (Atom atom : conjunction.atoms()) {
+			converter.addAtom(atom);
+		}
+		return converter.build();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.corelang.DistVariable;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.View;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.github.explainable.corelang.Atom.createMultisetAtom;
+import static com.github.explainable.corelang.Terms.dist;
+import static com.github.explainable.corelang.Terms.multiset;
+
+/**
+ * Utility class that computes the views which the {@code ViewExtractionPipeline} would extract from
+ * the SQL query that {@link ConjunctionToSql#convert} produces for a {@link Conjunction}, without
+ * building the query at all. The views are the same as the pipeline's up to a renaming of their
+ * variables and the order of their condition atoms, which lets benchmarks drive labeling and
+ * explanation with generated queries at a rate that the pipeline couldn't sustain.
+ */
+public final class ConjunctionToViews {
+	private ConjunctionToViews() {
+		throw new UnsupportedOperationException("Can't instantiate ConjunctionToViews");
+	}
+
+	/**
+	 * Compute the views for {@code conjunction}. As in the pipeline, there's one view per atom,
+	 * named {@code Q1}, {@code Q2}, ... in the order in which the generated query declares their
+	 * tables: first the atoms of the outer query, then those of its {@code EXISTS} subquery. Every
+	 * view has the atom as its body and all of the other atoms as conditions, since a generated
+	 * query's outer query and subquery constrain each other. A column becomes a distinguished variable if the query
+	 * selects it or joins it with another column, and a constant if it's compared with one.
+	 */
+	public static ImmutableList<View> convert(Conjunction conjunction) {
+		List<Atom> ordered = Lists.newArrayListWithCapacity(conjunction.atoms().size());
+		for (Atom atom : conjunction.atoms()) {
+			if (isOuter(atom)) {
+				ordered.add(atom);
+			}
+		}
+		for (Atom atom : conjunction.atoms()) {
+			if (!isOuter(atom)) {
+				ordered.add(atom);
+			}
+		}
+
+		Multiset<Term> occurrences = HashMultiset.create();
+		for (Atom atom : ordered) {
+			occurrences.addAll(atom.arguments());
+		}
+
+		Map<Term, Term> distinguished = Maps.newHashMap();
+		List<Atom> atoms = Lists.newArrayListWithCapacity(ordered.size());
+		for (Atom atom : ordered) {
+			List<Term> arguments = Lists.newArrayListWithCapacity(atom.arguments().size());
+			for (Term term : atom.arguments()) {
+				arguments.add(columnTerm(term, isOuter(atom), occurrences, distinguished));
+			}
+			atoms.add(createMultisetAtom(atom.relation(), arguments));
+		}
+
+		ImmutableList.Builder<View> views = ImmutableList.builder();
+		for (int i = 0; i < atoms.size(); i++) {
+			List<Atom> conditions = Lists.newArrayListWithCapacity(atoms.size() - 1);
+			conditions.addAll(atoms.subList(0, i));
+			conditions.addAll(atoms.subList(i + 1, atoms.size()));
+			views.add(View.convert("Q" + (i + 1), atoms.get(i), conditions));
+		}
+
+		return views.build();
+	}
+
+	private static boolean isOuter(Atom atom) {
+		return atom.getCopyVariable().type() == TermType.MULTISET_VARIABLE;
+	}
+
+	private static Term columnTerm(
+			Term term,
+			boolean outer,
+			Multiset<Term> occurrences,
+			Map<Term, Term> distinguished) {
+		if (term.type() == TermType.CONSTANT) {
+			return term;
+		}
+
+		boolean selected = outer && (term instanceof DistVariable);
+		if (!selected && occurrences.count(term) < 2) {
+			// Columns that the query never mentions keep their own multiset variables.
+			return multiset();
+		}
+
+		Term result = distinguished.get(term);
+		if (result == null) {
+			result = dist();
+			distinguished.put(term, result);
+		}
+		return result;
+	}
+}
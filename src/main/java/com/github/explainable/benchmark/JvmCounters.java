@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the JVM's allocation and garbage collection counters.
+ */
+final class JvmCounters {
+	/**
+	 * The HotSpot thread bean if it can count allocated bytes, or {@code null} otherwise.
+	 */
+	private static final ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+	private JvmCounters() {
+		// Prevent the class from being accidentally instantiated using reflection.
+		throw new UnsupportedOperationException("Cannot instantiate JvmCounters");
+	}
+
+	private static ThreadMXBean allocationCounter() {
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+				return null;
+			}
+
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (!sunBean.isThreadAllocatedMemorySupported()) {
+				return null;
+			}
+			if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+			}
+			return bean;
+		} catch (LinkageError e) {
+			// Not a HotSpot-derived JVM
+			return null;
+		} catch (UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	static boolean isAllocationCountingSupported() {
+		return ALLOCATION_COUNTER != null;
+	}
+
+	/**
+	 * Total number of bytes that the calling thread has allocated on the heap so far, or {@code -1}
+	 * if the JVM can't tell.
+	 */
+	static long threadAllocatedBytes() {
+		if (ALLOCATION_COUNTER == null) {
+			return -1L;
+		}
+		return ((com.sun.management.ThreadMXBean) ALLOCATION_COUNTER)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Total number of garbage collections so far, over all collectors.
+	 */
+	static long gcCount() {
+		long result = 0L;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			result += Math.max(bean.getCollectionCount(), 0L);
+		}
+		return result;
+	}
+
+	/**
+	 * Approximate total time spent in garbage collection so far, over all collectors, in
+	 * milliseconds.
+	 */
+	static long gcMillis() {
+		long result = 0L;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			result += Math.max(bean.getCollectionTime(), 0L);
+		}
+		return result;
+	}
+}
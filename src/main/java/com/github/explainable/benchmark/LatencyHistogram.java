@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Histogram of non-negative latencies in nanoseconds with a bounded relative error. Values below
+ * {@code 128} are recorded exactly; larger values are grouped into buckets that are at most
+ * {@code 1/64} of their lower bound wide, so percentiles are accurate to within about 1.6%. The
+ * histogram uses a fixed amount of memory no matter how many values it records.
+ *
+ * <p>Instances are not thread-safe. Give each thread its own histogram and combine them with
+ * {@link #add}.
+ */
+public final class LatencyHistogram {
+	private static final int EXACT_LIMIT = 128;
+
+	private static final int SUB_BUCKETS = 64;
+
+	// Values with a highest set bit of 7 (the smallest inexact values) through 62.
+	private static final int BUCKET_COUNT = EXACT_LIMIT + (63 - 7) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+
+	private long count = 0;
+
+	private long sum = 0;
+
+	private long min = Long.MAX_VALUE;
+
+	private long max = 0;
+
+	public LatencyHistogram() {
+	}
+
+	public void record(long nanos) {
+		Preconditions.checkArgument(nanos >= 0, "Negative latency: %s", nanos);
+
+		counts[index(nanos)]++;
+		count++;
+		sum += nanos;
+		min = Math.min(min, nanos);
+		max = Math.max(max, nanos);
+	}
+
+	static int index(long value) {
+		if (value < EXACT_LIMIT) {
+			return (int) value;
+		}
+
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - 6;
+		return EXACT_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * Largest value that is recorded in the same bucket as {@code index}.
+	 */
+	static long highestValue(int index) {
+		if (index < EXACT_LIMIT) {
+			return index;
+		}
+
+		int offset = index - EXACT_LIMIT;
+		int shift = offset / SUB_BUCKETS + 1;
+		long mantissa = offset % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	/**
+	 * Add all the values recorded in {@code other} to this histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Smallest recorded value, or {@code 0} if the histogram is empty.
+	 */
+	public long min() {
+		return (count > 0) ? min : 0;
+	}
+
+	/**
+	 * Largest recorded value, or {@code 0} if the histogram is empty.
+	 */
+	public long max() {
+		return max;
+	}
+
+	public double mean() {
+		return (count > 0) ? (double) sum / count : 0.0;
+	}
+
+	/**
+	 * Get the value below which {@code percentile} percent of the recorded values fall, rounded up
+	 * to the top of its bucket (but never above {@link #max}). Returns {@code 0} if the histogram
+	 * is empty.
+	 *
+	 * @param percentile a number between {@code 0} and {@code 100}
+	 */
+	public long percentile(double percentile) {
+		Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0,
+				"Percentile out of range: %s", percentile);
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("count", count)
+				.add("p50", percentile(50.0))
+				.add("p99", percentile(99.0))
+				.add("max", max)
+				.toString();
+	}
+}
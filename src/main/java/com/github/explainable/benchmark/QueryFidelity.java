@@ -0,0 +1,49 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+/**
+ * How faithfully a benchmark reproduces the path that a query takes through an application. Lower
+ * fidelities skip the early stages so that the later ones can be driven at a higher rate; see
+ * {@link BenchmarkStage}.
+ */
+public enum QueryFidelity {
+	/**
+	 * Produce SQL text and parse it, as an application would.
+	 */
+	SQL,
+
+	/**
+	 * Hand queries to the view extraction pipeline as ASTs, without producing or parsing any SQL
+	 * text. The PARSE stage builds the AST and COMPILE runs the pipeline's passes on it.
+	 */
+	AST,
+
+	/**
+	 * Produce the views that the pipeline would extract without running the pipeline. The PARSE
+	 * stage does nothing and COMPILE computes the views, so LABEL and EXPLAIN dominate.
+	 */
+	VIEWS
+}
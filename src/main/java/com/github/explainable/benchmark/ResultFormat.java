@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formats for reporting {@link BenchmarkResult}s. Latencies are reported in microseconds,
+ * throughput in operations per second, and allocations in bytes per operation ({@code -1} if the
+ * JVM can't count them).
+ */
+public enum ResultFormat {
+	/**
+	 * One line per trial, preceded by a header line.
+	 */
+	CSV {
+		@Override
+		public void write(List<BenchmarkResult> results, Appendable out) throws IOException {
+			out.append("workload,stage,threads,trial,seed,operations,elapsedSeconds,throughput,"
+					+ "meanMicros,p50Micros,p99Micros,p999Micros,maxMicros,bytesPerOperation,gcCount,"
+					+ "gcMillis\n");
+
+			for (BenchmarkResult result : results) {
+				LatencyHistogram latencies = result.latencies();
+				out.append(String.format(Locale.ROOT,
+						"%s,%s,%d,%d,%d,%d,%.3f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.1f,%d,%d\n",
+						quote(result.workload()),
+						result.stage(),
+						result.threadCount(),
+						result.trial(),
+						result.seed(),
+						result.operations(),
+						result.elapsedNanos() / 1e9,
+						result.throughput(),
+						latencies.mean() / 1e3,
+						latencies.percentile(50.0) / 1e3,
+						latencies.percentile(99.0) / 1e3,
+						latencies.percentile(99.9) / 1e3,
+						latencies.max() / 1e3,
+						result.allocatedBytesPerOperation(),
+						result.gcCount(),
+						result.gcMillis()));
+			}
+		}
+
+		private String quote(String value) {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+	},
+
+	/**
+	 * A JSON array with one object per trial.
+	 */
+	JSON {
+		@Override
+		public void write(List<BenchmarkResult> results, Appendable out) throws IOException {
+			out.append("[\n");
+			for (int i = 0; i < results.size(); i++) {
+				BenchmarkResult result = results.get(i);
+				LatencyHistogram latencies = result.latencies();
+
+				out.append(String.format(Locale.ROOT,
+						"  {\"workload\": %s, \"stage\": \"%s\", \"threads\": %d, \"trial\": %d, "
+								+ "\"seed\": %d, \"operations\": %d, \"elapsedSeconds\": %.3f, "
+								+ "\"throughput\": %.1f, \"meanMicros\": %.3f, \"p50Micros\": %.3f, "
+								+ "\"p99Micros\": %.3f, \"p999Micros\": %.3f, \"maxMicros\": %.3f, "
+								+ "\"bytesPerOperation\": %.1f, \"gcCount\": %d, \"gcMillis\": %d}",
+						quote(result.workload()),
+						result.stage(),
+						result.threadCount(),
+						result.trial(),
+						result.seed(),
+						result.operations(),
+						result.elapsedNanos() / 1e9,
+						result.throughput(),
+						latencies.mean() / 1e3,
+						latencies.percentile(50.0) / 1e3,
+						latencies.percentile(99.0) / 1e3,
+						latencies.percentile(99.9) / 1e3,
+						latencies.max() / 1e3,
+						result.allocatedBytesPerOperation(),
+						result.gcCount(),
+						result.gcMillis()));
+				out.append((i + 1 < results.size()) ? ",\n" : "\n");
+			}
+			out.append("]\n");
+		}
+
+		private String quote(String value) {
+			StringBuilder result = new StringBuilder("\"");
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					result.append('\\').append(c);
+				} else if (c < 0x20) {
+					result.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				} else {
+					result.append(c);
+				}
+			}
+			return result.append('"').toString();
+		}
+	};
+
+	public abstract void write(List<BenchmarkResult> results, Appendable out) throws IOException;
+}
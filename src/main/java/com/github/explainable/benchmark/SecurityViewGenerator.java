@@ -0,0 +1,441 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermMap;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.Terms;
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.type.NumericType;
+import com.github.explainable.sql.type.PrimitiveType;
+import com.github.explainable.util.RandomSampler;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Class that synthesizes large sets of security views over a {@link Schema} for scalability tests.
+ * New views are either derived from a list of template security views (or built from scratch for
+ * relations that no template covers), or they specialize a view that the generator produced
+ * earlier, so that the output contains the kind of overlapping views that real policies have.
+ * Instances are not thread-safe.
+ */
+public final class SecurityViewGenerator {
+	/**
+	 * Number of relations we try before giving up on extending a chain of condition atoms.
+	 */
+	private static final int MAX_JOIN_ATTEMPTS = 10;
+
+	private final Schema schema;
+
+	private final ListMultimap<Relation, View> templates;
+
+	private final RandomSampler sampler;
+
+	private final Random random;
+
+	/**
+	 * The schema's relations in a random order, so that the most popular relations do not
+	 * depend on the order in which the schema lists them.
+	 */
+	private final ImmutableList<TypedRelation> relations;
+
+	private final ZipfSampler relationSampler;
+
+	private final ZipfSampler constantSampler;
+
+	private final double constantProbability;
+
+	private final int conditionDepth;
+
+	private final double overlap;
+
+	private final List<View> generated;
+
+	private SecurityViewGenerator(Builder builder) {
+		this.schema = builder.schema;
+		this.templates = ArrayListMultimap.create();
+		for (View template : builder.templates) {
+			templates.put(template.bodyRelation(), template);
+		}
+
+		this.random = builder.random;
+		this.sampler = RandomSampler.create(random);
+
+		List<TypedRelation> shuffled = Lists.newArrayList(schema.relations());
+		Collections.shuffle(shuffled, random);
+		this.relations = ImmutableList.copyOf(shuffled);
+
+		this.relationSampler = new ZipfSampler(relations.size(), builder.relationSkew);
+		this.constantSampler = new ZipfSampler(builder.constantPoolSize, builder.constantSkew);
+		this.constantProbability = builder.constantProbability;
+		this.conditionDepth = builder.conditionDepth;
+		this.overlap = builder.overlap;
+		this.generated = Lists.newArrayList();
+	}
+
+	public static Builder builder(Schema schema) {
+		return new Builder(schema);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		private ImmutableList<View> templates = ImmutableList.of();
+
+		private Random random = new Random();
+
+		private double relationSkew = 1.0;
+
+		private int constantPoolSize = 1000;
+
+		private double constantSkew = 1.0;
+
+		private double constantProbability = 0.1;
+
+		private int conditionDepth = 2;
+
+		private double overlap = 0.2;
+
+		private Builder(Schema schema) {
+			Preconditions.checkArgument(!schema.relations().isEmpty());
+			this.schema = schema;
+		}
+
+		/**
+		 * Set the security views that new views are derived from. Every template must be defined
+		 * over the relations of the schema.
+		 */
+		public Builder setTemplates(List<View> templates) {
+			this.templates = ImmutableList.copyOf(templates);
+			return this;
+		}
+
+		public Builder setRandom(Random random) {
+			this.random = Preconditions.checkNotNull(random);
+			return this;
+		}
+
+		/**
+		 * Set the exponent of the Zipf distribution that assigns new views to relations. With a
+		 * skew of zero, every relation gets roughly the same number of views; larger values
+		 * concentrate the views on a few hot relations.
+		 */
+		public Builder setRelationSkew(double relationSkew) {
+			Preconditions.checkArgument(relationSkew >= 0.0);
+			this.relationSkew = relationSkew;
+			return this;
+		}
+
+		/**
+		 * Set the number of distinct constants per column type, and the exponent of the Zipf
+		 * distribution from which constants are drawn.
+		 */
+		public Builder setConstants(int poolSize, double skew) {
+			Preconditions.checkArgument(poolSize > 0);
+			Preconditions.checkArgument(skew >= 0.0);
+			this.constantPoolSize = poolSize;
+			this.constantSkew = skew;
+			return this;
+		}
+
+		/**
+		 * Set the probability that each variable of a new view is replaced with a constant.
+		 */
+		public Builder setConstantProbability(double constantProbability) {
+			Preconditions.checkArgument(constantProbability >= 0.0 && constantProbability <= 1.0);
+			this.constantProbability = constantProbability;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of condition atoms that are chained onto each new view, in
+		 * addition to the conditions of its template. The length of each chain is chosen
+		 * uniformly between zero and {@code conditionDepth}.
+		 */
+		public Builder setConditionDepth(int conditionDepth) {
+			Preconditions.checkArgument(conditionDepth >= 0);
+			this.conditionDepth = conditionDepth;
+			return this;
+		}
+
+		/**
+		 * Set the fraction of new views that specialize a view generated earlier.
+		 */
+		public Builder setOverlap(double overlap) {
+			Preconditions.checkArgument(overlap >= 0.0 && overlap <= 1.0);
+			this.overlap = overlap;
+			return this;
+		}
+
+		public SecurityViewGenerator build() {
+			return new SecurityViewGenerator(this);
+		}
+	}
+
+	/**
+	 * Generate {@code count} additional views.
+	 */
+	public ImmutableList<View> generate(int count) {
+		Preconditions.checkArgument(count >= 0);
+		ImmutableList.Builder<View> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			result.add(next());
+		}
+		return result.build();
+	}
+
+	public View next() {
+		View result;
+		if (!generated.isEmpty() && random.nextDouble() < overlap) {
+			result = specialize(sampler.choice(generated));
+		} else {
+			result = derive(relations.get(relationSampler.next(random)));
+		}
+
+		generated.add(result);
+		return result;
+	}
+
+	private String nextName() {
+		return "G" + (generated.size() + 1);
+	}
+
+	/**
+	 * Create a new view over {@code relation} from one of its templates, or from scratch if it
+	 * has none.
+	 */
+	private View derive(TypedRelation relation) {
+		Atom body;
+		List<Atom> conditions = Lists.newArrayList();
+
+		List<View> candidates = templates.get(relation);
+		if (candidates.isEmpty()) {
+			List<Term> arguments = Lists.newArrayListWithCapacity(relation.arity());
+			for (int i = 0; i < relation.arity(); i++) {
+				arguments.add(Terms.dist());
+			}
+			body = Atom.createMultisetAtom(relation, arguments);
+		} else {
+			View template = sampler.choice(candidates).freshCopy();
+			body = template.body();
+			conditions.addAll(template.conditions());
+		}
+
+		ConstantBinder binder = new ConstantBinder();
+		binder.bindRandomly(body);
+		body = body.apply(binder);
+		for (int i = 0; i < conditions.size(); i++) {
+			conditions.set(i, conditions.get(i).apply(binder));
+		}
+
+		int depth = random.nextInt(conditionDepth + 1);
+		Atom previous = body;
+		for (int i = 0; i < depth && previous != null; i++) {
+			previous = joinWith(previous);
+			if (previous != null) {
+				conditions.add(previous);
+			}
+		}
+
+		return View.convert(nextName(), body, conditions);
+	}
+
+	/**
+	 * Create a condition atom over a random relation that shares one of the variables of
+	 * {@code atom}, or return {@code null} if we cannot find a column to join on.
+	 */
+	@Nullable
+	private Atom joinWith(Atom atom) {
+		// Condition atoms may only share distinguished variables with the body.
+		List<Integer> positions = distPositions(atom);
+		if (positions.isEmpty()) {
+			return null;
+		}
+
+		int position = sampler.choice(positions);
+		PrimitiveType joinType = columnType(atom.relation(), position);
+
+		for (int attempt = 0; attempt < MAX_JOIN_ATTEMPTS; attempt++) {
+			TypedRelation relation = sampler.choice(relations);
+
+			List<Integer> joinable = Lists.newArrayList();
+			for (int i = 0; i < relation.arity(); i++) {
+				if (joinType == null || joinType.equals(columnType(relation, i))) {
+					joinable.add(i);
+				}
+			}
+			if (joinable.isEmpty()) {
+				continue;
+			}
+
+			// The other variables become set variables once View.convert demotes them.
+			int joinPosition = sampler.choice(joinable);
+			List<Term> arguments = Lists.newArrayListWithCapacity(relation.arity());
+			for (int i = 0; i < relation.arity(); i++) {
+				if (i == joinPosition) {
+					arguments.add(atom.arguments().get(position));
+				} else if (random.nextDouble() < constantProbability) {
+					arguments.add(randomConstant(columnType(relation, i)));
+				} else {
+					arguments.add(Terms.dist());
+				}
+			}
+			return Atom.createSetAtom(relation, arguments);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Create a new view that reveals a subset of the information in {@code view}, either by
+	 * replacing one of its body variables with a constant or, if it has none, by adding a
+	 * condition atom.
+	 */
+	private View specialize(View view) {
+		View copy = view.freshCopy();
+		Atom body = copy.body();
+		List<Atom> conditions = Lists.newArrayList(copy.conditions());
+
+		List<Integer> positions = distPositions(body);
+		if (positions.isEmpty()) {
+			Atom condition = joinWith(body);
+			if (condition != null) {
+				conditions.add(condition);
+			}
+		} else {
+			int position = sampler.choice(positions);
+			ConstantBinder binder = new ConstantBinder();
+			binder.bind(body, position);
+			body = body.apply(binder);
+			for (int i = 0; i < conditions.size(); i++) {
+				conditions.set(i, conditions.get(i).apply(binder));
+			}
+		}
+
+		return View.convert(nextName(), body, conditions);
+	}
+
+	private static List<Integer> distPositions(Atom atom) {
+		List<Integer> result = Lists.newArrayList();
+		for (int i = 0; i < atom.arguments().size(); i++) {
+			if (atom.arguments().get(i).type() == TermType.DIST_VARIABLE) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+
+	@Nullable
+	private PrimitiveType columnType(Relation relation, int position) {
+		TypedRelation typed = (relation instanceof TypedRelation)
+				? (TypedRelation) relation
+				: schema.findRelation(relation.name());
+		return (typed != null) ? typed.type().columnTypes().get(position) : null;
+	}
+
+	private Term randomConstant(@Nullable PrimitiveType type) {
+		int rank = constantSampler.next(random);
+		return (type instanceof NumericType)
+				? Terms.constant((long) rank)
+				: Terms.constant("c" + rank);
+	}
+
+	/**
+	 * Map that replaces selected variables with constants of the right type.
+	 */
+	private final class ConstantBinder implements TermMap {
+		final Map<Term, Term> mapping = Maps.newHashMap();
+
+		/**
+		 * Replace each variable in the arguments of {@code atom} with probability {@link
+		 * #constantProbability}.
+		 */
+		void bindRandomly(Atom atom) {
+			for (int i = 0; i < atom.arguments().size(); i++) {
+				Term term = atom.arguments().get(i);
+				if (term.type() != TermType.CONSTANT && !mapping.containsKey(term)
+						&& random.nextDouble() < constantProbability) {
+					bind(atom, i);
+				}
+			}
+		}
+
+		void bind(Atom atom, int position) {
+			mapping.put(
+					atom.arguments().get(position),
+					randomConstant(columnType(atom.relation(), position)));
+		}
+
+		@Override
+		public Term apply(Term from) {
+			Term to = mapping.get(from);
+			return (to != null) ? to : from;
+		}
+	}
+
+	/**
+	 * Draws integers from {@code 0} to {@code n - 1}, where {@code k} has probability proportional
+	 * to {@code 1 / (k + 1)^skew}.
+	 */
+	static final class ZipfSampler {
+		private final double[] cumulative;
+
+		ZipfSampler(int n, double skew) {
+			Preconditions.checkArgument(n > 0);
+			this.cumulative = new double[n];
+
+			double total = 0.0;
+			for (int k = 0; k < n; k++) {
+				total += Math.pow(k + 1, -skew);
+				cumulative[k] = total;
+			}
+			for (int k = 0; k < n; k++) {
+				cumulative[k] /= total;
+			}
+		}
+
+		int next(Random random) {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble());
+			int result = (index >= 0) ? index + 1 : -index - 1;
+			return Math.min(result, cumulative.length - 1);
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.benchmark.cowsql.CowBenchmarkDriver;
+import com.github.explainable.benchmark.cowsql.CowSqlSchema;
+import com.github.explainable.benchmark.mockfb.FBBenchmarkDriver;
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark that measures how labeling, memory use and startup scale with the number of security
+ * views. For each view count, it synthesizes a policy with {@link SecurityViewGenerator} and
+ * reports how long generating it, building a {@link PolicyLabeler} and opening a {@link
+ * SecurityViewCatalog} take, how much heap the views use, and the latency of labeling a fixed set
+ * of random queries and simplifying the resulting policies.
+ */
+public final class SecurityViewSweep {
+	private static final String HEADER = "workload,views,seed,generateMillis,heapBytes,loadMillis,"
+			+ "catalogBytes,catalogLoadMillis,queries,meanMicros,p50Micros,p99Micros,maxMicros\n";
+
+	private final String workload;
+
+	private final Schema schema;
+
+	private final ImmutableList<View> templates;
+
+	private final ImmutableList<ImmutableList<View>> queries;
+
+	private final long seed;
+
+	private final int warmupRounds;
+
+	private int sink = 0;
+
+	private SecurityViewSweep(
+			String workload,
+			Schema schema,
+			List<View> templates,
+			List<ImmutableList<View>> queries,
+			long seed,
+			int warmupRounds) {
+		this.workload = Preconditions.checkNotNull(workload);
+		this.schema = Preconditions.checkNotNull(schema);
+		this.templates = ImmutableList.copyOf(templates);
+		this.queries = ImmutableList.copyOf(queries);
+		this.seed = seed;
+		this.warmupRounds = warmupRounds;
+	}
+
+	/**
+	 * Create a sweep over {@code schema}.
+	 *
+	 * @param templates the security views from which the synthetic views are derived
+	 * @param queries the views of the queries to label
+	 * @param seed seed for the view generator; every view count uses the same seed
+	 * @param warmupRounds the number of times to label all the queries before measuring
+	 */
+	public static SecurityViewSweep create(
+			String workload,
+			Schema schema,
+			List<View> templates,
+			List<ImmutableList<View>> queries,
+			long seed,
+			int warmupRounds) {
+		Preconditions.checkArgument(!queries.isEmpty());
+		Preconditions.checkArgument(warmupRounds >= 0);
+		return new SecurityViewSweep(workload, schema, templates, queries, seed, warmupRounds);
+	}
+
+	private SecurityViewGenerator newGenerator() {
+		return SecurityViewGenerator.builder(schema)
+				.setTemplates(templates)
+				.setRandom(new Random(seed))
+				.build();
+	}
+
+	/**
+	 * Measure a policy with {@code viewCount} security views and append one CSV line with the
+	 * results to {@code out}.
+	 */
+	public void run(int viewCount, Appendable out) throws IOException {
+		long heapBefore = usedHeap();
+
+		long generateStart = System.nanoTime();
+		List<View> views = newGenerator().generate(viewCount);
+		long generateNanos = System.nanoTime() - generateStart;
+
+		long loadStart = System.nanoTime();
+		PolicyLabeler labeler = PolicyLabeler.create(views);
+		long loadNanos = System.nanoTime() - loadStart;
+
+		long heapBytes = usedHeap() - heapBefore;
+
+		byte[] catalogBytes = SecurityViewCatalog.encode(views);
+		long catalogStart = System.nanoTime();
+		SecurityViewCatalog catalog = SecurityViewCatalog.wrap(catalogBytes);
+		for (Relation relation : catalog.relations()) {
+			sink += catalog.viewsFor(relation).size();
+		}
+		long catalogNanos = System.nanoTime() - catalogStart;
+
+		for (int i = 0; i < warmupRounds; i++) {
+			for (List<View> query : queries) {
+				sink += System.identityHashCode(labeler.label(query).simplify());
+			}
+		}
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		for (List<View> query : queries) {
+			long before = System.nanoTime();
+			Object policy = labeler.label(query).simplify();
+			latencies.record(System.nanoTime() - before);
+			sink += System.identityHashCode(policy);
+		}
+
+		out.append(String.format(Locale.ROOT,
+				"%s,%d,%d,%.1f,%d,%.1f,%d,%.1f,%d,%.3f,%.3f,%.3f,%.3f\n",
+				workload,
+				viewCount,
+				seed,
+				generateNanos / 1e6,
+				heapBytes,
+				loadNanos / 1e6,
+				catalogBytes.length,
+				catalogNanos / 1e6,
+				latencies.count(),
+				latencies.mean() / 1e3,
+				latencies.percentile(50.0) / 1e3,
+				latencies.percentile(99.0) / 1e3,
+				latencies.max() / 1e3));
+
+		// Keep the views and the labeler reachable until we're done measuring the heap.
+		sink += System.identityHashCode(views) + System.identityHashCode(labeler);
+	}
+
+	/**
+	 * Estimate the number of bytes in use on the heap after a garbage collection.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * Generate {@code count} random queries from {@code templates} and extract their views.
+	 */
+	public static ImmutableList<ImmutableList<View>> randomQueries(
+			Schema schema, List<View> templates, int count, Random random) throws Exception {
+		ConjunctionGenerator generator = ConjunctionGenerator.create(templates, random);
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline extractor = ViewExtractionPipeline.create(schema);
+
+		ImmutableList.Builder<ImmutableList<View>> queries = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			Conjunction conjunction = generator.nextWithRandomDist(3.0);
+			Select select
+					= (Select) parser.parse(new StringReader(ConjunctionToSql.convert(conjunction)));
+			queries.add(ImmutableList.copyOf(extractor.execute(select)));
+		}
+		return queries.build();
+	}
+
+	/**
+	 * Run the sweep. Recognizes the options {@code --workload fb|cow}, {@code --views N,...},
+	 * {@code --queries N}, {@code --warmup N}, {@code --seed N} and {@code --output FILE}. Results
+	 * are written as CSV to standard output unless {@code --output} is given.
+	 */
+	public static void main(String[] args) throws Exception {
+		String workload = "fb";
+		List<Integer> viewCounts = ImmutableList.of(100, 1000, 10000, 30000, 100000);
+		int queryCount = 1000;
+		int warmupRounds = 3;
+		long seed = 1L;
+		File output = null;
+
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+
+			if (option.equals("--workload")) {
+				workload = value;
+			} else if (option.equals("--views")) {
+				viewCounts = Lists.newArrayList();
+				for (String count : value.split(",")) {
+					viewCounts.add(Integer.parseInt(count.trim()));
+				}
+			} else if (option.equals("--queries")) {
+				queryCount = Integer.parseInt(value);
+			} else if (option.equals("--warmup")) {
+				warmupRounds = Integer.parseInt(value);
+			} else if (option.equals("--seed")) {
+				seed = Long.parseLong(value);
+			} else if (option.equals("--output")) {
+				output = new File(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+
+		Schema schema;
+		File templateFile;
+		File securityViewFile;
+		if (workload.equals("fb")) {
+			schema = FBFlatSchema.SCHEMA;
+			templateFile = FBBenchmarkDriver.TEMPLATE_FILE;
+			securityViewFile = FBBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else if (workload.equals("cow")) {
+			schema = CowSqlSchema.SCHEMA;
+			templateFile = CowBenchmarkDriver.TEMPLATE_FILE;
+			securityViewFile = CowBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else {
+			throw new IllegalArgumentException("Unknown workload: " + workload);
+		}
+
+		List<View> queryTemplates = SecurityViewReader.readViews(templateFile, schema);
+		List<View> securityViews = SecurityViewReader.readViews(securityViewFile, schema);
+		SecurityViewSweep sweep = create(
+				workload,
+				schema,
+				securityViews,
+				randomQueries(schema, queryTemplates, queryCount, new Random(seed)),
+				seed,
+				warmupRounds);
+
+		System.err.format("# Name: %s security view sweep%n", workload);
+		System.err.format("# Date: %s%n", new Date());
+		System.err.format("# Max heap: %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+
+		Writer writer = (output != null)
+				? Files.newWriter(output, Charsets.UTF_8)
+				: new OutputStreamWriter(System.out, Charsets.UTF_8);
+		try {
+			writer.append(HEADER);
+			for (int viewCount : viewCounts) {
+				sweep.run(viewCount, writer);
+				writer.flush();
+			}
+		} finally {
+			if (output != null) {
+				writer.close();
+			} else {
+				writer.flush();
+			}
+		}
+	}
+}
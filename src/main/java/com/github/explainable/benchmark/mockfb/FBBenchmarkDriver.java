@@ -24,16 +24,24 @@
 
 package com.github.explainable.benchmark.mockfb;
 
+import com.github.explainable.benchmark.BenchmarkHarness;
+import com.github.explainable.benchmark.BenchmarkStage;
+import com.github.explainable.benchmark.BenchmarkWorkload;
 import com.github.explainable.benchmark.ConjunctionGenerator;
+import com.github.explainable.benchmark.ConjunctionToAst;
 import com.github.explainable.benchmark.ConjunctionToSql;
+import com.github.explainable.benchmark.ConjunctionToViews;
 import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.QueryFidelity;
 import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.Conjunction;
 import com.github.explainable.corelang.View;
 import com.github.explainable.labeler.policy.Policy;
 import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
 import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.trace.Tracing;
 import com.github.explainable.util.RandomSampler;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
@@ -41,109 +49,108 @@ import net.sf.jsqlparser.statement.select.Select;
 
 import java.io.File;
 import java.io.StringReader;
-import java.net.InetAddress;
-import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 
 /**
- * Driver that produces random SQL queries by mashing together views stored on a file on disk.
+ * Benchmark workload that produces random SQL queries by mashing together views stored on a file on
+ * disk. Run {@link #main} to measure it with {@link BenchmarkHarness}.
  */
-public final class FBBenchmarkDriver implements Runnable {
-	private enum BenchmarkStage {
-		GENERATE,
-		PARSE,
-		COMPILE,
-		LABEL,
-		EXPLAIN
-	}
-
+public final class FBBenchmarkDriver implements BenchmarkWorkload {
 	public static final File TEMPLATE_FILE = new File("data/fb-templates.sql");
 
 	public static final File SECURITY_VIEW_FILE = new File("data/fb-security-views.sql");
 
-	public static final int MIN_THREAD_COUNT = 1;
-
-	public static final int MAX_THREAD_COUNT = 8;
-
-	private static final int BENCHMARK_TRIALS = 1000000;
-
-	private static final int TRIAL_COUNT = 5;
-
-	private static final ImmutableList<BenchmarkStage> ACTIVE_STAGES
-			= ImmutableList.copyOf(BenchmarkStage.values());
-
 	private final ImmutableList<View> templateViews;
 
 	private final ImmutableList<View> securityViews;
 
-	private final CountDownLatch signal;
-
-	private final int iterations;
-
-	private final BenchmarkStage lastStage;
-
-	private FBBenchmarkDriver(
-			List<View> templateViews,
-			List<View> securityViews,
-			CountDownLatch signal,
-			int iterations,
-			BenchmarkStage lastStage) {
-		Preconditions.checkArgument(iterations > 0);
-
+	private FBBenchmarkDriver(List<View> templateViews, List<View> securityViews) {
 		this.templateViews = ImmutableList.copyOf(templateViews);
 		this.securityViews = ImmutableList.copyOf(securityViews);
-		this.signal = Preconditions.checkNotNull(signal);
-		this.iterations = iterations;
-		this.lastStage = Preconditions.checkNotNull(lastStage);
+	}
+
+	public static FBBenchmarkDriver create(List<View> templateViews, List<View> securityViews) {
+		return new FBBenchmarkDriver(templateViews, securityViews);
 	}
 
 	@Override
-	public void run() {
-		try {
-			ConjunctionGenerator randConj = ConjunctionGenerator.createAndSeed(templateViews);
-			CCJSqlParserManager parser = new CCJSqlParserManager();
-			ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
-			PolicyLabeler labeler = PolicyLabeler.create(securityViews);
-			Set<View> granted = ImmutableSet.copyOf(
-					RandomSampler.createAndSeed().sample(securityViews, securityViews.size() / 2));
-
-			for (int iterNum = 0; iterNum < iterations; iterNum++) {
-				String nextQuery = ConjunctionToSql.convert(randConj.nextWithRandomDist(3.0));
-
-				if (lastStage.compareTo(BenchmarkStage.PARSE) < 0) {
-					continue;
-				}
-				Select parsedQuery = (Select) parser.parse(new StringReader(nextQuery));
+	public String name() {
+		return "fb";
+	}
 
-				if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
-					continue;
+	@Override
+	public Operation newOperation(Random random, final QueryFidelity fidelity) {
+		final ConjunctionGenerator randConj = ConjunctionGenerator.create(templateViews, random);
+		final CCJSqlParserManager parser = new CCJSqlParserManager();
+		final ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
+		final PolicyLabeler labeler = PolicyLabeler.create(securityViews);
+		final Set<View> granted = ImmutableSet.copyOf(
+				RandomSampler.create(random).sample(securityViews, securityViews.size() / 2));
+
+		return new Operation() {
+			@Override
+			public Object run(BenchmarkStage lastStage) throws Exception {
+				Conjunction nextConjunction = randConj.nextWithRandomDist(3.0);
+				List<View> extractedViews;
+
+				if (fidelity == QueryFidelity.SQL) {
+					String nextQuery = ConjunctionToSql.convert(nextConjunction);
+
+					if (lastStage.compareTo(BenchmarkStage.PARSE) < 0) {
+						return nextQuery;
+					}
+					Tracing.begin("parse");
+					Select parsedQuery = (Select) parser.parse(new StringReader(nextQuery));
+					Tracing.end();
+
+					if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
+						return parsedQuery;
+					}
+					extractedViews = extractor.execute(parsedQuery);
+				} else if (fidelity == QueryFidelity.AST) {
+					if (lastStage.compareTo(BenchmarkStage.PARSE) < 0) {
+						return nextConjunction;
+					}
+					SqlSelectStmt convertedQuery = ConjunctionToAst.convert(nextConjunction);
+
+					if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
+						return convertedQuery;
+					}
+					extractedViews = extractor.execute(convertedQuery);
+				} else {
+					if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
+						return nextConjunction;
+					}
+					extractedViews = ConjunctionToViews.convert(nextConjunction);
 				}
-				List<View> extractedViews = extractor.execute(parsedQuery);
 
 				if (lastStage.compareTo(BenchmarkStage.LABEL) < 0) {
-					continue;
+					return extractedViews;
 				}
-				Policy policy = labeler.label(extractedViews).simplify();
+				Policy policy = labeler.label(extractedViews);
+				Tracing.begin("simplify");
+				policy = policy.simplify();
+				Tracing.end();
 
 				if (lastStage.compareTo(BenchmarkStage.EXPLAIN) < 0) {
-					continue;
-				}
-				if (policy.evaluate(granted)) {
-					policy.whySo(granted);
-				} else {
-					policy.whyNot(granted);
+					return policy;
 				}
+				// A span left open by an exception ends with the request.
+				Tracing.begin("explain");
+				Object explanation = policy.evaluate(granted)
+						? policy.whySo(granted)
+						: policy.whyNot(granted);
+				Tracing.end();
+				return explanation;
 			}
-
-			signal.countDown();
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(1);
-		}
+		};
 	}
 
+	/**
+	 * Measure the workload. See {@link BenchmarkHarness#main} for the command-line options.
+	 */
 	public static void main(String[] args) throws Exception {
 		List<View> templateViews
 				= SecurityViewReader.readViews(TEMPLATE_FILE, FBFlatSchema.SCHEMA);
@@ -151,46 +158,6 @@ public final class FBBenchmarkDriver implements Runnable {
 		List<View> securityViews
 				= SecurityViewReader.readViews(SECURITY_VIEW_FILE, FBFlatSchema.SCHEMA);
 
-		System.out.format("# Name: %s%n", FBBenchmarkDriver.class.getName());
-		System.out.format("# Date: %s%n", new Date());
-		System.out.format("# Host: %s%n", InetAddress.getLocalHost().getHostName());
-
-		for (BenchmarkStage lastStage : ACTIVE_STAGES) {
-			System.out.format("%s = [%n", lastStage);
-			for (int threadCount = MIN_THREAD_COUNT;
-					threadCount <= MAX_THREAD_COUNT;
-					threadCount++) {
-				System.out.print("\t[ ");
-				System.out.flush();
-
-				for (int trialNum = 0; trialNum <= TRIAL_COUNT; trialNum++) {
-					CountDownLatch doneSignal = new CountDownLatch(threadCount);
-					long startTimeMillis = System.currentTimeMillis();
-
-					for (int i = 0; i < threadCount; i++) {
-						new Thread(
-								new FBBenchmarkDriver(
-										templateViews,
-										securityViews,
-										doneSignal,
-										BENCHMARK_TRIALS / threadCount,
-										lastStage)).start();
-					}
-
-					doneSignal.await();
-					long endTimeMillis = System.currentTimeMillis();
-
-					if (trialNum > 0) {
-						System.out.format("%.2f", .001 * (endTimeMillis - startTimeMillis));
-						if (trialNum < TRIAL_COUNT) {
-							System.out.print(", ");
-						}
-						System.out.flush();
-					}
-				}
-				System.out.format(" ], # %d thread(s)%n", threadCount);
-			}
-			System.out.println("]");
-		}
+		BenchmarkHarness.main(create(templateViews, securityViews), args);
 	}
 }
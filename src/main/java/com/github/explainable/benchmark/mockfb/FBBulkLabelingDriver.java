@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.mockfb;
+
+import com.github.explainable.batch.BulkLabeler;
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.View;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Command-line driver that audits a log of SQL queries against the mock Facebook security views
+ * using a {@link BulkLabeler}.
+ *
+ * <p>Usage: {@code FBBulkLabelingDriver log-file output-file [granted-view-ids [thread-count]]},
+ * where {@code granted-view-ids} is a comma-separated list of {@code 1}-based positions in {@link
+ * FBBenchmarkDriver#SECURITY_VIEW_FILE}.
+ */
+public final class FBBulkLabelingDriver {
+	private FBBulkLabelingDriver() {
+		throw new UnsupportedOperationException("Can't instantiate FBBulkLabelingDriver");
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: FBBulkLabelingDriver log-file output-file "
+					+ "[granted-view-ids [thread-count]]");
+			System.exit(1);
+		}
+
+		List<View> securityViews = SecurityViewReader.readViews(
+				FBBenchmarkDriver.SECURITY_VIEW_FILE, FBFlatSchema.SCHEMA);
+
+		ImmutableSet.Builder<View> granted = ImmutableSet.builder();
+		if (args.length > 2 && !args[2].isEmpty()) {
+			for (String id : args[2].split(",")) {
+				granted.add(securityViews.get(Integer.parseInt(id.trim()) - 1));
+			}
+		}
+
+		BulkLabeler.Builder builder = BulkLabeler.builder(FBFlatSchema.SCHEMA, securityViews)
+				.setGrantedViews(granted.build());
+		if (args.length > 3) {
+			builder.setThreadCount(Integer.parseInt(args[3]));
+		}
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(args[1]), Charsets.UTF_8), 1 << 16);
+		long startTimeMillis = System.currentTimeMillis();
+		BulkLabeler.Summary summary;
+		try {
+			summary = builder.build().run(new File(args[0]), out);
+		} finally {
+			out.close();
+		}
+		long endTimeMillis = System.currentTimeMillis();
+
+		System.out.format("# %s in %.2f seconds%n", summary, .001 * (endTimeMillis - startTimeMillis));
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.mockfb;
+
+import com.github.explainable.benchmark.ConjunctionGenerator;
+import com.github.explainable.benchmark.ConjunctionToSql;
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.View;
+import com.github.explainable.server.LabelingClient;
+import com.github.explainable.server.LabelingDecision;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Load generator for a running {@link FBLabelingServerDriver}. Each thread opens its own
+ * connection and repeatedly sends a pipelined burst of random queries built from the mock Facebook
+ * templates, then waits for all of the responses. Latency is measured from the start of a burst to
+ * the arrival of each response.
+ *
+ * <p>Usage: {@code FBLabelingLoadGenerator host port thread-count seconds pipeline-depth}
+ */
+public final class FBLabelingLoadGenerator implements Runnable {
+	private static final int QUERY_POOL_SIZE = 10000;
+
+	private final InetSocketAddress address;
+
+	private final ImmutableList<String> queries;
+
+	private final long deadlineNanos;
+
+	private final int depth;
+
+	private final CountDownLatch signal;
+
+	private final Random random;
+
+	private long[] latencies = new long[1 << 16];
+
+	private int count = 0;
+
+	private int errors = 0;
+
+	private FBLabelingLoadGenerator(
+			InetSocketAddress address,
+			List<String> queries,
+			long deadlineNanos,
+			int depth,
+			CountDownLatch signal,
+			long seed) {
+		Preconditions.checkArgument(depth > 0);
+		this.address = Preconditions.checkNotNull(address);
+		this.queries = ImmutableList.copyOf(queries);
+		this.deadlineNanos = deadlineNanos;
+		this.depth = depth;
+		this.signal = Preconditions.checkNotNull(signal);
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public void run() {
+		try {
+			LabelingClient client = LabelingClient.connect(address);
+			try {
+				while (System.nanoTime() < deadlineNanos) {
+					long startNanos = System.nanoTime();
+					for (int i = 0; i < depth; i++) {
+						client.send(queries.get(random.nextInt(queries.size())), 1, 2, 3);
+					}
+					client.flush();
+
+					for (int i = 0; i < depth; i++) {
+						LabelingDecision decision = client.receive();
+						record(System.nanoTime() - startNanos);
+						if (decision.outcome() == LabelingDecision.Outcome.ERROR) {
+							errors++;
+						}
+					}
+				}
+			} finally {
+				client.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		} finally {
+			signal.countDown();
+		}
+	}
+
+	private void record(long latencyNanos) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, 2 * count);
+		}
+		latencies[count++] = latencyNanos;
+	}
+
+	private static double percentileMillis(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0.0;
+		}
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+		return 1e-6 * sorted[Math.max(0, index)];
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 5) {
+			System.err.println(
+					"Usage: FBLabelingLoadGenerator host port thread-count seconds pipeline-depth");
+			System.exit(1);
+		}
+
+		InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+		int threadCount = Integer.parseInt(args[2]);
+		long durationNanos = 1000000000L * Long.parseLong(args[3]);
+		int depth = Integer.parseInt(args[4]);
+
+		List<View> templateViews
+				= SecurityViewReader.readViews(FBBenchmarkDriver.TEMPLATE_FILE, FBFlatSchema.SCHEMA);
+		ConjunctionGenerator generator = ConjunctionGenerator.createAndSeed(templateViews);
+		ImmutableList.Builder<String> queries = ImmutableList.builder();
+		for (int i = 0; i < QUERY_POOL_SIZE; i++) {
+			queries.add(ConjunctionToSql.convert(generator.nextWithRandomDist(3.0)));
+		}
+
+		CountDownLatch doneSignal = new CountDownLatch(threadCount);
+		long startNanos = System.nanoTime();
+		FBLabelingLoadGenerator[] generators = new FBLabelingLoadGenerator[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			generators[i] = new FBLabelingLoadGenerator(
+					address, queries.build(), startNanos + durationNanos, depth, doneSignal, i);
+			new Thread(generators[i]).start();
+		}
+		doneSignal.await();
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		int total = 0;
+		int errors = 0;
+		for (FBLabelingLoadGenerator next : generators) {
+			total += next.count;
+			errors += next.errors;
+		}
+
+		long[] all = new long[total];
+		int position = 0;
+		for (FBLabelingLoadGenerator next : generators) {
+			System.arraycopy(next.latencies, 0, all, position, next.count);
+			position += next.count;
+		}
+		Arrays.sort(all);
+
+		System.out.format("# threads=%d depth=%d requests=%d errors=%d%n",
+				threadCount, depth, total, errors);
+		System.out.format("throughput = %.1f # requests/s%n", total / (1e-9 * elapsedNanos));
+		System.out.format("p50 = %.3f # ms%n", percentileMillis(all, 0.50));
+		System.out.format("p99 = %.3f # ms%n", percentileMillis(all, 0.99));
+		System.out.format("p999 = %.3f # ms%n", percentileMillis(all, 0.999));
+	}
+}
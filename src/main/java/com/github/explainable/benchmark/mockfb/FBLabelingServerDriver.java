@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.mockfb;
+
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.View;
+import com.github.explainable.server.LabelingServer;
+import com.github.explainable.slowlog.SlowQueryLog;
+import com.github.explainable.trace.QueryTracer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Command-line driver that runs a {@link LabelingServer} for the mock Facebook schema and security
+ * views until the process is killed.
+ *
+ * <p>Usage: {@code FBLabelingServerDriver [port [thread-count [trace-file [slow-query-file]]]]}.
+ * If a trace file is given (other than {@code -}), one request in a hundred is traced to it; see
+ * {@link QueryTracer}. If a slow query file is given, requests that take 100 milliseconds or more
+ * are logged to it; see {@link SlowQueryLog}.
+ */
+public final class FBLabelingServerDriver {
+	public static final int DEFAULT_PORT = 7461;
+
+	private FBLabelingServerDriver() {
+		throw new UnsupportedOperationException("Can't instantiate FBLabelingServerDriver");
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<View> securityViews = SecurityViewReader.readViews(
+				FBBenchmarkDriver.SECURITY_VIEW_FILE, FBFlatSchema.SCHEMA);
+
+		LabelingServer.Builder builder = LabelingServer.builder(FBFlatSchema.SCHEMA, securityViews)
+				.setPort((args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+		if (args.length > 1) {
+			builder.setThreadCount(Integer.parseInt(args[1]));
+		}
+		final QueryTracer tracer = (args.length > 2 && !args[2].equals("-"))
+				? QueryTracer.builder(new File(args[2])).build()
+				: null;
+		builder.setTracer(tracer);
+		final SlowQueryLog slowQueryLog = (args.length > 3)
+				? SlowQueryLog.builder(new File(args[3]), FBFlatSchema.SCHEMA, securityViews).build()
+				: null;
+		builder.setSlowQueryLog(slowQueryLog);
+
+		final LabelingServer server = builder.build();
+		server.start();
+		System.out.format("# Listening on port %d with %d security views%n",
+				server.port(), securityViews.size());
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					server.close();
+					if (tracer != null) {
+						tracer.close();
+					}
+					if (slowQueryLog != null) {
+						slowQueryLog.close();
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}));
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.mockfb;
+
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Offline compiler that turns the mock Facebook security views from SQL into a {@link
+ * SecurityViewCatalog}, and then compares the time it takes to load the views both ways.
+ *
+ * <p>Usage: {@code FBSecurityViewCompiler [input-sql-file [output-catalog-file]]}
+ */
+public final class FBSecurityViewCompiler {
+	public static final File CATALOG_FILE = new File("data/fb-security-views.bin");
+
+	private FBSecurityViewCompiler() {
+		throw new UnsupportedOperationException("Can't instantiate FBSecurityViewCompiler");
+	}
+
+	public static void main(String[] args) throws Exception {
+		File input = (args.length > 0) ? new File(args[0]) : FBBenchmarkDriver.SECURITY_VIEW_FILE;
+		File output = (args.length > 1) ? new File(args[1]) : CATALOG_FILE;
+
+		long parseStartNanos = System.nanoTime();
+		List<View> views = SecurityViewReader.readViews(input, FBFlatSchema.SCHEMA);
+		long parseNanos = System.nanoTime() - parseStartNanos;
+
+		SecurityViewCatalog.write(views, output);
+
+		long openStartNanos = System.nanoTime();
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(output, FBFlatSchema.SCHEMA.relations());
+		long openNanos = System.nanoTime() - openStartNanos;
+
+		long decodeStartNanos = System.nanoTime();
+		int decoded = catalog.views().size();
+		long decodeNanos = System.nanoTime() - decodeStartNanos;
+
+		System.out.format("# Wrote %d views over %d relations to %s (%d bytes)%n",
+				decoded, catalog.relations().size(), output, output.length());
+		System.out.format("parse_sql = %.3f # ms%n", 1e-6 * parseNanos);
+		System.out.format("open_catalog = %.3f # ms%n", 1e-6 * openNanos);
+		System.out.format("decode_all_views = %.3f # ms%n", 1e-6 * decodeNanos);
+	}
+}
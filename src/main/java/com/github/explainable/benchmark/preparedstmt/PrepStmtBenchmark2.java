@@ -24,7 +24,11 @@
 
 package com.github.explainable.benchmark.preparedstmt;
 
+import com.github.explainable.benchmark.BenchmarkHarness;
+import com.github.explainable.benchmark.BenchmarkStage;
+import com.github.explainable.benchmark.BenchmarkWorkload;
 import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.QueryFidelity;
 import com.github.explainable.benchmark.SecurityViewReader;
 import com.github.explainable.corelang.Term;
 import com.github.explainable.corelang.Terms;
@@ -44,24 +48,15 @@ import net.sf.jsqlparser.statement.select.Select;
 
 import java.io.File;
 import java.io.StringReader;
-import java.net.InetAddress;
-import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 
 /**
- * Created by gbender on 12/6/13.
+ * Benchmark workload that executes prepared statements with random arguments. Run {@link #main} to
+ * measure it with {@link BenchmarkHarness}.
  */
-public final class PrepStmtBenchmark2 implements Runnable {
-	private enum BenchmarkStage {
-		GENERATE,
-		PARSE,
-		COMPILE,
-		LABEL,
-		EXPLAIN
-	}
-
+public final class PrepStmtBenchmark2 implements BenchmarkWorkload {
 	private static final ImmutableList<Term> CONSTANTS = ImmutableList.<Term>of(
 			Terms.constant(4L),
 			Terms.constant(4L),
@@ -84,94 +79,26 @@ public final class PrepStmtBenchmark2 implements Runnable {
 
 	public static final File SECURITY_VIEW_FILE = new File("data/fb-security-views.sql");
 
-	public static final int MIN_THREAD_COUNT = 1;
-
-	public static final int MAX_THREAD_COUNT = 8;
-
-	private static final int BENCHMARK_TRIALS = 1000000;
-
-	private static final int TRIAL_COUNT = 5;
-
-	private static final ImmutableList<BenchmarkStage> ACTIVE_STAGES
-			= ImmutableList.copyOf(BenchmarkStage.values());
-
 	private final ImmutableList<View> securityViews;
 
 	private final ImmutableMultimap<String, View> preparedViews;
 
 	private final SqlExecGenerator execGenerator;
 
-	private final CountDownLatch signal;
-
-	private final int iterations;
-
-	private final BenchmarkStage lastStage;
-
 	private PrepStmtBenchmark2(
 			List<View> securityViews,
 			Multimap<String, View> preparedViews,
-			SqlExecGenerator execGenerator,
-			CountDownLatch signal,
-			int iterations,
-			BenchmarkStage lastStage) {
-		Preconditions.checkArgument(iterations > 0);
-
+			SqlExecGenerator execGenerator) {
 		this.securityViews = ImmutableList.copyOf(securityViews);
 		this.preparedViews = ImmutableMultimap.copyOf(preparedViews);
 		this.execGenerator = Preconditions.checkNotNull(execGenerator);
-		this.signal = Preconditions.checkNotNull(signal);
-		this.iterations = iterations;
-		this.lastStage = Preconditions.checkNotNull(lastStage);
 	}
 
-	@Override
-	public void run() {
-		try {
-			RandomSampler sampler = RandomSampler.createAndSeed();
-			PolicyLabeler labeler = PolicyLabeler.create(securityViews);
-			Set<View> granted = ImmutableSet.copyOf(
-					RandomSampler.createAndSeed().sample(securityViews, securityViews.size() / 2));
-
-			for (int iterNum = 0; iterNum < iterations; iterNum++) {
-				String nextExec = execGenerator.next(sampler).toString();
-
-				if (lastStage.compareTo(BenchmarkStage.PARSE) < 0) {
-					continue;
-				}
-				SqlExec parsedExec = ExecStmtParser.create(nextExec).parse();
-
-				if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
-					continue;
-				}
-				List<View> extractedViews = Lists.newArrayList();
-				ExecSubstitutionMap subst = ExecSubstitutionMap.create(parsedExec.arguments());
-				for (View view : preparedViews.get(parsedExec.statementName())) {
-					extractedViews.add(view.apply(subst));
-				}
-
-				if (lastStage.compareTo(BenchmarkStage.LABEL) < 0) {
-					continue;
-				}
-				Policy policy = labeler.label(extractedViews).simplify();
-
-				if (lastStage.compareTo(BenchmarkStage.EXPLAIN) < 0) {
-					continue;
-				}
-				if (policy.evaluate(granted)) {
-					policy.whySo(granted);
-				} else {
-					policy.whyNot(granted);
-				}
-			}
-
-			signal.countDown();
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(1);
-		}
-	}
-
-	public static void main(String[] args) throws Exception {
+	/**
+	 * Read the prepared statements and security views from {@link #PREPARED_STATEMENT_FILE} and
+	 * {@link #SECURITY_VIEW_FILE}.
+	 */
+	public static PrepStmtBenchmark2 load() throws Exception {
 		List<View> preparedStmts
 				= SecurityViewReader.readViews(PREPARED_STATEMENT_FILE, FBFlatSchema.SCHEMA);
 
@@ -181,15 +108,13 @@ public final class PrepStmtBenchmark2 implements Runnable {
 		List<View> securityViews
 				= SecurityViewReader.readViews(SECURITY_VIEW_FILE, FBFlatSchema.SCHEMA);
 
-		System.out.format("# Name: %s%n", PrepStmtBenchmark2.class.getName());
-		System.out.format("# Date: %s%n", new Date());
-		System.out.format("# Host: %s%n", InetAddress.getLocalHost().getHostName());
-
 		SqlExecGenerator.Builder gen = SqlExecGenerator.builder();
 		ImmutableMultimap.Builder<String, View> preparedViewsBuilder = ImmutableMultimap.builder();
 
 		CCJSqlParserManager parser = new CCJSqlParserManager();
-		ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
+		// The statements were already validated when preparedStmts was read above.
+		ViewExtractionPipeline extractor
+				= ViewExtractionPipeline.createForTrustedInput(FBFlatSchema.SCHEMA);
 
 		for (int i = 0; i < preparedStmts.size(); i++) {
 			String viewName = "V" + (i + 1);
@@ -207,46 +132,61 @@ public final class PrepStmtBenchmark2 implements Runnable {
 			preparedViewsBuilder.putAll(viewName, extractedViews);
 		}
 
-		ImmutableMultimap<String, View> preparedViews = preparedViewsBuilder.build();
-		SqlExecGenerator execGenerator = gen.build();
-
-		for (BenchmarkStage lastStage : ACTIVE_STAGES) {
-			System.out.format("%s = [%n", lastStage);
-			for (int threadCount = MIN_THREAD_COUNT;
-					threadCount <= MAX_THREAD_COUNT;
-					threadCount++) {
-				System.out.print("\t[ ");
-				System.out.flush();
-
-				for (int trialNum = 0; trialNum <= TRIAL_COUNT; trialNum++) {
-					CountDownLatch doneSignal = new CountDownLatch(threadCount);
-					long startTimeMillis = System.currentTimeMillis();
-
-					for (int i = 0; i < threadCount; i++) {
-						new Thread(
-								new PrepStmtBenchmark2(
-										securityViews,
-										preparedViews,
-										execGenerator,
-										doneSignal,
-										BENCHMARK_TRIALS / threadCount,
-										lastStage)).start();
-					}
-
-					doneSignal.await();
-					long endTimeMillis = System.currentTimeMillis();
-
-					if (trialNum > 0) {
-						System.out.format("%.2f", .001 * (endTimeMillis - startTimeMillis));
-						if (trialNum < TRIAL_COUNT) {
-							System.out.print(", ");
-						}
-						System.out.flush();
-					}
+		return new PrepStmtBenchmark2(securityViews, preparedViewsBuilder.build(), gen.build());
+	}
+
+	@Override
+	public String name() {
+		return "prepared-statements";
+	}
+
+	@Override
+	public Operation newOperation(Random random, QueryFidelity fidelity) {
+		// Prepared statements already skip the pipeline, so there's nothing lower to fall back to.
+		Preconditions.checkArgument(fidelity == QueryFidelity.SQL,
+				"Prepared statements only support SQL fidelity: %s", fidelity);
+
+		final RandomSampler sampler = RandomSampler.create(random);
+		final PolicyLabeler labeler = PolicyLabeler.create(securityViews);
+		final Set<View> granted = ImmutableSet.copyOf(
+				sampler.sample(securityViews, securityViews.size() / 2));
+
+		return new Operation() {
+			@Override
+			public Object run(BenchmarkStage lastStage) throws Exception {
+				String nextExec = execGenerator.next(sampler).toString();
+
+				if (lastStage.compareTo(BenchmarkStage.PARSE) < 0) {
+					return nextExec;
+				}
+				SqlExec parsedExec = ExecStmtParser.create(nextExec).parse();
+
+				if (lastStage.compareTo(BenchmarkStage.COMPILE) < 0) {
+					return parsedExec;
+				}
+				List<View> extractedViews = Lists.newArrayList();
+				ExecSubstitutionMap subst = ExecSubstitutionMap.create(parsedExec.arguments());
+				for (View view : preparedViews.get(parsedExec.statementName())) {
+					extractedViews.add(view.apply(subst));
+				}
+
+				if (lastStage.compareTo(BenchmarkStage.LABEL) < 0) {
+					return extractedViews;
 				}
-				System.out.format(" ], # %d thread(s)%n", threadCount);
+				Policy policy = labeler.label(extractedViews).simplify();
+
+				if (lastStage.compareTo(BenchmarkStage.EXPLAIN) < 0) {
+					return policy;
+				}
+				return policy.evaluate(granted) ? policy.whySo(granted) : policy.whyNot(granted);
 			}
-			System.out.println("]");
-		}
+		};
+	}
+
+	/**
+	 * Measure the workload. See {@link BenchmarkHarness#main} for the command-line options.
+	 */
+	public static void main(String[] args) throws Exception {
+		BenchmarkHarness.main(load(), args);
 	}
 }
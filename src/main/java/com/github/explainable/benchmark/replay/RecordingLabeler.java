@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.sql.Schema;
+import com.google.common.base.Preconditions;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.TokenMgrError;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Labels SQL queries and appends each query, its granted set and its policy to a {@link
+ * TraceWriter}, so that a production workload can later be replayed with {@link TraceReplay}.
+ * Queries that fail to label are recorded too. Instances are thread-safe.
+ */
+public final class RecordingLabeler {
+	private final TraceLabeler labeler;
+
+	private final TraceWriter trace;
+
+	private RecordingLabeler(Schema schema, List<View> securityViews, TraceWriter trace) {
+		this.labeler = new TraceLabeler(schema, securityViews);
+		this.trace = Preconditions.checkNotNull(trace);
+	}
+
+	public static RecordingLabeler create(
+			Schema schema,
+			List<View> securityViews,
+			TraceWriter trace) {
+		return new RecordingLabeler(schema, securityViews, trace);
+	}
+
+	/**
+	 * Compute the simplified policy of {@code sql} and record the request.
+	 *
+	 * @param grantedSetId identifies the security views granted to the user who issued the query
+	 */
+	public Policy label(String sql, int grantedSetId) throws JSQLParserException, IOException {
+		Policy policy;
+		try {
+			policy = labeler.label(sql);
+		} catch (JSQLParserException e) {
+			trace.record(sql, grantedSetId, TraceLabeler.error(e));
+			throw e;
+		} catch (TokenMgrError e) {
+			trace.record(sql, grantedSetId, TraceLabeler.error(e));
+			throw e;
+		} catch (RuntimeException e) {
+			trace.record(sql, grantedSetId, TraceLabeler.error(e));
+			throw e;
+		}
+
+		trace.record(sql, grantedSetId, labeler.format(policy));
+		return policy;
+	}
+}
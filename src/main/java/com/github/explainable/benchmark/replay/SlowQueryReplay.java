@@ -0,0 +1,304 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.batch.PolicyFormatter;
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.benchmark.cowsql.CowBenchmarkDriver;
+import com.github.explainable.benchmark.cowsql.CowSqlSchema;
+import com.github.explainable.benchmark.mockfb.FBBenchmarkDriver;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.slowlog.SlowQueryLog;
+import com.github.explainable.slowlog.SlowQueryLogReader;
+import com.github.explainable.slowlog.SlowQueryRecord;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.trace.StageRecorder;
+import com.github.explainable.trace.StageTiming;
+import com.github.explainable.trace.Tracing;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.parser.TokenMgrError;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays the requests in a slow query log (see {@link SlowQueryLog}) against the current code,
+ * labeling each query the same way that {@link com.github.explainable.server.LabelingServer}
+ * does, and compares the stage timings, extracted views, and result with the recorded ones.
+ * Instances aren't thread-safe.
+ */
+public final class SlowQueryReplay implements Closeable {
+	private final Schema schema;
+
+	private final ImmutableList<View> securityViews;
+
+	private final PolicyLabeler labeler;
+
+	private final PolicyFormatter formatter;
+
+	private final ViewExtractionPipeline pipeline;
+
+	private final StageRecorder recorder;
+
+	private SlowQueryReplay(Schema schema, List<View> securityViews) {
+		this.schema = Preconditions.checkNotNull(schema);
+		this.securityViews = ImmutableList.copyOf(securityViews);
+		this.labeler = PolicyLabeler.create(securityViews);
+		this.formatter = PolicyFormatter.create(securityViews);
+		this.pipeline = ViewExtractionPipeline.create(schema);
+		this.recorder = StageRecorder.open();
+	}
+
+	public static SlowQueryReplay create(Schema schema, List<View> securityViews) {
+		return new SlowQueryReplay(schema, securityViews);
+	}
+
+	/**
+	 * Label the query in {@code record} again.
+	 *
+	 * @return a record of the replayed request, with the current fingerprints, timings, extracted
+	 *     views, and result
+	 */
+	public SlowQueryRecord replay(SlowQueryRecord record) {
+		StageRecorder.Capture stages = recorder.begin();
+		List<View> views = ImmutableList.of();
+		String result;
+		try {
+			Statement statement;
+			Tracing.begin("parse");
+			try {
+				statement = new CCJSqlParserManager().parse(new StringReader(record.sql()));
+			} finally {
+				Tracing.end();
+			}
+			if (!(statement instanceof Select)) {
+				throw new SqlException("Not a SELECT statement");
+			}
+
+			views = pipeline.execute((Select) statement);
+			Policy policy = labeler.label(views);
+			Tracing.begin("simplify");
+			try {
+				policy = policy.simplify();
+			} finally {
+				Tracing.end();
+			}
+			result = formatter.format(policy);
+		} catch (JSQLParserException e) {
+			result = error((e.getCause() != null) ? e.getCause() : e);
+		} catch (TokenMgrError e) {
+			result = error(e);
+		} catch (RuntimeException e) {
+			result = error(e);
+		}
+		long elapsedNanos = stages.end();
+
+		ImmutableList.Builder<String> viewStrings = ImmutableList.builder();
+		for (View view : views) {
+			viewStrings.add(view.toString());
+		}
+		return new SlowQueryRecord(
+				System.currentTimeMillis(),
+				elapsedNanos,
+				record.sql(),
+				SlowQueryLog.fingerprint(schema),
+				SlowQueryLog.fingerprint(securityViews),
+				stages.stages(),
+				viewStrings.build(),
+				result);
+	}
+
+	/**
+	 * The result that {@link com.github.explainable.server.LabelingServer} reports for a query
+	 * that fails with {@code cause}.
+	 */
+	private static String error(Throwable cause) {
+		return (cause.getMessage() != null)
+				? cause.getClass().getSimpleName() + ": " + cause.getMessage()
+				: cause.getClass().getSimpleName();
+	}
+
+	@Override
+	public void close() {
+		recorder.close();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("securityViews", securityViews.size())
+				.toString();
+	}
+
+	/**
+	 * Total time spent in each stage, in the order that the stages first ended.
+	 */
+	private static Map<String, Long> stageTotals(List<StageTiming> stages) {
+		Map<String, Long> totals = Maps.newLinkedHashMap();
+		for (StageTiming stage : stages) {
+			Long total = totals.get(stage.name());
+			totals.put(stage.name(), ((total != null) ? total : 0L) + stage.nanos());
+		}
+		return totals;
+	}
+
+	private static void printComparison(SlowQueryRecord recorded, SlowQueryRecord replayed) {
+		System.out.format("SQL: %s%n", recorded.sql());
+		System.out.format("Logged: %s%n", new Date(recorded.timestampMillis()));
+		System.out.format("Schema: %s%s%n", recorded.schemaFingerprint(),
+				recorded.schemaFingerprint().equals(replayed.schemaFingerprint())
+						? "" : " (now " + replayed.schemaFingerprint() + ")");
+		System.out.format("Security views: %s%s%n", recorded.securityViewsFingerprint(),
+				recorded.securityViewsFingerprint().equals(replayed.securityViewsFingerprint())
+						? "" : " (now " + replayed.securityViewsFingerprint() + ")");
+
+		Map<String, Long> recordedStages = stageTotals(recorded.stages());
+		Map<String, Long> replayedStages = stageTotals(replayed.stages());
+		Map<String, Long> allStages = Maps.newLinkedHashMap(recordedStages);
+		allStages.putAll(replayedStages);
+		System.out.format("%-32s %12s %12s%n", "stage", "recorded", "replayed");
+		for (String stage : allStages.keySet()) {
+			System.out.format("%-32s %12s %12s%n", stage,
+					formatMillis(recordedStages.get(stage)),
+					formatMillis(replayedStages.get(stage)));
+		}
+		System.out.format("%-32s %12s %12s%n", "total",
+				formatMillis(recorded.elapsedNanos()),
+				formatMillis(replayed.elapsedNanos()));
+	}
+
+	private static String formatMillis(Long nanos) {
+		return (nanos != null) ? String.format("%.3fms", nanos / 1e6) : "-";
+	}
+
+	/**
+	 * Replay a slow query log. Recognizes the options {@code --workload fb|cow} (the schema and
+	 * security views that the log was written with), {@code --log FILE}, {@code --record N} (the
+	 * position of the record to replay, starting from 1; by default every record is replayed) and
+	 * {@code --repeat N} (the number of times to label each query, reporting the fastest run;
+	 * default 10). Exits with status 1 if any query's extracted views or result differ from the
+	 * recorded ones.
+	 */
+	public static void main(String[] args) throws Exception {
+		String workload = "fb";
+		File logFile = null;
+		int recordNumber = 0;
+		int repeat = 10;
+
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+
+			if (option.equals("--workload")) {
+				workload = value;
+			} else if (option.equals("--log")) {
+				logFile = new File(value);
+			} else if (option.equals("--record")) {
+				recordNumber = Integer.parseInt(value);
+			} else if (option.equals("--repeat")) {
+				repeat = Integer.parseInt(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+		Preconditions.checkArgument(logFile != null, "Missing --log");
+		Preconditions.checkArgument(repeat > 0, "--repeat must be positive");
+
+		Schema schema;
+		File securityViewFile;
+		if (workload.equals("fb")) {
+			schema = FBFlatSchema.SCHEMA;
+			securityViewFile = FBBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else if (workload.equals("cow")) {
+			schema = CowSqlSchema.SCHEMA;
+			securityViewFile = CowBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else {
+			throw new IllegalArgumentException("Unknown workload: " + workload);
+		}
+
+		List<SlowQueryRecord> records = SlowQueryLogReader.readAll(logFile);
+		if (recordNumber != 0) {
+			Preconditions.checkArgument(recordNumber >= 1 && recordNumber <= records.size(),
+					"The log has %s records", records.size());
+			records = records.subList(recordNumber - 1, recordNumber);
+		}
+
+		List<View> securityViews = SecurityViewReader.readViews(securityViewFile, schema);
+		SlowQueryReplay replay = create(schema, securityViews);
+		int mismatches = 0;
+		try {
+			for (SlowQueryRecord record : records) {
+				SlowQueryRecord fastest = null;
+				for (int i = 0; i < repeat; i++) {
+					SlowQueryRecord replayed = replay.replay(record);
+					if (fastest == null || replayed.elapsedNanos() < fastest.elapsedNanos()) {
+						fastest = replayed;
+					}
+				}
+
+				printComparison(record, fastest);
+				// Requests whose policies were cached don't record their views.
+				if (!record.views().isEmpty() && !record.views().equals(fastest.views())) {
+					mismatches++;
+					System.out.format("Views differ.%nRecorded: %s%nReplayed: %s%n",
+							record.views(), fastest.views());
+				}
+				// Both results come from PolicyFormatter, whose output doesn't depend on the order
+				// in which a process happens to build the policy, so they can be compared as text.
+				if (!record.result().equals(fastest.result())) {
+					mismatches++;
+					System.out.format("Results differ.%nRecorded: %s%nReplayed: %s%n",
+							record.result(), fastest.result());
+				}
+				System.out.println();
+			}
+		} finally {
+			replay.close();
+		}
+
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.batch.PolicyFormatter;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Preconditions;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Labels SQL text the same way when recording a trace and when replaying it, so that replayed
+ * results can be compared with the recorded ones. Instances are thread-safe.
+ */
+final class TraceLabeler {
+	private final Schema schema;
+
+	private final PolicyLabeler labeler;
+
+	private final PolicyFormatter formatter;
+
+	private final ThreadLocal<ViewExtractionPipeline> pipelines
+			= new ThreadLocal<ViewExtractionPipeline>() {
+		@Override
+		protected ViewExtractionPipeline initialValue() {
+			return ViewExtractionPipeline.create(schema);
+		}
+	};
+
+	TraceLabeler(Schema schema, List<View> securityViews) {
+		this.schema = Preconditions.checkNotNull(schema);
+		this.labeler = PolicyLabeler.create(securityViews);
+		this.formatter = PolicyFormatter.create(securityViews);
+	}
+
+	/**
+	 * Compute the simplified policy of {@code sql}.
+	 */
+	Policy label(String sql) throws JSQLParserException {
+		Statement statement = new CCJSqlParserManager().parse(new StringReader(sql));
+		if (!(statement instanceof Select)) {
+			throw new JSQLParserException("Not a SELECT statement");
+		}
+		return labeler.label(pipelines.get().execute((Select) statement)).simplify();
+	}
+
+	String format(Policy policy) {
+		return formatter.format(policy);
+	}
+
+	/**
+	 * The result that a trace records when labeling fails with {@code error}.
+	 */
+	static String error(Throwable error) {
+		return "!" + error.getClass().getSimpleName();
+	}
+}
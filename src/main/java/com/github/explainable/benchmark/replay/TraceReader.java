@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.util.VarInts;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the query traces written by {@link TraceWriter}. Instances are not thread-safe.
+ */
+public final class TraceReader implements Closeable {
+	/**
+	 * Longest string that we accept, to fail fast on corrupt traces.
+	 */
+	private static final int MAX_STRING_LENGTH = 1 << 26;
+
+	private final DataInputStream in;
+
+	private long lastTimestamp = 0L;
+
+	private TraceReader(InputStream in) {
+		this.in = new DataInputStream(in);
+	}
+
+	public static TraceReader open(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return wrap(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read a trace from {@code in}. Closing the reader closes the stream.
+	 */
+	public static TraceReader wrap(InputStream in) throws IOException {
+		TraceReader reader = new TraceReader(Preconditions.checkNotNull(in));
+		if (reader.in.readInt() != TraceWriter.MAGIC) {
+			throw new IOException("Not a query trace");
+		}
+		byte version = reader.in.readByte();
+		if (version != TraceWriter.VERSION) {
+			throw new IOException("Unsupported query trace version: " + version);
+		}
+		return reader;
+	}
+
+	/**
+	 * Read the next record, or return {@code null} at the end of the trace.
+	 *
+	 * @throws EOFException if the trace ends in the middle of a record
+	 */
+	@Nullable
+	public TraceRecord next() throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+
+		long timestamp = lastTimestamp + VarInts.readVarLong(in, first);
+		long grantedSetId = VarInts.readVarLong(in);
+		if (grantedSetId > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt query trace: granted set id " + grantedSetId);
+		}
+		String sql = VarInts.readString(in, MAX_STRING_LENGTH);
+		String result = VarInts.readString(in, MAX_STRING_LENGTH);
+
+		lastTimestamp = timestamp;
+		return new TraceRecord(timestamp, (int) grantedSetId, sql, result);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Read every record in {@code file}.
+	 */
+	public static ImmutableList<TraceRecord> readAll(File file) throws IOException {
+		TraceReader reader = open(file);
+		try {
+			ImmutableList.Builder<TraceRecord> records = ImmutableList.builder();
+			TraceRecord record;
+			while ((record = reader.next()) != null) {
+				records.add(record);
+			}
+			return records.build();
+		} finally {
+			reader.close();
+		}
+	}
+}
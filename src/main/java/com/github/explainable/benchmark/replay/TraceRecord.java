@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A single labeling request in a query trace: when it arrived, the SQL text, the granted set of
+ * security views that the application labeled it against, and the result that labeling produced.
+ */
+public final class TraceRecord {
+	private final long timestampNanos;
+
+	private final int grantedSetId;
+
+	private final String sql;
+
+	private final String result;
+
+	public TraceRecord(long timestampNanos, int grantedSetId, String sql, String result) {
+		Preconditions.checkArgument(timestampNanos >= 0L);
+		Preconditions.checkArgument(grantedSetId >= 0);
+		this.timestampNanos = timestampNanos;
+		this.grantedSetId = grantedSetId;
+		this.sql = Preconditions.checkNotNull(sql);
+		this.result = Preconditions.checkNotNull(result);
+	}
+
+	/**
+	 * Nanoseconds between the start of the recording and the request.
+	 */
+	public long timestampNanos() {
+		return timestampNanos;
+	}
+
+	/**
+	 * Application-defined identifier of the set of security views that were granted to the user
+	 * who issued the query.
+	 */
+	public int grantedSetId() {
+		return grantedSetId;
+	}
+
+	public String sql() {
+		return sql;
+	}
+
+	/**
+	 * The query's simplified policy in the format of {@link
+	 * com.github.explainable.batch.PolicyFormatter}, or {@code !} followed by the name of the
+	 * exception if the query couldn't be labeled.
+	 */
+	public String result() {
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof TraceRecord)) {
+			return false;
+		}
+		TraceRecord other = (TraceRecord) obj;
+		return timestampNanos == other.timestampNanos
+				&& grantedSetId == other.grantedSetId
+				&& sql.equals(other.sql)
+				&& result.equals(other.result);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(timestampNanos, grantedSetId, sql, result);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("timestampNanos", timestampNanos)
+				.add("grantedSetId", grantedSetId)
+				.add("sql", sql)
+				.add("result", result)
+				.toString();
+	}
+}
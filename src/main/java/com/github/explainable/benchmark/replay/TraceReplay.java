@@ -0,0 +1,448 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.benchmark.LatencyHistogram;
+import com.github.explainable.benchmark.SecurityViewReader;
+import com.github.explainable.benchmark.cowsql.CowBenchmarkDriver;
+import com.github.explainable.benchmark.cowsql.CowSqlSchema;
+import com.github.explainable.benchmark.mockfb.FBBenchmarkDriver;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.sql.Schema;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.TokenMgrError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a query trace recorded by {@link RecordingLabeler}, either at the recorded rate (or a
+ * multiple of it) or as fast as possible, and checks that every query gets the same result that
+ * was recorded.
+ *
+ * <p>When replaying at the recorded rate, a query's latency is measured from the moment that it
+ * was due rather than the moment that a thread got around to it, so that a replay that falls
+ * behind reports the queueing delay that clients would have seen.
+ */
+public final class TraceReplay {
+	/**
+	 * Number of mismatched results that a {@link Summary} describes in detail.
+	 */
+	private static final int MAX_REPORTED_MISMATCHES = 10;
+
+	private final TraceLabeler labeler;
+
+	private final ImmutableList<TraceRecord> records;
+
+	private final ImmutableMap<Integer, ImmutableSet<View>> grantedSets;
+
+	private final int threadCount;
+
+	private final double speedup;
+
+	private TraceReplay(Builder builder) {
+		this.labeler = new TraceLabeler(builder.schema, builder.securityViews);
+		this.records = builder.records;
+		this.grantedSets = builder.grantedSets;
+		this.threadCount = builder.threadCount;
+		this.speedup = builder.speedup;
+	}
+
+	/**
+	 * @param securityViews the security views in the order in which they were passed to the
+	 * {@link RecordingLabeler} that recorded the trace
+	 */
+	public static Builder builder(Schema schema, List<View> securityViews, List<TraceRecord> records) {
+		return new Builder(schema, securityViews, records);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		private final ImmutableList<View> securityViews;
+
+		private final ImmutableList<TraceRecord> records;
+
+		private ImmutableMap<Integer, ImmutableSet<View>> grantedSets = ImmutableMap.of();
+
+		private int threadCount = 1;
+
+		private double speedup = 0.0;
+
+		private Builder(Schema schema, List<View> securityViews, List<TraceRecord> records) {
+			this.schema = Preconditions.checkNotNull(schema);
+			this.securityViews = ImmutableList.copyOf(securityViews);
+			this.records = ImmutableList.copyOf(records);
+		}
+
+		/**
+		 * Set the security views that each granted set id stands for. If any are given, every
+		 * replayed query is also checked against its granted set; ids without an entry stand for
+		 * the empty set.
+		 */
+		public Builder setGrantedSets(Map<Integer, ? extends Set<View>> grantedSets) {
+			ImmutableMap.Builder<Integer, ImmutableSet<View>> copy = ImmutableMap.builder();
+			for (Map.Entry<Integer, ? extends Set<View>> entry : grantedSets.entrySet()) {
+				copy.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+			}
+			this.grantedSets = copy.build();
+			return this;
+		}
+
+		public Builder setThreadCount(int threadCount) {
+			Preconditions.checkArgument(threadCount > 0);
+			this.threadCount = threadCount;
+			return this;
+		}
+
+		/**
+		 * Replay the trace {@code speedup} times faster than it was recorded, or as fast as
+		 * possible if {@code speedup} is zero (the default).
+		 */
+		public Builder setSpeedup(double speedup) {
+			Preconditions.checkArgument(speedup >= 0.0);
+			this.speedup = speedup;
+			return this;
+		}
+
+		public TraceReplay build() {
+			return new TraceReplay(this);
+		}
+	}
+
+	/**
+	 * Outcome of a replay.
+	 */
+	public static final class Summary {
+		private final int queries;
+
+		private final int mismatches;
+
+		private final int allowed;
+
+		private final int denied;
+
+		private final long elapsedNanos;
+
+		private final LatencyHistogram latencies;
+
+		private final ImmutableList<String> reportedMismatches;
+
+		private Summary(
+				int queries,
+				int mismatches,
+				int allowed,
+				int denied,
+				long elapsedNanos,
+				LatencyHistogram latencies,
+				List<String> reportedMismatches) {
+			this.queries = queries;
+			this.mismatches = mismatches;
+			this.allowed = allowed;
+			this.denied = denied;
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = latencies;
+			this.reportedMismatches = ImmutableList.copyOf(reportedMismatches);
+		}
+
+		public int queries() {
+			return queries;
+		}
+
+		/**
+		 * Number of queries whose result differs from the recorded one.
+		 */
+		public int mismatches() {
+			return mismatches;
+		}
+
+		/**
+		 * Number of queries whose policy is satisfied by their granted set. Always zero if no
+		 * granted sets were given.
+		 */
+		public int allowed() {
+			return allowed;
+		}
+
+		public int denied() {
+			return denied;
+		}
+
+		public long elapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public LatencyHistogram latencies() {
+			return latencies;
+		}
+
+		/**
+		 * Descriptions of the first few mismatched results.
+		 */
+		public ImmutableList<String> reportedMismatches() {
+			return reportedMismatches;
+		}
+
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+					.add("queries", queries)
+					.add("mismatches", mismatches)
+					.add("allowed", allowed)
+					.add("denied", denied)
+					.add("elapsedSeconds", elapsedNanos / 1e9)
+					.add("latencies", latencies)
+					.toString();
+		}
+	}
+
+	/**
+	 * Replay every record in the trace, blocking until all of them are done.
+	 */
+	public Summary run() throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger mismatches = new AtomicInteger();
+		final AtomicInteger allowed = new AtomicInteger();
+		final AtomicInteger denied = new AtomicInteger();
+		final List<String> reportedMismatches
+				= Collections.synchronizedList(Lists.<String>newArrayList());
+		final long firstTimestamp = records.isEmpty() ? 0L : records.get(0).timestampNanos();
+		final long startNanos = System.nanoTime();
+
+		ExecutorService threads = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<LatencyHistogram>> futures = Lists.newArrayList();
+			for (int i = 0; i < threadCount; i++) {
+				futures.add(threads.submit(new Callable<LatencyHistogram>() {
+					@Override
+					public LatencyHistogram call() {
+						LatencyHistogram latencies = new LatencyHistogram();
+						int index;
+						while ((index = next.getAndIncrement()) < records.size()) {
+							TraceRecord record = records.get(index);
+
+							long begin;
+							if (speedup > 0.0) {
+								begin = startNanos
+										+ (long) ((record.timestampNanos() - firstTimestamp) / speedup);
+								waitUntil(begin);
+							} else {
+								begin = System.nanoTime();
+							}
+
+							String result;
+							Policy policy = null;
+							try {
+								policy = labeler.label(record.sql());
+								result = labeler.format(policy);
+							} catch (JSQLParserException e) {
+								result = TraceLabeler.error(e);
+							} catch (TokenMgrError e) {
+								result = TraceLabeler.error(e);
+							} catch (RuntimeException e) {
+								result = TraceLabeler.error(e);
+							}
+							latencies.record(System.nanoTime() - begin);
+
+							if (!result.equals(record.result())) {
+								mismatches.incrementAndGet();
+								if (reportedMismatches.size() < MAX_REPORTED_MISMATCHES) {
+									reportedMismatches.add(String.format(
+											"Query %d: expected %s but got %s: %s",
+											index, record.result(), result, record.sql()));
+								}
+							}
+
+							if (policy != null && !grantedSets.isEmpty()) {
+								Set<View> granted = grantedSets.get(record.grantedSetId());
+								if (policy.evaluate(
+										(granted != null) ? granted : ImmutableSet.<View>of())) {
+									allowed.incrementAndGet();
+								} else {
+									denied.incrementAndGet();
+								}
+							}
+						}
+						return latencies;
+					}
+				}));
+			}
+
+			LatencyHistogram latencies = new LatencyHistogram();
+			for (Future<LatencyHistogram> future : futures) {
+				try {
+					latencies.add(future.get());
+				} catch (ExecutionException e) {
+					throw Throwables.propagate(e.getCause());
+				}
+			}
+
+			return new Summary(
+					records.size(),
+					mismatches.get(),
+					allowed.get(),
+					denied.get(),
+					System.nanoTime() - startNanos,
+					latencies,
+					reportedMismatches.subList(
+							0, Math.min(reportedMismatches.size(), MAX_REPORTED_MISMATCHES)));
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	private static void waitUntil(long deadlineNanos) {
+		long remaining;
+		while ((remaining = deadlineNanos - System.nanoTime()) > 0L) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	/**
+	 * Read granted sets from a file with one line per set: the set's id, a tab, and the comma
+	 * separated {@code 1}-based positions of its security views.
+	 */
+	static Map<Integer, Set<View>> readGrantedSets(File file, List<View> securityViews)
+			throws IOException {
+		Map<Integer, Set<View>> result = Maps.newHashMap();
+		for (String line : Files.readLines(file, Charsets.UTF_8)) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+
+			String[] fields = line.split("\t", 2);
+			ImmutableSet.Builder<View> views = ImmutableSet.builder();
+			if (fields.length > 1 && !fields[1].trim().isEmpty()) {
+				for (String position : fields[1].split(",")) {
+					views.add(securityViews.get(Integer.parseInt(position.trim()) - 1));
+				}
+			}
+			result.put(Integer.parseInt(fields[0].trim()), views.build());
+		}
+		return result;
+	}
+
+	/**
+	 * Replay a trace. Recognizes the options {@code --workload fb|cow} (the schema and security
+	 * views that the trace was recorded with), {@code --trace FILE}, {@code --threads N}, {@code
+	 * --speedup X} and {@code --granted FILE} (see {@link #readGrantedSets}). Exits with status 1
+	 * if any result differs from the recorded one.
+	 */
+	public static void main(String[] args) throws Exception {
+		String workload = "fb";
+		File traceFile = null;
+		File grantedFile = null;
+		int threadCount = 1;
+		double speedup = 0.0;
+
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+
+			if (option.equals("--workload")) {
+				workload = value;
+			} else if (option.equals("--trace")) {
+				traceFile = new File(value);
+			} else if (option.equals("--threads")) {
+				threadCount = Integer.parseInt(value);
+			} else if (option.equals("--speedup")) {
+				speedup = Double.parseDouble(value);
+			} else if (option.equals("--granted")) {
+				grantedFile = new File(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+		Preconditions.checkArgument(traceFile != null, "Missing --trace");
+
+		Schema schema;
+		File securityViewFile;
+		if (workload.equals("fb")) {
+			schema = FBFlatSchema.SCHEMA;
+			securityViewFile = FBBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else if (workload.equals("cow")) {
+			schema = CowSqlSchema.SCHEMA;
+			securityViewFile = CowBenchmarkDriver.SECURITY_VIEW_FILE;
+		} else {
+			throw new IllegalArgumentException("Unknown workload: " + workload);
+		}
+
+		List<View> securityViews = SecurityViewReader.readViews(securityViewFile, schema);
+		Builder builder = builder(schema, securityViews, TraceReader.readAll(traceFile))
+				.setThreadCount(threadCount)
+				.setSpeedup(speedup);
+		if (grantedFile != null) {
+			builder.setGrantedSets(readGrantedSets(grantedFile, securityViews));
+		}
+
+		Summary summary = builder.build().run();
+		LatencyHistogram latencies = summary.latencies();
+		System.out.format("queries=%d mismatches=%d allowed=%d denied=%d elapsed=%.3fs "
+				+ "throughput=%.1f/s%n",
+				summary.queries(), summary.mismatches(), summary.allowed(), summary.denied(),
+				summary.elapsedNanos() / 1e9,
+				summary.queries() / (summary.elapsedNanos() / 1e9));
+		System.out.format("latency: mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+				latencies.mean() / 1e3,
+				latencies.percentile(50.0) / 1e3,
+				latencies.percentile(99.0) / 1e3,
+				latencies.percentile(99.9) / 1e3,
+				latencies.max() / 1e3);
+		for (String mismatch : summary.reportedMismatches()) {
+			System.out.println(mismatch);
+		}
+
+		if (summary.mismatches() > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.util.VarInts;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends {@link TraceRecord}s to a compact binary query trace. A trace starts with the header
+ *
+ * <pre>
+ * int magic | byte version
+ * </pre>
+ *
+ * <p>and is followed by one entry per record:
+ *
+ * <pre>
+ * varlong timestampDelta | varint grantedSetId | varint length | byte[] sql | varint length |
+ * byte[] result
+ * </pre>
+ *
+ * <p>where varints are encoded as described in {@link VarInts}, timestamps are stored as the
+ * difference from the previous record's timestamp, and strings are UTF-8. Instances are
+ * thread-safe.
+ */
+public final class TraceWriter implements Closeable, Flushable {
+	static final int MAGIC = 0x45585452;
+
+	static final byte VERSION = 1;
+
+	private final DataOutputStream out;
+
+	private final long startNanos;
+
+	private long lastTimestamp = 0L;
+
+	private TraceWriter(OutputStream out) {
+		this.out = new DataOutputStream(out);
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Create a trace in {@code file}, replacing its contents.
+	 */
+	public static TraceWriter open(File file) throws IOException {
+		return wrap(new BufferedOutputStream(new FileOutputStream(file)));
+	}
+
+	/**
+	 * Write a trace to {@code out}. Closing the writer closes the stream.
+	 */
+	public static TraceWriter wrap(OutputStream out) throws IOException {
+		TraceWriter writer = new TraceWriter(Preconditions.checkNotNull(out));
+		writer.out.writeInt(MAGIC);
+		writer.out.writeByte(VERSION);
+		return writer;
+	}
+
+	/**
+	 * Append a record for a request that is happening now.
+	 */
+	public synchronized void record(String sql, int grantedSetId, String result)
+			throws IOException {
+		// Clamp, since the clock can be coarser than the rate at which requests arrive.
+		long timestamp = Math.max(System.nanoTime() - startNanos, lastTimestamp);
+		write(new TraceRecord(timestamp, grantedSetId, sql, result));
+	}
+
+	/**
+	 * Append {@code record}, whose timestamp must not precede that of the previous record.
+	 */
+	public synchronized void write(TraceRecord record) throws IOException {
+		Preconditions.checkArgument(record.timestampNanos() >= lastTimestamp,
+				"Records must be written in timestamp order");
+
+		VarInts.writeVarLong(out, record.timestampNanos() - lastTimestamp);
+		VarInts.writeVarLong(out, record.grantedSetId());
+		VarInts.writeString(out, record.sql());
+		VarInts.writeString(out, record.result());
+		lastTimestamp = record.timestampNanos();
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
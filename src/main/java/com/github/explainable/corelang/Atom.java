@@ -24,29 +24,39 @@
 
 package com.github.explainable.corelang;
 
-import com.github.explainable.util.UnionFindNode;
+import com.github.explainable.util.IntUnionFind;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import javax.annotation.Nullable;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
  * Class representing an atom in a conjunctive query.
  */
 public final class Atom {
+	/**
+	 * Largest arity for which we find repeated arguments by comparing every pair of positions.
+	 */
+	private static final int MAX_SCANNED_ARITY = 8;
+
 	private final Relation relation;
 
 	private final ImmutableList<Term> arguments;
 
 	private final Term copyVariable;
 
+	/**
+	 * For each argument position {@code i}, the smallest position {@code j} such that {@code
+	 * arguments.get(j).equals(arguments.get(i))}. Positions that hold the same term share a single
+	 * union-find element during unification.
+	 */
+	private final int[] firstOccurrences;
+
 	private Atom(Relation relation, List<? extends Term> arguments, Term copyVariable) {
 		Preconditions.checkArgument(
 				relation.arity() == arguments.size(),
@@ -55,6 +65,49 @@ public final class Atom {
 		this.relation = Preconditions.checkNotNull(relation);
 		this.arguments = ImmutableList.copyOf(arguments);
 		this.copyVariable = Preconditions.checkNotNull(copyVariable);
+		this.firstOccurrences = computeFirstOccurrences(this.arguments);
+	}
+
+	private static int[] computeFirstOccurrences(List<Term> arguments) {
+		int[] result = new int[arguments.size()];
+
+		if (result.length <= MAX_SCANNED_ARITY) {
+			for (int i = 0; i < result.length; i++) {
+				int j = 0;
+				while (!arguments.get(j).equals(arguments.get(i))) {
+					j++;
+				}
+				result[i] = j;
+			}
+		} else {
+			// The pairwise scan is quadratic, which adds up for wide relations. Instead, look up
+			// each argument in an open-addressing hash table that maps terms to their first
+			// positions (plus one, so that zero marks an empty slot).
+			int[] table = new int[Integer.highestOneBit(result.length) << 2];
+			int mask = table.length - 1;
+
+			for (int i = 0; i < result.length; i++) {
+				Term term = arguments.get(i);
+				int slot = smear(term.hashCode()) & mask;
+				while (table[slot] != 0 && !arguments.get(table[slot] - 1).equals(term)) {
+					slot = (slot + 1) & mask;
+				}
+
+				if (table[slot] == 0) {
+					table[slot] = i + 1;
+				}
+				result[i] = table[slot] - 1;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Spread the bits of a hash code so that the low bits can be used as a table index.
+	 */
+	private static int smear(int hashCode) {
+		return 0x1b873593 * Integer.rotateLeft(hashCode * 0xcc9e2d51, 15);
 	}
 
 	public static Atom createSetAtom(Relation relation, List<? extends Term> arguments) {
@@ -121,31 +174,22 @@ public final class Atom {
 	 */
 	@Nullable
 	public Atom unifyWith(Atom other) {
-		if (!relation().equals(other.relation())) {
-			return null;
-		}
-
-		Preconditions.checkArgument(arguments.size() == other.arguments.size());
-		Map<Term, UnionFindNode<Term>> termNodes = unionFindsForAllTerms();
-		Map<Term, UnionFindNode<Term>> otherTermNodes = other.unionFindsForAllTerms();
-
-		for (int i = 0; i < arguments.size(); i++) {
-			UnionFindNode<Term> termNode = termNodes.get(arguments.get(i));
-			UnionFindNode<Term> otherTermNode = otherTermNodes.get(other.arguments.get(i));
-
-			Term unifier = termNode.get().unifyWith(otherTermNode.get());
-			if (unifier == null) {
-				return null;
-			}
+		return unifyWith(other, IntUnionFind.<Term>createWithCapacity(2 * arguments.size()));
+	}
 
-			termNode.set(unifier);
-			otherTermNode.set(unifier);
-			Preconditions.checkArgument(termNode.mergeWith(otherTermNode));
+	/**
+	 * Same as {@link #unifyWith(Atom)}, but uses {@code scratch} as working space instead of
+	 * allocating a new union-find structure. The contents of {@code scratch} are discarded.
+	 */
+	@Nullable
+	public Atom unifyWith(Atom other, IntUnionFind<Term> scratch) {
+		if (!unifyInto(other, scratch)) {
+			return null;
 		}
 
 		List<Term> unifiedArguments = Lists.newArrayListWithCapacity(arguments.size());
-		for (Term term : arguments) {
-			unifiedArguments.add(termNodes.get(term).get());
+		for (int i = 0; i < arguments.size(); i++) {
+			unifiedArguments.add(scratch.get(firstOccurrences[i]));
 		}
 
 		Term unifiedCopyVariable = getCopyVariable().unifyWith(other.getCopyVariable());
@@ -160,17 +204,52 @@ public final class Atom {
 	 * in common
 	 */
 	public boolean isCompatibleWith(Atom other) {
-		return unifyWith(other) != null;
+		return isCompatibleWith(other, IntUnionFind.<Term>createWithCapacity(2 * arguments.size()));
 	}
 
-	private Map<Term, UnionFindNode<Term>> unionFindsForAllTerms() {
-		Map<Term, UnionFindNode<Term>> termNodes = Maps.newHashMap();
+	/**
+	 * Same as {@link #isCompatibleWith(Atom)}, but uses {@code scratch} as working space. Unlike
+	 * {@link #unifyWith(Atom, IntUnionFind)}, this method doesn't construct the unified atom.
+	 */
+	public boolean isCompatibleWith(Atom other, IntUnionFind<Term> scratch) {
+		return unifyInto(other, scratch);
+	}
 
-		for (Term term : arguments) {
-			termNodes.put(term, UnionFindNode.create(term));
+	/**
+	 * Helper method that resets {@code scratch} and populates it with the unification of the
+	 * arguments of {@code this} and {@code other}. Element {@code i} of {@code scratch} holds the
+	 * ith argument of {@code this}, and element {@code arity + i} holds the ith argument of {@code
+	 * other}. Repeated arguments only use the element for their first occurrence.
+	 *
+	 * @return {@code true} if the atoms can be unified, {@code false} otherwise
+	 */
+	private boolean unifyInto(Atom other, IntUnionFind<Term> scratch) {
+		if (!relation().equals(other.relation())) {
+			return false;
+		}
+
+		int arity = arguments.size();
+		Preconditions.checkArgument(arity == other.arguments.size());
+
+		scratch.reset();
+		scratch.addAll(arguments);
+		scratch.addAll(other.arguments);
+
+		for (int i = 0; i < arity; i++) {
+			int termId = firstOccurrences[i];
+			int otherTermId = arity + other.firstOccurrences[i];
+
+			Term unifier = scratch.get(termId).unifyWith(scratch.get(otherTermId));
+			if (unifier == null) {
+				return false;
+			}
+
+			scratch.set(termId, unifier);
+			scratch.set(otherTermId, unifier);
+			Preconditions.checkArgument(scratch.merge(termId, otherTermId));
 		}
 
-		return termNodes;
+		return true;
 	}
 
 	@Override
@@ -52,7 +52,10 @@ public final class Conjunction {
 	private Homomorphism findHomomorphism(
 			Conjunction other,
 			Homomorphism partialHom,
-			int sourceIndex) {
+			int sourceIndex,
+			SearchEffort effort,
+			long budget) {
+		effort.maxDepth = Math.max(effort.maxDepth, sourceIndex);
 		if (sourceIndex == atoms.size()) {
 			return partialHom;
 		}
@@ -61,13 +64,26 @@ public final class Conjunction {
 
 		for (int targetIndex = 0; targetIndex < other.atoms.size(); targetIndex++) {
 			Atom target = other.atoms.get(targetIndex);
-			Homomorphism candidate = partialHom.extend(source, target);
+			if (!source.relation().equals(target.relation())) {
+				continue;
+			}
 
-			if (candidate != null) {
-				Homomorphism extension = findHomomorphism(other, candidate, sourceIndex + 1);
-				if (extension != null) {
+			if (effort.extendAttempts >= budget) {
+				effort.budgetExhausted = true;
+				return null;
+			}
+			effort.extendAttempts++;
+
+			Homomorphism candidate = partialHom.extend(source, target);
+			if (candidate == null) {
+				effort.failedAugments++;
+			} else {
+				Homomorphism extension
+						= findHomomorphism(other, candidate, sourceIndex + 1, effort, budget);
+				if (extension != null || effort.budgetExhausted) {
 					return extension;
 				}
+				effort.backtracks++;
 			}
 		}
 
@@ -101,7 +117,19 @@ public final class Conjunction {
 	 */
 	@Nullable
 	Homomorphism findHomomorphism(Conjunction other) {
-		return findHomomorphism(other, new Homomorphism(), 0);
+		return findHomomorphism(other, new SearchEffort(), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #findHomomorphism(Conjunction)}, but records the work that the search does
+	 * in {@code effort}, which should be new, and gives up once the search has made {@code budget}
+	 * attempts to extend a homomorphism. A search that gives up returns {@code null} and sets
+	 * {@code effort.budgetExhausted}, which tells it apart from a search that finished without
+	 * finding a homomorphism.
+	 */
+	@Nullable
+	Homomorphism findHomomorphism(Conjunction other, SearchEffort effort, long budget) {
+		return findHomomorphism(other, new Homomorphism(), 0, effort, budget);
 	}
 
 	public boolean isHomomorphicTo(Conjunction other) {
@@ -40,6 +40,13 @@ public final class Constant extends Term {
 		this.value = Preconditions.checkNotNull(value);
 	}
 
+	/**
+	 * Get the value of the constant, such as a {@code Long} or a {@code String}.
+	 */
+	public Object value() {
+		return value;
+	}
+
 	@Override
 	int unificationPriority() {
 		return UNIFICATION_PRIORITY;
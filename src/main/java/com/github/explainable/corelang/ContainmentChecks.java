@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.corelang;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide effort budget and counters for containment checks ({@link View#precedes}).
+ *
+ * <p>A check searches for a homomorphism between two views, which takes time exponential in the
+ * number of atoms in the worst case. To keep a pathological security view from stalling the
+ * queries that are checked against it, {@link #setEffortBudget} caps the number of attempts that
+ * a single check may make to extend a homomorphism. A check that runs out of budget reports that
+ * the view does <em>not</em> precede the other one, so authorization fails closed; such checks
+ * are counted and logged at {@link Level#WARNING} together with the two views.
+ */
+public final class ContainmentChecks {
+	private static final Logger logger = Logger.getLogger(ContainmentChecks.class.getName());
+
+	// The totals are striped across threads so that concurrent checks don't contend for the same
+	// counters. A stripe's counters are followed by enough unused slots that no two stripes share
+	// a cache line (64 bytes) however the array is aligned, and stripe 0 is left unused so that
+	// the first stripe in use doesn't share a line with the array's header either.
+	private static final int STRIPES = 16;
+
+	private static final int STRIPE_WIDTH = 16;
+
+	private static final int CHECKS = 0;
+
+	private static final int EXTEND_ATTEMPTS = 1;
+
+	private static final int FAILED_AUGMENTS = 2;
+
+	private static final int BACKTRACKS = 3;
+
+	private static final int BUDGET_EXCEEDED = 4;
+
+	private static final AtomicLongArray totals = new AtomicLongArray((STRIPES + 1) * STRIPE_WIDTH);
+
+	private static final AtomicInteger maxDepth = new AtomicInteger(0);
+
+	private static volatile long effortBudget = 0L;
+
+	private ContainmentChecks() {
+		throw new UnsupportedOperationException("Can't instantiate ContainmentChecks");
+	}
+
+	/**
+	 * Give up on containment checks that make more than {@code effortBudget} attempts to extend a
+	 * homomorphism, or never give up if it's {@code 0} (the default).
+	 */
+	public static void setEffortBudget(long effortBudget) {
+		Preconditions.checkArgument(effortBudget >= 0);
+		ContainmentChecks.effortBudget = effortBudget;
+	}
+
+	public static long effortBudget() {
+		return effortBudget;
+	}
+
+	/**
+	 * The maximum number of attempts that a check may make to extend a homomorphism.
+	 */
+	static long attemptLimit() {
+		long budget = effortBudget;
+		return (budget > 0) ? budget : Long.MAX_VALUE;
+	}
+
+	private static int stripeBase(int stripe) {
+		return (stripe + 1) * STRIPE_WIDTH;
+	}
+
+	/**
+	 * Add the effort of one check to the totals.
+	 */
+	static void record(SearchEffort effort) {
+		int base = stripeBase((int) (Thread.currentThread().getId() % STRIPES));
+		totals.incrementAndGet(base + CHECKS);
+		if (effort.extendAttempts != 0) {
+			totals.addAndGet(base + EXTEND_ATTEMPTS, effort.extendAttempts);
+		}
+		if (effort.failedAugments != 0) {
+			totals.addAndGet(base + FAILED_AUGMENTS, effort.failedAugments);
+		}
+		if (effort.backtracks != 0) {
+			totals.addAndGet(base + BACKTRACKS, effort.backtracks);
+		}
+		if (effort.budgetExceeded != 0) {
+			totals.addAndGet(base + BUDGET_EXCEEDED, effort.budgetExceeded);
+		}
+
+		int depth = maxDepth.get();
+		while (effort.maxDepth > depth && !maxDepth.compareAndSet(depth, effort.maxDepth)) {
+			depth = maxDepth.get();
+		}
+	}
+
+	static void logBudgetExceeded(View view, View otherView, long budget) {
+		if (logger.isLoggable(Level.WARNING)) {
+			logger.warning("Containment check exceeded its effort budget of " + budget
+					+ " attempts and was treated as failed: " + view + " <= " + otherView);
+		}
+	}
+
+	/**
+	 * The combined effort of all the containment checks that the process has made so far. Checks
+	 * that are in progress may be partially included.
+	 */
+	public static SearchEffort totalEffort() {
+		SearchEffort result = new SearchEffort();
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			int base = stripeBase(stripe);
+			result.checks += totals.get(base + CHECKS);
+			result.extendAttempts += totals.get(base + EXTEND_ATTEMPTS);
+			result.failedAugments += totals.get(base + FAILED_AUGMENTS);
+			result.backtracks += totals.get(base + BACKTRACKS);
+			result.budgetExceeded += totals.get(base + BUDGET_EXCEEDED);
+		}
+		result.maxDepth = maxDepth.get();
+		return result;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.corelang;
+
+import com.google.common.base.Objects;
+
+/**
+ * Counts the work that containment checks ({@link View#precedes}) do while they search for a
+ * homomorphism between two views. Pass one to {@link View#precedes(View, SearchEffort)} to measure
+ * individual checks, or see {@link ContainmentChecks#totalEffort()} for the checks made by the
+ * whole process. Instances aren't thread-safe.
+ */
+public final class SearchEffort {
+	long checks = 0L;
+
+	long extendAttempts = 0L;
+
+	long failedAugments = 0L;
+
+	long backtracks = 0L;
+
+	int maxDepth = 0;
+
+	long budgetExceeded = 0L;
+
+	// Set by a search that gave up because it ran out of budget. Unlike the counters, this only
+	// describes the latest search and isn't added to other instances.
+	boolean budgetExhausted = false;
+
+	public SearchEffort() {
+	}
+
+	/**
+	 * Number of containment checks.
+	 */
+	public long checks() {
+		return checks;
+	}
+
+	/**
+	 * Number of times that a search tried to extend a partial homomorphism by mapping an atom of
+	 * one view onto an atom of the other.
+	 */
+	public long extendAttempts() {
+		return extendAttempts;
+	}
+
+	/**
+	 * Number of attempts to extend a homomorphism between two atoms of the same relation that
+	 * failed because their terms couldn't be mapped onto each other consistently.
+	 */
+	public long failedAugments() {
+		return failedAugments;
+	}
+
+	/**
+	 * Number of times that a search mapped an atom and then had to undo the mapping because the
+	 * remaining atoms couldn't be mapped.
+	 */
+	public long backtracks() {
+		return backtracks;
+	}
+
+	/**
+	 * Largest number of atoms that a search had mapped at the same time.
+	 */
+	public int maxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Number of checks that gave up because they exceeded the {@link
+	 * ContainmentChecks#setEffortBudget effort budget}.
+	 */
+	public long budgetExceeded() {
+		return budgetExceeded;
+	}
+
+	void add(SearchEffort other) {
+		checks += other.checks;
+		extendAttempts += other.extendAttempts;
+		failedAugments += other.failedAugments;
+		backtracks += other.backtracks;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		budgetExceeded += other.budgetExceeded;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("checks", checks)
+				.add("extendAttempts", extendAttempts)
+				.add("failedAugments", failedAugments)
+				.add("backtracks", backtracks)
+				.add("maxDepth", maxDepth)
+				.add("budgetExceeded", budgetExceeded)
+				.toString();
+	}
+}
@@ -24,6 +24,7 @@
 
 package com.github.explainable.corelang;
 
+import com.github.explainable.trace.Tracing;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -32,6 +33,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -140,11 +142,43 @@ public final class View {
 
 	/**
 	 * Check whether the answer to {@code otherView} uniquely determines the current view's answer
-	 * on every possible dataset.
+	 * on every possible dataset. If the check exceeds the {@link ContainmentChecks#setEffortBudget
+	 * effort budget}, it gives up and returns {@code false}.
 	 */
 	public boolean precedes(View otherView) {
+		return precedes(otherView, null);
+	}
+
+	/**
+	 * Same as {@link #precedes(View)}, but also adds the work that the check does to {@code
+	 * effort} if it's non-null.
+	 */
+	public boolean precedes(View otherView, @Nullable SearchEffort effort) {
 		Preconditions.checkNotNull(otherView);
 
+		SearchEffort checkEffort = new SearchEffort();
+		checkEffort.checks = 1;
+		boolean result;
+
+		if (!Tracing.isActive()) {
+			result = precedes(otherView, checkEffort, ContainmentChecks.attemptLimit());
+		} else {
+			Tracing.begin("precedes", name + " <= " + otherView.name);
+			try {
+				result = precedes(otherView, checkEffort, ContainmentChecks.attemptLimit());
+			} finally {
+				Tracing.end("backtracks", checkEffort.backtracks);
+			}
+		}
+
+		ContainmentChecks.record(checkEffort);
+		if (effort != null) {
+			effort.add(checkEffort);
+		}
+		return result;
+	}
+
+	private boolean precedes(View otherView, SearchEffort effort, long budget) {
 		if (!relations.containsAll(otherView.relations)) {
 			return false;
 		}
@@ -157,7 +191,15 @@ public final class View {
 		Conjunction source = otherView.bodyAndCondition().apply(spec);
 		Conjunction target = bodyAndCondition();
 
-		return source.findHomomorphism(target) != null;
+		if (source.findHomomorphism(target, effort, budget) != null) {
+			return true;
+		}
+		if (effort.budgetExhausted) {
+			// Fail closed: the view might precede the other one, but we can't afford to find out.
+			effort.budgetExceeded = 1;
+			ContainmentChecks.logBudgetExceeded(this, otherView, budget);
+		}
+		return false;
 	}
 
 	// TODO: Unit test this method
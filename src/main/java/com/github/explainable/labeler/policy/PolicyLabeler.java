@@ -26,10 +26,14 @@ package com.github.explainable.labeler.policy;
 
 import com.github.explainable.corelang.Relation;
 import com.github.explainable.corelang.View;
+import com.github.explainable.trace.Tracing;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -38,6 +42,13 @@ import java.util.List;
 public final class PolicyLabeler {
 	private final Multimap<Relation, View> hashedSecurityViews;
 
+	/**
+	 * If non-null, the security views are taken from this catalog rather than from {@link
+	 * #hashedSecurityViews}.
+	 */
+	@Nullable
+	private final SecurityViewCatalog catalog;
+
 	private PolicyLabeler(List<View> securityViews) {
 		Preconditions.checkNotNull(securityViews);
 
@@ -45,16 +56,42 @@ public final class PolicyLabeler {
 		for (View securityView : securityViews) {
 			this.hashedSecurityViews.put(securityView.bodyRelation(), securityView);
 		}
+		this.catalog = null;
+	}
+
+	private PolicyLabeler(SecurityViewCatalog catalog) {
+		this.hashedSecurityViews = HashMultimap.create();
+		this.catalog = Preconditions.checkNotNull(catalog);
 	}
 
 	public static PolicyLabeler create(List<View> securityViews) {
 		return new PolicyLabeler(securityViews);
 	}
 
+	/**
+	 * Create a labeler whose security views come from a precompiled catalog. Views are decoded from
+	 * the catalog the first time that a query touches their relations.
+	 */
+	public static PolicyLabeler create(SecurityViewCatalog catalog) {
+		return new PolicyLabeler(catalog);
+	}
+
+	private Collection<View> candidates(Relation relation) {
+		return (catalog != null) ? catalog.viewsFor(relation) : hashedSecurityViews.get(relation);
+	}
+
+	/**
+	 * Get the security views that can appear in the policy for a query view whose body atom is
+	 * over {@code relation}.
+	 */
+	public ImmutableSet<View> securityViewsFor(Relation relation) {
+		return ImmutableSet.copyOf(candidates(Preconditions.checkNotNull(relation)));
+	}
+
 	public Policy label(View view) {
 		Policy result = Policy.FALSE;
 
-		for (View secView : hashedSecurityViews.get(view.bodyRelation())) {
+		for (View secView : candidates(view.bodyRelation())) {
 			if (view.precedes(secView)) {
 				result = result.or(Policy.of(secView));
 			}
@@ -66,8 +103,13 @@ public final class PolicyLabeler {
 	public Policy label(Iterable<View> views) {
 		Policy result = Policy.TRUE;
 
-		for (View view : views) {
-			result = result.and(label(view));
+		Tracing.begin("label");
+		try {
+			for (View view : views) {
+				result = result.and(label(view));
+			}
+		} finally {
+			Tracing.end();
 		}
 
 		return result;
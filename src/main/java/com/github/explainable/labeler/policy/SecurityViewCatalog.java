@@ -0,0 +1,737 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.labeler.policy;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Constant;
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.RelationImpl;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.Terms;
+import com.github.explainable.corelang.View;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precompiled, memory-mapped collection of security views. {@link #write} stores views that have
+ * already gone through SQL parsing and view extraction in a compact binary file, grouped by the
+ * relations of their body atoms; {@link #open} maps such a file into memory and only decodes the
+ * views for a relation the first time that they're requested. Loading a catalog therefore costs
+ * time proportional to the number of relations rather than the number or size of the views.
+ *
+ * <p>The file format (all integers big-endian) is
+ *
+ * <pre>
+ * int magic | int version | int stringCount | int relationCount | int viewCount
+ * int[stringCount] stringOffsets
+ * (int nameString, int arity, int firstView, int viewCount)[relationCount]
+ * int[viewCount] viewOffsets
+ * strings: (int byteCount, byte[byteCount] utf8)...
+ * views: (int nameString, int variableCount, int atomCount, atom...)...
+ * atom: int relation, byte copyKind, term[arity]
+ * term: byte kind, followed by an int variable number, an int, a long, a double's bits,
+ *       or an int string number depending on the kind
+ * </pre>
+ *
+ * <p>Variables are numbered within each view, so views that share variables in memory don't share
+ * them after a round trip. Relations are stored by name and resolved against the relations passed
+ * to {@link #open}, so materialized views use the same {@link Relation} objects as the views
+ * extracted from queries. Catalogs opened without a list of relations describe each relation by its
+ * name and arity alone, which is enough to label queries whose views were decoded the same way.
+ *
+ * <p>Views are numbered by their positions in {@link #views}. The numbering only depends on the
+ * contents of the file, so separate processes that open the same catalog agree on it.
+ *
+ * <p>Instances are thread-safe.
+ */
+public final class SecurityViewCatalog {
+	private static final int MAGIC = 0x45585643; // "EXVC"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 5 * 4;
+
+	private static final int RELATION_RECORD_BYTES = 4 * 4;
+
+	private static final byte COPY_SET = 0;
+
+	private static final byte COPY_MULTISET = 1;
+
+	private static final byte TERM_DIST = 0;
+
+	private static final byte TERM_SET = 1;
+
+	private static final byte TERM_MULTISET = 2;
+
+	private static final byte TERM_LONG = 3;
+
+	private static final byte TERM_INTEGER = 4;
+
+	private static final byte TERM_DOUBLE = 5;
+
+	private static final byte TERM_STRING = 6;
+
+	@Nullable
+	private final File file;
+
+	/**
+	 * Where the catalog came from, for error messages.
+	 */
+	private final Object source;
+
+	private final ByteBuffer buffer;
+
+	private final int stringCount;
+
+	private final int viewCount;
+
+	private final Relation[] relations;
+
+	private final int[] firstViews;
+
+	private final int[] relationViewCounts;
+
+	private final ImmutableMap<Relation, Integer> relationIndexes;
+
+	private final AtomicReferenceArray<ImmutableList<View>> materialized;
+
+	private SecurityViewCatalog(
+			@Nullable File file,
+			Object source,
+			ByteBuffer buffer,
+			int stringCount,
+			int viewCount,
+			Relation[] relations,
+			int[] firstViews,
+			int[] relationViewCounts) {
+		this.file = file;
+		this.source = source;
+		this.buffer = buffer;
+		this.stringCount = stringCount;
+		this.viewCount = viewCount;
+		this.relations = relations;
+		this.firstViews = firstViews;
+		this.relationViewCounts = relationViewCounts;
+
+		Map<Relation, Integer> indexes = Maps.newHashMap();
+		for (int i = 0; i < relations.length; i++) {
+			indexes.put(relations[i], i);
+		}
+		this.relationIndexes = ImmutableMap.copyOf(indexes);
+		this.materialized = new AtomicReferenceArray<ImmutableList<View>>(relations.length);
+	}
+
+	/**
+	 * Map a catalog file created by {@link #write} into memory. Only the header and the relation
+	 * table are read; views are decoded on demand.
+	 *
+	 * @param file the catalog file
+	 * @param knownRelations the relations that the catalog's views may refer to, such as the
+	 * relations of the schema used to compile them
+	 * @throws IOException if the file can't be read, isn't a catalog, was written by an
+	 * incompatible version, or refers to a relation that isn't in {@code knownRelations}
+	 */
+	public static SecurityViewCatalog open(File file, List<? extends Relation> knownRelations)
+			throws IOException {
+		Map<String, Relation> relationsByName = Maps.newHashMap();
+		for (Relation relation : knownRelations) {
+			relationsByName.put(relation.name(), relation);
+		}
+		return parse(file, file, map(file), relationsByName);
+	}
+
+	/**
+	 * Map a catalog file into memory without a schema. Each relation is replaced by a placeholder
+	 * with the same name and arity, and with columns named by their positions.
+	 */
+	public static SecurityViewCatalog open(File file) throws IOException {
+		return parse(file, file, map(file), null);
+	}
+
+	/**
+	 * Decode a catalog from the bytes returned by {@link #encode}, using placeholder relations like
+	 * {@link #open(File)}.
+	 */
+	public static SecurityViewCatalog wrap(byte[] bytes) throws IOException {
+		return parse(null, "<" + bytes.length + " bytes>", ByteBuffer.wrap(bytes), null);
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Catalog is too large: " + file);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// Mappings stay valid after the channel is closed.
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param relationsByName the relations that the catalog may refer to, or {@code null} to create
+	 * placeholders
+	 */
+	private static SecurityViewCatalog parse(
+			@Nullable File file,
+			Object source,
+			ByteBuffer buffer,
+			@Nullable Map<String, Relation> relationsByName) throws IOException {
+		try {
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a security view catalog: " + source);
+			}
+			if (buffer.getInt(4) != VERSION) {
+				throw new IOException("Unsupported catalog version " + buffer.getInt(4) + ": " + source);
+			}
+
+			int stringCount = buffer.getInt(8);
+			int relationCount = buffer.getInt(12);
+			int viewCount = buffer.getInt(16);
+
+			Relation[] relations = new Relation[relationCount];
+			int[] firstViews = new int[relationCount];
+			int[] relationViewCounts = new int[relationCount];
+
+			int position = HEADER_BYTES + 4 * stringCount;
+			for (int i = 0; i < relationCount; i++) {
+				String name = string(buffer, stringCount, buffer.getInt(position), source);
+				int arity = buffer.getInt(position + 4);
+
+				Relation relation = (relationsByName != null)
+						? relationsByName.get(name)
+						: placeholder(name, arity);
+				if (relation == null) {
+					throw new IOException("Catalog refers to unknown relation " + name + ": " + source);
+				}
+				if (relation.arity() != arity) {
+					throw new IOException("Catalog expects relation " + name + " to have arity "
+							+ arity + " but it has arity " + relation.arity() + ": " + source);
+				}
+
+				relations[i] = relation;
+				firstViews[i] = buffer.getInt(position + 8);
+				relationViewCounts[i] = buffer.getInt(position + 12);
+				position += RELATION_RECORD_BYTES;
+			}
+
+			return new SecurityViewCatalog(
+					file,
+					source,
+					buffer,
+					stringCount,
+					viewCount,
+					relations,
+					firstViews,
+					relationViewCounts);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Truncated catalog: " + source, e);
+		}
+	}
+
+	private static Relation placeholder(String name, int arity) throws IOException {
+		if (arity < 0) {
+			throw new IOException("Bad arity " + arity + " for relation " + name);
+		}
+
+		List<String> columnNames = Lists.newArrayListWithCapacity(arity);
+		for (int i = 1; i <= arity; i++) {
+			columnNames.add("column" + i);
+		}
+		return RelationImpl.create(name, columnNames);
+	}
+
+	/**
+	 * Write {@code views} to {@code file} in the format expected by {@link #open}. The constants in
+	 * the views must be {@code Long}s, {@code Integer}s, {@code Double}s or {@code String}s.
+	 */
+	public static void write(List<View> views, File file) throws IOException {
+		Files.write(encode(views), file);
+	}
+
+	/**
+	 * Encode {@code views} in the format of a catalog file, for example to send them to another
+	 * process that reads them with {@link #wrap}.
+	 */
+	public static byte[] encode(List<View> views) throws IOException {
+		// Group the views by body relation, keeping the original order within each group.
+		Map<Relation, List<View>> groups = new LinkedHashMap<Relation, List<View>>();
+		for (View view : views) {
+			List<View> group = groups.get(view.bodyRelation());
+			if (group == null) {
+				group = Lists.newArrayList();
+				groups.put(view.bodyRelation(), group);
+			}
+			group.add(view);
+		}
+
+		List<Relation> relationList = Lists.newArrayList();
+		Map<Relation, Integer> relationIds = Maps.newHashMap();
+		StringTable strings = new StringTable();
+
+		List<View> ordered = Lists.newArrayList();
+		for (Map.Entry<Relation, List<View>> group : groups.entrySet()) {
+			addRelation(group.getKey(), relationList, relationIds, strings);
+			ordered.addAll(group.getValue());
+		}
+
+		// Encode the views first, since they may add to the string and relation tables.
+		ByteArrayOutputStream viewBytes = new ByteArrayOutputStream();
+		DataOutputStream viewOut = new DataOutputStream(viewBytes);
+		int[] viewOffsets = new int[ordered.size()];
+		for (int i = 0; i < ordered.size(); i++) {
+			viewOffsets[i] = viewOut.size();
+			encodeView(ordered.get(i), viewOut, relationList, relationIds, strings);
+		}
+
+		ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		DataOutputStream stringOut = new DataOutputStream(stringBytes);
+		int[] stringOffsets = new int[strings.values.size()];
+		for (int i = 0; i < strings.values.size(); i++) {
+			stringOffsets[i] = stringOut.size();
+			byte[] utf8 = strings.values.get(i).getBytes(Charsets.UTF_8);
+			stringOut.writeInt(utf8.length);
+			stringOut.write(utf8);
+		}
+
+		int stringsStart = HEADER_BYTES
+				+ 4 * stringOffsets.length
+				+ RELATION_RECORD_BYTES * relationList.size()
+				+ 4 * viewOffsets.length;
+		int viewsStart = stringsStart + stringOut.size();
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream(viewsStart + viewOut.size());
+		DataOutputStream out = new DataOutputStream(result);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(stringOffsets.length);
+		out.writeInt(relationList.size());
+		out.writeInt(viewOffsets.length);
+
+		for (int offset : stringOffsets) {
+			out.writeInt(stringsStart + offset);
+		}
+
+		int firstView = 0;
+		for (Relation relation : relationList) {
+			List<View> group = groups.get(relation);
+			int groupSize = (group != null) ? group.size() : 0;
+
+			out.writeInt(strings.id(relation.name()));
+			out.writeInt(relation.arity());
+			out.writeInt(firstView);
+			out.writeInt(groupSize);
+			firstView += groupSize;
+		}
+
+		for (int offset : viewOffsets) {
+			out.writeInt(viewsStart + offset);
+		}
+
+		stringBytes.writeTo(out);
+		viewBytes.writeTo(out);
+		out.flush();
+
+		return result.toByteArray();
+	}
+
+	private static int addRelation(
+			Relation relation,
+			List<Relation> relationList,
+			Map<Relation, Integer> relationIds,
+			StringTable strings) {
+		Integer id = relationIds.get(relation);
+		if (id == null) {
+			id = relationList.size();
+			relationList.add(relation);
+			relationIds.put(relation, id);
+			strings.id(relation.name());
+		}
+		return id;
+	}
+
+	private static void encodeView(
+			View view,
+			DataOutputStream out,
+			List<Relation> relationList,
+			Map<Relation, Integer> relationIds,
+			StringTable strings) throws IOException {
+		List<Atom> atoms = Lists.newArrayList();
+		atoms.add(view.body());
+		atoms.addAll(view.conditions());
+
+		// Variables are compared by identity, so this numbers each distinct variable once.
+		Map<Term, Integer> variables = Maps.newHashMap();
+		for (Atom atom : atoms) {
+			for (Term term : atom.arguments()) {
+				if (term.type() != TermType.CONSTANT && !variables.containsKey(term)) {
+					variables.put(term, variables.size());
+				}
+			}
+		}
+
+		out.writeInt(strings.id(view.name()));
+		out.writeInt(variables.size());
+		out.writeInt(atoms.size());
+
+		for (Atom atom : atoms) {
+			out.writeInt(addRelation(atom.relation(), relationList, relationIds, strings));
+			out.writeByte((atom.getCopyVariable().type() == TermType.MULTISET_VARIABLE)
+					? COPY_MULTISET
+					: COPY_SET);
+
+			for (Term term : atom.arguments()) {
+				encodeTerm(term, out, variables, strings);
+			}
+		}
+	}
+
+	private static void encodeTerm(
+			Term term,
+			DataOutputStream out,
+			Map<Term, Integer> variables,
+			StringTable strings) throws IOException {
+		switch (term.type()) {
+			case DIST_VARIABLE:
+				out.writeByte(TERM_DIST);
+				out.writeInt(variables.get(term));
+				break;
+			case SET_VARIABLE:
+				out.writeByte(TERM_SET);
+				out.writeInt(variables.get(term));
+				break;
+			case MULTISET_VARIABLE:
+				out.writeByte(TERM_MULTISET);
+				out.writeInt(variables.get(term));
+				break;
+			case CONSTANT:
+				Object value = ((Constant) term).value();
+				if (value instanceof Long) {
+					out.writeByte(TERM_LONG);
+					out.writeLong((Long) value);
+				} else if (value instanceof Integer) {
+					out.writeByte(TERM_INTEGER);
+					out.writeInt((Integer) value);
+				} else if (value instanceof Double) {
+					out.writeByte(TERM_DOUBLE);
+					out.writeLong(Double.doubleToRawLongBits((Double) value));
+				} else if (value instanceof String) {
+					out.writeByte(TERM_STRING);
+					out.writeInt(strings.id((String) value));
+				} else {
+					throw new IllegalArgumentException("Can't store constant: " + term);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Can't store term: " + term);
+		}
+	}
+
+	/**
+	 * Interns the strings that appear in a catalog.
+	 */
+	private static final class StringTable {
+		final List<String> values = Lists.newArrayList();
+
+		private final Map<String, Integer> ids = Maps.newHashMap();
+
+		int id(String value) {
+			Integer id = ids.get(value);
+			if (id == null) {
+				id = values.size();
+				values.add(value);
+				ids.put(value, id);
+			}
+			return id;
+		}
+	}
+
+	private String string(int id) throws IOException {
+		return string(buffer, stringCount, id, source);
+	}
+
+	private static String string(ByteBuffer buffer, int stringCount, int id, Object source)
+			throws IOException {
+		if (id < 0 || id >= stringCount) {
+			throw new IOException("Bad string number " + id + ": " + source);
+		}
+
+		int offset = buffer.getInt(HEADER_BYTES + 4 * id);
+		int length = buffer.getInt(offset);
+		if (length < 0 || length > buffer.limit() - offset - 4) {
+			throw new IOException("Bad string length " + length + ": " + source);
+		}
+
+		byte[] utf8 = new byte[length];
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(offset + 4);
+		duplicate.get(utf8);
+		return new String(utf8, Charsets.UTF_8);
+	}
+
+	/**
+	 * The file that the catalog was mapped from, or {@code null} if it was decoded from bytes.
+	 */
+	@Nullable
+	public File file() {
+		return file;
+	}
+
+	/**
+	 * Total number of views in the catalog.
+	 */
+	public int viewCount() {
+		return viewCount;
+	}
+
+	/**
+	 * The relations that appear in the catalog's views.
+	 */
+	public ImmutableList<Relation> relations() {
+		return ImmutableList.copyOf(relations);
+	}
+
+	/**
+	 * Number of views whose body atoms are over {@code relation}, without decoding them.
+	 */
+	public int viewCount(Relation relation) {
+		Integer index = relationIndexes.get(relation);
+		return (index != null) ? relationViewCounts[index] : 0;
+	}
+
+	/**
+	 * Get the view whose position in {@link #views} is {@code index}, decoding the views for its
+	 * relation if necessary.
+	 */
+	public View view(int index) {
+		Preconditions.checkElementIndex(index, viewCount);
+
+		// Relations are stored in the order of their first views.
+		int low = 0;
+		int high = relations.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (firstViews[middle] <= index) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		// Skip over relations without views, which share their first view with the next relation.
+		while (index >= firstViews[low] + relationViewCounts[low]) {
+			low++;
+		}
+		return viewsFor(relations[low]).get(index - firstViews[low]);
+	}
+
+	/**
+	 * Get the position in {@link #views} of a view that was decoded from this catalog, or {@code -1}
+	 * if it wasn't. Takes time proportional to the number of views over the same relation.
+	 */
+	public int indexOf(View view) {
+		Integer relationIndex = relationIndexes.get(view.bodyRelation());
+		if (relationIndex == null) {
+			return -1;
+		}
+
+		ImmutableList<View> candidates = viewsFor(relations[relationIndex]);
+		for (int i = 0; i < candidates.size(); i++) {
+			// Views decoded from the catalog are never copied, so identity is enough.
+			if (candidates.get(i) == view) {
+				return firstViews[relationIndex] + i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the views whose body atoms are over {@code relation}, decoding them if this is the first
+	 * request for {@code relation}.
+	 *
+	 * @throws IllegalStateException if the views' encoding is corrupt
+	 */
+	public ImmutableList<View> viewsFor(Relation relation) {
+		Integer index = relationIndexes.get(relation);
+		if (index == null) {
+			return ImmutableList.of();
+		}
+
+		ImmutableList<View> result = materialized.get(index);
+		if (result == null) {
+			result = decodeViews(index);
+			// If two threads race, both decode the same views; keep whichever finished first.
+			if (!materialized.compareAndSet(index, null, result)) {
+				result = materialized.get(index);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Decode all the views in the catalog, grouped by the relations of their body atoms.
+	 */
+	public ImmutableList<View> views() {
+		ImmutableList.Builder<View> result = ImmutableList.builder();
+		for (Relation relation : relations) {
+			result.addAll(viewsFor(relation));
+		}
+		return result.build();
+	}
+
+	private ImmutableList<View> decodeViews(int relationIndex) {
+		ImmutableList.Builder<View> result = ImmutableList.builder();
+		int viewsStart = HEADER_BYTES + 4 * stringCount + RELATION_RECORD_BYTES * relations.length;
+
+		try {
+			for (int i = 0; i < relationViewCounts[relationIndex]; i++) {
+				int viewIndex = firstViews[relationIndex] + i;
+				if (viewIndex < 0 || viewIndex >= viewCount) {
+					throw new IOException("Bad view number " + viewIndex + ": " + source);
+				}
+				result.add(decodeView(buffer.getInt(viewsStart + 4 * viewIndex)));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalStateException("Truncated catalog: " + source, e);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalStateException("Truncated catalog: " + source, e);
+		}
+
+		return result.build();
+	}
+
+	private View decodeView(int offset) throws IOException {
+		ByteBuffer in = buffer.duplicate();
+		in.position(offset);
+
+		String name = string(in.getInt());
+		Term[] variables = new Term[in.getInt()];
+		int atomCount = in.getInt();
+		if (atomCount < 1) {
+			throw new IOException("View without a body atom at offset " + offset + ": " + source);
+		}
+
+		Atom body = null;
+		List<Atom> conditions = Lists.newArrayListWithCapacity(atomCount - 1);
+		for (int i = 0; i < atomCount; i++) {
+			int relationIndex = in.getInt();
+			if (relationIndex < 0 || relationIndex >= relations.length) {
+				throw new IOException("Bad relation number " + relationIndex + ": " + source);
+			}
+
+			Relation relation = relations[relationIndex];
+			byte copyKind = in.get();
+
+			Term[] arguments = new Term[relation.arity()];
+			for (int j = 0; j < arguments.length; j++) {
+				arguments[j] = decodeTerm(in, variables);
+			}
+
+			Atom atom = (copyKind == COPY_MULTISET)
+					? Atom.createMultisetAtom(relation, Arrays.asList(arguments))
+					: Atom.createSetAtom(relation, Arrays.asList(arguments));
+
+			if (i == 0) {
+				body = atom;
+			} else {
+				conditions.add(atom);
+			}
+		}
+
+		return View.convert(name, body, conditions);
+	}
+
+	private Term decodeTerm(ByteBuffer in, Term[] variables) throws IOException {
+		byte kind = in.get();
+		switch (kind) {
+			case TERM_DIST:
+				return variable(in.getInt(), TermType.DIST_VARIABLE, variables);
+			case TERM_SET:
+				return variable(in.getInt(), TermType.SET_VARIABLE, variables);
+			case TERM_MULTISET:
+				return variable(in.getInt(), TermType.MULTISET_VARIABLE, variables);
+			case TERM_LONG:
+				return Terms.constant(in.getLong());
+			case TERM_INTEGER:
+				return Terms.constant(in.getInt());
+			case TERM_DOUBLE:
+				return Terms.constant(Double.longBitsToDouble(in.getLong()));
+			case TERM_STRING:
+				return Terms.constant(string(in.getInt()));
+			default:
+				throw new IOException("Bad term kind " + kind + ": " + source);
+		}
+	}
+
+	private Term variable(int number, TermType type, Term[] variables) throws IOException {
+		if (number < 0 || number >= variables.length) {
+			throw new IOException("Bad variable number " + number + ": " + source);
+		}
+
+		if (variables[number] == null) {
+			variables[number] = Terms.variableWithType(type);
+		} else if (variables[number].type() != type) {
+			throw new IOException("Variable " + number + " has inconsistent types: " + source);
+		}
+
+		return variables[number];
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("source", source)
+				.add("relationCount", relations.length)
+				.add("viewCount", viewCount)
+				.toString();
+	}
+}
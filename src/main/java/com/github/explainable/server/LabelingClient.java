@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Blocking client for a {@link LabelingServer}. Requests can be pipelined: call {@link #send} any
+ * number of times, then {@link #flush}, then {@link #receive} once per request. Since the server
+ * may answer pipelined requests out of order, callers should match decisions to requests using
+ * {@link LabelingDecision#requestId}. For one request at a time, {@link #label} does all three
+ * steps.
+ *
+ * <p>Instances are not thread-safe; use one client per thread.
+ */
+public final class LabelingClient implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Socket socket;
+
+	private final OutputStream out;
+
+	private final DataInputStream in;
+
+	private int nextRequestId = 0;
+
+	private int outstanding = 0;
+
+	private LabelingClient(Socket socket) throws IOException {
+		this.socket = Preconditions.checkNotNull(socket);
+		this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+	}
+
+	public static LabelingClient connect(InetSocketAddress address) throws IOException {
+		Socket socket = new Socket();
+		socket.setTcpNoDelay(true);
+		socket.connect(address);
+		return new LabelingClient(socket);
+	}
+
+	/**
+	 * Queue a request to label {@code sql} under the security views whose {@code 1}-based
+	 * positions are {@code grantedViewIds}. The request may not reach the server until the next
+	 * call to {@link #flush}.
+	 *
+	 * @return the id that the server will use in its response
+	 */
+	public int send(String sql, int... grantedViewIds) throws IOException {
+		int requestId = nextRequestId++;
+		ByteBuffer frame = LabelingProtocol.encodeRequest(requestId, grantedViewIds, sql);
+		out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+		outstanding++;
+		return requestId;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Wait for the server's response to one of the requests that have been sent.
+	 */
+	public LabelingDecision receive() throws IOException {
+		Preconditions.checkState(outstanding > 0, "No outstanding requests");
+
+		int length = in.readInt();
+		if (length < 0 || length > LabelingProtocol.MAX_FRAME_LENGTH) {
+			throw new IOException("Bad response length: " + length);
+		}
+
+		byte[] body = new byte[length];
+		in.readFully(body);
+		outstanding--;
+		return LabelingProtocol.decodeResponse(body);
+	}
+
+	/**
+	 * Send a single request and wait for its response. There must not be any other outstanding
+	 * requests.
+	 */
+	public LabelingDecision label(String sql, int... grantedViewIds) throws IOException {
+		Preconditions.checkState(outstanding == 0, "Pipelined requests are still outstanding");
+		send(sql, grantedViewIds);
+		flush();
+		return receive();
+	}
+
+	/**
+	 * Number of requests that have been sent but not yet received.
+	 */
+	public int outstanding() {
+		return outstanding;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("remoteAddress", socket.getRemoteSocketAddress())
+				.add("outstanding", outstanding)
+				.toString();
+	}
+}
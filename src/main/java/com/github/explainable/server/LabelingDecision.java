@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Response from a {@link LabelingServer} to a single labeling request.
+ */
+public final class LabelingDecision {
+	/**
+	 * Whether the query may run under the granted security views, or why it couldn't be labeled.
+	 */
+	public enum Outcome {
+		ALLOW,
+		DENY,
+		ERROR;
+
+		byte code() {
+			return (byte) ordinal();
+		}
+
+		static Outcome forCode(byte code) {
+			Outcome[] values = values();
+			if (code < 0 || code >= values.length) {
+				throw new IllegalArgumentException("Unknown outcome code: " + code);
+			}
+			return values[code];
+		}
+	}
+
+	private final int requestId;
+
+	private final Outcome outcome;
+
+	private final String detail;
+
+	LabelingDecision(int requestId, Outcome outcome, String detail) {
+		this.requestId = requestId;
+		this.outcome = Preconditions.checkNotNull(outcome);
+		this.detail = Preconditions.checkNotNull(detail);
+	}
+
+	/**
+	 * Identifier of the request that this decision answers, as returned by {@link
+	 * LabelingClient#send}.
+	 */
+	public int requestId() {
+		return requestId;
+	}
+
+	public Outcome outcome() {
+		return outcome;
+	}
+
+	/**
+	 * For {@code ALLOW} and {@code DENY}, the query's policy in the format of {@link
+	 * com.github.explainable.batch.PolicyFormatter}. For {@code ERROR}, a description of the
+	 * problem.
+	 */
+	public String detail() {
+		return detail;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof LabelingDecision)) {
+			return false;
+		}
+		LabelingDecision other = (LabelingDecision) obj;
+		return requestId == other.requestId
+				&& outcome == other.outcome
+				&& detail.equals(other.detail);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(requestId, outcome, detail);
+	}
+
+	@Override
+	public String toString() {
+		return requestId + "\t" + outcome + "\t" + detail;
+	}
+}
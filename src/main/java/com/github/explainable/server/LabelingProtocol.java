@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link LabelingServer} and {@link LabelingClient}. Every message is a frame
+ * that starts with a four-byte big-endian length, which counts the bytes that follow it. Requests
+ * look like
+ *
+ * <pre>
+ * int length | int requestId | int grantCount | int[grantCount] grantedViewIds | byte[] sql
+ * </pre>
+ *
+ * <p>and responses look like
+ *
+ * <pre>
+ * int length | int requestId | byte outcome | byte[] detail
+ * </pre>
+ *
+ * <p>where strings are encoded in UTF-8 and granted view ids are {@code 1}-based positions in the
+ * server's list of security views. Clients may send any number of requests without waiting for the
+ * responses; the server may answer them in any order, and clients use the request ids to match
+ * responses to requests.
+ */
+final class LabelingProtocol {
+	/**
+	 * Largest frame that either side accepts, excluding the length field. Larger frames are treated
+	 * as protocol errors.
+	 */
+	static final int MAX_FRAME_LENGTH = 1 << 20;
+
+	static final int LENGTH_BYTES = 4;
+
+	/**
+	 * Shortest valid request frame, excluding the length field: a request id and a grant count.
+	 */
+	static final int MIN_REQUEST_LENGTH = 4 + 4;
+
+	private LabelingProtocol() {
+		throw new UnsupportedOperationException("Can't instantiate LabelingProtocol");
+	}
+
+	static ByteBuffer encodeRequest(int requestId, int[] grantedViewIds, String sql) {
+		byte[] sqlBytes = sql.getBytes(Charsets.UTF_8);
+		int length = 4 + 4 + 4 * grantedViewIds.length + sqlBytes.length;
+		checkLength(length);
+
+		ByteBuffer frame = ByteBuffer.allocate(LENGTH_BYTES + length);
+		frame.putInt(length).putInt(requestId).putInt(grantedViewIds.length);
+		for (int id : grantedViewIds) {
+			frame.putInt(id);
+		}
+		frame.put(sqlBytes);
+		frame.flip();
+		return frame;
+	}
+
+	static int responseLength(LabelingDecision decision) {
+		return LENGTH_BYTES + 4 + 1 + decision.detail().getBytes(Charsets.UTF_8).length;
+	}
+
+	/**
+	 * Return {@code decision}, or an error in its place if its response wouldn't fit in a frame.
+	 */
+	static LabelingDecision checkResponseLength(LabelingDecision decision) {
+		int length = responseLength(decision) - LENGTH_BYTES;
+		if (length <= MAX_FRAME_LENGTH) {
+			return decision;
+		}
+		return new LabelingDecision(decision.requestId(), LabelingDecision.Outcome.ERROR,
+				"Response too large: " + length + " bytes");
+	}
+
+	static void encodeResponse(LabelingDecision decision, ByteBuffer out) {
+		byte[] detailBytes = decision.detail().getBytes(Charsets.UTF_8);
+		out.putInt(4 + 1 + detailBytes.length)
+				.putInt(decision.requestId())
+				.put(decision.outcome().code())
+				.put(detailBytes);
+	}
+
+	/**
+	 * Decode the body of a response frame (everything after the length field).
+	 */
+	static LabelingDecision decodeResponse(byte[] body) {
+		ByteBuffer buffer = ByteBuffer.wrap(body);
+		int requestId = buffer.getInt();
+		LabelingDecision.Outcome outcome = LabelingDecision.Outcome.forCode(buffer.get());
+		String detail = new String(body, buffer.position(), buffer.remaining(), Charsets.UTF_8);
+		return new LabelingDecision(requestId, outcome, detail);
+	}
+
+	static void checkRequestLength(int length) {
+		if (length < MIN_REQUEST_LENGTH || length > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Request frame length out of range: " + length);
+		}
+	}
+
+	static void checkLength(int length) {
+		if (length < 0 || length > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Frame length out of range: " + length);
+		}
+	}
+}
@@ -0,0 +1,670 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.batch.PolicyFormatter;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.server.LabelingDecision.Outcome;
+import com.github.explainable.slowlog.SlowQueryLog;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.trace.QueryTracer;
+import com.github.explainable.trace.Tracing;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.parser.TokenMgrError;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running server that labels SQL queries for clients that can't embed the JVM. Clients talk to
+ * it over TCP using the framed protocol described in {@link LabelingProtocol}, usually through a
+ * {@link LabelingClient}.
+ *
+ * <p>A single I/O thread multiplexes all connections with non-blocking NIO. All the complete
+ * requests that arrive in one read from a connection are handed to the worker pool as a single
+ * batch, and the batch's responses are written back as a single buffer. Each connection may have
+ * at most {@code maxInFlight} requests being labeled at once; when it reaches the limit, the server
+ * stops reading from it until some responses have been produced, which pushes back on clients that
+ * send faster than the workers can keep up.
+ *
+ * <p>Query policies are cached by SQL text and shared by all connections, so repeated queries skip
+ * parsing and labeling entirely; the granted views are applied per request.
+ */
+public final class LabelingServer implements Closeable {
+	private static final int INITIAL_READ_BUFFER_SIZE = 1 << 16;
+
+	private final Schema schema;
+
+	private final ImmutableList<View> securityViews;
+
+	private final PolicyLabeler labeler;
+
+	private final PolicyFormatter formatter;
+
+	private final Cache<String, Policy> policies;
+
+	private final InetSocketAddress bindAddress;
+
+	private final int threadCount;
+
+	private final int maxInFlight;
+
+	private final long maxQueuedBytes;
+
+	@Nullable
+	private final QueryTracer tracer;
+
+	@Nullable
+	private final SlowQueryLog slowQueryLog;
+
+	private final ThreadLocal<ViewExtractionPipeline> pipelines
+			= new ThreadLocal<ViewExtractionPipeline>() {
+		@Override
+		protected ViewExtractionPipeline initialValue() {
+			return ViewExtractionPipeline.create(schema);
+		}
+	};
+
+	// Connections whose interest sets need to be recomputed by the I/O thread.
+	private final Queue<Connection> updatedConnections = new ConcurrentLinkedQueue<Connection>();
+
+	private ServerSocketChannel serverChannel = null;
+
+	private Selector selector = null;
+
+	private ExecutorService workers = null;
+
+	private Thread ioThread = null;
+
+	private volatile boolean running = false;
+
+	private LabelingServer(Builder builder) {
+		this.schema = builder.schema;
+		this.securityViews = builder.securityViews;
+		this.labeler = PolicyLabeler.create(securityViews);
+		this.formatter = PolicyFormatter.create(securityViews);
+		this.policies = CacheBuilder.newBuilder().maximumSize(builder.cacheSize).build();
+		this.bindAddress = new InetSocketAddress(builder.bindAddress, builder.port);
+		this.threadCount = builder.threadCount;
+		this.maxInFlight = builder.maxInFlight;
+		this.maxQueuedBytes = builder.maxQueuedBytes;
+		this.tracer = builder.tracer;
+		this.slowQueryLog = builder.slowQueryLog;
+	}
+
+	public static Builder builder(Schema schema, List<View> securityViews) {
+		return new Builder(schema, securityViews);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		private final ImmutableList<View> securityViews;
+
+		private InetAddress bindAddress = loopbackAddress();
+
+		private int port = 0;
+
+		private int threadCount = Runtime.getRuntime().availableProcessors();
+
+		private int maxInFlight = 256;
+
+		private long maxQueuedBytes = 1L << 22;
+
+		private long cacheSize = 100000;
+
+		@Nullable
+		private QueryTracer tracer = null;
+
+		@Nullable
+		private SlowQueryLog slowQueryLog = null;
+
+		private Builder(Schema schema, List<View> securityViews) {
+			this.schema = Preconditions.checkNotNull(schema);
+			this.securityViews = ImmutableList.copyOf(securityViews);
+		}
+
+		/**
+		 * Set the address to listen on. Defaults to the loopback address, since the server doesn't
+		 * authenticate its clients.
+		 */
+		public Builder setBindAddress(InetAddress bindAddress) {
+			this.bindAddress = Preconditions.checkNotNull(bindAddress);
+			return this;
+		}
+
+		/**
+		 * Set the port to listen on, or {@code 0} (the default) to pick any free port.
+		 */
+		public Builder setPort(int port) {
+			Preconditions.checkArgument(port >= 0 && port <= 0xFFFF);
+			this.port = port;
+			return this;
+		}
+
+		public Builder setThreadCount(int threadCount) {
+			Preconditions.checkArgument(threadCount > 0);
+			this.threadCount = threadCount;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of requests from a single connection that can be waiting for a
+		 * worker or being labeled at any time.
+		 */
+		public Builder setMaxInFlight(int maxInFlight) {
+			Preconditions.checkArgument(maxInFlight > 0);
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/**
+		 * Set the number of response bytes that can be waiting to be sent to a single connection
+		 * before the server stops reading its requests, so that a client that sends requests
+		 * faster than it reads the responses can't make the server run out of memory.
+		 */
+		public Builder setMaxQueuedBytes(long maxQueuedBytes) {
+			Preconditions.checkArgument(maxQueuedBytes > 0);
+			this.maxQueuedBytes = maxQueuedBytes;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of distinct queries whose policies are cached.
+		 */
+		public Builder setCacheSize(long cacheSize) {
+			Preconditions.checkArgument(cacheSize >= 0);
+			this.cacheSize = cacheSize;
+			return this;
+		}
+
+		/**
+		 * Trace a sample of the requests with {@code tracer}, or none if it's {@code null} (the
+		 * default). The server doesn't close the tracer.
+		 */
+		public Builder setTracer(@Nullable QueryTracer tracer) {
+			this.tracer = tracer;
+			return this;
+		}
+
+		/**
+		 * Log the requests that are slow to {@code slowQueryLog}, which should have been created
+		 * for the same schema and security views, or don't if it's {@code null} (the default). The
+		 * server doesn't close the log.
+		 */
+		public Builder setSlowQueryLog(@Nullable SlowQueryLog slowQueryLog) {
+			this.slowQueryLog = slowQueryLog;
+			return this;
+		}
+
+		public LabelingServer build() {
+			return new LabelingServer(this);
+		}
+	}
+
+	private static InetAddress loopbackAddress() {
+		try {
+			return InetAddress.getByName(null);
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException("No loopback address", e);
+		}
+	}
+
+	/**
+	 * Start listening for connections. Returns once the server socket is bound.
+	 */
+	public synchronized void start() throws IOException {
+		Preconditions.checkState(ioThread == null, "Server was already started");
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(bindAddress);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		workers = Executors.newFixedThreadPool(threadCount);
+		running = true;
+
+		ioThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "LabelingServer-io");
+		ioThread.start();
+	}
+
+	/**
+	 * Port that the server is listening on. Only valid after {@link #start}.
+	 */
+	public int port() {
+		Preconditions.checkState(serverChannel != null, "Server hasn't been started");
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stop accepting connections, close all open connections, and wait for the I/O and worker
+	 * threads to exit.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		selector.wakeup();
+		try {
+			ioThread.join();
+			workers.shutdownNow();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void serve() {
+		try {
+			while (running) {
+				selector.select();
+
+				Connection updated;
+				while ((updated = updatedConnections.poll()) != null) {
+					updated.updateInterest();
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) {
+						continue;
+					}
+
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.write();
+							}
+						} catch (IOException e) {
+							connection.close();
+						} catch (RuntimeException e) {
+							// Malformed frame, e.g., one that ends in the middle of a field. Only the
+							// connection that sent it is affected.
+							connection.close();
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Labeling server failed", e);
+		} catch (ClosedSelectorException e) {
+			// Shutting down
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			closeQuietly(serverChannel);
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// Nothing else we can do
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing else we can do
+		}
+	}
+
+	private static final class Request {
+		final int id;
+
+		final int[] grantedViewIds;
+
+		final String sql;
+
+		Request(int id, int[] grantedViewIds, String sql) {
+			this.id = id;
+			this.grantedViewIds = grantedViewIds;
+			this.sql = sql;
+		}
+	}
+
+	/**
+	 * State of one client connection. Fields without synchronization are only touched by the I/O
+	 * thread.
+	 */
+	private final class Connection {
+		private final SocketChannel channel;
+
+		private SelectionKey key = null;
+
+		private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+		private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+		private final AtomicInteger inFlight = new AtomicInteger(0);
+
+		// Number of bytes in writeQueue that haven't been written yet.
+		private final AtomicLong queuedBytes = new AtomicLong(0L);
+
+		private volatile boolean closed = false;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				close();
+				return;
+			}
+
+			readBuffer.flip();
+			List<Request> batch = Lists.newArrayList();
+			while (readBuffer.remaining() >= LabelingProtocol.LENGTH_BYTES) {
+				int length = readBuffer.getInt(readBuffer.position());
+				LabelingProtocol.checkRequestLength(length);
+
+				if (readBuffer.remaining() < LabelingProtocol.LENGTH_BYTES + length) {
+					if (readBuffer.capacity() < LabelingProtocol.LENGTH_BYTES + length) {
+						ByteBuffer larger = ByteBuffer.allocate(LabelingProtocol.LENGTH_BYTES + length);
+						larger.put(readBuffer);
+						larger.flip();
+						readBuffer = larger;
+					}
+					break;
+				}
+
+				readBuffer.getInt();
+				batch.add(decodeRequest(length));
+			}
+			readBuffer.compact();
+
+			if (!batch.isEmpty()) {
+				inFlight.addAndGet(batch.size());
+				submit(batch);
+			}
+			updateInterest();
+		}
+
+		private Request decodeRequest(int length) {
+			int end = readBuffer.position() + length;
+			if (end > readBuffer.limit()) {
+				throw new IllegalArgumentException("Incomplete request frame: " + length);
+			}
+			int id = readBuffer.getInt();
+			int grantCount = readBuffer.getInt();
+			if (grantCount < 0 || 4 + 4 + 4L * grantCount > length) {
+				throw new IllegalArgumentException("Bad grant count: " + grantCount);
+			}
+
+			int[] grantedViewIds = new int[grantCount];
+			for (int i = 0; i < grantCount; i++) {
+				grantedViewIds[i] = readBuffer.getInt();
+			}
+
+			byte[] sqlBytes = new byte[end - readBuffer.position()];
+			readBuffer.get(sqlBytes);
+			return new Request(id, grantedViewIds, new String(sqlBytes, Charsets.UTF_8));
+		}
+
+		private void submit(final List<Request> batch) {
+			try {
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						respond(batch);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Shutting down
+				close();
+			}
+		}
+
+		private void respond(List<Request> batch) {
+			try {
+				List<LabelingDecision> decisions = Lists.newArrayListWithCapacity(batch.size());
+				int size = 0;
+				for (Request request : batch) {
+					LabelingDecision decision = LabelingProtocol.checkResponseLength(label(request));
+					decisions.add(decision);
+					size += LabelingProtocol.responseLength(decision);
+				}
+
+				ByteBuffer responses = ByteBuffer.allocate(size);
+				for (LabelingDecision decision : decisions) {
+					LabelingProtocol.encodeResponse(decision, responses);
+				}
+				responses.flip();
+
+				queuedBytes.addAndGet(size);
+				writeQueue.add(responses);
+			} finally {
+				inFlight.addAndGet(-batch.size());
+				updatedConnections.add(this);
+				selector.wakeup();
+			}
+		}
+
+		void write() throws IOException {
+			ByteBuffer next;
+			while ((next = writeQueue.peek()) != null) {
+				queuedBytes.addAndGet(-channel.write(next));
+				if (next.hasRemaining()) {
+					break;
+				}
+				writeQueue.poll();
+			}
+			updateInterest();
+		}
+
+		void updateInterest() {
+			if (closed || !key.isValid()) {
+				return;
+			}
+
+			int ops = 0;
+			if (inFlight.get() < maxInFlight && queuedBytes.get() < maxQueuedBytes) {
+				ops |= SelectionKey.OP_READ;
+			}
+			if (!writeQueue.isEmpty()) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+			key.interestOps(ops);
+		}
+
+		void close() {
+			closed = true;
+			if (key != null) {
+				key.cancel();
+			}
+			closeQuietly(channel);
+		}
+	}
+
+	private LabelingDecision label(Request request) {
+		boolean traced = (tracer != null) && tracer.beginRequest("label", request.sql);
+		SlowQueryLog.Capture capture = (slowQueryLog != null) ? slowQueryLog.begin() : null;
+		LabelingDecision decision = null;
+		try {
+			decision = labelTraced(request, capture);
+			return decision;
+		} finally {
+			if (capture != null) {
+				// There's only no decision if labeling threw an Error, which the worker reports.
+				capture.end(request.sql, (decision != null) ? decision.detail() : "");
+			}
+			if (traced) {
+				tracer.endRequest();
+			}
+		}
+	}
+
+	private LabelingDecision labelTraced(Request request, @Nullable SlowQueryLog.Capture capture) {
+		ImmutableSet.Builder<View> granted = ImmutableSet.builder();
+		for (int id : request.grantedViewIds) {
+			if (id < 1 || id > securityViews.size()) {
+				return new LabelingDecision(request.id, Outcome.ERROR, "Unknown security view: " + id);
+			}
+			granted.add(securityViews.get(id - 1));
+		}
+
+		Policy policy = policies.getIfPresent(request.sql);
+		if (policy == null) {
+			try {
+				policy = computePolicy(request.sql, capture);
+			} catch (JSQLParserException e) {
+				return error(request.id, (e.getCause() != null) ? e.getCause() : e);
+			} catch (TokenMgrError e) {
+				return error(request.id, e);
+			} catch (SqlException e) {
+				return error(request.id, e);
+			} catch (RuntimeException e) {
+				// A bad query shouldn't take down a server that other clients depend on.
+				return error(request.id, e);
+			}
+			policies.put(request.sql, policy);
+		}
+
+		Tracing.begin("explain");
+		try {
+			Outcome outcome = policy.evaluate(granted.build()) ? Outcome.ALLOW : Outcome.DENY;
+			return new LabelingDecision(request.id, outcome, formatter.format(policy));
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	private Policy computePolicy(String sql, @Nullable SlowQueryLog.Capture capture)
+			throws JSQLParserException {
+		Statement statement;
+		Tracing.begin("parse");
+		try {
+			statement = new CCJSqlParserManager().parse(new StringReader(sql));
+		} finally {
+			Tracing.end();
+		}
+		if (!(statement instanceof Select)) {
+			throw new SqlException("Not a SELECT statement");
+		}
+
+		List<View> views = pipelines.get().execute((Select) statement);
+		if (capture != null) {
+			capture.setViews(views);
+		}
+
+		Policy policy = labeler.label(views);
+		Tracing.begin("simplify");
+		try {
+			return policy.simplify();
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	private static LabelingDecision error(int requestId, Throwable cause) {
+		String message = (cause.getMessage() != null)
+				? cause.getClass().getSimpleName() + ": " + cause.getMessage()
+				: cause.getClass().getSimpleName();
+		return new LabelingDecision(requestId, Outcome.ERROR, message);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("bindAddress", bindAddress)
+				.add("threadCount", threadCount)
+				.add("maxInFlight", maxInFlight)
+				.add("maxQueuedBytes", maxQueuedBytes)
+				.add("cachedPolicies", policies.size())
+				.toString();
+	}
+}
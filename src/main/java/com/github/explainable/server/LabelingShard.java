@@ -0,0 +1,353 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One shard of a sharded labeling deployment. A shard maps the shared {@link SecurityViewCatalog}
+ * but only decodes and labels with the security views over the relations that it owns according to
+ * the {@link ShardPlan}, so each shard's heap holds a fraction of the views. A {@link
+ * ShardCoordinator} extracts views from queries and sends each view to the shard that owns its
+ * relation over the protocol described in {@link ShardProtocol}; the shard answers with the
+ * policy of the views that it was sent.
+ *
+ * <p>Shards open the catalog without a schema, so a shard process only needs the catalog file. Each
+ * connection is served by its own thread, and requests on a connection are answered in order.
+ */
+public final class LabelingShard implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File catalogFile;
+
+	private final int shardIndex;
+
+	private final int shardCount;
+
+	private final InetSocketAddress bindAddress;
+
+	private final Set<Socket> connections = Sets.newSetFromMap(
+			new ConcurrentHashMap<Socket, Boolean>());
+
+	private SecurityViewCatalog catalog = null;
+
+	private ShardPlan plan = null;
+
+	private PolicyLabeler labeler = null;
+
+	private ServerSocket serverSocket = null;
+
+	private Thread acceptThread = null;
+
+	private volatile boolean running = false;
+
+	private LabelingShard(Builder builder) {
+		this.catalogFile = builder.catalogFile;
+		this.shardIndex = builder.shardIndex;
+		this.shardCount = builder.shardCount;
+		this.bindAddress = new InetSocketAddress(builder.bindAddress, builder.port);
+	}
+
+	/**
+	 * @param catalogFile the catalog shared by all shards and the coordinator
+	 * @param shardIndex this shard's number, from {@code 0} to {@code shardCount - 1}
+	 * @param shardCount total number of shards
+	 */
+	public static Builder builder(File catalogFile, int shardIndex, int shardCount) {
+		return new Builder(catalogFile, shardIndex, shardCount);
+	}
+
+	public static final class Builder {
+		private final File catalogFile;
+
+		private final int shardIndex;
+
+		private final int shardCount;
+
+		private InetAddress bindAddress = loopbackAddress();
+
+		private int port = 0;
+
+		private Builder(File catalogFile, int shardIndex, int shardCount) {
+			Preconditions.checkArgument(shardCount > 0);
+			Preconditions.checkElementIndex(shardIndex, shardCount);
+			this.catalogFile = Preconditions.checkNotNull(catalogFile);
+			this.shardIndex = shardIndex;
+			this.shardCount = shardCount;
+		}
+
+		/**
+		 * Set the address to listen on. Defaults to the loopback address, since shards don't
+		 * authenticate the coordinator.
+		 */
+		public Builder setBindAddress(InetAddress bindAddress) {
+			this.bindAddress = Preconditions.checkNotNull(bindAddress);
+			return this;
+		}
+
+		/**
+		 * Set the port to listen on, or {@code 0} (the default) to pick any free port.
+		 */
+		public Builder setPort(int port) {
+			Preconditions.checkArgument(port >= 0 && port <= 0xFFFF);
+			this.port = port;
+			return this;
+		}
+
+		public LabelingShard build() {
+			return new LabelingShard(this);
+		}
+	}
+
+	private static InetAddress loopbackAddress() {
+		try {
+			return InetAddress.getByName(null);
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException("No loopback address", e);
+		}
+	}
+
+	/**
+	 * Open the catalog, decode the security views that this shard owns, and start listening for
+	 * connections. Returns once the server socket is bound.
+	 */
+	public synchronized void start() throws IOException {
+		Preconditions.checkState(acceptThread == null, "Shard was already started");
+
+		catalog = SecurityViewCatalog.open(catalogFile);
+		plan = ShardPlan.create(catalog, shardCount);
+		for (Relation relation : catalog.relations()) {
+			// Decoding the views up front keeps the first requests fast.
+			if (plan.shardFor(relation) == shardIndex) {
+				catalog.viewsFor(relation);
+			}
+		}
+		labeler = PolicyLabeler.create(catalog);
+
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(bindAddress);
+		running = true;
+
+		acceptThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptConnections();
+			}
+		}, "LabelingShard-" + shardIndex + "-accept");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	/**
+	 * Port that the shard is listening on. Only valid after {@link #start}.
+	 */
+	public int port() {
+		Preconditions.checkState(serverSocket != null, "Shard hasn't been started");
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Number of security views owned by this shard. Only valid after {@link #start}.
+	 */
+	public int viewCount() {
+		Preconditions.checkState(plan != null, "Shard hasn't been started");
+		return plan.viewCount(shardIndex);
+	}
+
+	/**
+	 * Stop accepting connections and close all open connections.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		serverSocket.close();
+		for (Socket connection : connections) {
+			closeQuietly(connection);
+		}
+
+		try {
+			acceptThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void acceptConnections() {
+		try {
+			while (running) {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							serve(socket);
+						} catch (IOException e) {
+							// The coordinator went away or sent a malformed frame.
+						} finally {
+							connections.remove(socket);
+							closeQuietly(socket);
+						}
+					}
+				}, "LabelingShard-" + shardIndex + "-" + socket.getRemoteSocketAddress());
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch (SocketException e) {
+			// Shutting down
+		} catch (IOException e) {
+			throw new IllegalStateException("Labeling shard failed", e);
+		}
+	}
+
+	private void serve(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+
+		byte[] frame;
+		while ((frame = ShardProtocol.readFrame(in)) != null) {
+			int requestId = ByteBuffer.wrap(frame).getInt();
+
+			byte[] policy;
+			try {
+				policy = label(Arrays.copyOfRange(frame, 4, frame.length));
+			} catch (IOException e) {
+				ShardProtocol.writeResponse(
+						out, requestId, ShardProtocol.STATUS_ERROR, ShardProtocol.encodeError(e));
+				out.flush();
+				continue;
+			} catch (RuntimeException e) {
+				// A bad request shouldn't take down a shard that the coordinator depends on.
+				ShardProtocol.writeResponse(
+						out, requestId, ShardProtocol.STATUS_ERROR, ShardProtocol.encodeError(e));
+				out.flush();
+				continue;
+			}
+
+			ShardProtocol.writeResponse(out, requestId, ShardProtocol.STATUS_OK, policy);
+			out.flush();
+		}
+	}
+
+	private byte[] label(byte[] encodedViews) throws IOException {
+		ImmutableList<View> views = SecurityViewCatalog.wrap(encodedViews).views();
+		for (View view : views) {
+			if (plan.shardFor(view.bodyRelation()) != shardIndex) {
+				throw new IllegalArgumentException("Shard " + shardIndex + " doesn't own relation "
+						+ view.bodyRelation().name());
+			}
+		}
+
+		Policy policy = labeler.label(views).simplify();
+		return ShardProtocol.encodePolicy(policy, catalog);
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing else we can do
+		}
+	}
+
+	/**
+	 * Run a shard in its own process. The arguments are the catalog file, the shard's number, the
+	 * number of shards, and optionally the port to listen on. Once the shard is listening, it prints
+	 * {@code port <number>} on standard output; it shuts down when standard input is closed, so it
+	 * doesn't outlive the process that started it.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || args.length > 4) {
+			System.err.println("Usage: LabelingShard <catalog> <shardIndex> <shardCount> [port]");
+			System.exit(2);
+		}
+
+		Builder builder = builder(
+				new File(args[0]),
+				Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]));
+		if (args.length == 4) {
+			builder.setPort(Integer.parseInt(args[3]));
+		}
+
+		LabelingShard shard = builder.build();
+		shard.start();
+		System.out.println("port " + shard.port());
+		System.out.flush();
+
+		InputStream stdin = System.in;
+		byte[] ignored = new byte[1024];
+		while (stdin.read(ignored) >= 0) {
+			// Wait for the parent to close our standard input.
+		}
+		shard.close();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("catalogFile", catalogFile)
+				.add("shardIndex", shardIndex)
+				.add("shardCount", shardCount)
+				.add("bindAddress", bindAddress)
+				.toString();
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Front end of a sharded labeling deployment. The coordinator runs the {@link
+ * ViewExtractionPipeline} on each query, sends every extracted view to the {@link LabelingShard}
+ * that owns the view's relation, and combines the shards' partial policies by conjunction, the same
+ * way that {@link com.github.explainable.labeler.policy.PolicyLabeler#label(Iterable)} combines the
+ * policies of individual views. A query is sent to all the shards that it touches before any of
+ * their responses are read, so the shards label their parts of a query concurrently.
+ *
+ * <p>The coordinator maps the same catalog file as the shards, but only decodes the security views
+ * that appear in the shards' responses.
+ *
+ * <p>Instances are not thread-safe; use one coordinator per thread.
+ */
+public final class ShardCoordinator implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ViewExtractionPipeline pipeline;
+
+	private final CCJSqlParserManager parser = new CCJSqlParserManager();
+
+	private final SecurityViewCatalog catalog;
+
+	private final ShardPlan plan;
+
+	private final ImmutableList<Shard> shards;
+
+	private int nextRequestId = 0;
+
+	private ShardCoordinator(
+			Schema schema,
+			SecurityViewCatalog catalog,
+			ShardPlan plan,
+			List<Shard> shards) {
+		this.pipeline = ViewExtractionPipeline.create(schema);
+		this.catalog = catalog;
+		this.plan = plan;
+		this.shards = ImmutableList.copyOf(shards);
+	}
+
+	/**
+	 * Connect to a set of shards that serve {@code catalog}.
+	 *
+	 * @param schema the schema used to compile the catalog's views
+	 * @param catalog the catalog shared by the shards, opened with the relations of {@code schema}
+	 * @param shardAddresses the address of each shard, in order of shard number
+	 */
+	public static ShardCoordinator connect(
+			Schema schema,
+			SecurityViewCatalog catalog,
+			List<InetSocketAddress> shardAddresses) throws IOException {
+		Preconditions.checkArgument(!shardAddresses.isEmpty(), "No shards");
+
+		List<Shard> shards = Lists.newArrayList();
+		try {
+			for (InetSocketAddress address : shardAddresses) {
+				shards.add(new Shard(address));
+			}
+		} catch (IOException e) {
+			for (Shard shard : shards) {
+				shard.close();
+			}
+			throw e;
+		}
+
+		return new ShardCoordinator(
+				schema,
+				catalog,
+				ShardPlan.create(catalog, shardAddresses.size()),
+				shards);
+	}
+
+	/**
+	 * Connection to a single shard.
+	 */
+	private static final class Shard implements Closeable {
+		private final Socket socket;
+
+		private final DataOutputStream out;
+
+		private final DataInputStream in;
+
+		Shard(InetSocketAddress address) throws IOException {
+			this.socket = new Socket();
+			socket.setTcpNoDelay(true);
+			socket.connect(address);
+			this.out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			this.in = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Compute the policy for a SQL query.
+	 *
+	 * @throws SqlException if the query isn't a valid SELECT statement
+	 * @throws IOException if a shard can't be reached or fails to label part of the query
+	 */
+	public Policy label(String sql) throws JSQLParserException, IOException {
+		Statement statement = parser.parse(new StringReader(sql));
+		if (!(statement instanceof Select)) {
+			throw new SqlException("Not a SELECT statement");
+		}
+		return label(pipeline.execute((Select) statement));
+	}
+
+	/**
+	 * Compute the policy for a collection of views extracted from a query.
+	 *
+	 * @throws IOException if a shard can't be reached or fails to label part of the query
+	 */
+	public Policy label(Iterable<View> views) throws IOException {
+		List<List<View>> viewsByShard = Lists.newArrayList();
+		for (int i = 0; i < shards.size(); i++) {
+			viewsByShard.add(Lists.<View>newArrayList());
+		}
+
+		Policy result = Policy.TRUE;
+		for (View view : views) {
+			int shard = plan.shardFor(view.bodyRelation());
+			if (shard >= 0) {
+				viewsByShard.get(shard).add(view);
+			} else {
+				// No security view is over the relation, so nothing can grant access to the view.
+				result = result.and(Policy.FALSE);
+			}
+		}
+
+		int[] requestIds = new int[shards.size()];
+		for (int i = 0; i < shards.size(); i++) {
+			if (!viewsByShard.get(i).isEmpty()) {
+				requestIds[i] = nextRequestId++;
+				Shard shard = shards.get(i);
+				ShardProtocol.writeFrame(
+						shard.out, requestIds[i], SecurityViewCatalog.encode(viewsByShard.get(i)));
+				shard.out.flush();
+			}
+		}
+
+		// Read every shard's response even if an earlier one failed, so that none of them is left
+		// behind to be mistaken for the response to the next query.
+		IOException failure = null;
+		for (int i = 0; i < shards.size(); i++) {
+			if (!viewsByShard.get(i).isEmpty()) {
+				try {
+					result = result.and(receive(i, requestIds[i]));
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+		return result;
+	}
+
+	private Policy receive(int shardIndex, int requestId) throws IOException {
+		byte[] frame = ShardProtocol.readFrame(shards.get(shardIndex).in);
+		if (frame == null) {
+			throw new IOException("Shard " + shardIndex + " closed the connection");
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+		int responseId = buffer.getInt();
+		if (responseId != requestId) {
+			throw new IOException("Shard " + shardIndex + " answered request " + responseId
+					+ " instead of " + requestId);
+		}
+
+		byte status = buffer.get();
+		if (status != ShardProtocol.STATUS_OK) {
+			String message = new String(
+					frame, buffer.position(), buffer.remaining(), Charsets.UTF_8);
+			throw new IOException("Shard " + shardIndex + " failed: " + message);
+		}
+
+		Policy policy = ShardProtocol.decodePolicy(buffer, catalog);
+		if (buffer.hasRemaining()) {
+			throw new IOException("Shard " + shardIndex + " sent trailing bytes");
+		}
+		return policy;
+	}
+
+	public ShardPlan plan() {
+		return plan;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (Shard shard : shards) {
+			try {
+				shard.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("catalog", catalog)
+				.add("plan", plan)
+				.toString();
+	}
+}
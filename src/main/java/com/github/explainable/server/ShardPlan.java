@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assignment of the relations in a {@link SecurityViewCatalog} to shards. Every security view
+ * belongs to the shard that owns its body relation, so a query view can be labeled entirely by the
+ * shard that owns its own body relation.
+ *
+ * <p>Relations are assigned greedily, largest first, to the shard with the fewest views so far. The
+ * plan only depends on the relation names and view counts in the catalog, so a coordinator and its
+ * shards compute the same plan from the same catalog file even if they open it with different
+ * relation objects.
+ */
+public final class ShardPlan {
+	private final int shardCount;
+
+	private final ImmutableMap<String, Integer> shardsByRelation;
+
+	private final ImmutableList<ImmutableList<String>> relationsByShard;
+
+	private final int[] viewCounts;
+
+	private ShardPlan(
+			int shardCount,
+			Map<String, Integer> shardsByRelation,
+			List<ImmutableList<String>> relationsByShard,
+			int[] viewCounts) {
+		this.shardCount = shardCount;
+		this.shardsByRelation = ImmutableMap.copyOf(shardsByRelation);
+		this.relationsByShard = ImmutableList.copyOf(relationsByShard);
+		this.viewCounts = viewCounts;
+	}
+
+	public static ShardPlan create(final SecurityViewCatalog catalog, int shardCount) {
+		Preconditions.checkArgument(shardCount > 0);
+
+		List<Relation> relations = Lists.newArrayList(catalog.relations());
+
+		// The sort is stable, so ties keep the catalog's order.
+		Collections.sort(relations, new Comparator<Relation>() {
+			@Override
+			public int compare(Relation left, Relation right) {
+				int leftCount = catalog.viewCount(left);
+				int rightCount = catalog.viewCount(right);
+				return (leftCount > rightCount) ? -1 : ((leftCount == rightCount) ? 0 : 1);
+			}
+		});
+
+		Map<String, Integer> shardsByRelation = Maps.newHashMap();
+		List<ImmutableList.Builder<String>> builders = Lists.newArrayList();
+		for (int i = 0; i < shardCount; i++) {
+			builders.add(ImmutableList.<String>builder());
+		}
+
+		int[] viewCounts = new int[shardCount];
+		for (Relation relation : relations) {
+			int shard = 0;
+			for (int i = 1; i < shardCount; i++) {
+				if (viewCounts[i] < viewCounts[shard]) {
+					shard = i;
+				}
+			}
+
+			shardsByRelation.put(relation.name(), shard);
+			builders.get(shard).add(relation.name());
+			viewCounts[shard] += catalog.viewCount(relation);
+		}
+
+		List<ImmutableList<String>> relationsByShard = Lists.newArrayList();
+		for (ImmutableList.Builder<String> builder : builders) {
+			relationsByShard.add(builder.build());
+		}
+
+		return new ShardPlan(shardCount, shardsByRelation, relationsByShard, viewCounts);
+	}
+
+	public int shardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * Get the shard that owns {@code relation}, or {@code -1} if no security view is over it.
+	 */
+	public int shardFor(Relation relation) {
+		Integer shard = shardsByRelation.get(relation.name());
+		return (shard != null) ? shard : -1;
+	}
+
+	/**
+	 * Names of the relations owned by {@code shard}.
+	 */
+	public ImmutableList<String> relations(int shard) {
+		return relationsByShard.get(shard);
+	}
+
+	/**
+	 * Number of security views owned by {@code shard}.
+	 */
+	public int viewCount(int shard) {
+		Preconditions.checkElementIndex(shard, shardCount);
+		return viewCounts[shard];
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("shardCount", shardCount)
+				.add("relationsByShard", relationsByShard)
+				.toString();
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyMatcher;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link LabelingShard} and {@link ShardCoordinator}. Like {@link
+ * LabelingProtocol}, every message is a frame that starts with a four-byte big-endian length.
+ * Requests look like
+ *
+ * <pre>
+ * int length | int requestId | byte[] views
+ * </pre>
+ *
+ * <p>where {@code views} are the query views encoded by {@link SecurityViewCatalog#encode}, and
+ * responses look like
+ *
+ * <pre>
+ * int length | int requestId | byte status | byte[] policy or UTF-8 error message
+ * </pre>
+ *
+ * <p>Policies are written in prefix order: a tag byte for {@code false}, {@code true}, a security
+ * view (followed by the view's int position in the shared catalog), a conjunction or a disjunction
+ * (each followed by its two operands).
+ */
+final class ShardProtocol {
+	/**
+	 * Largest frame that either side accepts, excluding the length field.
+	 */
+	static final int MAX_FRAME_LENGTH = 1 << 26;
+
+	static final byte STATUS_OK = 0;
+
+	static final byte STATUS_ERROR = 1;
+
+	private static final byte POLICY_FALSE = 0;
+
+	private static final byte POLICY_TRUE = 1;
+
+	private static final byte POLICY_VIEW = 2;
+
+	private static final byte POLICY_AND = 3;
+
+	private static final byte POLICY_OR = 4;
+
+	private ShardProtocol() {
+		throw new UnsupportedOperationException("Can't instantiate ShardProtocol");
+	}
+
+	static void writeFrame(DataOutputStream out, int requestId, byte[] body) throws IOException {
+		checkLength(4 + body.length);
+		out.writeInt(4 + body.length);
+		out.writeInt(requestId);
+		out.write(body);
+	}
+
+	static void writeResponse(DataOutputStream out, int requestId, byte status, byte[] body)
+			throws IOException {
+		checkLength(4 + 1 + body.length);
+		out.writeInt(4 + 1 + body.length);
+		out.writeInt(requestId);
+		out.writeByte(status);
+		out.write(body);
+	}
+
+	/**
+	 * Read the body of the next frame (everything after the length field), or return {@code null}
+	 * if the stream ended cleanly between frames.
+	 */
+	static byte[] readFrame(DataInputStream in) throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+
+		int length = (first << 24) | (in.readUnsignedByte() << 16)
+				| (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+		if (length < 4 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Bad frame length: " + length);
+		}
+
+		byte[] body = new byte[length];
+		in.readFully(body);
+		return body;
+	}
+
+	static byte[] encodeError(Throwable cause) {
+		String message = (cause.getMessage() != null)
+				? cause.getClass().getSimpleName() + ": " + cause.getMessage()
+				: cause.getClass().getSimpleName();
+		return message.getBytes(Charsets.UTF_8);
+	}
+
+	/**
+	 * Encode {@code policy}, whose views must all come from {@code catalog}.
+	 */
+	static byte[] encodePolicy(Policy policy, final SecurityViewCatalog catalog) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			policy.match(new PolicyMatcher<Void>() {
+				@Override
+				public Void matchFalse() {
+					write(POLICY_FALSE);
+					return null;
+				}
+
+				@Override
+				public Void matchTrue() {
+					write(POLICY_TRUE);
+					return null;
+				}
+
+				@Override
+				public Void matchView(View view) {
+					int index = catalog.indexOf(view);
+					if (index < 0) {
+						throw new IllegalArgumentException("View isn't in the catalog: " + view);
+					}
+					write(POLICY_VIEW);
+					try {
+						out.writeInt(index);
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+					return null;
+				}
+
+				@Override
+				public Void matchAnd(Policy left, Policy right) {
+					write(POLICY_AND);
+					left.match(this);
+					right.match(this);
+					return null;
+				}
+
+				@Override
+				public Void matchOr(Policy left, Policy right) {
+					write(POLICY_OR);
+					left.match(this);
+					right.match(this);
+					return null;
+				}
+
+				private void write(byte tag) {
+					try {
+						out.writeByte(tag);
+					} catch (IOException e) {
+						// Writes to a ByteArrayOutputStream don't fail.
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		} finally {
+			out.close();
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode a policy written by {@link #encodePolicy}, resolving its views against {@code catalog}.
+	 */
+	static Policy decodePolicy(ByteBuffer in, SecurityViewCatalog catalog) throws IOException {
+		try {
+			byte tag = in.get();
+			switch (tag) {
+				case POLICY_FALSE:
+					return Policy.FALSE;
+				case POLICY_TRUE:
+					return Policy.TRUE;
+				case POLICY_VIEW:
+					int index = in.getInt();
+					if (index < 0 || index >= catalog.viewCount()) {
+						throw new IOException("Bad security view number: " + index);
+					}
+					return Policy.of(catalog.view(index));
+				case POLICY_AND:
+					Policy left = decodePolicy(in, catalog);
+					return left.and(decodePolicy(in, catalog));
+				case POLICY_OR:
+					Policy first = decodePolicy(in, catalog);
+					return first.or(decodePolicy(in, catalog));
+				default:
+					throw new IOException("Bad policy tag: " + tag);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated policy", e);
+		}
+	}
+
+	static void checkLength(int length) {
+		if (length < 0 || length > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Frame length out of range: " + length);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.slowlog;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.trace.StageRecorder;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times every labeling request and writes a {@link SlowQueryRecord} for each one that takes
+ * longer than a threshold, so that slow queries can be reproduced later with {@code
+ * SlowQueryReplay}. Callers bracket each request like this:
+ *
+ * <pre>
+ * SlowQueryLog.Capture capture = slowQueryLog.begin();
+ * try {
+ *   ...
+ *   capture.setViews(extractedViews);
+ *   ...
+ * } finally {
+ *   capture.end(sql, result);
+ * }
+ * </pre>
+ *
+ * The stage timings come from a {@link StageRecorder}. Records are written to a file that's
+ * rotated once it reaches a size limit, keeping a bounded number of old files. Logs are
+ * thread-safe.
+ */
+public final class SlowQueryLog implements Closeable {
+	private final File file;
+
+	private final long thresholdNanos;
+
+	private final String schemaFingerprint;
+
+	private final String securityViewsFingerprint;
+
+	private final StageRecorder recorder;
+
+	private final SlowQueryLogWriter writer;
+
+	private final AtomicLong loggedRequests = new AtomicLong();
+
+	private final AtomicLong failedWrites = new AtomicLong();
+
+	private SlowQueryLog(Builder builder) throws IOException {
+		this.file = builder.file;
+		this.thresholdNanos = builder.thresholdNanos;
+		this.schemaFingerprint = fingerprint(builder.schema);
+		this.securityViewsFingerprint = fingerprint(builder.securityViews);
+		this.writer = new SlowQueryLogWriter(file, builder.maxFileBytes, builder.maxFiles);
+		this.recorder = StageRecorder.open();
+	}
+
+	/**
+	 * Create a log for requests that are labeled against {@code schema} and {@code securityViews}.
+	 */
+	public static Builder builder(File file, Schema schema, List<View> securityViews) {
+		return new Builder(file, schema, securityViews);
+	}
+
+	public static final class Builder {
+		private final File file;
+
+		private final Schema schema;
+
+		private final ImmutableList<View> securityViews;
+
+		private long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(100L);
+
+		private long maxFileBytes = 16L << 20;
+
+		private int maxFiles = 4;
+
+		private Builder(File file, Schema schema, List<View> securityViews) {
+			this.file = Preconditions.checkNotNull(file);
+			this.schema = Preconditions.checkNotNull(schema);
+			this.securityViews = ImmutableList.copyOf(securityViews);
+		}
+
+		/**
+		 * Log the requests that take at least {@code threshold}. Defaults to 100 milliseconds.
+		 */
+		public Builder setThreshold(long threshold, TimeUnit unit) {
+			Preconditions.checkArgument(threshold >= 0);
+			this.thresholdNanos = unit.toNanos(threshold);
+			return this;
+		}
+
+		/**
+		 * Start a new file once the current one reaches {@code maxFileBytes}. Defaults to 16 MB.
+		 */
+		public Builder setMaxFileBytes(long maxFileBytes) {
+			Preconditions.checkArgument(maxFileBytes > 0);
+			this.maxFileBytes = maxFileBytes;
+			return this;
+		}
+
+		/**
+		 * Keep at most {@code maxFiles} files, including the current one. Defaults to {@code 4}.
+		 */
+		public Builder setMaxFiles(int maxFiles) {
+			Preconditions.checkArgument(maxFiles > 0);
+			this.maxFiles = maxFiles;
+			return this;
+		}
+
+		public SlowQueryLog build() throws IOException {
+			return new SlowQueryLog(this);
+		}
+	}
+
+	/**
+	 * Short, stable identifier of a schema, which changes whenever a table or column does.
+	 */
+	public static String fingerprint(Schema schema) {
+		return fingerprint(schema.toString());
+	}
+
+	/**
+	 * Short, stable identifier of a list of security views, which changes whenever one of the
+	 * views or their order does.
+	 */
+	public static String fingerprint(List<View> securityViews) {
+		return fingerprint(Joiner.on('\n').join(securityViews));
+	}
+
+	private static String fingerprint(String text) {
+		return Hashing.sha1().hashString(text, Charsets.UTF_8).toString().substring(0, 16);
+	}
+
+	/**
+	 * A request that's being timed.
+	 */
+	public final class Capture {
+		private final StageRecorder.Capture stages;
+
+		private ImmutableList<String> views = ImmutableList.of();
+
+		private Capture(StageRecorder.Capture stages) {
+			this.stages = stages;
+		}
+
+		/**
+		 * Set the views that were extracted from the query.
+		 */
+		public void setViews(List<View> views) {
+			ImmutableList.Builder<String> strings = ImmutableList.builder();
+			for (View view : views) {
+				strings.add(view.toString());
+			}
+			this.views = strings.build();
+		}
+
+		/**
+		 * Stop timing the request, and log it if it was slow. Failures to write the record are
+		 * counted rather than thrown, since logging mustn't break the requests it observes.
+		 *
+		 * @param sql the request's SQL text
+		 * @param result the outcome of the request, such as its formatted policy
+		 * @return the record that was logged, or {@code null} if the request was fast enough
+		 */
+		@Nullable
+		public SlowQueryRecord end(String sql, String result) {
+			long elapsedNanos = stages.end();
+			if (elapsedNanos < thresholdNanos) {
+				return null;
+			}
+
+			SlowQueryRecord record = new SlowQueryRecord(
+					System.currentTimeMillis(),
+					elapsedNanos,
+					sql,
+					schemaFingerprint,
+					securityViewsFingerprint,
+					stages.stages(),
+					views,
+					result);
+			try {
+				writer.write(record);
+				loggedRequests.incrementAndGet();
+			} catch (IOException e) {
+				failedWrites.incrementAndGet();
+			}
+			return record;
+		}
+	}
+
+	/**
+	 * Start timing a request on the current thread.
+	 */
+	public Capture begin() {
+		return new Capture(recorder.begin());
+	}
+
+	public String schemaFingerprint() {
+		return schemaFingerprint;
+	}
+
+	public String securityViewsFingerprint() {
+		return securityViewsFingerprint;
+	}
+
+	/**
+	 * Number of requests that were slow and have been written to the file.
+	 */
+	public long loggedRequests() {
+		return loggedRequests.get();
+	}
+
+	/**
+	 * Number of slow requests that couldn't be written to the file.
+	 */
+	public long failedWrites() {
+		return failedWrites.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		recorder.close();
+		writer.close();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("file", file)
+				.add("thresholdNanos", thresholdNanos)
+				.add("loggedRequests", loggedRequests)
+				.toString();
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.slowlog;
+
+import com.github.explainable.trace.StageTiming;
+import com.github.explainable.util.VarInts;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the files written by a {@link SlowQueryLog}. Instances are not thread-safe.
+ */
+public final class SlowQueryLogReader implements Closeable {
+	/**
+	 * Longest string and largest number of stages or views that we accept, to fail fast on corrupt
+	 * files.
+	 */
+	private static final int MAX_LENGTH = 1 << 26;
+
+	private final DataInputStream in;
+
+	private SlowQueryLogReader(InputStream in) {
+		this.in = new DataInputStream(in);
+	}
+
+	public static SlowQueryLogReader open(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return wrap(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read a log from {@code in}. Closing the reader closes the stream.
+	 */
+	public static SlowQueryLogReader wrap(InputStream in) throws IOException {
+		SlowQueryLogReader reader = new SlowQueryLogReader(Preconditions.checkNotNull(in));
+		if (reader.in.readInt() != SlowQueryLogWriter.MAGIC) {
+			throw new IOException("Not a slow query log");
+		}
+		byte version = reader.in.readByte();
+		if (version != SlowQueryLogWriter.VERSION) {
+			throw new IOException("Unsupported slow query log version: " + version);
+		}
+		return reader;
+	}
+
+	/**
+	 * Read the next record, or return {@code null} at the end of the log.
+	 *
+	 * @throws EOFException if the log ends in the middle of a record
+	 */
+	@Nullable
+	public SlowQueryRecord next() throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+
+		long timestampMillis = VarInts.readVarLong(in, first);
+		long elapsedNanos = VarInts.readVarLong(in);
+		String sql = VarInts.readString(in, MAX_LENGTH);
+		String schemaFingerprint = VarInts.readString(in, MAX_LENGTH);
+		String securityViewsFingerprint = VarInts.readString(in, MAX_LENGTH);
+
+		int stageCount = VarInts.readLength(in, MAX_LENGTH);
+		ImmutableList.Builder<StageTiming> stages = ImmutableList.builder();
+		for (int i = 0; i < stageCount; i++) {
+			String name = VarInts.readString(in, MAX_LENGTH);
+			stages.add(new StageTiming(name, VarInts.readVarLong(in)));
+		}
+
+		int viewCount = VarInts.readLength(in, MAX_LENGTH);
+		ImmutableList.Builder<String> views = ImmutableList.builder();
+		for (int i = 0; i < viewCount; i++) {
+			views.add(VarInts.readString(in, MAX_LENGTH));
+		}
+
+		String result = VarInts.readString(in, MAX_LENGTH);
+		return new SlowQueryRecord(timestampMillis, elapsedNanos, sql, schemaFingerprint,
+				securityViewsFingerprint, stages.build(), views.build(), result);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Read every record in {@code file}.
+	 */
+	public static ImmutableList<SlowQueryRecord> readAll(File file) throws IOException {
+		SlowQueryLogReader reader = open(file);
+		try {
+			ImmutableList.Builder<SlowQueryRecord> records = ImmutableList.builder();
+			SlowQueryRecord record;
+			while ((record = reader.next()) != null) {
+				records.add(record);
+			}
+			return records.build();
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.slowlog;
+
+import com.github.explainable.trace.StageTiming;
+import com.github.explainable.util.RollingFiles;
+import com.github.explainable.util.VarInts;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Appends {@link SlowQueryRecord}s to a binary log file, starting a new file once the current one
+ * grows past a size limit. Each file starts with the header
+ *
+ * <pre>
+ * int magic | byte version
+ * </pre>
+ *
+ * <p>and is followed by one entry per record:
+ *
+ * <pre>
+ * varlong timestampMillis | varlong elapsedNanos | string sql | string schemaFingerprint |
+ * string securityViewsFingerprint | varint stageCount | (string name | varlong nanos)* |
+ * varint viewCount | string* | string result
+ * </pre>
+ *
+ * <p>where varints and strings are encoded as described in {@link VarInts}. Old files are renamed
+ * as described in {@link RollingFiles}.
+ */
+final class SlowQueryLogWriter implements Closeable {
+	static final int MAGIC = 0x45585351;
+
+	static final byte VERSION = 1;
+
+	private final File file;
+
+	private final long maxFileBytes;
+
+	private final int maxFiles;
+
+	private CountingOutputStream counter = null;
+
+	private DataOutputStream out = null;
+
+	SlowQueryLogWriter(File file, long maxFileBytes, int maxFiles) throws IOException {
+		this.file = Preconditions.checkNotNull(file);
+		this.maxFileBytes = maxFileBytes;
+		this.maxFiles = maxFiles;
+
+		// Keep the records of earlier processes that used the same file.
+		if (file.length() > 0) {
+			RollingFiles.shift(file, maxFiles);
+		}
+		open();
+	}
+
+	private void open() throws IOException {
+		counter = new CountingOutputStream(new FileOutputStream(file));
+		out = new DataOutputStream(new BufferedOutputStream(counter));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.flush();
+	}
+
+	/**
+	 * Append {@code record} and flush it to the file, so that it survives the process crashing.
+	 */
+	synchronized void write(SlowQueryRecord record) throws IOException {
+		if (out == null) {
+			throw new IOException("Slow query log is closed: " + file);
+		}
+
+		VarInts.writeVarLong(out, record.timestampMillis());
+		VarInts.writeVarLong(out, record.elapsedNanos());
+		VarInts.writeString(out, record.sql());
+		VarInts.writeString(out, record.schemaFingerprint());
+		VarInts.writeString(out, record.securityViewsFingerprint());
+		VarInts.writeVarLong(out, record.stages().size());
+		for (StageTiming stage : record.stages()) {
+			VarInts.writeString(out, stage.name());
+			VarInts.writeVarLong(out, stage.nanos());
+		}
+		VarInts.writeVarLong(out, record.views().size());
+		for (String view : record.views()) {
+			VarInts.writeString(out, view);
+		}
+		VarInts.writeString(out, record.result());
+		out.flush();
+
+		if (counter.getCount() >= maxFileBytes) {
+			out.close();
+			RollingFiles.shift(file, maxFiles);
+			open();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			try {
+				out.close();
+			} finally {
+				out = null;
+				counter = null;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("file", file)
+				.add("maxFileBytes", maxFileBytes)
+				.add("maxFiles", maxFiles)
+				.toString();
+	}
+}
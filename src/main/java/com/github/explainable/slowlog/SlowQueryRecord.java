@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.slowlog;
+
+import com.github.explainable.trace.StageTiming;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Everything needed to reproduce a slow labeling request: the SQL text, fingerprints of the schema
+ * and security views it was labeled against, how long each stage took, the views that were
+ * extracted from the query, and the result.
+ */
+public final class SlowQueryRecord {
+	private final long timestampMillis;
+
+	private final long elapsedNanos;
+
+	private final String sql;
+
+	private final String schemaFingerprint;
+
+	private final String securityViewsFingerprint;
+
+	private final ImmutableList<StageTiming> stages;
+
+	private final ImmutableList<String> views;
+
+	private final String result;
+
+	public SlowQueryRecord(
+			long timestampMillis,
+			long elapsedNanos,
+			String sql,
+			String schemaFingerprint,
+			String securityViewsFingerprint,
+			List<StageTiming> stages,
+			List<String> views,
+			String result) {
+		Preconditions.checkArgument(elapsedNanos >= 0L);
+		this.timestampMillis = timestampMillis;
+		this.elapsedNanos = elapsedNanos;
+		this.sql = Preconditions.checkNotNull(sql);
+		this.schemaFingerprint = Preconditions.checkNotNull(schemaFingerprint);
+		this.securityViewsFingerprint = Preconditions.checkNotNull(securityViewsFingerprint);
+		this.stages = ImmutableList.copyOf(stages);
+		this.views = ImmutableList.copyOf(views);
+		this.result = Preconditions.checkNotNull(result);
+	}
+
+	/**
+	 * When the request finished, in milliseconds since the epoch.
+	 */
+	public long timestampMillis() {
+		return timestampMillis;
+	}
+
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public String sql() {
+		return sql;
+	}
+
+	/**
+	 * See {@link SlowQueryLog#fingerprint(com.github.explainable.sql.Schema)}.
+	 */
+	public String schemaFingerprint() {
+		return schemaFingerprint;
+	}
+
+	/**
+	 * See {@link SlowQueryLog#fingerprint(List)}.
+	 */
+	public String securityViewsFingerprint() {
+		return securityViewsFingerprint;
+	}
+
+	/**
+	 * How long each stage of the request took, in the order that the stages ended.
+	 */
+	public ImmutableList<StageTiming> stages() {
+		return stages;
+	}
+
+	/**
+	 * The views that were extracted from the query, or an empty list if the query's policy was
+	 * cached or the query couldn't be parsed.
+	 */
+	public ImmutableList<String> views() {
+		return views;
+	}
+
+	/**
+	 * The outcome of the request, such as the formatted policy or the error that labeling raised.
+	 */
+	public String result() {
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof SlowQueryRecord)) {
+			return false;
+		}
+		SlowQueryRecord other = (SlowQueryRecord) obj;
+		return timestampMillis == other.timestampMillis
+				&& elapsedNanos == other.elapsedNanos
+				&& sql.equals(other.sql)
+				&& schemaFingerprint.equals(other.schemaFingerprint)
+				&& securityViewsFingerprint.equals(other.securityViewsFingerprint)
+				&& stages.equals(other.stages)
+				&& views.equals(other.views)
+				&& result.equals(other.result);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(timestampMillis, elapsedNanos, sql, schemaFingerprint,
+				securityViewsFingerprint, stages, views, result);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("timestampMillis", timestampMillis)
+				.add("elapsedNanos", elapsedNanos)
+				.add("sql", sql)
+				.add("schemaFingerprint", schemaFingerprint)
+				.add("securityViewsFingerprint", securityViewsFingerprint)
+				.add("stages", stages)
+				.add("views", views)
+				.add("result", result)
+				.toString();
+	}
+}
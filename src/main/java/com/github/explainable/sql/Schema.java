@@ -26,7 +26,6 @@ package com.github.explainable.sql;
 
 import com.github.explainable.sql.table.TypedRelation;
 import com.google.common.base.Joiner;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
 import javax.annotation.Nullable;
@@ -36,8 +35,11 @@ import java.util.List;
 public final class Schema {
 	private final ImmutableList<TypedRelation> relations;
 
+	private final SchemaCatalog catalog;
+
 	private Schema(List<? extends TypedRelation> relations) {
 		this.relations = ImmutableList.copyOf(relations);
+		this.catalog = SchemaCatalog.create(this.relations);
 	}
 
 	public static Schema of(TypedRelation... relations) {
@@ -48,23 +50,22 @@ public final class Schema {
 		return new Schema(relations);
 	}
 
+	/**
+	 * Find a relation by name. See {@link SchemaCatalog#findRelation} for details.
+	 */
 	@Nullable
 	public TypedRelation findRelation(String tableName) {
-		Preconditions.checkNotNull(tableName);
-
-		for (TypedRelation relation : relations) {
-			if (relation.name().equals(tableName)) {
-				return relation;
-			}
-		}
-
-		return null;
+		return catalog.findRelation(tableName);
 	}
 
 	public ImmutableList<TypedRelation> relations() {
 		return relations;
 	}
 
+	public SchemaCatalog catalog() {
+		return catalog;
+	}
+
 	@Override
 	public String toString() {
 		return Joiner.on(System.getProperty("line.separator")).join(relations);
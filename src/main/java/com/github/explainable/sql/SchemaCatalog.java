@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql;
+
+import com.github.explainable.sql.table.TypedRelation;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable hash index over the relations of a {@link Schema}. Relation names are matched exactly
+ * if possible and case-insensitively otherwise, so that {@code FROM sailors} finds the relation
+ * {@code Sailors}. If several relations have names that differ only in case then only exact
+ * matches can find them.
+ */
+public final class SchemaCatalog {
+	private final ImmutableMap<String, TypedRelation> relationsByName;
+
+	private final ImmutableMap<String, TypedRelation> relationsByFoldedName;
+
+	private SchemaCatalog(List<? extends TypedRelation> relations) {
+		Map<String, TypedRelation> byName = Maps.newHashMap();
+		Map<String, TypedRelation> byFoldedName = Maps.newHashMap();
+		Set<String> ambiguousFoldedNames = Sets.newHashSet();
+
+		for (TypedRelation relation : relations) {
+			String name = relation.name();
+			if (byName.containsKey(name)) {
+				// Keep the first of several relations with the same name.
+				continue;
+			}
+			byName.put(name, relation);
+
+			String foldedName = fold(name);
+			if (byFoldedName.put(foldedName, relation) != null) {
+				ambiguousFoldedNames.add(foldedName);
+			}
+		}
+
+		byFoldedName.keySet().removeAll(ambiguousFoldedNames);
+		this.relationsByName = ImmutableMap.copyOf(byName);
+		this.relationsByFoldedName = ImmutableMap.copyOf(byFoldedName);
+	}
+
+	public static SchemaCatalog create(List<? extends TypedRelation> relations) {
+		return new SchemaCatalog(relations);
+	}
+
+	private static String fold(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Find the relation named {@code tableName}, or return {@code null} if the schema doesn't
+	 * contain a matching relation.
+	 */
+	@Nullable
+	public TypedRelation findRelation(String tableName) {
+		Preconditions.checkNotNull(tableName);
+
+		TypedRelation relation = relationsByName.get(tableName);
+		return (relation != null) ? relation : relationsByFoldedName.get(fold(tableName));
+	}
+
+	public int size() {
+		return relationsByName.size();
+	}
+
+	@Override
+	public String toString() {
+		return relationsByName.keySet().toString();
+	}
+}
@@ -114,6 +114,11 @@ public abstract class AbstractVisitor implements SqlExpressionVisitor, SqlSelect
 		defaultLeave(list, parent);
 	}
 
+	@Override
+	public void visit(SqlLiteralList list, SqlNode parent) {
+		defaultVisit(list, parent);
+	}
+
 	@Override
 	public SqlExpressionVisitor enter(SqlNegate negate, SqlNode parent) {
 		return defaultEnter(negate, parent);
@@ -32,6 +32,10 @@ import com.github.explainable.sql.table.AggTypeForColumn;
 import com.github.explainable.sql.type.Type;
 import com.github.explainable.sql.type.TypeSystem;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public final class SqlBinaryExpression extends SqlExpression {
 	private final BinaryOperator operator;
 
@@ -45,14 +49,34 @@ public final class SqlBinaryExpression extends SqlExpression {
 		this.operator = operator;
 	}
 
+	/**
+	 * Visit this expression and its children. Nested binary expressions are traversed with an
+	 * explicit stack rather than by recursion, so that long chains of {@code AND}/{@code OR} (or
+	 * arithmetic) operators can be visited without overflowing the call stack. The sequence of
+	 * {@code enter}, {@code leave} and {@code visit} calls is the same as for a recursive traversal.
+	 */
 	@Override
 	public void accept(SqlExpressionVisitor visitor, SqlNode parent) {
-		SqlExpressionVisitor childVisitor = visitor.enter(this, parent);
-		if (childVisitor != null) {
-			left.accept(childVisitor, this);
-			right.accept(childVisitor, this);
+		Deque<Frame> stack = new ArrayDeque<Frame>();
+		stack.push(new Frame(this, visitor, parent));
+
+		while (!stack.isEmpty()) {
+			Frame frame = stack.peek();
+			if (frame.childVisitor == null || frame.nextChild > 1) {
+				stack.pop();
+				frame.visitor.leave(frame.expr, frame.parent);
+				continue;
+			}
+
+			SqlExpression child = (frame.nextChild == 0) ? frame.expr.left : frame.expr.right;
+			frame.nextChild++;
+
+			if (child instanceof SqlBinaryExpression) {
+				stack.push(new Frame((SqlBinaryExpression) child, frame.childVisitor, frame.expr));
+			} else {
+				child.accept(frame.childVisitor, frame.expr);
+			}
 		}
-		visitor.leave(this, parent);
 	}
 
 	@Override
@@ -92,6 +116,30 @@ public final class SqlBinaryExpression extends SqlExpression {
 		return "(" + left.toString() + " " + operator + " " + right.toString() + ")";
 	}
 
+	/**
+	 * State of a single binary expression during an iterative traversal.
+	 */
+	private static final class Frame {
+		final SqlBinaryExpression expr;
+
+		final SqlExpressionVisitor visitor;
+
+		final SqlNode parent;
+
+		@Nullable
+		final SqlExpressionVisitor childVisitor;
+
+		int nextChild;
+
+		Frame(SqlBinaryExpression expr, SqlExpressionVisitor visitor, SqlNode parent) {
+			this.expr = expr;
+			this.visitor = visitor;
+			this.parent = parent;
+			this.childVisitor = visitor.enter(expr, parent);
+			this.nextChild = 0;
+		}
+	}
+
 	private enum BinaryOperatorType {
 		ARITHMETIC_OPERATOR {
 			@Override
@@ -63,6 +63,8 @@ public interface SqlExpressionVisitor {
 
 	void leave(SqlList list, SqlNode parent);
 
+	void visit(SqlLiteralList list, SqlNode parent);
+
 	@Nullable
 	SqlExpressionVisitor enter(SqlNegate negate, SqlNode parent);
 
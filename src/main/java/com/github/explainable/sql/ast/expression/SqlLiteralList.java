@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.ast.expression;
+
+import com.github.explainable.sql.aggtype.AggType;
+import com.github.explainable.sql.aggtype.AggTypeSystem;
+import com.github.explainable.sql.ast.SqlNode;
+import com.github.explainable.sql.constraint.ConstantArg;
+import com.github.explainable.sql.constraint.EqualityArg;
+import com.github.explainable.sql.table.AggTypeForColumn;
+import com.github.explainable.sql.type.PrimitiveType;
+import com.github.explainable.sql.type.RowCount;
+import com.github.explainable.sql.type.Type;
+import com.github.explainable.sql.type.TypeSystem;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compact replacement for a {@link SqlList} whose elements are all integer literals or all string
+ * literals, as in {@code S.sid IN (4, 5, 6)}. The literals are stored in a single array instead of
+ * one AST node per element, and the node is a leaf as far as visitors are concerned, so the
+ * pipeline passes handle it in constant time no matter how long the list is.
+ */
+public final class SqlLiteralList extends SqlExpression {
+	@Nullable
+	private final long[] longValues;
+
+	@Nullable
+	private final String[] stringValues;
+
+	private SqlLiteralList(@Nullable long[] longValues, @Nullable String[] stringValues) {
+		Preconditions.checkArgument((longValues == null) != (stringValues == null));
+		this.longValues = longValues;
+		this.stringValues = stringValues;
+		Preconditions.checkArgument(size() > 0);
+	}
+
+	/**
+	 * Create a list of integer literals. The array is not copied, so it shouldn't be modified by
+	 * the caller.
+	 */
+	public static SqlLiteralList ofLongs(long[] values) {
+		return new SqlLiteralList(Preconditions.checkNotNull(values), null);
+	}
+
+	/**
+	 * Create a list of string literals. The array is not copied, so it shouldn't be modified by the
+	 * caller.
+	 */
+	public static SqlLiteralList ofStrings(String[] values) {
+		return new SqlLiteralList(null, Preconditions.checkNotNull(values));
+	}
+
+	@Override
+	public void accept(SqlExpressionVisitor visitor, SqlNode parent) {
+		visitor.visit(this, parent);
+	}
+
+	@Override
+	protected AggType aggTypeCheckImpl(AggTypeForColumn typeForColumn) {
+		return AggTypeSystem.aggOrNot();
+	}
+
+	@Override
+	protected Type typeCheckImpl() {
+		PrimitiveType elementType = isNumeric() ? TypeSystem.numeric() : TypeSystem.string();
+		RowCount rowCount = (size() == 1) ? RowCount.SINGLE_ROW : RowCount.UNLIMITED_ROWS;
+
+		return TypeSystem.schemaList(rowCount, elementType);
+	}
+
+	@Nullable
+	@Override
+	public EqualityArg equalityArg() {
+		return (size() == 1) ? ConstantArg.of(valueAt(0)) : null;
+	}
+
+	public int size() {
+		return (longValues != null) ? longValues.length : stringValues.length;
+	}
+
+	/**
+	 * Determine whether the list contains integers (as opposed to strings).
+	 */
+	public boolean isNumeric() {
+		return longValues != null;
+	}
+
+	/**
+	 * Get the ith literal in the list, boxed in the same way as the value of a {@link
+	 * SqlNumericConstant} or {@link SqlStringConstant}.
+	 */
+	public Object valueAt(int index) {
+		return (longValues != null) ? Long.valueOf(longValues[index]) : stringValues[index];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("(");
+
+		for (int i = 0; i < size(); i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+
+			if (longValues != null) {
+				builder.append(longValues[i]);
+			} else {
+				builder.append('\'').append(stringValues[i]).append('\'');
+			}
+		}
+
+		builder.append(")");
+		return builder.toString();
+	}
+}
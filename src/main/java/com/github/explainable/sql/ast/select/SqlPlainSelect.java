@@ -139,7 +139,11 @@ public final class SqlPlainSelect extends SqlSelectStmt {
 		return TypeSystem.schemaTable(rowCount(), outputTypes.columnTypes());
 	}
 
-	private RowCount rowCount() {
+	/**
+	 * Determine how many rows the query can return. Unlike {@code getType().rowCount()}, this method
+	 * only requires the node to have been aggregate type-checked.
+	 */
+	public RowCount rowCount() {
 		RowCount rowCount = RowCount.UNLIMITED_ROWS;
 
 		if (groupBy == null && getAggType().equals(AggTypeSystem.agg())) {
@@ -73,6 +73,18 @@ public final class SqlSetOperation extends SqlSelectStmt {
 		return resultType(left.getType(), right.getType());
 	}
 
+	public SqlSelectStmt left() {
+		return left;
+	}
+
+	public SqlSelectStmt right() {
+		return right;
+	}
+
+	public SqlSetOperationKind kind() {
+		return kind;
+	}
+
 	@Override
 	public ImmutableList<String> columnNames() {
 		return left.columnNames();
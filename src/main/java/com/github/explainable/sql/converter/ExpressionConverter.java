@@ -50,6 +50,8 @@ import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.SubSelect;
 
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 import static com.github.explainable.sql.converter.ConverterUtils.checkUnsupportedFeature;
@@ -206,20 +208,55 @@ final class ExpressionConverter implements ExpressionVisitor {
 
 	@Override
 	public void visit(AndExpression andExpression) {
-		checkUnsupportedFlag(andExpression.isNot(), "NOT AND");
-		result = new SqlBinaryExpression(
-				convert(andExpression.getLeftExpression()),
-				convert(andExpression.getRightExpression()),
-				BinaryOperator.AND);
+		result = convertChain(andExpression, BinaryOperator.AND);
 	}
 
 	@Override
 	public void visit(OrExpression orExpression) {
-		checkUnsupportedFlag(orExpression.isNot(), "NOT OR");
-		result = new SqlBinaryExpression(
-				convert(orExpression.getLeftExpression()),
-				convert(orExpression.getRightExpression()),
-				BinaryOperator.OR);
+		result = convertChain(orExpression, BinaryOperator.OR);
+	}
+
+	/**
+	 * Convert a chain of {@code AND} or {@code OR} expressions. The parser produces a left-deep tree
+	 * for a chain like {@code a AND b AND c AND ...}, which can be thousands of levels deep for
+	 * machine-generated queries. We collect the operands of the chain with an explicit stack and
+	 * rebuild them as a balanced tree, so that neither the conversion nor later passes over the
+	 * AST need stack space proportional to the length of the chain. This is safe because both
+	 * operators are associative.
+	 */
+	private SqlExpression convertChain(BinaryExpression chain, BinaryOperator operator) {
+		Class<? extends BinaryExpression> chainClass = chain.getClass();
+		String notMessage = "NOT " + operator;
+
+		List<SqlExpression> operands = Lists.newArrayList();
+		Deque<Expression> pending = new ArrayDeque<Expression>();
+		pending.push(chain);
+		while (!pending.isEmpty()) {
+			Expression next = pending.pop();
+			if (next.getClass() == chainClass) {
+				BinaryExpression link = (BinaryExpression) next;
+				checkUnsupportedFlag(link.isNot(), notMessage);
+				pending.push(link.getRightExpression());
+				pending.push(link.getLeftExpression());
+			} else {
+				operands.add(convert(next));
+			}
+		}
+
+		// Combine adjacent operands pairwise until a single expression remains. For chains of up to
+		// three operands this produces the same left-associative tree as the parser.
+		while (operands.size() > 1) {
+			List<SqlExpression> combined = Lists.newArrayListWithCapacity((operands.size() + 1) / 2);
+			for (int i = 0; i + 1 < operands.size(); i += 2) {
+				combined.add(new SqlBinaryExpression(operands.get(i), operands.get(i + 1), operator));
+			}
+			if (operands.size() % 2 != 0) {
+				combined.add(operands.get(operands.size() - 1));
+			}
+			operands = combined;
+		}
+
+		return operands.get(0);
 	}
 
 	@Override
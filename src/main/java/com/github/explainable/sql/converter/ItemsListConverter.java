@@ -27,12 +27,15 @@ package com.github.explainable.sql.converter;
 import com.github.explainable.sql.SqlException;
 import com.github.explainable.sql.ast.expression.SqlExpression;
 import com.github.explainable.sql.ast.expression.SqlList;
+import com.github.explainable.sql.ast.expression.SqlLiteralList;
 import com.github.explainable.sql.ast.expression.SqlSubSelect;
 import com.github.explainable.sql.ast.select.SqlSelectStmt;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.StringValue;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.expression.operators.relational.ItemsList;
 import net.sf.jsqlparser.expression.operators.relational.ItemsListVisitor;
@@ -80,15 +83,66 @@ final class ItemsListConverter implements ItemsListVisitor {
 
 	@Override
 	public void visit(ExpressionList expressionList) {
-		List<SqlExpression> convertedExpressions = Lists.newArrayList();
+		List<Expression> expressions = expressionList.getExpressions();
 
-		for (Expression expression : expressionList.getExpressions()) {
+		SqlExpression literals = convertLiterals(expressions);
+		if (literals != null) {
+			result = literals;
+			return;
+		}
+
+		List<SqlExpression> convertedExpressions = Lists.newArrayListWithCapacity(expressions.size());
+
+		for (Expression expression : expressions) {
 			convertedExpressions.add(master.convert(expression));
 		}
 
 		result = new SqlList(convertedExpressions);
 	}
 
+	/**
+	 * Convert a list of expressions to a {@link SqlLiteralList} if they're either all integer
+	 * literals or all string literals.
+	 *
+	 * @return the converted list, or {@code null} if the expressions can't be stored compactly
+	 */
+	@Nullable
+	private static SqlExpression convertLiterals(List<Expression> expressions) {
+		if (expressions.isEmpty()) {
+			return null;
+		}
+
+		if (expressions.get(0) instanceof LongValue) {
+			long[] values = new long[expressions.size()];
+
+			for (int i = 0; i < values.length; i++) {
+				Expression expression = expressions.get(i);
+				if (!(expression instanceof LongValue)) {
+					return null;
+				}
+				values[i] = ((LongValue) expression).getValue();
+			}
+
+			return SqlLiteralList.ofLongs(values);
+		}
+
+		if (expressions.get(0) instanceof StringValue) {
+			String[] values = new String[expressions.size()];
+
+			for (int i = 0; i < values.length; i++) {
+				Expression expression = expressions.get(i);
+				if (!(expression instanceof StringValue)) {
+					return null;
+				}
+				values[i] = ((StringValue) expression).getValue();
+			}
+
+			return SqlLiteralList.ofStrings(values);
+		}
+
+		return null;
+	}
+
 	@Override
 	public void visit(MultiExpressionList multiExpressionList) {
 		throw new SqlException("Unsupported Feature: MultiExpressionList");
@@ -34,7 +34,9 @@ import java.lang.annotation.Target;
  * Annotation that's used to model dependencies between different pipeline stages. If {@link
  * TransformationPass} subclass X must be run before subclass Y in the pipeline then Y should be
  * annotated with {@code @DependsOn(X.class)}. The the value associated with the annotation can
- * either be a single dependency or a list of dependencies.
+ * either be a single dependency or a list of dependencies. {@link OutputPass} subclasses can be
+ * annotated in the same way; {@link PipelineBuilder} uses the annotations on the output stage to
+ * decide which transformations actually need to run.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
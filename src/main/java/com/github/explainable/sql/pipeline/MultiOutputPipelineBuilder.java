@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Variant of {@link PipelineBuilder} for pipelines with several output stages. The resulting
+ * pipeline converts each query once, runs the transformations needed by any of its outputs, and
+ * then runs the output stages in the order in which they were added. Output stages see the AST
+ * after all the earlier output stages have run, so they shouldn't modify it in ways that would
+ * confuse one another.
+ */
+public final class MultiOutputPipelineBuilder {
+	private final List<TransformationPass> transformations;
+
+	private final Set<Class<? extends TransformationPass>> transformationClasses;
+
+	private final List<OutputKey<?>> outputKeys;
+
+	private final List<OutputPass<?>> outputs;
+
+	private final Set<String> outputNames;
+
+	private boolean trustedInput;
+
+	private MultiOutputPipelineBuilder() {
+		this.transformations = Lists.newArrayList();
+		this.transformationClasses = Sets.newHashSet();
+		this.outputKeys = Lists.newArrayList();
+		this.outputs = Lists.newArrayList();
+		this.outputNames = Sets.newHashSet();
+		this.trustedInput = false;
+	}
+
+	public static MultiOutputPipelineBuilder create() {
+		return new MultiOutputPipelineBuilder();
+	}
+
+	public MultiOutputPipelineBuilder addTransformation(TransformationPass stage) {
+		if (!outputs.isEmpty()) {
+			throw new UnsupportedOperationException(
+					"Cannot add transformation stages after the output stages");
+		}
+
+		StageDependencies.verify(stage.getClass(), transformationClasses);
+
+		transformations.add(stage);
+		transformationClasses.add(stage.getClass());
+		return this;
+	}
+
+	public <T> MultiOutputPipelineBuilder addOutput(OutputKey<T> key, OutputPass<T> stage) {
+		Preconditions.checkNotNull(key);
+		Preconditions.checkNotNull(stage);
+		Preconditions.checkArgument(
+				!outputNames.contains(key.name()), "Duplicate output: " + key.name());
+
+		StageDependencies.verify(stage.getClass(), transformationClasses);
+
+		outputKeys.add(key);
+		outputs.add(stage);
+		outputNames.add(key.name());
+		return this;
+	}
+
+	/**
+	 * Specify whether the pipeline's input is known to be valid. See {@link
+	 * PipelineBuilder#setTrustedInput}.
+	 */
+	public MultiOutputPipelineBuilder setTrustedInput(boolean trustedInput) {
+		this.trustedInput = trustedInput;
+		return this;
+	}
+
+	public Pipeline<PipelineResults> build() {
+		if (outputs.isEmpty()) {
+			throw new UnsupportedOperationException("No output stages have been added");
+		}
+
+		List<Class<?>> outputClasses = Lists.newArrayListWithCapacity(outputs.size());
+		for (OutputPass<?> output : outputs) {
+			outputClasses.add(output.getClass());
+		}
+
+		List<TransformationPass> required
+				= StageDependencies.required(transformations, outputClasses, trustedInput);
+		return new MultiOutputPipelineImpl(required, outputKeys, outputs);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("transformations", transformations)
+				.add("outputKeys", outputKeys)
+				.add("outputs", outputs)
+				.add("trustedInput", trustedInput)
+				.toString();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.sql.converter.SelectStatementConverter;
+import com.github.explainable.trace.Tracing;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link Pipeline} that converts a query once, applies the transformations that
+ * its outputs need, and then runs each output stage on the same AST. This class shouldn't be used
+ * directly; instead, pipelines should be constructed using {@link MultiOutputPipelineBuilder}.
+ */
+final class MultiOutputPipelineImpl implements Pipeline<PipelineResults> {
+	private final SelectStatementConverter converter;
+
+	private final ImmutableList<TransformationPass> transformations;
+
+	private final ImmutableList<OutputKey<?>> outputKeys;
+
+	private final ImmutableList<OutputPass<?>> outputs;
+
+	private final ImmutableList<String> transformationNames;
+
+	MultiOutputPipelineImpl(
+			List<? extends TransformationPass> transformations,
+			List<? extends OutputKey<?>> outputKeys,
+			List<? extends OutputPass<?>> outputs) {
+		this.converter = SelectStatementConverter.create();
+		this.transformations = ImmutableList.copyOf(transformations);
+		this.outputKeys = ImmutableList.copyOf(outputKeys);
+		this.outputs = ImmutableList.copyOf(outputs);
+		this.transformationNames = StageNames.of(transformations);
+	}
+
+	@Override
+	public PipelineResults execute(Select select) {
+		SqlSelectStmt converted;
+		Tracing.begin("convert");
+		try {
+			converted = converter.convert(select);
+		} finally {
+			Tracing.end();
+		}
+
+		for (int i = 0; i < transformations.size(); i++) {
+			Tracing.begin(transformationNames.get(i));
+			try {
+				transformations.get(i).execute(converted);
+			} finally {
+				Tracing.end();
+			}
+		}
+
+		Map<OutputKey<?>, Object> values = Maps.newLinkedHashMap();
+		for (int i = 0; i < outputs.size(); i++) {
+			Tracing.begin(outputKeys.get(i).name());
+			try {
+				values.put(outputKeys.get(i), outputs.get(i).execute(converted));
+			} finally {
+				Tracing.end();
+			}
+		}
+
+		return new PipelineResults(values);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("transformations", transformations)
+				.add("outputKeys", outputKeys)
+				.add("outputs", outputs)
+				.toString();
+	}
+}
@@ -26,17 +26,19 @@ package com.github.explainable.sql.pipeline;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import javax.annotation.Nullable;
-import java.lang.annotation.Annotation;
 import java.util.List;
 import java.util.Set;
 
 /**
  * A utility class that is used for constructing a new {@link Pipeline} and validating the
- * dependency constraints between the stages.
+ * dependency constraints between the stages. The pipeline only runs the transformations that the
+ * output stage needs, as declared by {@link DependsOn} annotations, together with any {@link
+ * ValidationPass}es (unless {@link #setTrustedInput} is used to turn validation off).
  */
 public final class PipelineBuilder<T> {
 	private final List<TransformationPass> transformations;
@@ -46,41 +48,26 @@ public final class PipelineBuilder<T> {
 	@Nullable
 	private OutputPass<T> output;
 
+	private boolean trustedInput;
+
 	private PipelineBuilder() {
 		this.transformations = Lists.newArrayList();
 		this.transformationClasses = Sets.newHashSet();
 		this.output = null;
+		this.trustedInput = false;
 	}
 
 	public static <T> PipelineBuilder<T> create() {
 		return new PipelineBuilder<T>();
 	}
 
-	private void verifyDependencies(Class<?> stageClass) {
-		for (Annotation annotation : stageClass.getAnnotations()) {
-			if (annotation instanceof DependsOn) {
-				Class<? extends TransformationPass>[] dependencies
-						= ((DependsOn) annotation).value();
-
-				for (Class<? extends TransformationPass> dependency : dependencies) {
-					Preconditions.checkArgument(
-							transformationClasses.contains(dependency),
-							"Unsatisfied dependency: " + stageClass.getSimpleName()
-									+ " depends on " + dependency.getSimpleName());
-				}
-
-				break;
-			}
-		}
-	}
-
 	public PipelineBuilder<T> addTransformation(TransformationPass stage) {
 		if (output != null) {
 			throw new UnsupportedOperationException(
 					"Cannot add transformation stages after the output stage");
 		}
 
-		verifyDependencies(stage.getClass());
+		StageDependencies.verify(stage.getClass(), transformationClasses);
 
 		transformations.add(stage);
 		transformationClasses.add(stage.getClass());
@@ -95,19 +82,53 @@ public final class PipelineBuilder<T> {
 					"Cannot change the output stage once it's been set");
 		}
 
-		verifyDependencies(stage.getClass());
+		StageDependencies.verify(stage.getClass(), transformationClasses);
 
 		output = stage;
 		return this;
 	}
 
+	/**
+	 * Specify whether the pipeline's input is known to be valid. If so, {@link ValidationPass}es
+	 * that no other required stage depends on are left out of the pipeline.
+	 */
+	public PipelineBuilder<T> setTrustedInput(boolean trustedInput) {
+		this.trustedInput = trustedInput;
+		return this;
+	}
+
+	/**
+	 * Construct the pipeline. Transformations that the output stage doesn't depend on (directly or
+	 * transitively) are dropped unless they're validation passes and the input isn't trusted. The
+	 * remaining transformations run in the order in which they were added.
+	 */
 	@Nullable
 	public Pipeline<T> build() {
+		return new PipelineImpl<T>(buildPasses());
+	}
+
+	/**
+	 * Construct the stages of the pipeline without the SQL converter, for callers that already have
+	 * an AST. The result runs the same transformations as {@link #build} followed by the output
+	 * stage. It can be used, e.g., to analyze the branches of a set operation independently.
+	 */
+	public OutputPass<T> buildPasses() {
+		return new StagedOutputPass<T>(requiredTransformations(), checkOutput());
+	}
+
+	/**
+	 * The transformations that the pipeline runs before the output stage, in order.
+	 */
+	public ImmutableList<TransformationPass> requiredTransformations() {
+		return ImmutableList.copyOf(StageDependencies.required(
+				transformations, ImmutableList.of(checkOutput().getClass()), trustedInput));
+	}
+
+	private OutputPass<T> checkOutput() {
 		if (output == null) {
 			throw new UnsupportedOperationException("Output stage has not been set");
 		}
-
-		return new PipelineImpl<T>(transformations, output);
+		return output;
 	}
 
 	@Override
@@ -115,6 +136,7 @@ public final class PipelineBuilder<T> {
 		return Objects.toStringHelper(this)
 				.add("transformations", transformations)
 				.add("output", output)
+				.add("trustedInput", trustedInput)
 				.toString();
 	}
 }
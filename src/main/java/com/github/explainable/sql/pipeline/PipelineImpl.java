@@ -26,12 +26,12 @@ package com.github.explainable.sql.pipeline;
 
 import com.github.explainable.sql.ast.select.SqlSelectStmt;
 import com.github.explainable.sql.converter.SelectStatementConverter;
+import com.github.explainable.trace.Tracing;
 import com.google.common.base.Objects;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Preconditions;
 import net.sf.jsqlparser.statement.select.Select;
 
 import javax.annotation.Nullable;
-import java.util.List;
 
 /**
  * Default implementation of {@link Pipeline}. This class shouldn't be used directly; instead,
@@ -40,33 +40,31 @@ import java.util.List;
 final class PipelineImpl<T> implements Pipeline<T> {
 	private final SelectStatementConverter converter;
 
-	private final ImmutableList<TransformationPass> transformations;
+	private final OutputPass<T> stages;
 
-	private final OutputPass<T> output;
-
-	PipelineImpl(List<? extends TransformationPass> transformations, OutputPass<T> output) {
+	PipelineImpl(OutputPass<T> stages) {
 		this.converter = SelectStatementConverter.create();
-		this.transformations = ImmutableList.copyOf(transformations);
-		this.output = output;
+		this.stages = Preconditions.checkNotNull(stages);
 	}
 
 	@Nullable
 	@Override
 	public T execute(Select select) {
-		SqlSelectStmt converted = converter.convert(select);
-
-		for (TransformationPass stage : transformations) {
-			stage.execute(converted);
+		SqlSelectStmt converted;
+		Tracing.begin("convert");
+		try {
+			converted = converter.convert(select);
+		} finally {
+			Tracing.end();
 		}
 
-		return output.execute(converted);
+		return stages.execute(converted);
 	}
 
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this)
-				.add("transformations", transformations)
-				.add("output", output)
+				.add("stages", stages)
 				.toString();
 	}
 }
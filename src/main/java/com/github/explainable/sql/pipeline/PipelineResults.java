@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The values computed by the output stages of a pipeline built with {@link
+ * MultiOutputPipelineBuilder}, indexed by {@link OutputKey}.
+ */
+public final class PipelineResults {
+	private final Map<OutputKey<?>, Object> values;
+
+	PipelineResults(Map<OutputKey<?>, Object> values) {
+		this.values = Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * Get the value computed by the output stage registered under {@code key}.
+	 *
+	 * @throws IllegalArgumentException if the pipeline has no output stage for {@code key}
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public <T> T get(OutputKey<T> key) {
+		Preconditions.checkArgument(values.containsKey(key), "No such output: " + key.name());
+		return (T) values.get(key);
+	}
+
+	@Override
+	public String toString() {
+		return "PipelineResults" + values;
+	}
+}
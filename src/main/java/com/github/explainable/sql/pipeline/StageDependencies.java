@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Static helpers that are shared by the pipeline builders for interpreting {@link DependsOn} and
+ * {@link ValidationPass} annotations.
+ */
+final class StageDependencies {
+	private StageDependencies() {
+		throw new UnsupportedOperationException("Can't instantiate StageDependencies");
+	}
+
+	/**
+	 * Make sure that every dependency declared by {@code stageClass} is among {@code
+	 * availableClasses}.
+	 *
+	 * @throws IllegalArgumentException if a dependency is missing
+	 */
+	static void verify(
+			Class<?> stageClass,
+			Set<Class<? extends TransformationPass>> availableClasses) {
+		DependsOn dependsOn = stageClass.getAnnotation(DependsOn.class);
+
+		if (dependsOn != null) {
+			for (Class<? extends TransformationPass> dependency : dependsOn.value()) {
+				Preconditions.checkArgument(
+						availableClasses.contains(dependency),
+						"Unsatisfied dependency: " + stageClass.getSimpleName()
+								+ " depends on " + dependency.getSimpleName());
+			}
+		}
+	}
+
+	/**
+	 * Compute the subsequence of {@code transformations} that must run before the output stages:
+	 * everything the outputs depend on (directly or transitively) plus, unless the input is
+	 * trusted, every validation pass together with its own dependencies.
+	 */
+	static List<TransformationPass> required(
+			List<TransformationPass> transformations,
+			List<? extends Class<?>> outputClasses,
+			boolean trustedInput) {
+		Set<Class<?>> requiredClasses = Sets.newHashSet();
+		for (Class<?> outputClass : outputClasses) {
+			addWithDependencies(outputClass, requiredClasses);
+		}
+
+		if (!trustedInput) {
+			for (TransformationPass stage : transformations) {
+				if (stage.getClass().isAnnotationPresent(ValidationPass.class)) {
+					addWithDependencies(stage.getClass(), requiredClasses);
+				}
+			}
+		}
+
+		List<TransformationPass> result = Lists.newArrayList();
+		for (TransformationPass stage : transformations) {
+			if (requiredClasses.contains(stage.getClass())) {
+				result.add(stage);
+			}
+		}
+
+		return result;
+	}
+
+	private static void addWithDependencies(Class<?> stageClass, Set<Class<?>> requiredClasses) {
+		if (requiredClasses.add(stageClass)) {
+			DependsOn dependsOn = stageClass.getAnnotation(DependsOn.class);
+
+			if (dependsOn != null) {
+				for (Class<? extends TransformationPass> dependency : dependsOn.value()) {
+					addWithDependencies(dependency, requiredClasses);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.explainable.sql.pipeline;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Names of the spans that pipelines record for their stages when a query is traced (see {@link
+ * com.github.explainable.trace.Tracing}).
+ */
+final class StageNames {
+	private StageNames() {
+		throw new UnsupportedOperationException("Can't instantiate StageNames");
+	}
+
+	static String of(Object stage) {
+		return stage.getClass().getSimpleName();
+	}
+
+	/**
+	 * The span names of {@code stages}, in the same order. Pipelines compute them up front so that
+	 * untraced queries don't pay for them.
+	 */
+	static ImmutableList<String> of(List<?> stages) {
+		ImmutableList.Builder<String> names = ImmutableList.builder();
+		for (Object stage : stages) {
+			names.add(of(stage));
+		}
+		return names.build();
+	}
+}
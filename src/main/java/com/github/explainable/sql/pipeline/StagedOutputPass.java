@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.trace.Tracing;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Output pass that runs a list of transformations on an AST before running another output pass.
+ * This is the part of a {@link Pipeline} that comes after the SQL converter.
+ */
+final class StagedOutputPass<T> implements OutputPass<T> {
+	private final ImmutableList<TransformationPass> transformations;
+
+	private final OutputPass<T> output;
+
+	private final ImmutableList<String> transformationNames;
+
+	private final String outputName;
+
+	StagedOutputPass(List<? extends TransformationPass> transformations, OutputPass<T> output) {
+		this.transformations = ImmutableList.copyOf(transformations);
+		this.output = Preconditions.checkNotNull(output);
+		this.transformationNames = StageNames.of(transformations);
+		this.outputName = StageNames.of(output);
+	}
+
+	@Nullable
+	@Override
+	public T execute(SqlSelectStmt select) {
+		for (int i = 0; i < transformations.size(); i++) {
+			Tracing.begin(transformationNames.get(i));
+			try {
+				transformations.get(i).execute(select);
+			} finally {
+				Tracing.end();
+			}
+		}
+
+		Tracing.begin(outputName);
+		try {
+			return output.execute(select);
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("transformations", transformations)
+				.add("output", output)
+				.toString();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline.passes;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.View;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.explainable.corelang.View.convert;
+
+/**
+ * Helper methods for removing views that are identical up to a renaming of their variables, such
+ * as the views extracted from the branches of {@code SELECT x FROM R WHERE y = 1 UNION SELECT x FROM
+ * R WHERE y = 1}. Two views have the same canonical form if their atoms are over the same
+ * relations, appear in the same order, and have the same constants and the same pattern of
+ * variables. Views with the same canonical form carry the same information, so only the first one
+ * needs to be kept.
+ */
+final class CanonicalViews {
+	private CanonicalViews() {
+		throw new UnsupportedOperationException("Can't instantiate CanonicalViews");
+	}
+
+	/**
+	 * Remove views whose canonical form matches an earlier view, and rename the remaining views
+	 * {@code Q1}, {@code Q2}, ... in order.
+	 */
+	static ImmutableList<View> deduplicate(List<View> views) {
+		Set<List<Object>> seen = Sets.newHashSet();
+		ImmutableList.Builder<View> result = ImmutableList.builder();
+
+		int count = 0;
+		for (View view : views) {
+			if (seen.add(canonicalForm(view))) {
+				count++;
+				result.add(convert("Q" + count, view.body(), view.conditions()));
+			}
+		}
+
+		return result.build();
+	}
+
+	static List<Object> canonicalForm(View view) {
+		Map<Term, Integer> variableIds = Maps.newHashMap();
+		List<Object> form = Lists.newArrayList();
+
+		appendAtom(view.body(), variableIds, form);
+		for (Atom condition : view.conditions()) {
+			appendAtom(condition, variableIds, form);
+		}
+
+		return form;
+	}
+
+	private static void appendAtom(Atom atom, Map<Term, Integer> variableIds, List<Object> form) {
+		form.add(atom.relation());
+		form.add(canonicalTerm(atom.getCopyVariable(), variableIds));
+		for (Term argument : atom.arguments()) {
+			form.add(canonicalTerm(argument, variableIds));
+		}
+	}
+
+	/**
+	 * Constants stand for themselves. Variables are numbered in order of their first occurrence,
+	 * and the number is combined with the variable's type.
+	 */
+	private static Object canonicalTerm(Term term, Map<Term, Integer> variableIds) {
+		if (term.type() == TermType.CONSTANT) {
+			return term;
+		}
+
+		Integer id = variableIds.get(term);
+		if (id == null) {
+			id = variableIds.size();
+			variableIds.put(term, id);
+		}
+
+		return term.type() + "#" + id;
+	}
+}
@@ -25,6 +25,7 @@
 package com.github.explainable.sql.pipeline.passes;
 
 import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SchemaCatalog;
 import com.github.explainable.sql.SqlException;
 import com.github.explainable.sql.ast.AbstractVisitor;
 import com.github.explainable.sql.ast.SqlNode;
@@ -41,7 +42,6 @@ import com.github.explainable.sql.table.Column;
 import com.github.explainable.sql.table.NestedScope;
 import com.github.explainable.sql.table.TypedRelation;
 import com.google.common.base.Objects;
-import com.google.common.base.Preconditions;
 
 /**
  * Pass that adds two different types of annotations to the AST. First, it associates a  {@link
@@ -50,10 +50,10 @@ import com.google.common.base.Preconditions;
  * references one or more table columns.
  */
 final class ColumnResolver implements TransformationPass {
-	private final Schema schema;
+	private final SchemaCatalog catalog;
 
 	ColumnResolver(Schema schema) {
-		this.schema = Preconditions.checkNotNull(schema);
+		this.catalog = schema.catalog();
 	}
 
 	@Override
@@ -88,7 +88,7 @@ final class ColumnResolver implements TransformationPass {
 
 		@Override
 		public void visit(SqlFromBaseTable from, SqlNode parent) {
-			TypedRelation relation = schema.findRelation(from.tableName());
+			TypedRelation relation = catalog.findRelation(from.tableName());
 			if (relation == null) {
 				throw new SqlException("Couldn't find table: " + from.tableName());
 			}
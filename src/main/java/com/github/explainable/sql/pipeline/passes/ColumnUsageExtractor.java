@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline.passes;
+
+import com.github.explainable.sql.ast.AbstractVisitor;
+import com.github.explainable.sql.ast.SqlNode;
+import com.github.explainable.sql.ast.expression.SqlColumnReference;
+import com.github.explainable.sql.ast.select.SqlSelectAllColumns;
+import com.github.explainable.sql.ast.select.SqlSelectAllColumnsInTable;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.sql.pipeline.DependsOn;
+import com.github.explainable.sql.pipeline.OutputPass;
+import com.github.explainable.sql.table.BaseColumn;
+import com.github.explainable.sql.table.Column;
+import com.google.common.collect.ImmutableSetMultimap;
+
+import java.util.List;
+
+/**
+ * Output pass that finds the base table columns that a SQL query references syntactically, either
+ * by name or through {@code SELECT *}. The result maps each relation name to the names of its
+ * referenced columns. Columns of derived tables in the {@code FROM} clause are not reported
+ * themselves; the base columns that they are computed from are reported instead.
+ *
+ * <p>The analysis is syntactic: table aliases and the output columns of derived tables are resolved
+ * to base columns by {@link ColumnResolver}, but every column that the query mentions is reported,
+ * whether or not it can affect the answer. For example, {@code SELECT T.n FROM (SELECT X.sname AS
+ * n, X.age AS a FROM Sailors X) T} reports both {@code sname} and {@code age}, although the outer
+ * query never reads {@code a}. The result is therefore not derived from the extracted views and can
+ * differ from a semantic analysis based on view containment, such as the one in {@code
+ * FacebookLabelerDemo2}, which only counts a column as used if hiding it would change what the
+ * query reveals.
+ */
+@DependsOn(ColumnResolver.class)
+final class ColumnUsageExtractor implements OutputPass<ImmutableSetMultimap<String, String>> {
+	@Override
+	public ImmutableSetMultimap<String, String> execute(SqlSelectStmt select) {
+		AstVisitor visitor = new AstVisitor();
+		select.accept(visitor, null);
+		return visitor.usage.build();
+	}
+
+	private static final class AstVisitor extends AbstractVisitor {
+		private final ImmutableSetMultimap.Builder<String, String> usage;
+
+		private AstVisitor() {
+			this.usage = ImmutableSetMultimap.builder();
+		}
+
+		private void addColumn(Column column) {
+			if (column instanceof BaseColumn) {
+				BaseColumn baseColumn = (BaseColumn) column;
+				usage.put(baseColumn.parent().relation().name(), baseColumn.name());
+			}
+		}
+
+		private void addColumns(List<Column> columns) {
+			for (Column column : columns) {
+				addColumn(column);
+			}
+		}
+
+		@Override
+		public void visit(SqlColumnReference reference, SqlNode parent) {
+			addColumn(reference.getColumn());
+		}
+
+		@Override
+		public void visit(SqlSelectAllColumns allColumns, SqlNode parent) {
+			addColumns(allColumns.getColumns());
+		}
+
+		@Override
+		public void visit(SqlSelectAllColumnsInTable columnsInTable, SqlNode parent) {
+			addColumns(columnsInTable.getColumns());
+		}
+	}
+}
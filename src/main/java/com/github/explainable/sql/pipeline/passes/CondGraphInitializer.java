@@ -221,7 +221,7 @@ final class CondGraphInitializer implements TransformationPass {
 			SqlSelectStmt innerSelect = subSelect.select();
 			if (innerSelect instanceof SqlPlainSelect) {
 				SqlPlainSelect plainSelect = (SqlPlainSelect) innerSelect;
-				if (plainSelect.getType().rowCount() == RowCount.UNLIMITED_ROWS) {
+				if (plainSelect.rowCount() == RowCount.UNLIMITED_ROWS) {
 					startVertex.addEdge(plainSelect.getConditionVertex());
 				}
 			}
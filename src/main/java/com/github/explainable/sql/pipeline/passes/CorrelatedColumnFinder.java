@@ -35,9 +35,10 @@ import com.github.explainable.sql.pipeline.DependsOn;
 import com.github.explainable.sql.pipeline.TransformationPass;
 import com.github.explainable.sql.table.Column;
 import com.github.explainable.sql.table.NestedScope;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 
-import java.util.Map;
+import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * Pass that finds <i>correlated</i> columns that are defined in one scope but are referenced in a
@@ -60,33 +61,64 @@ final class CorrelatedColumnFinder implements TransformationPass {
 		select.accept(new BaseColumnVisitor(), null);
 	}
 
+	/**
+	 * For each scope depth, the sub-select that is currently being visited inside the scope at
+	 * that depth. A column reference can only see the scopes that enclose it, so the scope that
+	 * defines a referenced column is the one at depth {@code column.scope().depth()}, and the
+	 * sub-select that the column is correlated with can be found with a single array lookup.
+	 */
+	private static final class OpenSubSelects {
+		private final List<SqlSubSelect> byDepth;
+
+		OpenSubSelects() {
+			this.byDepth = Lists.newArrayList();
+		}
+
+		void open(NestedScope scope, SqlSubSelect subSelect) {
+			int depth = scope.depth();
+			while (byDepth.size() <= depth) {
+				byDepth.add(null);
+			}
+			byDepth.set(depth, subSelect);
+		}
+
+		void close(NestedScope scope) {
+			byDepth.set(scope.depth(), null);
+		}
+
+		@Nullable
+		SqlSubSelect get(NestedScope scope) {
+			int depth = scope.depth();
+			return (depth < byDepth.size()) ? byDepth.get(depth) : null;
+		}
+	}
+
 	private static class BaseColumnVisitor extends AbstractVisitor {
-		private final Map<NestedScope, SqlSubSelect> scopeToSubSelect;
+		private final OpenSubSelects openSubSelects;
 
 		private BaseColumnVisitor() {
-			scopeToSubSelect = Maps.newHashMap();
+			openSubSelects = new OpenSubSelects();
 		}
 
 		@Override
 		public SqlSelectVisitor enter(SqlPlainSelect select, SqlNode parent) {
-			return new CorrelatedColumnVisitor(select.getScope(), scopeToSubSelect);
+			return new CorrelatedColumnVisitor(select.getScope(), openSubSelects);
 		}
 	}
 
 	private static class CorrelatedColumnVisitor extends AbstractVisitor {
 		private final NestedScope scope;
 
-		private final Map<NestedScope, SqlSubSelect> scopeToSubSelect;
+		private final OpenSubSelects openSubSelects;
 
-		private CorrelatedColumnVisitor(
-				NestedScope scope,
-				Map<NestedScope, SqlSubSelect> scopeToSubSelect) {
+		private CorrelatedColumnVisitor(NestedScope scope, OpenSubSelects openSubSelects) {
 			this.scope = scope;
-			this.scopeToSubSelect = scopeToSubSelect;
+			this.openSubSelects = openSubSelects;
 		}
 
 		private void registerColumn(Column column) {
-			SqlSubSelect subSelect = scopeToSubSelect.get(column.scope());
+			NestedScope columnScope = column.scope();
+			SqlSubSelect subSelect = (columnScope == null) ? null : openSubSelects.get(columnScope);
 			if (subSelect != null) {
 				subSelect.addCorrelatedColumn(column);
 			}
@@ -99,18 +131,18 @@ final class CorrelatedColumnFinder implements TransformationPass {
 
 		@Override
 		public SqlSelectVisitor enter(SqlSubSelect subSelect, SqlNode parent) {
-			scopeToSubSelect.put(scope, subSelect);
+			openSubSelects.open(scope, subSelect);
 			return this;
 		}
 
 		@Override
 		public void leave(SqlSubSelect subSelect, SqlNode parent) {
-			scopeToSubSelect.remove(scope);
+			openSubSelects.close(scope);
 		}
 
 		@Override
 		public SqlSelectVisitor enter(SqlPlainSelect select, SqlNode parent) {
-			return new CorrelatedColumnVisitor(select.getScope(), scopeToSubSelect);
+			return new CorrelatedColumnVisitor(select.getScope(), openSubSelects);
 		}
 	}
 }
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline.passes;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.sql.ast.select.SqlSetOperation;
+import com.github.explainable.sql.pipeline.OutputPass;
+import com.github.explainable.sql.table.AggTypeForColumn;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pass that analyzes the branches of a top-level {@code UNION}, {@code INTERSECT} or {@code
+ * EXCEPT} as independent units on an executor. The branches of a set operation don't share any
+ * scopes, so each one can go through the transformations and the {@link ViewExtractor} on its own;
+ * only the type checks of the set operations themselves need the results of several branches, and
+ * they're done once all the branches are finished. The extracted views are deduplicated with
+ * {@link CanonicalViews}, since wide unions tend to contain many branches with isomorphic views.
+ *
+ * <p>The calling thread analyzes the first branch itself and then waits for the others, so this
+ * pass must not be executed from one of the executor's own threads if the executor is bounded.
+ */
+final class ParallelSetOperationPipeline implements OutputPass<ImmutableList<View>> {
+	private final OutputPass<ImmutableList<View>> branchPasses;
+
+	private final ExecutorService executor;
+
+	private final boolean trustedInput;
+
+	ParallelSetOperationPipeline(
+			OutputPass<ImmutableList<View>> branchPasses,
+			ExecutorService executor,
+			boolean trustedInput) {
+		this.branchPasses = Preconditions.checkNotNull(branchPasses);
+		this.executor = Preconditions.checkNotNull(executor);
+		this.trustedInput = trustedInput;
+	}
+
+	@Override
+	public ImmutableList<View> execute(SqlSelectStmt select) {
+		List<SqlSelectStmt> branches = Lists.newArrayList();
+		List<SqlSetOperation> operations = Lists.newArrayList();
+		collectBranches(select, branches, operations);
+
+		List<View> views = Lists.newArrayList();
+		if (branches.size() == 1) {
+			views.addAll(branchPasses.execute(select));
+		} else {
+			List<Future<ImmutableList<View>>> futures = Lists.newArrayList();
+			for (final SqlSelectStmt branch : branches.subList(1, branches.size())) {
+				futures.add(executor.submit(new Callable<ImmutableList<View>>() {
+					@Override
+					public ImmutableList<View> call() {
+						return branchPasses.execute(branch);
+					}
+				}));
+			}
+
+			try {
+				views.addAll(branchPasses.execute(branches.get(0)));
+				for (Future<ImmutableList<View>> future : futures) {
+					views.addAll(getUninterruptibly(future));
+				}
+			} finally {
+				for (Future<ImmutableList<View>> future : futures) {
+					future.cancel(false);
+				}
+			}
+
+			checkSetOperations(operations);
+		}
+
+		return CanonicalViews.deduplicate(views);
+	}
+
+	/**
+	 * Collect the maximal subtrees of {@code select} that aren't set operations, from left to
+	 * right, and the set operations above them in post-order (so that each operation comes after
+	 * the operations nested inside it).
+	 */
+	private static void collectBranches(
+			SqlSelectStmt select,
+			List<SqlSelectStmt> branches,
+			List<SqlSetOperation> operations) {
+		// Chains of set operations can be long, so walk them with an explicit stack. Operations are
+		// collected in reverse post-order (root, right subtree, left subtree) and reversed at the
+		// end; branches are collected right to left and reversed as well.
+		Deque<SqlSelectStmt> pending = new ArrayDeque<SqlSelectStmt>();
+		pending.push(select);
+
+		while (!pending.isEmpty()) {
+			SqlSelectStmt next = pending.pop();
+			if (next instanceof SqlSetOperation) {
+				SqlSetOperation operation = (SqlSetOperation) next;
+				operations.add(operation);
+				pending.push(operation.left());
+				pending.push(operation.right());
+			} else {
+				branches.add(next);
+			}
+		}
+
+		Collections.reverse(branches);
+		Collections.reverse(operations);
+	}
+
+	/**
+	 * Perform the checks that {@link AggTypeChecker} and {@link TypeChecker} would have done on the
+	 * set operation nodes if the whole query had gone through the pipeline as a single unit.
+	 */
+	private void checkSetOperations(List<SqlSetOperation> operations) {
+		for (SqlSetOperation operation : operations) {
+			operation.aggTypeCheck(AggTypeForColumn.allNonAggregate());
+			if (!trustedInput) {
+				operation.typeCheck();
+			}
+		}
+	}
+
+	private static <V> V getUninterruptibly(Future<V> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("branchPasses", branchPasses)
+				.add("executor", executor)
+				.add("trustedInput", trustedInput)
+				.toString();
+	}
+}
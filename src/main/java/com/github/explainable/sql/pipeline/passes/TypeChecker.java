@@ -29,10 +29,13 @@ import com.github.explainable.sql.ast.SqlNode;
 import com.github.explainable.sql.ast.select.SqlSelectStmt;
 import com.github.explainable.sql.pipeline.DependsOn;
 import com.github.explainable.sql.pipeline.TransformationPass;
+import com.github.explainable.sql.pipeline.ValidationPass;
 
 /**
- * Pass that type-checks the AST for a SQL query.
+ * Pass that type-checks the AST for a SQL query. None of the other passes in this package read the
+ * types that it computes, so it's skipped for trusted input.
  */
+@ValidationPass
 @DependsOn({AggTypeChecker.class, ColumnResolver.class})
 final class TypeChecker implements TransformationPass {
 	@Override
@@ -26,49 +26,173 @@ package com.github.explainable.sql.pipeline.passes;
 
 import com.github.explainable.corelang.View;
 import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.github.explainable.sql.converter.SelectStatementConverter;
+import com.github.explainable.sql.pipeline.MultiOutputPipelineBuilder;
+import com.github.explainable.sql.pipeline.OutputKey;
+import com.github.explainable.sql.pipeline.OutputPass;
 import com.github.explainable.sql.pipeline.Pipeline;
 import com.github.explainable.sql.pipeline.PipelineBuilder;
+import com.github.explainable.sql.pipeline.PipelineResults;
+import com.github.explainable.sql.pipeline.TransformationPass;
+import com.github.explainable.trace.Tracing;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import net.sf.jsqlparser.statement.select.Select;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * Class that takes the AST for a SQL {@code SELECT} statement and generates a list of atoms with
  * the property that the answers to all the atoms in the set together uniquely determine the answer
  * to the original query on any possible dataset.
  */
 public final class ViewExtractionPipeline implements Pipeline<ImmutableList<View>> {
-	private final Pipeline<ImmutableList<View>> pipeline;
+	public static final OutputKey<ImmutableList<View>> VIEWS = OutputKey.named("views");
+
+	public static final OutputKey<ImmutableSetMultimap<String, String>> COLUMN_USAGE
+			= OutputKey.named("columnUsage");
+
+	private final SelectStatementConverter converter;
+
+	private final OutputPass<ImmutableList<View>> passes;
 
-	private ViewExtractionPipeline(Pipeline<ImmutableList<View>> pipeline) {
-		this.pipeline = Preconditions.checkNotNull(pipeline);
+	private ViewExtractionPipeline(OutputPass<ImmutableList<View>> passes) {
+		this.converter = SelectStatementConverter.create();
+		this.passes = Preconditions.checkNotNull(passes);
 	}
 
 	@Override
 	public ImmutableList<View> execute(Select select) {
-		return pipeline.execute(select);
+		SqlSelectStmt converted;
+		Tracing.begin("convert");
+		try {
+			converted = converter.convert(select);
+		} finally {
+			Tracing.end();
+		}
+
+		return execute(converted);
+	}
+
+	/**
+	 * Extract the views of a query that has already been converted to an AST, e.g., one that a
+	 * query generator built without going through SQL text. The passes annotate {@code select} as
+	 * they go, so a tree can only be executed once.
+	 */
+	public ImmutableList<View> execute(SqlSelectStmt select) {
+		return passes.execute(select);
 	}
 
 	public static ViewExtractionPipeline create(Schema schema) {
-		Pipeline<ImmutableList<View>> pipeline = PipelineBuilder.<ImmutableList<View>>create()
-				.addTransformation(new ColumnResolver(schema))
-				.addTransformation(new CorrelatedColumnFinder())
-				.addTransformation(new AggTypeChecker())
-				.addTransformation(new TypeChecker())
-				.addTransformation(new TermInitializer())
-				.addTransformation(new CondGraphInitializer())
-				.addTransformation(new CondGraphAnnotator())
-				.setOutput(new ViewExtractor())
+		return create(schema, false);
+	}
+
+	/**
+	 * Create a pipeline for queries that are already known to be valid, such as templates that have
+	 * been checked ahead of time. The resulting pipeline skips validation-only passes, so invalid
+	 * queries may produce meaningless views instead of raising a {@code SqlException}.
+	 */
+	public static ViewExtractionPipeline createForTrustedInput(Schema schema) {
+		return create(schema, true);
+	}
+
+	private static ViewExtractionPipeline create(Schema schema, boolean trustedInput) {
+		return new ViewExtractionPipeline(builder(schema, trustedInput).buildPasses());
+	}
+
+	/**
+	 * Create a pipeline that analyzes the branches of top-level {@code UNION}, {@code INTERSECT} and
+	 * {@code EXCEPT} queries concurrently on {@code executor}. Branches whose views are identical up
+	 * to a renaming of variables only contribute one copy of each view, and the views are numbered
+	 * {@code Q1}, {@code Q2}, ... in the order in which the branches appear in the query. Queries
+	 * without a top-level set operation are analyzed on the calling thread.
+	 *
+	 * <p>The calling thread blocks until all the branches are done, so the pipeline shouldn't be
+	 * executed from one of the executor's own threads.
+	 */
+	public static ViewExtractionPipeline createParallel(
+			Schema schema,
+			ExecutorService executor) {
+		return createParallel(schema, executor, false);
+	}
+
+	/**
+	 * Same as {@link #createParallel(Schema, ExecutorService)} but skips validation-only passes, as
+	 * in {@link #createForTrustedInput(Schema)}.
+	 */
+	public static ViewExtractionPipeline createParallelForTrustedInput(
+			Schema schema,
+			ExecutorService executor) {
+		return createParallel(schema, executor, true);
+	}
+
+	private static ViewExtractionPipeline createParallel(
+			Schema schema,
+			ExecutorService executor,
+			boolean trustedInput) {
+		return new ViewExtractionPipeline(new ParallelSetOperationPipeline(
+				builder(schema, trustedInput).buildPasses(),
+				executor,
+				trustedInput));
+	}
+
+	/**
+	 * The transformations that the pipeline runs before extracting views, in order.
+	 */
+	static ImmutableList<TransformationPass> requiredTransformations(Schema schema) {
+		return builder(schema, false).requiredTransformations();
+	}
+
+	private static PipelineBuilder<ImmutableList<View>> builder(
+			Schema schema,
+			boolean trustedInput) {
+		PipelineBuilder<ImmutableList<View>> builder = PipelineBuilder.create();
+		builder.setTrustedInput(trustedInput);
+
+		for (TransformationPass stage : transformations(schema)) {
+			builder.addTransformation(stage);
+		}
+
+		return builder.setOutput(new ViewExtractor());
+	}
+
+	/**
+	 * Create a pipeline that computes both the extracted views (under {@link #VIEWS}) and the base
+	 * table columns that each query references (under {@link #COLUMN_USAGE}) while only converting
+	 * and analyzing each query once. Column usage maps each relation name to the names of its
+	 * columns that appear in the query.
+	 */
+	public static Pipeline<PipelineResults> createWithColumnUsage(Schema schema) {
+		MultiOutputPipelineBuilder builder = MultiOutputPipelineBuilder.create();
+
+		for (TransformationPass stage : transformations(schema)) {
+			builder.addTransformation(stage);
+		}
+
+		return builder
+				.addOutput(VIEWS, new ViewExtractor())
+				.addOutput(COLUMN_USAGE, new ColumnUsageExtractor())
 				.build();
+	}
 
-		return new ViewExtractionPipeline(pipeline);
+	private static ImmutableList<TransformationPass> transformations(Schema schema) {
+		return ImmutableList.<TransformationPass>of(
+				new ColumnResolver(schema),
+				new CorrelatedColumnFinder(),
+				new AggTypeChecker(),
+				new TypeChecker(),
+				new TermInitializer(),
+				new CondGraphInitializer(),
+				new CondGraphAnnotator());
 	}
 
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this)
-				.add("pipeline", pipeline)
+				.add("passes", passes)
 				.toString();
 	}
 }
@@ -41,19 +41,18 @@ import com.github.explainable.sql.pipeline.DependsOn;
 import com.github.explainable.sql.pipeline.OutputPass;
 import com.github.explainable.sql.table.BaseColumn;
 import com.github.explainable.sql.table.BaseTable;
+import com.github.explainable.trace.Tracing;
+import com.github.explainable.util.IntUnionFind;
 import com.github.explainable.util.LDVertex;
 import com.github.explainable.util.LDVertexVisitor;
-import com.github.explainable.util.UnionFindNode;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import static com.github.explainable.corelang.Atom.createMultisetAtom;
 import static com.github.explainable.corelang.View.convert;
@@ -75,10 +74,14 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 	private static final class AstVisitor extends AbstractVisitor {
 		private final List<View> views;
 
+		// Reused for every base table in the query.
+		private final ColumnTerms columnTerms;
+
 		private int count;
 
 		private AstVisitor() {
 			this.views = Lists.newArrayList();
+			this.columnTerms = new ColumnTerms();
 			this.count = 0;
 		}
 
@@ -91,13 +94,19 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 			BaseTable table = from.getBaseTable();
 			count++;
 
-			Map<BaseColumn, UnionFindNode<Term>> columnMap = Maps.newHashMap();
-			table.getConditionVertex().visitReachableVertices(new TermMapInitializer(columnMap));
-			table.getConditionVertex().visitReachableVertices(new VertexVisitor(columnMap));
-
-			AtomExtractor extractor = new AtomExtractor(columnMap, "Q" + count);
-			table.getConditionVertex().visitReachableVertices(extractor);
-			views.add(extractor.view());
+			Tracing.begin("extract", from.tableName());
+			try {
+				LDVertex<Object, EqualityConstraint> vertex = table.getConditionVertex();
+				columnTerms.reset();
+				vertex.visitReachableVertices(new TermMapInitializer(columnTerms));
+				vertex.visitReachableVertices(new VertexVisitor(columnTerms));
+
+				AtomExtractor extractor = new AtomExtractor(columnTerms, "Q" + count);
+				vertex.visitReachableVertices(extractor);
+				views.add(extractor.view());
+			} finally {
+				Tracing.end();
+			}
 		}
 
 		@Override
@@ -108,11 +117,64 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 		}
 	}
 
+	/**
+	 * Union-find structure over the columns of all the base tables that are reachable from a
+	 * single condition vertex. Each registered table is assigned a contiguous block of ids, and a
+	 * column's id is the start of its table's block plus the column's ordinal.
+	 */
+	private static final class ColumnTerms {
+		private final IntUnionFind<Term> terms;
+
+		private final Map<BaseTable, Integer> tableOffsets;
+
+		ColumnTerms() {
+			this.terms = IntUnionFind.create();
+			this.tableOffsets = Maps.newHashMap();
+		}
+
+		void reset() {
+			terms.reset();
+			tableOffsets.clear();
+		}
+
+		void registerTable(BaseTable table) {
+			if (!tableOffsets.containsKey(table)) {
+				List<BaseColumn> columns = table.columns();
+				tableOffsets.put(table, terms.size());
+				terms.ensureCapacity(columns.size());
+
+				for (BaseColumn column : columns) {
+					terms.add(column.getTerm());
+				}
+			}
+		}
+
+		/**
+		 * Get the id of {@code column}, or {@code -1} if its table hasn't been registered.
+		 */
+		int idOf(BaseColumn column) {
+			Integer offset = tableOffsets.get(column.parent());
+			return (offset != null) ? offset + column.ordinal() : -1;
+		}
+
+		Term get(int id) {
+			return terms.get(id);
+		}
+
+		void set(int id, Term term) {
+			terms.set(id, term);
+		}
+
+		void merge(int first, int second) {
+			terms.merge(first, second);
+		}
+	}
+
 	private static class VertexVisitor implements LDVertexVisitor<Object, EqualityConstraint> {
 		private final EdgeMatcher matcher;
 
-		VertexVisitor(Map<BaseColumn, UnionFindNode<Term>> columnMap) {
-			this.matcher = new EdgeMatcher(columnMap);
+		VertexVisitor(ColumnTerms columnTerms) {
+			this.matcher = new EdgeMatcher(columnTerms);
 		}
 
 		@Override
@@ -124,10 +186,10 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 	}
 
 	private static final class EdgeMatcher implements EqualityConstraintMatcher {
-		private final Map<BaseColumn, UnionFindNode<Term>> columnMap;
+		private final ColumnTerms columnTerms;
 
-		private EdgeMatcher(Map<BaseColumn, UnionFindNode<Term>> columnMap) {
-			this.columnMap = Preconditions.checkNotNull(columnMap);
+		private EdgeMatcher(ColumnTerms columnTerms) {
+			this.columnTerms = Preconditions.checkNotNull(columnTerms);
 		}
 
 		@Override
@@ -136,48 +198,48 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 
 		@Override
 		public void match(ConstantArg left, BaseColumnArg right) {
-			UnionFindNode<Term> rightUnionFind = columnMap.get(right.column());
+			int rightId = columnTerms.idOf(right.column());
 
-			if (rightUnionFind != null) {
+			if (rightId >= 0) {
 				Term leftTerm = Terms.constant(left.value());
-				Term rightTerm = rightUnionFind.get();
+				Term rightTerm = columnTerms.get(rightId);
 				Term unifier = leftTerm.unifyWith(rightTerm);
 
 				if (unifier != null) {
-					rightUnionFind.set(unifier);
+					columnTerms.set(rightId, unifier);
 				}
 			}
 		}
 
 		@Override
 		public void match(BaseColumnArg left, ConstantArg right) {
-			UnionFindNode<Term> leftUnionFind = columnMap.get(left.column());
+			int leftId = columnTerms.idOf(left.column());
 
-			if (leftUnionFind != null) {
+			if (leftId >= 0) {
 				Term leftTerm = Terms.constant(right.value());
-				Term rightTerm = leftUnionFind.get();
+				Term rightTerm = columnTerms.get(leftId);
 				Term unifier = leftTerm.unifyWith(rightTerm);
 
 				if (unifier != null) {
-					leftUnionFind.set(unifier);
+					columnTerms.set(leftId, unifier);
 				}
 			}
 		}
 
 		@Override
 		public void match(BaseColumnArg left, BaseColumnArg right) {
-			UnionFindNode<Term> leftUnionFind = columnMap.get(left.column());
-			UnionFindNode<Term> rightUnionFind = columnMap.get(right.column());
+			int leftId = columnTerms.idOf(left.column());
+			int rightId = columnTerms.idOf(right.column());
 
-			if (leftUnionFind != null && rightUnionFind != null) {
-				Term leftTerm = leftUnionFind.get();
-				Term rightTerm = rightUnionFind.get();
+			if (leftId >= 0 && rightId >= 0) {
+				Term leftTerm = columnTerms.get(leftId);
+				Term rightTerm = columnTerms.get(rightId);
 				Term unifier = leftTerm.unifyWith(rightTerm);
 
 				if (unifier != null) {
-					leftUnionFind.set(unifier);
-					rightUnionFind.set(unifier);
-					leftUnionFind.mergeWith(rightUnionFind);
+					columnTerms.set(leftId, unifier);
+					columnTerms.set(rightId, unifier);
+					columnTerms.merge(leftId, rightId);
 				}
 			}
 		}
@@ -185,37 +247,24 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 
 	private static final class TermMapInitializer
 			implements LDVertexVisitor<Object, EqualityConstraint> {
-		private final Map<BaseColumn, UnionFindNode<Term>> columnMap;
-
-		private final Set<BaseTable> tableSet;
-
-		TermMapInitializer(Map<BaseColumn, UnionFindNode<Term>> columnMap) {
-			this.columnMap = Preconditions.checkNotNull(columnMap);
-			tableSet = Sets.newHashSet();
-		}
+		private final ColumnTerms columnTerms;
 
-		private void registerTable(BaseTable table) {
-			if (!tableSet.contains(table)) {
-				tableSet.add(table);
-
-				for (BaseColumn newColumn : table.columns()) {
-					columnMap.put(newColumn, UnionFindNode.create(newColumn.getTerm()));
-				}
-			}
+		TermMapInitializer(ColumnTerms columnTerms) {
+			this.columnTerms = Preconditions.checkNotNull(columnTerms);
 		}
 
 		@Override
 		public void visit(LDVertex<Object, EqualityConstraint> vertex) {
 			Object key = vertex.key();
 			if (key instanceof BaseTable) {
-				registerTable((BaseTable) key);
+				columnTerms.registerTable((BaseTable) key);
 			}
 		}
 	}
 
 	private static final class AtomExtractor
 			implements LDVertexVisitor<Object, EqualityConstraint> {
-		private final Map<BaseColumn, UnionFindNode<Term>> columnMap;
+		private final ColumnTerms columnTerms;
 
 		private Atom body;
 
@@ -223,8 +272,8 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 
 		private final String name;
 
-		AtomExtractor(Map<BaseColumn, UnionFindNode<Term>> columnMap, String name) {
-			this.columnMap = Preconditions.checkNotNull(columnMap);
+		AtomExtractor(ColumnTerms columnTerms, String name) {
+			this.columnTerms = Preconditions.checkNotNull(columnTerms);
 			this.name = Preconditions.checkNotNull(name);
 			this.body = null;
 			this.conditions = Lists.newArrayList();
@@ -240,7 +289,7 @@ final class ViewExtractor implements OutputPass<ImmutableList<View>> {
 
 			List<Term> terms = Lists.newArrayListWithCapacity(relation.arity());
 			for (BaseColumn column : table.columns()) {
-				terms.add(columnMap.get(column).get());
+				terms.add(columnTerms.get(columnTerms.idOf(column)));
 			}
 
 			return createMultisetAtom(relation, terms);
@@ -0,0 +1,429 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.policy;
+
+import com.github.explainable.batch.SqlLog;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads security views from one or more files of {@code ;}-terminated SQL queries and keeps them
+ * up to date as the files change. Files are split with {@link SqlLog}, and the statements are
+ * parsed and compiled on a pool of worker threads. Compiled views are cached by a hash of their SQL
+ * text, so a reload only compiles the statements that were added or edited since the last load.
+ *
+ * <p>Each successful load publishes a new {@link PolicyLabeler} atomically: callers that fetch
+ * {@link #labeler()} once per request always see a complete, consistent set of security views. A
+ * reload that fails (for example, because an edited view has a syntax error) leaves the previous
+ * views in place.
+ *
+ * <p>Changes are detected by polling each file's size and modification time, either explicitly
+ * through {@link #reloadIfChanged} or periodically after {@link #startWatching}.
+ */
+public final class SecurityViewLoader implements Closeable {
+	/**
+	 * Receives notifications about background reloads started by {@link #startWatching}.
+	 */
+	public interface Listener {
+		void reloaded(ImmutableList<View> securityViews);
+
+		void reloadFailed(Exception cause);
+	}
+
+	private static final HashFunction HASH_FUNCTION = Hashing.sha1();
+
+	private final Schema schema;
+
+	private final ImmutableList<File> files;
+
+	private final long pollIntervalMillis;
+
+	private final ExecutorService workers;
+
+	private final ThreadLocal<ViewExtractionPipeline> pipelines
+			= new ThreadLocal<ViewExtractionPipeline>() {
+		@Override
+		protected ViewExtractionPipeline initialValue() {
+			return ViewExtractionPipeline.create(schema);
+		}
+	};
+
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(null);
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final AtomicLong compiledStatements = new AtomicLong(0);
+
+	// Only accessed while holding the lock on this object.
+	private ImmutableMap<HashCode, View> compiledViews = ImmutableMap.of();
+
+	// Stamps of the files at the start of the last load attempt, successful or not. Only accessed
+	// while holding the lock on this object.
+	private ImmutableList<FileStamp> attemptedStamps = null;
+
+	private ScheduledExecutorService watcher = null;
+
+	private SecurityViewLoader(Builder builder) {
+		this.schema = builder.schema;
+		this.files = builder.files;
+		this.pollIntervalMillis = builder.pollIntervalMillis;
+		this.workers = Executors.newFixedThreadPool(builder.threadCount, daemonThreads("loader"));
+	}
+
+	public static Builder builder(Schema schema, List<File> files) {
+		return new Builder(schema, files);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		private final ImmutableList<File> files;
+
+		private int threadCount = Runtime.getRuntime().availableProcessors();
+
+		private long pollIntervalMillis = 1000;
+
+		private Builder(Schema schema, List<File> files) {
+			this.schema = Preconditions.checkNotNull(schema);
+			this.files = ImmutableList.copyOf(files);
+		}
+
+		public Builder setThreadCount(int threadCount) {
+			Preconditions.checkArgument(threadCount > 0);
+			this.threadCount = threadCount;
+			return this;
+		}
+
+		/**
+		 * Set how often {@link #startWatching} checks the files for changes.
+		 */
+		public Builder setPollInterval(long interval, TimeUnit unit) {
+			Preconditions.checkArgument(interval > 0);
+			this.pollIntervalMillis = unit.toMillis(interval);
+			return this;
+		}
+
+		public SecurityViewLoader build() {
+			return new SecurityViewLoader(this);
+		}
+	}
+
+	/**
+	 * The state published by a successful load.
+	 */
+	private static final class Snapshot {
+		final ImmutableList<View> securityViews;
+
+		final PolicyLabeler labeler;
+
+		final long generation;
+
+		Snapshot(ImmutableList<View> securityViews, long generation) {
+			this.securityViews = securityViews;
+			this.labeler = PolicyLabeler.create(securityViews);
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * Size and modification time of a file, which change whenever its contents change on the file
+	 * systems that we care about.
+	 */
+	private static final class FileStamp {
+		final long length;
+
+		final long lastModified;
+
+		FileStamp(File file) {
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FileStamp)) {
+				return false;
+			}
+			FileStamp other = (FileStamp) obj;
+			return length == other.length && lastModified == other.lastModified;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(length, lastModified);
+		}
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		return new ThreadFactory() {
+			private final AtomicLong count = new AtomicLong(0);
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable,
+						"SecurityViewLoader-" + name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Load the security views from all of the files, replacing any views that were loaded before.
+	 * If the views can't be loaded, the previous views (if any) stay in place.
+	 *
+	 * @throws JSQLParserException if one of the views can't be parsed
+	 * @throws SqlException if one of the views isn't a valid query
+	 */
+	public synchronized void load() throws IOException, JSQLParserException {
+		// Take the stamps first, so that a write that races with the read triggers another load.
+		attemptedStamps = stamps();
+
+		List<String> statements = Lists.newArrayList();
+		for (File file : files) {
+			SqlLog log = SqlLog.open(file, workers);
+			for (int i = 0; i < log.statementCount(); i++) {
+				String sql = log.statement(i);
+				if (!sql.isEmpty()) {
+					statements.add(sql);
+				}
+			}
+		}
+
+		Map<HashCode, View> nextCompiledViews = Maps.newHashMap();
+		List<HashCode> hashes = Lists.newArrayListWithCapacity(statements.size());
+		Map<HashCode, Future<View>> pending = Maps.newHashMap();
+
+		for (final String sql : statements) {
+			HashCode hash = HASH_FUNCTION.hashString(sql, Charsets.UTF_8);
+			hashes.add(hash);
+
+			View cached = compiledViews.get(hash);
+			if (cached != null) {
+				nextCompiledViews.put(hash, cached);
+			} else if (!pending.containsKey(hash)) {
+				pending.put(hash, workers.submit(new Callable<View>() {
+					@Override
+					public View call() throws JSQLParserException {
+						return compile(sql);
+					}
+				}));
+			}
+		}
+
+		try {
+			for (Map.Entry<HashCode, Future<View>> entry : pending.entrySet()) {
+				nextCompiledViews.put(entry.getKey(), get(entry.getValue()));
+			}
+		} finally {
+			for (Future<View> future : pending.values()) {
+				future.cancel(true);
+			}
+		}
+
+		ImmutableList.Builder<View> securityViews = ImmutableList.builder();
+		for (HashCode hash : hashes) {
+			securityViews.add(nextCompiledViews.get(hash));
+		}
+
+		// Only keep the views that are still in use, so that edits don't leak memory.
+		compiledViews = ImmutableMap.copyOf(nextCompiledViews);
+		compiledStatements.addAndGet(pending.size());
+
+		Snapshot previous = snapshot.get();
+		snapshot.set(new Snapshot(
+				securityViews.build(),
+				(previous != null) ? previous.generation + 1 : 1));
+	}
+
+	private ImmutableList<FileStamp> stamps() {
+		ImmutableList.Builder<FileStamp> stamps = ImmutableList.builder();
+		for (File file : files) {
+			stamps.add(new FileStamp(file));
+		}
+		return stamps.build();
+	}
+
+	private View compile(String sql) throws JSQLParserException {
+		Statement statement = new CCJSqlParserManager().parse(new StringReader(sql));
+		if (!(statement instanceof Select)) {
+			throw new SqlException("Security views must be SELECT statements: " + sql);
+		}
+		return pipelines.get().execute((Select) statement).get(0);
+	}
+
+	private static View get(Future<View> future) throws JSQLParserException {
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), JSQLParserException.class);
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Load the security views again if any of the files changed since the last load attempt. A file
+	 * that failed to load isn't retried until it changes again.
+	 *
+	 * @return {@code true} if the views were reloaded
+	 */
+	public synchronized boolean reloadIfChanged() throws IOException, JSQLParserException {
+		if (stamps().equals(attemptedStamps)) {
+			return false;
+		}
+
+		load();
+		return true;
+	}
+
+	/**
+	 * Check the files for changes in the background, and reload them whenever they change.
+	 * Listeners are told about the outcome of every reload.
+	 */
+	public synchronized void startWatching() {
+		Preconditions.checkState(watcher == null, "Already watching");
+
+		watcher = Executors.newSingleThreadScheduledExecutor(daemonThreads("watcher"));
+		watcher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				poll();
+			}
+		}, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll() {
+		try {
+			if (reloadIfChanged()) {
+				ImmutableList<View> securityViews = securityViews();
+				for (Listener listener : listeners) {
+					listener.reloaded(securityViews);
+				}
+			}
+		} catch (Exception e) {
+			for (Listener listener : listeners) {
+				listener.reloadFailed(e);
+			}
+		}
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(Preconditions.checkNotNull(listener));
+	}
+
+	private Snapshot current() {
+		Snapshot current = snapshot.get();
+		Preconditions.checkState(current != null, "Security views haven't been loaded");
+		return current;
+	}
+
+	/**
+	 * The most recently loaded security views, in the order in which they appear in the files.
+	 */
+	public ImmutableList<View> securityViews() {
+		return current().securityViews;
+	}
+
+	/**
+	 * A labeler for the most recently loaded security views. The labeler never changes once it's
+	 * returned, so callers should fetch a new one for each request to pick up reloads.
+	 */
+	public PolicyLabeler labeler() {
+		return current().labeler;
+	}
+
+	/**
+	 * Number of successful loads so far.
+	 */
+	public long generation() {
+		Snapshot current = snapshot.get();
+		return (current != null) ? current.generation : 0;
+	}
+
+	/**
+	 * Total number of statements that have been compiled, as opposed to reused from an earlier
+	 * load.
+	 */
+	public long compiledStatementCount() {
+		return compiledStatements.get();
+	}
+
+	/**
+	 * Stop watching the files and shut down the worker threads. The most recently loaded views
+	 * remain available.
+	 */
+	@Override
+	public synchronized void close() {
+		if (watcher != null) {
+			watcher.shutdownNow();
+		}
+		workers.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("files", files)
+				.add("generation", generation())
+				.toString();
+	}
+}
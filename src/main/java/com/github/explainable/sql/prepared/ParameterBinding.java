@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermMap;
+import com.github.explainable.corelang.Terms;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+
+/**
+ * Term map that replaces the placeholder constant {@code '$1'} with the first argument of an
+ * {@code EXECUTE}, {@code '$2'} with the second argument, and so on.
+ */
+final class ParameterBinding implements TermMap {
+	private final ImmutableMap<Term, Integer> placeholders;
+
+	private final ImmutableList<Term> arguments;
+
+	private ParameterBinding(ImmutableMap<Term, Integer> placeholders, List<Term> arguments) {
+		Preconditions.checkArgument(placeholders.size() == arguments.size());
+		this.placeholders = placeholders;
+		this.arguments = ImmutableList.copyOf(arguments);
+	}
+
+	static ParameterBinding create(ImmutableMap<Term, Integer> placeholders, List<Term> arguments) {
+		return new ParameterBinding(placeholders, arguments);
+	}
+
+	/**
+	 * Map each of the placeholders {@code '$1'}, ..., {@code '$n'} to its zero-based index.
+	 */
+	static ImmutableMap<Term, Integer> placeholders(int parameterCount) {
+		ImmutableMap.Builder<Term, Integer> builder = ImmutableMap.builder();
+		for (int i = 0; i < parameterCount; i++) {
+			builder.put(placeholder(i + 1), i);
+		}
+		return builder.build();
+	}
+
+	static Term placeholder(int parameterNumber) {
+		return Terms.constant("$" + parameterNumber);
+	}
+
+	@Override
+	public Term apply(Term from) {
+		Integer index = placeholders.get(from);
+		return (index == null) ? from : arguments.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return placeholders.keySet() + " -> " + arguments;
+	}
+}
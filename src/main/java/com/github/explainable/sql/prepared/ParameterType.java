@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.Constant;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.Terms;
+
+/**
+ * Type of a {@code $n} parameter of a prepared statement. Each type determines which Java values
+ * may be bound to the parameter when the statement is executed.
+ */
+public enum ParameterType {
+	NUMERIC {
+		@Override
+		Term bind(Object value) {
+			if (value instanceof Long || value instanceof Integer
+					|| value instanceof Short || value instanceof Byte) {
+				return Terms.constant(((Number) value).longValue());
+			}
+			throw new IllegalArgumentException("Not an integer: " + value);
+		}
+
+		@Override
+		boolean accepts(Constant constant) {
+			return constant.value() instanceof Long;
+		}
+	},
+
+	STRING {
+		@Override
+		Term bind(Object value) {
+			if (value instanceof String) {
+				return Terms.constant(value);
+			}
+			throw new IllegalArgumentException("Not a string: " + value);
+		}
+
+		@Override
+		boolean accepts(Constant constant) {
+			return constant.value() instanceof String;
+		}
+	};
+
+	/**
+	 * Convert {@code value} to the constant that replaces the parameter in the extracted views.
+	 *
+	 * @throws IllegalArgumentException if {@code value} does not have the current type
+	 */
+	abstract Term bind(Object value);
+
+	/**
+	 * Check whether binding a value of the current type could produce {@code constant}.
+	 */
+	abstract boolean accepts(Constant constant);
+}
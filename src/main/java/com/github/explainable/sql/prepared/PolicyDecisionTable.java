@@ -0,0 +1,253 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.Constant;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermMap;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.Terms;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table of precomputed policies for a prepared statement.
+ *
+ * <p>Labeling only compares constants for equality, so the policy for an execution depends on each
+ * argument only through its equivalence class: which constant of the template views or the
+ * relevant security views the argument equals, or, if it equals none of them, which of the other
+ * arguments it equals. The table stores the policy for every combination of classes, so looking up
+ * a policy does not perform any containment checks.
+ *
+ * <p>The classes of the arguments are encoded as a mixed-radix number. If parameter {@code i} can
+ * equal {@code c} known constants then its digit ranges over {@code [0, c + i]}: the first
+ * {@code c} values pick a known constant, and the value {@code c + j} means that the argument is
+ * the {@code j}-th distinct unknown value among the first {@code i + 1} arguments.
+ */
+final class PolicyDecisionTable {
+	private final ImmutableList<ImmutableMap<Term, Integer>> knownConstants;
+
+	private final int[] radixes;
+
+	private final Policy[] policies;
+
+	private PolicyDecisionTable(
+			List<ImmutableMap<Term, Integer>> knownConstants,
+			int[] radixes,
+			Policy[] policies) {
+		this.knownConstants = ImmutableList.copyOf(knownConstants);
+		this.radixes = radixes;
+		this.policies = policies;
+	}
+
+	/**
+	 * Precompute the policies for a prepared statement.
+	 *
+	 * @return the table, or {@code null} if it would have more than {@code maxSize} entries
+	 */
+	@Nullable
+	static PolicyDecisionTable compile(
+			List<View> templateViews,
+			List<ParameterType> parameterTypes,
+			ImmutableMap<Term, Integer> placeholders,
+			PolicyLabeler labeler,
+			int maxSize) {
+		Set<Term> constants = Sets.newLinkedHashSet();
+		for (View view : templateViews) {
+			addConstants(view, constants);
+			for (View securityView : labeler.securityViewsFor(view.bodyRelation())) {
+				addConstants(securityView, constants);
+			}
+		}
+		constants.removeAll(placeholders.keySet());
+
+		int parameterCount = parameterTypes.size();
+		List<ImmutableMap<Term, Integer>> knownConstants = Lists.newArrayList();
+		List<List<Term>> representatives = Lists.newArrayList();
+		int[] radixes = new int[parameterCount];
+		long size = 1L;
+		for (int i = 0; i < parameterCount; i++) {
+			ImmutableMap.Builder<Term, Integer> indexes = ImmutableMap.builder();
+			List<Term> accepted = Lists.newArrayList();
+			for (Term constant : constants) {
+				if (parameterTypes.get(i).accepts((Constant) constant)) {
+					indexes.put(constant, accepted.size());
+					accepted.add(constant);
+				}
+			}
+
+			knownConstants.add(indexes.build());
+			representatives.add(accepted);
+			radixes[i] = accepted.size() + i + 1;
+
+			size *= radixes[i];
+			if (size > maxSize) {
+				return null;
+			}
+		}
+
+		Policy[] policies = new Policy[(int) size];
+		int[] digits = new int[parameterCount];
+		for (int index = 0; index < policies.length; index++) {
+			List<Term> arguments = decode(index, radixes, representatives, digits);
+			if (arguments != null) {
+				ParameterBinding binding = ParameterBinding.create(placeholders, arguments);
+				List<View> views = Lists.newArrayListWithCapacity(templateViews.size());
+				for (View view : templateViews) {
+					views.add(view.apply(binding));
+				}
+				policies[index] = labeler.label(views).simplify();
+			}
+		}
+
+		return new PolicyDecisionTable(knownConstants, radixes, policies);
+	}
+
+	private static void addConstants(View view, final Set<Term> constants) {
+		view.apply(new TermMap() {
+			@Override
+			public Term apply(Term from) {
+				if (from.type() == TermType.CONSTANT) {
+					constants.add(from);
+				}
+				return from;
+			}
+		});
+	}
+
+	/**
+	 * Pick a representative argument for each parameter in the combination of classes encoded by
+	 * {@code index}. Returns {@code null} if the combination can't occur because an unknown value
+	 * is numbered out of order.
+	 */
+	@Nullable
+	private static List<Term> decode(
+			int index,
+			int[] radixes,
+			List<List<Term>> representatives,
+			int[] digits) {
+		int remainder = index;
+		for (int i = 0; i < radixes.length; i++) {
+			digits[i] = remainder % radixes[i];
+			remainder /= radixes[i];
+		}
+
+		List<Term> arguments = Lists.newArrayListWithCapacity(radixes.length);
+		int unknownCount = 0;
+		for (int i = 0; i < radixes.length; i++) {
+			List<Term> known = representatives.get(i);
+			if (digits[i] < known.size()) {
+				arguments.add(known.get(digits[i]));
+			} else {
+				int unknown = digits[i] - known.size();
+				if (unknown > unknownCount) {
+					return null;
+				} else if (unknown == unknownCount) {
+					unknownCount++;
+				}
+				arguments.add(Terms.constant(new UnknownValue(unknown)));
+			}
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * Get the policy for an execution of the statement with the specified (already type-checked)
+	 * arguments.
+	 */
+	Policy lookup(List<Term> arguments) {
+		Preconditions.checkArgument(arguments.size() == radixes.length);
+
+		Map<Term, Integer> unknownIds = null;
+		int index = 0;
+		int multiplier = 1;
+		for (int i = 0; i < radixes.length; i++) {
+			Term argument = arguments.get(i);
+			ImmutableMap<Term, Integer> known = knownConstants.get(i);
+
+			Integer digit = known.get(argument);
+			if (digit == null) {
+				if (unknownIds == null) {
+					unknownIds = Maps.newHashMapWithExpectedSize(radixes.length);
+				}
+				Integer unknown = unknownIds.get(argument);
+				if (unknown == null) {
+					unknown = unknownIds.size();
+					unknownIds.put(argument, unknown);
+				}
+				digit = known.size() + unknown;
+			}
+
+			index += digit * multiplier;
+			multiplier *= radixes[i];
+		}
+
+		return policies[index];
+	}
+
+	int size() {
+		return policies.length;
+	}
+
+	/**
+	 * Placeholder for an argument that doesn't equal any constant known to the table. Two unknown
+	 * values are equal if and only if they have the same id.
+	 */
+	private static final class UnknownValue {
+		private final int id;
+
+		UnknownValue(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof UnknownValue) && id == ((UnknownValue) other).id;
+		}
+
+		@Override
+		public String toString() {
+			return "?" + id;
+		}
+	}
+}
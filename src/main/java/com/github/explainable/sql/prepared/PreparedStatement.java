@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermMap;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A named statement whose views were extracted once, when the statement was prepared. The views
+ * mention the placeholders {@code '$1'}, {@code '$2'}, ... in place of the statement's parameters,
+ * and executing the statement substitutes the bound arguments into them without parsing or
+ * analyzing any SQL. Instances are thread-safe.
+ */
+public final class PreparedStatement {
+	private final String name;
+
+	private final ImmutableList<ParameterType> parameterTypes;
+
+	private final ImmutableList<View> templateViews;
+
+	private final ImmutableMap<Term, Integer> placeholders;
+
+	/**
+	 * For each template view, whether it mentions a placeholder. Views that don't are shared by
+	 * every execution of the statement.
+	 */
+	private final boolean[] parameterized;
+
+	@Nullable
+	private final PolicyLabeler labeler;
+
+	@Nullable
+	private final PolicyDecisionTable decisionTable;
+
+	@Nullable
+	private final Cache<ImmutableList<Term>, Policy> policyCache;
+
+	private PreparedStatement(
+			String name,
+			List<ParameterType> parameterTypes,
+			List<View> templateViews,
+			@Nullable PolicyLabeler labeler,
+			int maxDecisionTableSize,
+			int policyCacheSize) {
+		this.name = Preconditions.checkNotNull(name);
+		this.parameterTypes = ImmutableList.copyOf(parameterTypes);
+		this.templateViews = ImmutableList.copyOf(templateViews);
+		this.placeholders = ParameterBinding.placeholders(parameterTypes.size());
+		this.labeler = labeler;
+
+		this.parameterized = new boolean[this.templateViews.size()];
+		for (int i = 0; i < parameterized.length; i++) {
+			parameterized[i] = mentionsPlaceholder(this.templateViews.get(i));
+		}
+
+		// Statements whose arguments fall into too many equivalence classes to tabulate are
+		// labeled on demand instead, with the most recent policies kept in a cache.
+		this.decisionTable = (labeler == null || maxDecisionTableSize == 0)
+				? null
+				: PolicyDecisionTable.compile(this.templateViews, this.parameterTypes, placeholders,
+						labeler, maxDecisionTableSize);
+		this.policyCache = (labeler == null || decisionTable != null)
+				? null
+				: CacheBuilder.newBuilder().maximumSize(policyCacheSize)
+						.<ImmutableList<Term>, Policy>build();
+	}
+
+	static PreparedStatement create(
+			String name,
+			List<ParameterType> parameterTypes,
+			List<View> templateViews,
+			@Nullable PolicyLabeler labeler,
+			int maxDecisionTableSize,
+			int policyCacheSize) {
+		return new PreparedStatement(name, parameterTypes, templateViews, labeler,
+				maxDecisionTableSize, policyCacheSize);
+	}
+
+	private boolean mentionsPlaceholder(View view) {
+		final boolean[] found = { false };
+		view.apply(new TermMap() {
+			@Override
+			public Term apply(Term from) {
+				if (placeholders.containsKey(from)) {
+					found[0] = true;
+				}
+				return from;
+			}
+		});
+		return found[0];
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public ImmutableList<ParameterType> parameterTypes() {
+		return parameterTypes;
+	}
+
+	/**
+	 * Get the views extracted from the statement, with placeholders in place of the parameters.
+	 */
+	public ImmutableList<View> templateViews() {
+		return templateViews;
+	}
+
+	/**
+	 * Get the views for an execution of the statement with the specified arguments.
+	 *
+	 * @throws IllegalArgumentException if the number or the types of the arguments don't match the
+	 * statement's parameters
+	 */
+	public ImmutableList<View> execute(Object... arguments) {
+		return execute(Arrays.asList(arguments));
+	}
+
+	public ImmutableList<View> execute(List<?> arguments) {
+		return bindViews(bindArguments(arguments));
+	}
+
+	/**
+	 * Get the policy for an execution of the statement with the specified arguments. Policies are
+	 * normally looked up in a table that was precomputed when the statement was prepared. If the
+	 * table would have been too large, policies are computed on demand and cached, so repeated
+	 * executions with the same arguments don't need to invoke the labeler.
+	 *
+	 * @throws IllegalStateException if the statement was prepared without a labeler
+	 * @throws IllegalArgumentException if the number or the types of the arguments don't match the
+	 * statement's parameters
+	 */
+	public Policy label(Object... arguments) {
+		return label(Arrays.asList(arguments));
+	}
+
+	public Policy label(List<?> arguments) {
+		Preconditions.checkState(labeler != null, "Statement prepared without a labeler: %s", name);
+
+		ImmutableList<Term> boundArguments = bindArguments(arguments);
+		if (decisionTable != null) {
+			return decisionTable.lookup(boundArguments);
+		}
+
+		Policy policy = policyCache.getIfPresent(boundArguments);
+		if (policy == null) {
+			policy = labeler.label(bindViews(boundArguments)).simplify();
+			policyCache.put(boundArguments, policy);
+		}
+
+		return policy;
+	}
+
+	private ImmutableList<Term> bindArguments(List<?> arguments) {
+		Preconditions.checkArgument(arguments.size() == parameterTypes.size(),
+				"Statement %s expects %s argument(s) but got %s",
+				name, parameterTypes.size(), arguments.size());
+
+		ImmutableList.Builder<Term> builder = ImmutableList.builder();
+		for (int i = 0; i < arguments.size(); i++) {
+			builder.add(parameterTypes.get(i).bind(Preconditions.checkNotNull(arguments.get(i))));
+		}
+		return builder.build();
+	}
+
+	private ImmutableList<View> bindViews(ImmutableList<Term> boundArguments) {
+		ParameterBinding binding = ParameterBinding.create(placeholders, boundArguments);
+
+		ImmutableList.Builder<View> views = ImmutableList.builder();
+		for (int i = 0; i < parameterized.length; i++) {
+			View view = templateViews.get(i);
+			views.add(parameterized[i] ? view.apply(binding) : view);
+		}
+		return views.build();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("name", name)
+				.add("parameterTypes", parameterTypes)
+				.add("templateViews", templateViews)
+				.add("decisionTableSize", (decisionTable == null) ? 0 : decisionTable.size())
+				.toString();
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import javax.annotation.Nullable;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of named prepared statements, analogous to PostgreSQL's {@code PREPARE} and
+ * {@code EXECUTE} commands. A statement refers to its parameters using the string literals
+ * {@code '$1'}, {@code '$2'}, and so on. Views are extracted from the statement once, when it's
+ * prepared, so executing a statement never parses or analyzes SQL. Instances are thread-safe.
+ *
+ * @see <a href="http://www.postgresql.org/docs/current/static/sql-prepare.html">
+ * http://www.postgresql.org/docs/current/static/sql-prepare.html</a>
+ */
+public final class PreparedStatementRegistry {
+	private static final Pattern PLACEHOLDER = Pattern.compile("'\\$(\\d+)'");
+
+	private static final int DEFAULT_MAX_DECISION_TABLE_SIZE = 4096;
+
+	private static final int DEFAULT_POLICY_CACHE_SIZE = 1024;
+
+	private final ViewExtractionPipeline extractor;
+
+	@Nullable
+	private final PolicyLabeler labeler;
+
+	private final int maxDecisionTableSize;
+
+	private final int policyCacheSize;
+
+	private final ConcurrentMap<String, PreparedStatement> statements;
+
+	private PreparedStatementRegistry(
+			ViewExtractionPipeline extractor,
+			@Nullable PolicyLabeler labeler,
+			int maxDecisionTableSize,
+			int policyCacheSize) {
+		this.extractor = Preconditions.checkNotNull(extractor);
+		this.labeler = labeler;
+		this.maxDecisionTableSize = maxDecisionTableSize;
+		this.policyCacheSize = policyCacheSize;
+		this.statements = Maps.newConcurrentMap();
+	}
+
+	/**
+	 * Create a registry whose statements can be executed but not labeled.
+	 */
+	public static PreparedStatementRegistry create(Schema schema) {
+		return builder(schema).build();
+	}
+
+	public static Builder builder(Schema schema) {
+		return new Builder(schema);
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+
+		@Nullable
+		private PolicyLabeler labeler;
+
+		private int maxDecisionTableSize;
+
+		private int policyCacheSize;
+
+		private Builder(Schema schema) {
+			this.schema = Preconditions.checkNotNull(schema);
+			this.labeler = null;
+			this.maxDecisionTableSize = DEFAULT_MAX_DECISION_TABLE_SIZE;
+			this.policyCacheSize = DEFAULT_POLICY_CACHE_SIZE;
+		}
+
+		/**
+		 * Set the labeler used by {@link PreparedStatement#label}. If no labeler is set then
+		 * prepared statements can be executed but not labeled.
+		 */
+		public Builder setLabeler(PolicyLabeler labeler) {
+			this.labeler = Preconditions.checkNotNull(labeler);
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of policies that are precomputed for each prepared statement. A
+		 * statement whose arguments can fall into more combinations of equivalence classes than
+		 * this is labeled on demand instead. Zero disables precomputation.
+		 */
+		public Builder setMaxDecisionTableSize(int maxDecisionTableSize) {
+			Preconditions.checkArgument(maxDecisionTableSize >= 0);
+			this.maxDecisionTableSize = maxDecisionTableSize;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of policies that are cached for each prepared statement that is
+		 * labeled on demand.
+		 */
+		public Builder setPolicyCacheSize(int policyCacheSize) {
+			Preconditions.checkArgument(policyCacheSize >= 0);
+			this.policyCacheSize = policyCacheSize;
+			return this;
+		}
+
+		public PreparedStatementRegistry build() {
+			return new PreparedStatementRegistry(
+					ViewExtractionPipeline.create(schema),
+					labeler,
+					maxDecisionTableSize,
+					policyCacheSize);
+		}
+	}
+
+	/**
+	 * Parse {@code sql} and register it under the name {@code name}.
+	 *
+	 * @throws SqlException if the statement isn't a valid {@code SELECT} statement or refers to a
+	 * parameter that isn't declared in {@code parameterTypes}
+	 * @throws IllegalArgumentException if a statement named {@code name} already exists
+	 */
+	public PreparedStatement prepare(String name, String sql, ParameterType... parameterTypes)
+			throws JSQLParserException {
+		Statement statement = new CCJSqlParserManager().parse(new StringReader(sql));
+		if (!(statement instanceof Select)) {
+			throw new SqlException("Only SELECT statements can be prepared: " + sql);
+		}
+		return prepare(name, (Select) statement, parameterTypes);
+	}
+
+	public synchronized PreparedStatement prepare(
+			String name,
+			Select select,
+			ParameterType... parameterTypes) {
+		Preconditions.checkNotNull(name);
+		Preconditions.checkArgument(!statements.containsKey(name),
+				"Prepared statement already exists: %s", name);
+		checkPlaceholders(select, parameterTypes.length);
+
+		List<View> templateViews = extractor.execute(select);
+		PreparedStatement prepared = PreparedStatement.create(
+				name, Arrays.asList(parameterTypes), templateViews, labeler,
+				maxDecisionTableSize, policyCacheSize);
+		statements.put(name, prepared);
+		return prepared;
+	}
+
+	private static void checkPlaceholders(Select select, int parameterCount) {
+		Matcher matcher = PLACEHOLDER.matcher(select.toString());
+		while (matcher.find()) {
+			int parameterNumber = Integer.parseInt(matcher.group(1));
+			if (parameterNumber < 1 || parameterNumber > parameterCount) {
+				throw new SqlException("Undeclared parameter $" + parameterNumber + " in " + select);
+			}
+		}
+	}
+
+	/**
+	 * Get the statement named {@code name}, or {@code null} if there is no such statement.
+	 */
+	@Nullable
+	public PreparedStatement get(String name) {
+		return statements.get(Preconditions.checkNotNull(name));
+	}
+
+	/**
+	 * Remove the statement named {@code name}, analogous to PostgreSQL's {@code DEALLOCATE}.
+	 *
+	 * @return true if the statement existed
+	 */
+	public boolean deallocate(String name) {
+		return statements.remove(Preconditions.checkNotNull(name)) != null;
+	}
+
+	public ImmutableList<View> execute(String name, Object... arguments) {
+		return lookup(name).execute(arguments);
+	}
+
+	public Policy label(String name, Object... arguments) {
+		return lookup(name).label(arguments);
+	}
+
+	private PreparedStatement lookup(String name) {
+		PreparedStatement statement = get(name);
+		Preconditions.checkArgument(statement != null, "No such prepared statement: %s", name);
+		return statement;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("statements", statements.keySet())
+				.add("labeler", labeler)
+				.toString();
+	}
+}
@@ -42,6 +42,8 @@ public final class BaseColumn extends Column {
 
 	private final PrimitiveType type;
 
+	private final int ordinal;
+
 	// Lazily initialized the first time it's needed in order to break a cyclic dependency between
 	// the constructor of this object and the constructor of {@link BaseColumnArg}.
 	@Nullable
@@ -54,10 +56,11 @@ public final class BaseColumn extends Column {
 	 * Create a new table column with the specified name and parent. In general, this constructor
 	 * shouldn't be called directly.
 	 */
-	BaseColumn(String name, BaseTable parent, PrimitiveType type) {
+	BaseColumn(String name, BaseTable parent, PrimitiveType type, int ordinal) {
 		this.name = Preconditions.checkNotNull(name);
 		this.parent = Preconditions.checkNotNull(parent);
 		this.type = Preconditions.checkNotNull(type);
+		this.ordinal = ordinal;
 		this.equalityArg = null;
 		this.term = null;
 	}
@@ -77,6 +80,13 @@ public final class BaseColumn extends Column {
 		return type;
 	}
 
+	/**
+	 * Get the position of this column in {@code parent().columns()}.
+	 */
+	public int ordinal() {
+		return ordinal;
+	}
+
 	@Override
 	public EqualityArg equalityArg() {
 		if (equalityArg == null) {
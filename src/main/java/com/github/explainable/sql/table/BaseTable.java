@@ -90,7 +90,7 @@ public final class BaseTable extends Table {
 
 			ImmutableList.Builder<BaseColumn> columnsBuilder = ImmutableList.builder();
 			for (int i = 0; i < fieldNames.size(); i++) {
-				columnsBuilder.add(new BaseColumn(fieldNames.get(i), this, types.get(i)));
+				columnsBuilder.add(new BaseColumn(fieldNames.get(i), this, types.get(i), i));
 			}
 
 			columns = columnsBuilder.build();
@@ -99,6 +99,17 @@ public final class BaseTable extends Table {
 		return columns;
 	}
 
+	/**
+	 * Find the column with the specified name using the column ordinals that were precomputed for
+	 * the underlying relation.
+	 */
+	@Nullable
+	@Override
+	public BaseColumn findColumn(String columnName) {
+		int ordinal = relation.columnOrdinal(Preconditions.checkNotNull(columnName));
+		return (ordinal < 0) ? null : columns().get(ordinal);
+	}
+
 	@Override
 	public String alias() {
 		return alias;
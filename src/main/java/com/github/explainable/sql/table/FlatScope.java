@@ -41,10 +41,14 @@ import java.util.Set;
  * Class that keeps track of which tables and columns instances are defined in a SELECT statement.
  */
 final class FlatScope {
-	// Map that takes a table name and returns the corresponding table declaration.
+	// Map that takes a table alias and returns the corresponding table declaration.
 	private final Map<String, Table> tablesByName;
 
+	// List of all the tables in the current scope, in the order in which they were registered.
+	private final List<Table> allTables;
+
 	// Map that takes an unqualified column name and returns the corresponding table column(s).
+	// Qualified names are resolved through tablesByName instead, using the table's column ordinals.
 	private final SetMultimap<String, Column> columnsByName;
 
 	// List of all the columns in the input tables (including both base tables and temporary tables)
@@ -57,35 +61,56 @@ final class FlatScope {
 	// List of all the base tables in the current scope.
 	private final List<BaseTable> allBaseTables;
 
-	// List of tables whose alias and column names haven't been added to the indices above yet.
+	// List of tables whose columns haven't been added to the lists above yet.
 	private final List<Table> unregisteredTemporaryTables;
 
+	// Immutable copies of the lists above. Each one is built the first time it's requested after
+	// the corresponding list changes, so repeated calls to the accessors don't copy anything.
+	@Nullable
+	private ImmutableList<Column> allColumnsSnapshot;
+
+	@Nullable
+	private ImmutableList<BaseColumn> allBaseColumnsSnapshot;
+
+	@Nullable
+	private ImmutableList<BaseTable> allBaseTablesSnapshot;
+
 	FlatScope() {
 		this.tablesByName = Maps.newHashMap();
+		this.allTables = Lists.newArrayList();
 		this.columnsByName = HashMultimap.create();
 		this.allColumns = Lists.newArrayList();
 		this.allBaseColumns = Lists.newArrayList();
 		this.allBaseTables = Lists.newArrayList();
 		this.unregisteredTemporaryTables = Lists.newArrayList();
+		this.allColumnsSnapshot = null;
+		this.allBaseColumnsSnapshot = null;
+		this.allBaseTablesSnapshot = null;
 	}
 
-	private void registerTable(Table table) {
-		Preconditions.checkNotNull(table);
+	private void declareTable(Table table) {
 		String tableAlias = table.alias();
-
 		if (tablesByName.containsKey(tableAlias)) {
 			throw new SqlException("Table alias is already in use: " + tableAlias);
 		}
-
 		tablesByName.put(tableAlias, table);
+	}
 
+	private void registerTable(Table table) {
+		Preconditions.checkNotNull(table);
+		allTables.add(table);
 		for (Column column : table.columns()) {
 			allColumns.add(column);
 			columnsByName.put(column.name(), column);
 		}
+		allColumnsSnapshot = null;
 	}
 
 	private void registerNewTables() {
+		if (unregisteredTemporaryTables.isEmpty()) {
+			return;
+		}
+
 		for (Table newTable : unregisteredTemporaryTables) {
 			registerTable(newTable);
 		}
@@ -94,17 +119,17 @@ final class FlatScope {
 	}
 
 	BaseTable addBaseTable(BaseTable table) {
+		declareTable(table);
 		registerTable(table);
 		allBaseTables.add(table);
-
-		for (BaseColumn column : table.columns()) {
-			allBaseColumns.add(column);
-		}
-
+		allBaseColumns.addAll(table.columns());
+		allBaseTablesSnapshot = null;
+		allBaseColumnsSnapshot = null;
 		return table;
 	}
 
 	TempTable addTemporaryTable(TempTable table) {
+		declareTable(table);
 		unregisteredTemporaryTables.add(table);
 		return table;
 	}
@@ -114,52 +139,59 @@ final class FlatScope {
 	 */
 	ImmutableList<Column> allColumns() {
 		registerNewTables();
-		return ImmutableList.copyOf(allColumns);
+		if (allColumnsSnapshot == null) {
+			allColumnsSnapshot = ImmutableList.copyOf(allColumns);
+		}
+		return allColumnsSnapshot;
 	}
 
 	ImmutableList<BaseColumn> baseColumns() {
 		registerNewTables();
-		return ImmutableList.copyOf(allBaseColumns);
+		if (allBaseColumnsSnapshot == null) {
+			allBaseColumnsSnapshot = ImmutableList.copyOf(allBaseColumns);
+		}
+		return allBaseColumnsSnapshot;
 	}
 
 	ImmutableList<BaseTable> baseTables() {
 		registerNewTables();
-		return ImmutableList.copyOf(allBaseTables);
+		if (allBaseTablesSnapshot == null) {
+			allBaseTablesSnapshot = ImmutableList.copyOf(allBaseTables);
+		}
+		return allBaseTablesSnapshot;
 	}
 
+	/**
+	 * Find the table with the alias {@code tableAlias} in the current scope.
+	 *
+	 * @return the table, or {@code null} if no table in the scope has the specified alias
+	 */
 	@Nullable
-	ImmutableList<Column> columnsInTable(String tableAlias) {
-		Preconditions.checkNotNull(tableAlias);
-		registerNewTables();
-
-		if (tablesByName.containsKey(tableAlias)) {
-			return ImmutableList.copyOf(tablesByName.get(tableAlias).columns());
-		} else {
-			return null;
-		}
+	Table findTable(String tableAlias) {
+		return tablesByName.get(Preconditions.checkNotNull(tableAlias));
 	}
 
+	/**
+	 * Find the column with the unqualified name {@code columnName} in the current scope.
+	 *
+	 * @return the column, or {@code null} if none of the tables in the scope has such a column
+	 * @throws SqlException if two or more columns in the scope have the specified name
+	 */
 	@Nullable
-	Column findColumn(@Nullable String tableAlias, String columnName) {
+	Column findColumn(String columnName) {
 		Preconditions.checkNotNull(columnName);
 		registerNewTables();
 
-		if (tableAlias != null) {
-			Table table = tablesByName.get(tableAlias);
-			return (table == null) ? null : table.findColumn(columnName);
-		} else {
-			Set<Column> resultSet = columnsByName.get(columnName);
-
-			if (resultSet.size() > 1) {
-				throw new SqlException("Ambiguous column name: " + columnName);
-			}
-
-			return (resultSet.size() == 1) ? resultSet.iterator().next() : null;
+		Set<Column> resultSet = columnsByName.get(columnName);
+		if (resultSet.size() > 1) {
+			throw new SqlException("Ambiguous column name: " + columnName);
 		}
+
+		return (resultSet.size() == 1) ? resultSet.iterator().next() : null;
 	}
 
 	@Override
 	public String toString() {
-		return tablesByName.toString();
+		return allTables.toString();
 	}
 }
@@ -48,25 +48,43 @@ public final class NestedScope {
 	@Nullable
 	private final NestedScope parent;
 
+	// Number of scopes that enclose the current one; zero for the outermost query.
+	private final int depth;
+
 	private NestedScope(SqlPlainSelect select, @Nullable NestedScope parent) {
 		this.select = Preconditions.checkNotNull(select);
 		this.scope = new FlatScope();
 		this.parent = parent;
+		this.depth = (parent == null) ? 0 : (parent.depth + 1);
 	}
 
 	public static NestedScope create(SqlPlainSelect select, @Nullable NestedScope parent) {
 		return new NestedScope(select, parent);
 	}
 
-	public Column findColumn(@Nullable String tableAlias, String columnName) {
-		Column column = scope.findColumn(tableAlias, columnName);
-
-		if (column != null) {
-			return column;
-		}
+	/**
+	 * Get the nesting depth of the current scope: zero for the outermost query, one for a query
+	 * nested directly inside it, and so on.
+	 */
+	public int depth() {
+		return depth;
+	}
 
-		if (parent != null) {
-			return parent.findColumn(tableAlias, columnName);
+	public Column findColumn(@Nullable String tableAlias, String columnName) {
+		Preconditions.checkNotNull(columnName);
+
+		for (NestedScope current = this; current != null; current = current.parent) {
+			Column column;
+			if (tableAlias != null) {
+				Table table = current.scope.findTable(tableAlias);
+				column = (table == null) ? null : table.findColumn(columnName);
+			} else {
+				column = current.scope.findColumn(columnName);
+			}
+
+			if (column != null) {
+				return column;
+			}
 		}
 
 		String fullName = (tableAlias == null) ? columnName : (tableAlias + '.' + columnName);
@@ -74,14 +92,13 @@ public final class NestedScope {
 	}
 
 	public ImmutableList<Column> columnsInTable(String tableAlias) {
-		ImmutableList<Column> tableColumns = scope.columnsInTable(tableAlias);
-
-		if (tableColumns != null) {
-			return tableColumns;
-		}
+		Preconditions.checkNotNull(tableAlias);
 
-		if (parent != null) {
-			return parent.columnsInTable(tableAlias);
+		for (NestedScope current = this; current != null; current = current.parent) {
+			Table table = current.scope.findTable(tableAlias);
+			if (table != null) {
+				return ImmutableList.copyOf(table.columns());
+			}
 		}
 
 		throw new SqlException("Couldn't resolve table: " + tableAlias);
@@ -52,7 +52,7 @@ public abstract class Table {
 	 * @throws SqlException if the table contains two or more columns with the specified name
 	 */
 	@Nullable
-	public final Column findColumn(String columnName) {
+	public Column findColumn(String columnName) {
 		Preconditions.checkNotNull(this);
 		Preconditions.checkNotNull(columnName);
 
@@ -34,4 +34,10 @@ import com.github.explainable.sql.type.SchemaTableType;
  */
 public interface TypedRelation extends Relation {
 	SchemaTableType type();
+
+	/**
+	 * Get the position of the column named {@code columnName} in {@link #columnNames()}, or
+	 * {@code -1} if the relation has no such column.
+	 */
+	int columnOrdinal(String columnName);
 }
@@ -32,9 +32,12 @@ import com.github.explainable.sql.type.SchemaTableType;
 import com.github.explainable.sql.type.TypeSystem;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Default implementation of {@link TypedRelation}.
@@ -44,10 +47,22 @@ public final class TypedRelationImpl implements TypedRelation {
 
 	private final SchemaTableType type;
 
+	// Built once per relation so that resolving a column of a table instance is a single lookup.
+	private final ImmutableMap<String, Integer> columnOrdinals;
+
 	private TypedRelationImpl(Relation relation, SchemaTableType type) {
 		this.relation = Preconditions.checkNotNull(relation);
 		this.type = Preconditions.checkNotNull(type);
 		Preconditions.checkArgument(relation.arity() == type.arity());
+
+		Map<String, Integer> ordinals = Maps.newHashMap();
+		ImmutableList<String> columnNames = relation.columnNames();
+		for (int i = 0; i < columnNames.size(); i++) {
+			Integer previous = ordinals.put(columnNames.get(i), i);
+			Preconditions.checkArgument(previous == null,
+					"Duplicate column name in %s: %s", relation.name(), columnNames.get(i));
+		}
+		this.columnOrdinals = ImmutableMap.copyOf(ordinals);
 	}
 
 	public static Builder builder() {
@@ -74,6 +89,12 @@ public final class TypedRelationImpl implements TypedRelation {
 		return type;
 	}
 
+	@Override
+	public int columnOrdinal(String columnName) {
+		Integer ordinal = columnOrdinals.get(columnName);
+		return (ordinal == null) ? -1 : ordinal;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (!(o instanceof TypedRelationImpl)) {
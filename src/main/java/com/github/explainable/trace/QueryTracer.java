@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples requests and writes the spans of the sampled ones to a rolling trace file that can be
+ * opened in chrome://tracing or Perfetto; see {@link Tracing} for how the library marks spans.
+ * Callers bracket the handling of each request like this:
+ *
+ * <pre>
+ * boolean traced = tracer.beginRequest("label", sql);
+ * try {
+ *   ...
+ * } finally {
+ *   if (traced) {
+ *     tracer.endRequest();
+ *   }
+ * }
+ * </pre>
+ *
+ * One request in every {@link Builder#setSamplingInterval sampling interval} is traced. While a
+ * request is traced, its thread records spans in a buffer that's allocated once per thread, and
+ * the spans are only formatted and written out when the request ends. Tracers are thread-safe.
+ */
+public final class QueryTracer implements Closeable {
+	private final File file;
+
+	private final int samplingInterval;
+
+	private final long originNanos;
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong tracedRequests = new AtomicLong();
+
+	private final AtomicLong failedWrites = new AtomicLong();
+
+	@Nullable
+	private final TraceFileWriter writer;
+
+	private volatile boolean closed = false;
+
+	private QueryTracer(Builder builder) throws IOException {
+		this.file = builder.file;
+		this.samplingInterval = builder.samplingInterval;
+		this.originNanos = System.nanoTime();
+
+		if (samplingInterval > 0) {
+			this.writer = new TraceFileWriter(
+					file, builder.maxFileBytes, builder.maxFiles, originNanos);
+			Tracing.tracerOpened();
+		} else {
+			this.writer = null;
+		}
+	}
+
+	public static Builder builder(File file) {
+		return new Builder(file);
+	}
+
+	public static final class Builder {
+		private final File file;
+
+		private int samplingInterval = 100;
+
+		private long maxFileBytes = 64L << 20;
+
+		private int maxFiles = 4;
+
+		private Builder(File file) {
+			this.file = Preconditions.checkNotNull(file);
+		}
+
+		/**
+		 * Trace one request in every {@code samplingInterval}, or none at all if it's {@code 0}.
+		 * Defaults to {@code 100}.
+		 */
+		public Builder setSamplingInterval(int samplingInterval) {
+			Preconditions.checkArgument(samplingInterval >= 0);
+			this.samplingInterval = samplingInterval;
+			return this;
+		}
+
+		/**
+		 * Start a new trace file once the current one reaches {@code maxFileBytes}. Defaults to
+		 * 64 MB.
+		 */
+		public Builder setMaxFileBytes(long maxFileBytes) {
+			Preconditions.checkArgument(maxFileBytes > 0);
+			this.maxFileBytes = maxFileBytes;
+			return this;
+		}
+
+		/**
+		 * Keep at most {@code maxFiles} trace files, including the current one. Defaults to
+		 * {@code 4}.
+		 */
+		public Builder setMaxFiles(int maxFiles) {
+			Preconditions.checkArgument(maxFiles > 0);
+			this.maxFiles = maxFiles;
+			return this;
+		}
+
+		public QueryTracer build() throws IOException {
+			return new QueryTracer(this);
+		}
+	}
+
+	/**
+	 * Decide whether to trace a request that the current thread is about to handle, and if so,
+	 * open the request's span. Requests that start while the thread is already tracing one are
+	 * treated as part of it.
+	 *
+	 * @param name the name of the request's span
+	 * @param detail what the request works on (e.g., its SQL text), or {@code null}
+	 * @return whether the request is traced, in which case {@link #endRequest} must be called
+	 */
+	public boolean beginRequest(String name, @Nullable String detail) {
+		if (writer == null || closed) {
+			return false;
+		}
+
+		long requestId = requests.getAndIncrement();
+		if (requestId % samplingInterval != 0) {
+			return false;
+		}
+
+		SpanBuffer buffer = Tracing.buffer();
+		if (buffer.isActive()) {
+			return false;
+		}
+
+		buffer.start(requestId, SpanBuffer.MAX_DEPTH);
+		buffer.begin(name, detail, System.nanoTime());
+		return true;
+	}
+
+	/**
+	 * End the request that the current thread is tracing and write out its spans. Spans that the
+	 * request left open (e.g., because of an exception) end at the same time.
+	 */
+	public void endRequest() {
+		SpanBuffer buffer = Tracing.buffer();
+		if (!buffer.isActive()) {
+			return;
+		}
+		buffer.finish(System.nanoTime());
+
+		try {
+			writer.write(buffer);
+			tracedRequests.incrementAndGet();
+		} catch (IOException e) {
+			// Tracing mustn't break the requests it observes.
+			failedWrites.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Number of requests that have been traced and written out.
+	 */
+	public long tracedRequests() {
+		return tracedRequests.get();
+	}
+
+	/**
+	 * Number of traced requests that couldn't be written to the file.
+	 */
+	public long failedWrites() {
+		return failedWrites.get();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null && !closed) {
+			closed = true;
+			Tracing.tracerClosed();
+			writer.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("file", file)
+				.add("samplingInterval", samplingInterval)
+				.add("tracedRequests", tracedRequests)
+				.toString();
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.google.common.base.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Preallocated buffer that holds the spans of the request that one thread is tracing. Spans are
+ * stored when they end, so the buffer only ever holds complete spans; once it's full, each new
+ * span overwrites the oldest one. Spans that are nested more deeply than the request's depth limit
+ * (at most {@link #MAX_DEPTH}) aren't recorded at all.
+ *
+ * <p>Separately from the spans, the buffer can record the names and durations of the first {@link
+ * #MAX_STAGES} spans that end at one particular depth (the stages of a request; see {@link
+ * StageRecorder}). Stages are kept in their own arrays so that they survive even when a traced
+ * request has so many nested spans that the stages are overwritten in the span buffer.
+ */
+final class SpanBuffer {
+	static final int CAPACITY = 4096;
+
+	static final int MAX_DEPTH = 128;
+
+	static final int MAX_STAGES = 64;
+
+	private final String[] names = new String[CAPACITY];
+
+	private final String[] details = new String[CAPACITY];
+
+	private final String[] counterNames = new String[CAPACITY];
+
+	private final long[] counterValues = new long[CAPACITY];
+
+	private final long[] startNanos = new long[CAPACITY];
+
+	private final long[] durationNanos = new long[CAPACITY];
+
+	private final String[] openNames = new String[MAX_DEPTH];
+
+	private final String[] openDetails = new String[MAX_DEPTH];
+
+	private final long[] openStartNanos = new long[MAX_DEPTH];
+
+	private final String[] stageNames = new String[MAX_STAGES];
+
+	private final long[] stageNanos = new long[MAX_STAGES];
+
+	private int depth = 0;
+
+	private int depthLimit = MAX_DEPTH;
+
+	// Number of begin() calls that were ignored because the stack of open spans was full.
+	private int ignoredDepth = 0;
+
+	// Total number of spans that ended since the last reset, including overwritten ones.
+	private long completed = 0L;
+
+	// Depth at which spans are recorded as stages, or -1 if stages aren't being recorded.
+	private int stageDepth = -1;
+
+	private int stageCount = 0;
+
+	private boolean active = false;
+
+	private long requestId = -1L;
+
+	boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Check whether a span that began now would be recorded.
+	 */
+	boolean isRecording() {
+		return active && depth < depthLimit && ignoredDepth == 0;
+	}
+
+	/**
+	 * Discard the previous request's spans and start recording a new request.
+	 *
+	 * @param depthLimit spans that begin while this many spans are open aren't recorded
+	 */
+	void start(long requestId, int depthLimit) {
+		// Drop references to the previous request's strings, which can be large (e.g., SQL text).
+		for (int i = 0; i < size(); i++) {
+			details[index(completed - 1 - i)] = null;
+		}
+		this.depth = 0;
+		this.ignoredDepth = 0;
+		this.completed = 0L;
+		this.requestId = requestId;
+		this.depthLimit = Math.min(depthLimit, MAX_DEPTH);
+		this.active = true;
+	}
+
+	/**
+	 * End all the spans that are still open and stop recording.
+	 */
+	void finish(long nowNanos) {
+		while (depth > 0 || ignoredDepth > 0) {
+			end(null, 0L, nowNanos);
+		}
+		active = false;
+	}
+
+	long requestId() {
+		return requestId;
+	}
+
+	void begin(String name, @Nullable String detail, long nowNanos) {
+		if (depth == depthLimit) {
+			ignoredDepth++;
+			return;
+		}
+		openNames[depth] = name;
+		openDetails[depth] = detail;
+		openStartNanos[depth] = nowNanos;
+		depth++;
+	}
+
+	void end(@Nullable String counterName, long counterValue, long nowNanos) {
+		if (ignoredDepth > 0) {
+			ignoredDepth--;
+			return;
+		}
+		if (depth == 0) {
+			// Unbalanced end(), e.g., for a span that began before the request did.
+			return;
+		}
+
+		depth--;
+		int slot = index(completed);
+		names[slot] = openNames[depth];
+		details[slot] = openDetails[depth];
+		counterNames[slot] = counterName;
+		counterValues[slot] = counterValue;
+		startNanos[slot] = openStartNanos[depth];
+		durationNanos[slot] = nowNanos - openStartNanos[depth];
+		openDetails[depth] = null;
+		completed++;
+
+		if (depth == stageDepth && stageCount < MAX_STAGES) {
+			stageNames[stageCount] = names[slot];
+			stageNanos[stageCount] = durationNanos[slot];
+			stageCount++;
+		}
+	}
+
+	/**
+	 * Start recording the spans that end at the current depth as stages, discarding any stages that
+	 * were recorded before.
+	 */
+	void startStages() {
+		stageDepth = depth;
+		stageCount = 0;
+	}
+
+	/**
+	 * Stop recording stages. The stages that were already recorded are kept until the next call to
+	 * {@link #startStages}.
+	 */
+	void stopStages() {
+		stageDepth = -1;
+	}
+
+	/**
+	 * Number of stages that were recorded, which are numbered from {@code 0} to {@code
+	 * stageCount() - 1} in the order that they ended.
+	 */
+	int stageCount() {
+		return stageCount;
+	}
+
+	String stageName(int stage) {
+		return stageNames[stage];
+	}
+
+	long stageNanos(int stage) {
+		return stageNanos[stage];
+	}
+
+	private static int index(long sequence) {
+		return (int) (sequence & (CAPACITY - 1));
+	}
+
+	/**
+	 * Number of spans in the buffer, which are numbered from {@code 0} (the oldest) to {@code
+	 * size() - 1}.
+	 */
+	int size() {
+		return (int) Math.min(completed, CAPACITY);
+	}
+
+	/**
+	 * Number of spans that were overwritten because the request had more than {@link #CAPACITY}.
+	 */
+	long dropped() {
+		return completed - size();
+	}
+
+	private int slot(int span) {
+		return index(completed - size() + span);
+	}
+
+	String name(int span) {
+		return names[slot(span)];
+	}
+
+	@Nullable
+	String detail(int span) {
+		return details[slot(span)];
+	}
+
+	@Nullable
+	String counterName(int span) {
+		return counterNames[slot(span)];
+	}
+
+	long counterValue(int span) {
+		return counterValues[slot(span)];
+	}
+
+	long startNanos(int span) {
+		return startNanos[slot(span)];
+	}
+
+	long durationNanos(int span) {
+		return durationNanos[slot(span)];
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("active", active)
+				.add("requestId", requestId)
+				.add("depth", depth)
+				.add("completed", completed)
+				.toString();
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import java.io.Closeable;
+
+/**
+ * Times the stages of every request, where the stages are the outermost spans that the library
+ * marks through {@link Tracing} while the request runs (parsing, each pass of the view extraction
+ * pipeline, labeling, and so on). Nested spans such as individual containment checks aren't
+ * recorded, which keeps the cost low enough to time every request. At most {@value
+ * SpanBuffer#MAX_STAGES} stages are recorded per request. Use it like this:
+ *
+ * <pre>
+ * StageRecorder.Capture capture = recorder.begin();
+ * try {
+ *   ...
+ * } finally {
+ *   long elapsedNanos = capture.end();
+ *   if (elapsedNanos > threshold) {
+ *     report(capture.stages());
+ *   }
+ * }
+ * </pre>
+ *
+ * If a {@link QueryTracer} is already tracing the request, the capture shares its spans, but
+ * stages are recorded separately so that the tracer's nested spans can't overwrite them. Recorders
+ * are thread-safe, but each capture must begin and end on the same thread.
+ */
+public final class StageRecorder implements Closeable {
+	private boolean closed = false;
+
+	private StageRecorder() {
+		Tracing.tracerOpened();
+	}
+
+	public static StageRecorder open() {
+		return new StageRecorder();
+	}
+
+	/**
+	 * The stages of one request on one thread.
+	 */
+	public static final class Capture {
+		private final SpanBuffer buffer;
+
+		private final boolean ownsBuffer;
+
+		private final long startNanos;
+
+		private long endNanos = -1L;
+
+		private Capture(SpanBuffer buffer) {
+			this.buffer = buffer;
+			this.ownsBuffer = !buffer.isActive();
+			if (ownsBuffer) {
+				buffer.start(-1L, 1);
+			}
+			buffer.startStages();
+			this.startNanos = System.nanoTime();
+		}
+
+		/**
+		 * Stop timing the request.
+		 *
+		 * @return the number of nanoseconds since the capture began
+		 */
+		public long end() {
+			if (endNanos < 0L) {
+				endNanos = System.nanoTime();
+				buffer.stopStages();
+				if (ownsBuffer) {
+					buffer.finish(endNanos);
+				}
+			}
+			return endNanos - startNanos;
+		}
+
+		/**
+		 * The stages that ended during the capture, in the order that they ended. This must be
+		 * called after {@link #end} on the same thread, before it begins another capture or
+		 * traced request.
+		 */
+		public ImmutableList<StageTiming> stages() {
+			ImmutableList.Builder<StageTiming> stages = ImmutableList.builder();
+			for (int stage = 0; stage < buffer.stageCount(); stage++) {
+				stages.add(new StageTiming(buffer.stageName(stage), buffer.stageNanos(stage)));
+			}
+			return stages.build();
+		}
+
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+					.add("ownsBuffer", ownsBuffer)
+					.add("startNanos", startNanos)
+					.add("endNanos", endNanos)
+					.toString();
+		}
+	}
+
+	/**
+	 * Start timing a request on the current thread.
+	 */
+	public Capture begin() {
+		return new Capture(Tracing.buffer());
+	}
+
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			Tracing.tracerClosed();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("closed", closed)
+				.toString();
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * How long one stage of a request took, as measured by a {@link StageRecorder}.
+ */
+public final class StageTiming {
+	private final String name;
+
+	private final long nanos;
+
+	public StageTiming(String name, long nanos) {
+		Preconditions.checkArgument(nanos >= 0L);
+		this.name = Preconditions.checkNotNull(name);
+		this.nanos = nanos;
+	}
+
+	/**
+	 * The name of the stage's span, such as {@code "parse"} or the name of a pipeline pass.
+	 */
+	public String name() {
+		return name;
+	}
+
+	public long nanos() {
+		return nanos;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof StageTiming)) {
+			return false;
+		}
+		StageTiming other = (StageTiming) obj;
+		return name.equals(other.name) && nanos == other.nanos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(name, nanos);
+	}
+
+	@Override
+	public String toString() {
+		return name + "=" + nanos + "ns";
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.github.explainable.util.RollingFiles;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Writes traced requests to a file in the JSON array flavor of the Chrome trace-event format,
+ * which chrome://tracing and Perfetto can open directly. Each span becomes a complete ({@code
+ * "X"}) event on its thread's track. When the file grows past a size limit it's renamed to {@code
+ * FILE.1} (shifting older files to {@code FILE.2} and so on, up to a limit on the number of files)
+ * and a new file is started.
+ *
+ * <p>Every file is a valid JSON array once it's closed. The viewers also accept files that a
+ * process left open, which lack the closing bracket.
+ */
+final class TraceFileWriter implements Closeable {
+	private static final String CATEGORY = "explainable";
+
+	private final File file;
+
+	private final long maxFileBytes;
+
+	private final int maxFiles;
+
+	private final long originNanos;
+
+	private final String processId;
+
+	private CountingOutputStream counter = null;
+
+	private Writer writer = null;
+
+	private boolean empty = true;
+
+	TraceFileWriter(File file, long maxFileBytes, int maxFiles, long originNanos)
+			throws IOException {
+		this.file = Preconditions.checkNotNull(file);
+		this.maxFileBytes = maxFileBytes;
+		this.maxFiles = maxFiles;
+		this.originNanos = originNanos;
+		this.processId = processId();
+
+		// Keep the traces of earlier processes that used the same file.
+		if (file.length() > 0) {
+			RollingFiles.shift(file, maxFiles);
+		}
+		open();
+	}
+
+	private static String processId() {
+		// The runtime's name is conventionally "pid@host".
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int at = name.indexOf('@');
+		String pid = (at > 0) ? name.substring(0, at) : "";
+		for (int i = 0; i < pid.length(); i++) {
+			if (!Character.isDigit(pid.charAt(i))) {
+				return "1";
+			}
+		}
+		return pid.isEmpty() ? "1" : pid;
+	}
+
+	private void open() throws IOException {
+		counter = new CountingOutputStream(new FileOutputStream(file));
+		writer = new BufferedWriter(new OutputStreamWriter(counter, Charsets.UTF_8));
+		writer.write('[');
+		empty = true;
+	}
+
+	/**
+	 * Append the spans in {@code buffer} as the events of one request on the current thread.
+	 */
+	synchronized void write(SpanBuffer buffer) throws IOException {
+		if (writer == null) {
+			throw new IOException("Trace file is closed: " + file);
+		}
+
+		Thread thread = Thread.currentThread();
+		long threadId = thread.getId();
+		StringBuilder json = new StringBuilder();
+
+		startEvent(json, "thread_name", "M", threadId);
+		json.append(",\"args\":{\"name\":");
+		appendString(json, thread.getName());
+		json.append("}}");
+
+		int last = buffer.size() - 1;
+		for (int i = 0; i <= last; i++) {
+			startEvent(json, buffer.name(i), "X", threadId);
+			json.append(",\"ts\":");
+			appendMicros(json, buffer.startNanos(i) - originNanos);
+			json.append(",\"dur\":");
+			appendMicros(json, buffer.durationNanos(i));
+
+			json.append(",\"args\":{");
+			boolean first = true;
+			if (buffer.detail(i) != null) {
+				json.append("\"detail\":");
+				appendString(json, buffer.detail(i));
+				first = false;
+			}
+			if (buffer.counterName(i) != null) {
+				json.append(first ? "" : ",");
+				appendString(json, buffer.counterName(i));
+				json.append(':').append(buffer.counterValue(i));
+				first = false;
+			}
+			if (i == last) {
+				// The request's own span always ends last.
+				json.append(first ? "" : ",");
+				json.append("\"request\":").append(buffer.requestId());
+				json.append(",\"droppedSpans\":").append(buffer.dropped());
+			}
+			json.append("}}");
+		}
+
+		writer.append(json);
+		writer.flush();
+
+		if (counter.getCount() >= maxFileBytes) {
+			rotate();
+		}
+	}
+
+	private void startEvent(StringBuilder json, String name, String phase, long threadId) {
+		json.append(empty ? "\n" : ",\n");
+		empty = false;
+
+		json.append("{\"name\":");
+		appendString(json, name);
+		json.append(",\"cat\":\"").append(CATEGORY)
+				.append("\",\"ph\":\"").append(phase)
+				.append("\",\"pid\":").append(processId)
+				.append(",\"tid\":").append(threadId);
+	}
+
+	/**
+	 * Append a number of nanoseconds as microseconds, which is the unit of the format.
+	 */
+	private static void appendMicros(StringBuilder json, long nanos) {
+		if (nanos < 0) {
+			json.append('-');
+			nanos = -nanos;
+		}
+		long fraction = nanos % 1000;
+		json.append(nanos / 1000).append('.');
+		if (fraction < 100) {
+			json.append('0');
+		}
+		if (fraction < 10) {
+			json.append('0');
+		}
+		json.append(fraction);
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	private void rotate() throws IOException {
+		closeFile();
+		RollingFiles.shift(file, maxFiles);
+		open();
+	}
+
+	private void closeFile() throws IOException {
+		try {
+			writer.write("\n]\n");
+		} finally {
+			writer.close();
+			writer = null;
+			counter = null;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			closeFile();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("file", file)
+				.add("maxFileBytes", maxFileBytes)
+				.add("maxFiles", maxFiles)
+				.toString();
+	}
+}
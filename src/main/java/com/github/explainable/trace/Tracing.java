@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import javax.annotation.Nullable;
+
+/**
+ * Entry points that the library calls to mark the spans of a traced request, such as parsing,
+ * each pass of the view extraction pipeline, and each containment check. A request is only traced
+ * if a {@link QueryTracer} sampled it or a {@link StageRecorder} is timing its stages, in which
+ * case only the outermost spans are recorded; spans on other threads and in other requests are
+ * ignored. When no tracer or recorder is open, each call costs a single read of a volatile field.
+ *
+ * <p>Every {@link #begin} must be matched by an {@link #end} on the same thread, usually in a
+ * {@code finally} block. Callers that need to compute a span's detail should check {@link
+ * #isActive()} first, so that they don't pay for it when the request isn't traced.
+ */
+public final class Tracing {
+	private static final ThreadLocal<SpanBuffer> BUFFERS = new ThreadLocal<SpanBuffer>();
+
+	private static int openTracers = 0;
+
+	private static volatile boolean enabled = false;
+
+	private Tracing() {
+		throw new UnsupportedOperationException("Can't instantiate Tracing");
+	}
+
+	static synchronized void tracerOpened() {
+		openTracers++;
+		enabled = true;
+	}
+
+	static synchronized void tracerClosed() {
+		openTracers--;
+		enabled = (openTracers > 0);
+	}
+
+	/**
+	 * Get the current thread's buffer, allocating it the first time that the thread is sampled.
+	 */
+	static SpanBuffer buffer() {
+		SpanBuffer buffer = BUFFERS.get();
+		if (buffer == null) {
+			buffer = new SpanBuffer();
+			BUFFERS.set(buffer);
+		}
+		return buffer;
+	}
+
+	@Nullable
+	private static SpanBuffer activeBuffer() {
+		if (!enabled) {
+			return null;
+		}
+		SpanBuffer buffer = BUFFERS.get();
+		return (buffer != null && buffer.isActive()) ? buffer : null;
+	}
+
+	/**
+	 * Check whether a span that the current thread began now would be recorded.
+	 */
+	public static boolean isActive() {
+		SpanBuffer buffer = activeBuffer();
+		return (buffer != null) && buffer.isRecording();
+	}
+
+	public static void begin(String name) {
+		begin(name, null);
+	}
+
+	/**
+	 * Start a span nested inside the current one.
+	 *
+	 * @param name what the span does, which should be a constant
+	 * @param detail what the span works on (such as a table name), or {@code null}
+	 */
+	public static void begin(String name, @Nullable String detail) {
+		SpanBuffer buffer = activeBuffer();
+		if (buffer != null) {
+			buffer.begin(name, detail, System.nanoTime());
+		}
+	}
+
+	public static void end() {
+		SpanBuffer buffer = activeBuffer();
+		if (buffer != null) {
+			buffer.end(null, 0L, System.nanoTime());
+		}
+	}
+
+	/**
+	 * End the current span and attach a count to it, such as the number of backtracking steps
+	 * that a search took.
+	 */
+	public static void end(String counterName, long counterValue) {
+		SpanBuffer buffer = activeBuffer();
+		if (buffer != null) {
+			buffer.end(counterName, counterValue, System.nanoTime());
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.util;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Union-find data structure over dense integer ids. Unlike {@link UnionFindNode}, which allocates
+ * one object per element, this class stores the forest in a pair of primitive arrays and keeps the
+ * value bound to each component in a parallel {@code Object[]}. Elements are numbered in the order
+ * in which they're added, starting from zero. A single instance can be reused for many unrelated
+ * problems by calling {@link #reset()} between them, which avoids reallocating the arrays.
+ *
+ * <p>Merging follows the same rules as {@link UnionFindNode#mergeWith}: two components can only be
+ * merged if they're bound to equal values (or if at least one of them is unbound).
+ */
+public final class IntUnionFind<V> {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] parent;
+
+	private byte[] rank;
+
+	private Object[] values;
+
+	private int size;
+
+	private IntUnionFind(int capacity) {
+		Preconditions.checkArgument(capacity >= 0);
+		this.parent = new int[capacity];
+		this.rank = new byte[capacity];
+		this.values = new Object[capacity];
+		this.size = 0;
+	}
+
+	public static <V> IntUnionFind<V> create() {
+		return new IntUnionFind<V>(DEFAULT_CAPACITY);
+	}
+
+	public static <V> IntUnionFind<V> createWithCapacity(int capacity) {
+		return new IntUnionFind<V>(capacity);
+	}
+
+	/**
+	 * Get the number of elements that have been added since the last call to {@link #reset()}.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all elements from the structure while retaining its backing arrays.
+	 */
+	public void reset() {
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Make sure that at least {@code additional} more elements can be added without growing the
+	 * backing arrays.
+	 */
+	public void ensureCapacity(int additional) {
+		Preconditions.checkArgument(additional >= 0);
+		int required = size + additional;
+
+		if (required > parent.length) {
+			int newCapacity = Math.max(required, 2 * parent.length);
+			parent = Arrays.copyOf(parent, newCapacity);
+			rank = Arrays.copyOf(rank, newCapacity);
+			values = Arrays.copyOf(values, newCapacity);
+		}
+	}
+
+	/**
+	 * Add a new singleton component bound to {@code value}.
+	 *
+	 * @return the id of the new element
+	 */
+	public int add(@Nullable V value) {
+		ensureCapacity(1);
+
+		int id = size;
+		parent[id] = id;
+		rank[id] = 0;
+		values[id] = value;
+		size++;
+
+		return id;
+	}
+
+	/**
+	 * Add one singleton component for each element of {@code newValues}. The ids of the new
+	 * elements are consecutive and follow the order of {@code newValues}.
+	 *
+	 * @return the id of the first new element
+	 */
+	public int addAll(List<? extends V> newValues) {
+		ensureCapacity(newValues.size());
+
+		int first = size;
+		for (int i = 0; i < newValues.size(); i++) {
+			int id = first + i;
+			parent[id] = id;
+			rank[id] = 0;
+			values[id] = newValues.get(i);
+		}
+		size += newValues.size();
+
+		return first;
+	}
+
+	/**
+	 * Find the id of the representative of the component containing {@code id}. Uses path halving,
+	 * so repeated lookups flatten the forest without recursion.
+	 */
+	public int find(int id) {
+		Preconditions.checkElementIndex(id, size);
+
+		while (parent[id] != id) {
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+
+		return id;
+	}
+
+	/**
+	 * Get the value bound to the component containing {@code id}.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public V get(int id) {
+		return (V) values[find(id)];
+	}
+
+	/**
+	 * Bind the component containing {@code id} to {@code value}.
+	 */
+	public void set(int id, @Nullable V value) {
+		values[find(id)] = value;
+	}
+
+	/**
+	 * Determine whether {@code first} and {@code second} belong to the same component.
+	 */
+	public boolean connected(int first, int second) {
+		return find(first) == find(second);
+	}
+
+	/**
+	 * Merge the components containing {@code first} and {@code second}.
+	 *
+	 * @return {@code false} if the components are bound to different values and can't be merged,
+	 * {@code true} otherwise
+	 */
+	public boolean merge(int first, int second) {
+		int lhs = find(first);
+		int rhs = find(second);
+
+		Object lhsValue = values[lhs];
+		Object rhsValue = values[rhs];
+
+		if (lhsValue != null && rhsValue != null && !lhsValue.equals(rhsValue)) {
+			// The elements can't be unified because they're bound to different values.
+			return false;
+		}
+
+		if (lhs == rhs) {
+			// The elements are already unified.
+			return true;
+		}
+
+		Object mergedValue = (lhsValue != null) ? lhsValue : rhsValue;
+
+		// Merge the smaller (lower-rank) component into the larger (higher-rank) one.
+		if (rank[lhs] < rank[rhs]) {
+			parent[lhs] = rhs;
+			values[rhs] = mergedValue;
+		} else if (rank[lhs] > rank[rhs]) {
+			parent[rhs] = lhs;
+			values[lhs] = mergedValue;
+		} else {
+			parent[lhs] = rhs;
+			values[rhs] = mergedValue;
+			rank[rhs]++;
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("IntUnionFind[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+
+			int root = find(i);
+			builder.append(i);
+			if (root == i) {
+				builder.append('[').append(values[i]).append(']');
+			} else {
+				builder.append(" => ").append(root);
+			}
+		}
+		return builder.append(']').toString();
+	}
+}
@@ -27,6 +27,7 @@ package com.github.explainable.util;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -54,7 +55,9 @@ public final class RandomSampler {
 
 	/**
 	 * Obtain a uniform random sample of the elements in the population. The order of elements in the
-	 * output list is also uniformly random.
+	 * output list is also uniformly random. The sample is drawn with Floyd's algorithm, which needs
+	 * exactly {@code n} random numbers to pick the elements no matter how large {@code n} is
+	 * compared to the population.
 	 *
 	 * @param population the population from which a sample is to be drawn
 	 * @param n the sample size
@@ -64,19 +67,22 @@ public final class RandomSampler {
 		Preconditions.checkNotNull(population);
 		Preconditions.checkArgument(n <= population.size());
 
-		boolean[] selected = new boolean[population.size()];
+		int size = population.size();
+		boolean[] selected = new boolean[size];
 
 		List<T> result = Lists.newArrayListWithCapacity(n);
-		for (int i = 0; i < n; i++) {
-			int j = random.nextInt(population.size());
-			while (selected[j]) {
-				j = random.nextInt(population.size());
+		for (int j = size - n; j < size; j++) {
+			int k = random.nextInt(j + 1);
+			if (selected[k]) {
+				k = j;
 			}
 
-			selected[j] = true;
-			result.add(population.get(j));
+			selected[k] = true;
+			result.add(population.get(k));
 		}
 
+		// Floyd's algorithm picks a uniformly random subset, but not in a uniformly random order.
+		Collections.shuffle(result, random);
 		return result;
 	}
 
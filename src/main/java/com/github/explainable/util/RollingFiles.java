@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers for logs that are split across a bounded number of files: the current file {@code FILE}
+ * and older ones named {@code FILE.1} (the most recent) through {@code FILE.(maxFiles - 1)}.
+ */
+public final class RollingFiles {
+	private RollingFiles() {
+		throw new UnsupportedOperationException("Can't instantiate RollingFiles");
+	}
+
+	/**
+	 * Rename {@code file} to {@code FILE.1}, shifting the older files up by one and deleting the
+	 * oldest. If only one file is kept, nothing is renamed and the file should simply be
+	 * overwritten.
+	 */
+	public static void shift(File file, int maxFiles) throws IOException {
+		Preconditions.checkArgument(maxFiles > 0);
+		if (maxFiles == 1) {
+			return;
+		}
+
+		File oldest = rolledFile(file, maxFiles - 1);
+		if (oldest.exists() && !oldest.delete()) {
+			throw new IOException("Couldn't delete " + oldest);
+		}
+		for (int i = maxFiles - 2; i >= 1; i--) {
+			File older = rolledFile(file, i);
+			if (older.exists()) {
+				Files.move(older, rolledFile(file, i + 1));
+			}
+		}
+		Files.move(file, rolledFile(file, 1));
+	}
+
+	/**
+	 * The file that held the contents of {@code file} {@code generation} rotations ago.
+	 */
+	public static File rolledFile(File file, int generation) {
+		return new File(file.getPath() + "." + generation);
+	}
+}
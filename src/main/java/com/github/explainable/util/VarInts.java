@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.explainable.util;
+
+import com.google.common.base.Charsets;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Helpers for the variable-length encoding shared by our binary log formats: varints use seven bits
+ * per byte, least significant group first, with the high bit set on every byte but the last, and
+ * strings are a varint length followed by UTF-8 bytes.
+ */
+public final class VarInts {
+	private VarInts() {
+		throw new UnsupportedOperationException("Can't instantiate VarInts");
+	}
+
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0L) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	public static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(Charsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	public static long readVarLong(DataInput in) throws IOException {
+		return readVarLong(in, in.readUnsignedByte());
+	}
+
+	/**
+	 * Read a varint whose first byte, {@code first}, the caller has already read (e.g., to check
+	 * for the end of the input).
+	 */
+	public static long readVarLong(DataInput in, int first) throws IOException {
+		long result = first & 0x7F;
+		int b = first;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+			if (shift > 63) {
+				throw new IOException("Corrupt input: varint is too long");
+			}
+			b = in.readUnsignedByte();
+			result |= (long) (b & 0x7F) << shift;
+		}
+		return result;
+	}
+
+	/**
+	 * Read a varint that must be between {@code 0} and {@code maxLength}, such as the length of a
+	 * string or list, to fail fast on corrupt input.
+	 */
+	public static int readLength(DataInput in, int maxLength) throws IOException {
+		long length = readVarLong(in);
+		if (length > maxLength) {
+			throw new IOException("Corrupt input: length " + length);
+		}
+		return (int) length;
+	}
+
+	public static String readString(DataInput in, int maxLength) throws IOException {
+		byte[] bytes = new byte[readLength(in, maxLength)];
+		in.readFully(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.batch;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BulkLabeler}.
+ */
+@SuppressWarnings("HardcodedLineSeparator")
+public final class BulkLabelerTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S);
+
+	private static final String LOG = "SELECT a FROM R;\n"
+			+ "-- A comment; with a semicolon\n"
+			+ "SELECT c FROM S;\n"
+			+ "SELECT b FROM R WHERE a = 1;\n"
+			+ "SELECT x FROM R;\n"
+			+ "DELETE FROM R;\n";
+
+	private List<View> securityViews = null;
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+
+		securityViews = Lists.newArrayList();
+		for (String sql : ImmutableList.of("SELECT * FROM R", "SELECT * FROM S")) {
+			securityViews.add(pipeline.execute((Select) parser.parse(new StringReader(sql))).get(0));
+		}
+
+		file = File.createTempFile("BulkLabelerTest", ".sql");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		securityViews = null;
+		file = null;
+	}
+
+	private List<String> run(String contents, BulkLabeler labeler) throws Exception {
+		Files.write(contents, file, Charsets.UTF_8);
+		StringWriter out = new StringWriter();
+		labeler.run(file, out);
+		return Lists.newArrayList(Splitter.on('\n').omitEmptyStrings().split(out.toString()));
+	}
+
+	@Test
+	public void testOrderedOutput() throws Exception {
+		BulkLabeler labeler = BulkLabeler.builder(SCHEMA, securityViews)
+				.setGrantedViews(ImmutableSet.of(securityViews.get(0)))
+				.setThreadCount(3)
+				.build();
+
+		List<String> lines = run(LOG, labeler);
+
+		assertEquals(5, lines.size());
+		assertEquals("0\tALLOW\t1", lines.get(0));
+		assertEquals(LOG.indexOf("-- A comment") + "\tDENY\t2", lines.get(1));
+		assertEquals(LOG.indexOf("SELECT b") + "\tALLOW\t1", lines.get(2));
+		assertTrue(lines.get(3), lines.get(3).startsWith(LOG.indexOf("SELECT x") + "\tERROR\t"));
+		assertEquals(LOG.indexOf("DELETE") + "\tERROR\tNot a SELECT statement", lines.get(4));
+	}
+
+	@Test
+	public void testSummary() throws Exception {
+		Files.write(LOG, file, Charsets.UTF_8);
+		BulkLabeler.Summary summary = BulkLabeler.builder(SCHEMA, securityViews)
+				.setGrantedViews(ImmutableSet.of(securityViews.get(0)))
+				.build()
+				.run(file, new StringWriter());
+
+		assertEquals(2, summary.allowed());
+		assertEquals(1, summary.denied());
+		assertEquals(2, summary.errors());
+	}
+
+	@Test
+	public void testManyStatements_orderPreservedWithSmallQueue() throws Exception {
+		StringBuilder contents = new StringBuilder();
+		List<String> expected = Lists.newArrayList();
+		for (int i = 0; i < 500; i++) {
+			String sql = (i % 3 == 0) ? "SELECT a FROM R WHERE b = " + i : "SELECT c FROM S";
+			expected.add(contents.length() + ((i % 3 == 0) ? "\tDENY\t1" : "\tALLOW\t2"));
+			contents.append(sql).append(";\n");
+		}
+
+		BulkLabeler labeler = BulkLabeler.builder(SCHEMA, securityViews)
+				.setGrantedViews(ImmutableSet.of(securityViews.get(1)))
+				.setThreadCount(4)
+				.setQueueCapacity(2)
+				.build();
+
+		assertEquals(expected, run(contents.toString(), labeler));
+	}
+
+	@Test
+	public void testUnorderedOutput() throws Exception {
+		BulkLabeler ordered = BulkLabeler.builder(SCHEMA, securityViews)
+				.setThreadCount(4)
+				.build();
+		BulkLabeler unordered = BulkLabeler.builder(SCHEMA, securityViews)
+				.setThreadCount(4)
+				.setPreserveOrder(false)
+				.build();
+
+		assertEquals(Sets.newHashSet(run(LOG, ordered)), Sets.newHashSet(run(LOG, unordered)));
+	}
+
+	@Test
+	public void testEmptyLog() throws Exception {
+		BulkLabeler labeler = BulkLabeler.builder(SCHEMA, securityViews).build();
+		assertEquals(ImmutableList.<String>of(), run("", labeler));
+	}
+}
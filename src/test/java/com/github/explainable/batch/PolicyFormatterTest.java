@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.explainable.batch;
+
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.RelationImpl;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static com.github.explainable.corelang.Atom.asSetAtom;
+import static com.github.explainable.corelang.Terms.constant;
+import static com.github.explainable.corelang.Terms.dist;
+import static com.github.explainable.corelang.View.asView;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link PolicyFormatter}.
+ */
+public final class PolicyFormatterTest {
+	private static final Relation R = RelationImpl.create("R", ImmutableList.of("a", "b"));
+
+	private static final View VIEW1 = view(1);
+
+	private static final View VIEW2 = view(2);
+
+	private static final View VIEW3 = view(3);
+
+	private static final View VIEW4 = view(4);
+
+	private static final Policy V1 = Policy.of(VIEW1);
+
+	private static final Policy V2 = Policy.of(VIEW2);
+
+	private static final Policy V3 = Policy.of(VIEW3);
+
+	private static final Policy V4 = Policy.of(VIEW4);
+
+	private static final PolicyFormatter FORMATTER
+			= PolicyFormatter.create(ImmutableList.of(VIEW1, VIEW2, VIEW3, VIEW4));
+
+	private static View view(int value) {
+		return asView(asSetAtom(R, dist(), constant(value)));
+	}
+
+	@Test
+	public void testConstants() {
+		assertEquals("true", FORMATTER.format(Policy.TRUE));
+		assertEquals("false", FORMATTER.format(Policy.FALSE));
+		assertEquals("2", FORMATTER.format(V2));
+	}
+
+	@Test
+	public void testOperandOrder() {
+		assertEquals("1|2", FORMATTER.format(V1.or(V2)));
+		assertEquals("1|2", FORMATTER.format(V2.or(V1)));
+		assertEquals("1&2", FORMATTER.format(V2.and(V1)));
+	}
+
+	@Test
+	public void testChainsAreFlattened() {
+		assertEquals("1|2|3", FORMATTER.format(V1.or(V2).or(V3)));
+		assertEquals("1|2|3", FORMATTER.format(V3.or(V2.or(V1))));
+		assertEquals("1&2&3", FORMATTER.format(V2.and(V3.and(V1))));
+	}
+
+	@Test
+	public void testNestedOperators() {
+		assertEquals("(1&2)|(3&4)", FORMATTER.format(V1.and(V2).or(V3.and(V4))));
+		assertEquals("(1&2)|(3&4)", FORMATTER.format(V4.and(V3).or(V2.and(V1))));
+		assertEquals("(1|4)&2&3", FORMATTER.format(V3.and(V4.or(V1)).and(V2)));
+		assertEquals("(1|4)&2&3", FORMATTER.format(V2.and(V1.or(V4).and(V3))));
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.batch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link SqlLog}.
+ */
+@SuppressWarnings("HardcodedLineSeparator")
+public final class SqlLogTest {
+	private ExecutorService executor = null;
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(3);
+		file = File.createTempFile("SqlLogTest", ".sql");
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		file.delete();
+		executor = null;
+		file = null;
+	}
+
+	private List<String> statements(String contents, int chunkSize) throws Exception {
+		Files.write(contents, file, Charsets.UTF_8);
+		SqlLog log = SqlLog.open(file, executor, chunkSize);
+
+		List<String> result = Lists.newArrayList();
+		for (int i = 0; i < log.statementCount(); i++) {
+			result.add(log.statement(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Split {@code contents} with every chunk size from 1 to the length of the file, and check that
+	 * the result never depends on where the chunk boundaries fall.
+	 */
+	private void assertStatements(String contents, String... expected) throws Exception {
+		int length = contents.getBytes(Charsets.UTF_8).length;
+		for (int chunkSize = 1; chunkSize <= length + 1; chunkSize++) {
+			assertEquals("chunkSize=" + chunkSize,
+					ImmutableList.copyOf(expected),
+					statements(contents, chunkSize));
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertEquals(ImmutableList.<String>of(), statements("", SqlLog.DEFAULT_CHUNK_SIZE));
+	}
+
+	@Test
+	public void testSimple() throws Exception {
+		assertStatements("SELECT a FROM R;\nSELECT b\nFROM S;\n",
+				"SELECT a FROM R", "SELECT b\nFROM S", "");
+	}
+
+	@Test
+	public void testNoTrailingSemicolon() throws Exception {
+		assertStatements("SELECT a FROM R; SELECT b FROM S",
+				"SELECT a FROM R", "SELECT b FROM S");
+	}
+
+	@Test
+	public void testSemicolonInStringLiteral() throws Exception {
+		assertStatements("SELECT a FROM R WHERE b = 'x;y';SELECT 'it''s;';",
+				"SELECT a FROM R WHERE b = 'x;y'", "SELECT 'it''s;'");
+	}
+
+	@Test
+	public void testComments() throws Exception {
+		assertStatements("-- first; query\nSELECT a -- the a column;\nFROM R;\n-- trailing;",
+				"SELECT a \nFROM R", "");
+	}
+
+	@Test
+	public void testQuoteInComment() throws Exception {
+		assertStatements("SELECT a FROM R; -- don't\nSELECT b FROM S;",
+				"SELECT a FROM R", "SELECT b FROM S");
+	}
+
+	@Test
+	public void testDashesInStringLiteral() throws Exception {
+		assertStatements("SELECT a FROM R WHERE b = '--;';",
+				"SELECT a FROM R WHERE b = '--;'");
+	}
+
+	@Test
+	public void testSingleDashBeforeSemicolon() throws Exception {
+		assertStatements("SELECT a - 1 FROM R;SELECT -b FROM S;",
+				"SELECT a - 1 FROM R", "SELECT -b FROM S");
+	}
+
+	@Test
+	public void testStatementOffsets() throws Exception {
+		Files.write("SELECT a FROM R;\nSELECT b FROM S;", file, Charsets.UTF_8);
+		SqlLog log = SqlLog.open(file, executor, 5);
+
+		assertEquals(2, log.statementCount());
+		assertEquals(0L, log.statementOffset(0));
+		assertEquals(17L, log.statementOffset(1));
+	}
+
+	@Test
+	public void testNonAsciiText() throws Exception {
+		assertStatements("SELECT a FROM R WHERE b = 'h\u00e9llo';SELECT '\u00fc';",
+				"SELECT a FROM R WHERE b = 'h\u00e9llo'", "SELECT '\u00fc'");
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BenchmarkHarness} and {@link ResultFormat}.
+ */
+public final class BenchmarkHarnessTest {
+	/**
+	 * Workload that records the random numbers that its operations draw.
+	 */
+	private static final class RecordingWorkload implements BenchmarkWorkload {
+		final List<Long> draws = Collections.synchronizedList(Lists.<Long>newArrayList());
+
+		@Override
+		public String name() {
+			return "recording";
+		}
+
+		@Override
+		public Operation newOperation(final Random random, QueryFidelity fidelity) {
+			return new Operation() {
+				@Override
+				public Object run(BenchmarkStage lastStage) {
+					long draw = random.nextLong();
+					draws.add(draw);
+					return draw;
+				}
+			};
+		}
+	}
+
+	private static final class FailingWorkload implements BenchmarkWorkload {
+		@Override
+		public String name() {
+			return "failing";
+		}
+
+		@Override
+		public Operation newOperation(Random random, QueryFidelity fidelity) {
+			return new Operation() {
+				@Override
+				public Object run(BenchmarkStage lastStage) throws IOException {
+					throw new IOException("Expected");
+				}
+			};
+		}
+	}
+
+	private static List<Long> sorted(List<Long> values) {
+		List<Long> result = Lists.newArrayList(values);
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void testResults() throws Exception {
+		List<BenchmarkResult> results = BenchmarkHarness.builder(new RecordingWorkload())
+				.setThreadCounts(1, 3)
+				.setStages(ImmutableList.of(BenchmarkStage.PARSE, BenchmarkStage.LABEL))
+				.setTrials(2)
+				.setWarmupOperations(5)
+				.setMeasuredOperations(100)
+				.build()
+				.run(null);
+
+		assertEquals(2 * 3 * 2, results.size());
+		BenchmarkResult last = results.get(results.size() - 1);
+		assertEquals(BenchmarkStage.LABEL, last.stage());
+		assertEquals(3, last.threadCount());
+		assertEquals(2, last.trial());
+
+		for (BenchmarkResult result : results) {
+			assertEquals(100, result.operations());
+			assertTrue(result.throughput() > 0.0);
+			assertTrue(result.latencies().percentile(50.0) <= result.latencies().max());
+		}
+	}
+
+	@Test
+	public void testSameSeedSameOperations() throws Exception {
+		RecordingWorkload first = new RecordingWorkload();
+		RecordingWorkload second = new RecordingWorkload();
+		RecordingWorkload third = new RecordingWorkload();
+
+		BenchmarkHarness.builder(first).setSeed(7L).setThreadCounts(2, 2).setTrials(1)
+				.setWarmupOperations(3).setMeasuredOperations(20).build().run(null);
+		BenchmarkHarness.builder(second).setSeed(7L).setThreadCounts(2, 2).setTrials(1)
+				.setWarmupOperations(3).setMeasuredOperations(20).build().run(null);
+		BenchmarkHarness.builder(third).setSeed(8L).setThreadCounts(2, 2).setTrials(1)
+				.setWarmupOperations(3).setMeasuredOperations(20).build().run(null);
+
+		// Threads interleave differently from run to run, but draw the same numbers.
+		assertEquals(sorted(first.draws), sorted(second.draws));
+		assertTrue(!sorted(first.draws).equals(sorted(third.draws)));
+	}
+
+	@Test
+	public void testAllocations() throws Exception {
+		BenchmarkWorkload workload = new BenchmarkWorkload() {
+			@Override
+			public String name() {
+				return "allocating";
+			}
+
+			@Override
+			public Operation newOperation(Random random, QueryFidelity fidelity) {
+				return new Operation() {
+					@Override
+					public Object run(BenchmarkStage lastStage) {
+						return (lastStage == BenchmarkStage.GENERATE) ? null : new byte[10000];
+					}
+				};
+			}
+		};
+
+		List<BenchmarkResult> results = BenchmarkHarness.builder(workload)
+				.setThreadCounts(2, 2)
+				.setStages(ImmutableList.of(BenchmarkStage.GENERATE, BenchmarkStage.PARSE))
+				.setTrials(1)
+				.setWarmupOperations(100)
+				.setMeasuredOperations(1000)
+				.build()
+				.run(null);
+
+		if (JvmCounters.isAllocationCountingSupported()) {
+			assertTrue(results.get(0).allocatedBytesPerOperation() < 1000.0);
+			assertTrue(results.get(1).allocatedBytesPerOperation() >= 10000.0);
+			assertTrue(results.get(1).allocatedBytesPerOperation() < 11000.0);
+		} else {
+			assertEquals(-1L, results.get(1).allocatedBytes());
+		}
+		assertTrue(results.get(1).gcCount() >= 0L);
+	}
+
+	@Test
+	public void testFidelity() throws Exception {
+		final List<QueryFidelity> fidelities
+				= Collections.synchronizedList(Lists.<QueryFidelity>newArrayList());
+		BenchmarkWorkload workload = new BenchmarkWorkload() {
+			@Override
+			public String name() {
+				return "fidelity";
+			}
+
+			@Override
+			public Operation newOperation(Random random, QueryFidelity fidelity) {
+				fidelities.add(fidelity);
+				return new RecordingWorkload().newOperation(random, fidelity);
+			}
+		};
+
+		BenchmarkHarness.builder(workload)
+				.setThreadCounts(2, 2)
+				.setStages(ImmutableList.of(BenchmarkStage.LABEL))
+				.setFidelity(QueryFidelity.VIEWS)
+				.setTrials(1)
+				.setWarmupOperations(0)
+				.setMeasuredOperations(10)
+				.build()
+				.run(null);
+
+		assertEquals(ImmutableList.of(QueryFidelity.VIEWS, QueryFidelity.VIEWS), fidelities);
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailure() throws Exception {
+		BenchmarkHarness.builder(new FailingWorkload())
+				.setThreadCounts(2, 2)
+				.setWarmupOperations(0)
+				.setMeasuredOperations(10)
+				.build()
+				.run(null);
+	}
+
+	@Test
+	public void testFormats() throws Exception {
+		LatencyHistogram latencies = new LatencyHistogram();
+		latencies.record(1000);
+		latencies.record(3000);
+		List<BenchmarkResult> results = ImmutableList.of(new BenchmarkResult(
+				"a \"quoted\", name", BenchmarkStage.EXPLAIN, 4, 1, 42L, 2000000000L, latencies,
+				3000L, 7L, 12L));
+
+		StringBuilder csv = new StringBuilder();
+		ResultFormat.CSV.write(results, csv);
+		assertEquals("workload,stage,threads,trial,seed,operations,elapsedSeconds,throughput,"
+				+ "meanMicros,p50Micros,p99Micros,p999Micros,maxMicros,bytesPerOperation,gcCount,"
+				+ "gcMillis\n"
+				+ "\"a \"\"quoted\"\", name\",EXPLAIN,4,1,42,2,2.000,1.0,2.000,1.007,3.000,3.000,"
+				+ "3.000,1500.0,7,12\n",
+				csv.toString());
+
+		StringBuilder json = new StringBuilder();
+		ResultFormat.JSON.write(results, json);
+		assertEquals("[\n"
+				+ "  {\"workload\": \"a \\\"quoted\\\", name\", \"stage\": \"EXPLAIN\", \"threads\": 4, "
+				+ "\"trial\": 1, \"seed\": 42, \"operations\": 2, \"elapsedSeconds\": 2.000, "
+				+ "\"throughput\": 1.0, \"meanMicros\": 2.000, \"p50Micros\": 1.007, "
+				+ "\"p99Micros\": 3.000, \"p999Micros\": 3.000, \"maxMicros\": 3.000, "
+				+ "\"bytesPerOperation\": 1500.0, \"gcCount\": 7, \"gcMillis\": 12}\n"
+				+ "]\n",
+				json.toString());
+	}
+}
@@ -35,11 +35,14 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.Random;
 
 import static com.github.explainable.corelang.Terms.constant;
 import static com.github.explainable.corelang.Terms.dist;
 import static com.github.explainable.corelang.Terms.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -282,4 +285,43 @@ public class ConjunctionGeneratorTest {
 		assertTrue(observed[2]);
 		assertTrue(observed[3]);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testNextWithDefaultDist_conflictingConstants() {
+		Relation relR = RelationImpl.create("R", ImmutableList.of("x"));
+		Relation relS = RelationImpl.create("S", ImmutableList.of("z"));
+
+		View view1 = View.asView(
+				Atom.asMultisetAtom(relR, dist()),
+				Atom.asSetAtom(relS, constant(1L)));
+		View view2 = View.asView(Atom.asMultisetAtom(relS, constant(2L)));
+		View view3 = View.asView(
+				Atom.asMultisetAtom(relS, dist()),
+				Atom.asSetAtom(relR, constant(3L)));
+
+		ConjunctionGenerator viewGen = ConjunctionGenerator.create(
+				ImmutableList.of(view1, view2, view3), random);
+
+		for (int i = 0; i < 100; i++) {
+			Conjunction conjunction = viewGen.nextWithDefaultDist();
+			for (Atom atom : conjunction.atoms()) {
+				// S(1) can never be extended with the template S(2).
+				assertFalse(atom.arguments().contains(constant(2L)) && conjunction.atoms().size() > 1);
+			}
+		}
+	}
+
+	@Test
+	public void testIterator() {
+		Relation relR = RelationImpl.create("R", ImmutableList.of("x", "y"));
+		View view = View.asView(Atom.asMultisetAtom(relR, dist(), dist()));
+
+		ConjunctionGenerator viewGen = ConjunctionGenerator.create(ImmutableList.of(view), random);
+		Iterator<Conjunction> conjunctions = viewGen.iterator(1.0);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(conjunctions.hasNext());
+			assertEquals(1, conjunctions.next().atoms().size());
+		}
+	}
+}
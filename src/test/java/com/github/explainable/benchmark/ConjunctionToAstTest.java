@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.converter.SelectStatementConverter;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link ConjunctionToAst}.
+ */
+public class ConjunctionToAstTest {
+	@Test
+	public void testConvert_sameAsParsedSql() throws Exception {
+		List<View> templates = SecurityViewGenerator.builder(FBFlatSchema.SCHEMA)
+				.setRandom(new Random(3L))
+				.build()
+				.generate(100);
+		ConjunctionGenerator generator = ConjunctionGenerator.create(templates, new Random(5L));
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		SelectStatementConverter converter = SelectStatementConverter.create();
+		ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
+
+		for (int i = 0; i < 200; i++) {
+			Conjunction conjunction = generator.nextWithRandomDist(3.0);
+			String sql = ConjunctionToSql.convert(conjunction);
+			Select parsed = (Select) parser.parse(new StringReader(sql));
+
+			assertEquals(sql,
+					converter.convert(parsed).toString(),
+					ConjunctionToAst.convert(conjunction).toString());
+			assertEquals(sql,
+					extractor.execute(parsed).toString(),
+					extractor.execute(ConjunctionToAst.convert(conjunction)).toString());
+		}
+	}
+}
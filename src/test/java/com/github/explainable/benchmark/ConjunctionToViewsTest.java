@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Conjunction;
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.RelationImpl;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.collect.ImmutableList;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.explainable.corelang.Terms.constant;
+import static com.github.explainable.corelang.Terms.dist;
+import static com.github.explainable.corelang.Terms.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ConjunctionToViews}.
+ */
+public class ConjunctionToViewsTest {
+	@Test
+	public void testConvert_simple() {
+		Relation relR = RelationImpl.create("R", ImmutableList.of("a", "b", "c"));
+		Relation relS = RelationImpl.create("S", ImmutableList.of("d", "e"));
+
+		Term joined = set();
+		Conjunction conjunction = Conjunction.create(ImmutableList.of(
+				Atom.asSetAtom(relS, joined, constant(4L)),
+				Atom.asMultisetAtom(relR, dist(), joined, set())));
+
+		List<View> views = ConjunctionToViews.convert(conjunction);
+		assertEquals(2, views.size());
+
+		// The outer query's table comes first.
+		View first = views.get(0);
+		assertEquals("Q1", first.name());
+		assertSame(relR, first.bodyRelation());
+		assertEquals(TermType.DIST_VARIABLE, first.body().arguments().get(0).type());
+		assertEquals(TermType.DIST_VARIABLE, first.body().arguments().get(1).type());
+		assertEquals(TermType.MULTISET_VARIABLE, first.body().arguments().get(2).type());
+		assertEquals(1, first.conditions().size());
+
+		View second = views.get(1);
+		assertEquals("Q2", second.name());
+		assertSame(relS, second.bodyRelation());
+		assertEquals(TermType.DIST_VARIABLE, second.body().arguments().get(0).type());
+		assertEquals(constant(4L), second.body().arguments().get(1));
+	}
+
+	@Test
+	public void testConvert_equivalentToPipeline() throws Exception {
+		List<View> templates = SecurityViewGenerator.builder(FBFlatSchema.SCHEMA)
+				.setRandom(new Random(3L))
+				.build()
+				.generate(100);
+		ConjunctionGenerator generator = ConjunctionGenerator.create(templates, new Random(5L));
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
+
+		for (int i = 0; i < 200; i++) {
+			Conjunction conjunction = generator.nextWithRandomDist(3.0);
+			String sql = ConjunctionToSql.convert(conjunction);
+			List<View> expected = extractor.execute(
+					(Select) parser.parse(new StringReader(sql)));
+			List<View> actual = ConjunctionToViews.convert(conjunction);
+
+			assertEquals(sql, expected.size(), actual.size());
+			for (int j = 0; j < expected.size(); j++) {
+				assertEquals(sql, expected.get(j).name(), actual.get(j).name());
+				assertTrue(sql, expected.get(j).precedes(actual.get(j)));
+				assertTrue(sql, actual.get(j).precedes(expected.get(j)));
+			}
+		}
+	}
+}
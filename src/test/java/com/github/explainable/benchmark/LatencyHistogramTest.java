@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public final class LatencyHistogramTest {
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.percentile(50.0));
+		assertEquals(0, histogram.max());
+		assertEquals(0, histogram.min());
+		assertEquals(0.0, histogram.mean(), 0.0);
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(100, histogram.count());
+		assertEquals(1, histogram.percentile(0.0));
+		assertEquals(50, histogram.percentile(50.0));
+		assertEquals(99, histogram.percentile(99.0));
+		assertEquals(100, histogram.percentile(100.0));
+		assertEquals(50.5, histogram.mean(), 1e-9);
+	}
+
+	@Test
+	public void testBuckets() {
+		long[] values = {127, 128, 129, 255, 256, 1000, 123456789, Long.MAX_VALUE};
+		int previous = -1;
+		for (long value : values) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(index > previous || value == 129);
+			assertTrue(LatencyHistogram.highestValue(index) >= value);
+			assertTrue(LatencyHistogram.highestValue(index) - value <= value / 64);
+			previous = index;
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentilesWithinRelativeError() {
+		Random random = new Random(12345L);
+		long[] values = new long[100000];
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(random.nextDouble() * 20);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double percentile : new double[] {50.0, 90.0, 99.0, 99.9}) {
+			long exact = values[(int) Math.ceil(percentile / 100.0 * values.length) - 1];
+			long approximate = histogram.percentile(percentile);
+			assertTrue(approximate >= exact);
+			assertTrue(approximate - exact <= exact / 64);
+		}
+		assertEquals(values[values.length - 1], histogram.max());
+		assertEquals(values[values.length - 1], histogram.percentile(100.0));
+	}
+
+	@Test
+	public void testAdd() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		first.record(10);
+		second.record(30);
+		second.record(1000);
+
+		first.add(second);
+		assertEquals(3, first.count());
+		assertEquals(10, first.min());
+		assertEquals(1000, first.max());
+		assertEquals(30, first.percentile(50.0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegative() {
+		new LatencyHistogram().record(-1);
+	}
+}
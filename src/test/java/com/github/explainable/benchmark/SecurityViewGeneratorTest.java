@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark;
+
+import com.github.explainable.benchmark.cowsql.CowSqlSchema;
+import com.github.explainable.corelang.Atom;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.TermType;
+import com.github.explainable.corelang.View;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.github.explainable.corelang.Terms.constant;
+import static com.github.explainable.corelang.Terms.dist;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SecurityViewGenerator}.
+ */
+public class SecurityViewGeneratorTest {
+	private static List<String> toStrings(List<View> views) {
+		List<String> result = Lists.newArrayList();
+		for (View view : views) {
+			result.add(view.toString());
+		}
+		return result;
+	}
+
+	@Test
+	public void testSameSeedSameViews() {
+		List<View> first = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setRandom(new Random(42L))
+				.build()
+				.generate(200);
+		List<View> second = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setRandom(new Random(42L))
+				.build()
+				.generate(200);
+
+		assertEquals(200, first.size());
+		assertEquals(toStrings(first), toStrings(second));
+	}
+
+	@Test
+	public void testViewsAreOverSchema() {
+		List<View> views = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setRandom(new Random(1L))
+				.setConditionDepth(3)
+				.setConstantProbability(0.5)
+				.build()
+				.generate(500);
+
+		Set<String> names = Sets.newHashSet();
+		for (View view : views) {
+			assertTrue(CowSqlSchema.SCHEMA.relations().contains(view.bodyRelation()));
+			assertTrue(view.conditions().size() <= 3);
+			assertTrue(names.add(view.name()));
+		}
+	}
+
+	@Test
+	public void testNoConstantsOrConditions() {
+		List<View> views = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setRandom(new Random(1L))
+				.setConstantProbability(0.0)
+				.setConditionDepth(0)
+				.setOverlap(0.0)
+				.build()
+				.generate(50);
+
+		for (View view : views) {
+			assertTrue(view.conditions().isEmpty());
+			for (Term term : view.body().arguments()) {
+				assertEquals(TermType.DIST_VARIABLE, term.type());
+			}
+		}
+	}
+
+	@Test
+	public void testTemplatesAreSpecialized() {
+		View template = View.asView(
+				Atom.asMultisetAtom(CowSqlSchema.BOATS, dist(), dist(), constant("red")));
+
+		List<View> views = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setTemplates(ImmutableList.of(template))
+				.setRandom(new Random(7L))
+				.setConditionDepth(0)
+				.setOverlap(0.0)
+				.build()
+				.generate(300);
+
+		for (View view : views) {
+			if (view.bodyRelation().equals(CowSqlSchema.BOATS)) {
+				assertTrue(view.precedes(template));
+			}
+		}
+	}
+
+	@Test
+	public void testOverlappingViews() {
+		List<View> views = SecurityViewGenerator.builder(CowSqlSchema.SCHEMA)
+				.setRandom(new Random(3L))
+				.setConditionDepth(1)
+				.setOverlap(1.0)
+				.build()
+				.generate(100);
+
+		// Every view after the first specializes a view that was generated before it.
+		for (int i = 1; i < views.size(); i++) {
+			boolean found = false;
+			for (int j = 0; j < i && !found; j++) {
+				found = views.get(i).precedes(views.get(j));
+			}
+			assertTrue(found);
+		}
+	}
+
+	@Test
+	public void testZipfSampler() {
+		Random random = new Random(5L);
+		SecurityViewGenerator.ZipfSampler uniform = new SecurityViewGenerator.ZipfSampler(4, 0.0);
+		SecurityViewGenerator.ZipfSampler skewed = new SecurityViewGenerator.ZipfSampler(4, 3.0);
+
+		int[] uniformCounts = new int[4];
+		int[] skewedCounts = new int[4];
+		for (int i = 0; i < 10000; i++) {
+			uniformCounts[uniform.next(random)]++;
+			skewedCounts[skewed.next(random)]++;
+		}
+
+		for (int count : uniformCounts) {
+			assertTrue(count > 2000 && count < 3000);
+		}
+		assertTrue(skewedCounts[0] > 8000);
+		assertTrue(skewedCounts[3] > 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidOverlap() {
+		SecurityViewGenerator.builder(CowSqlSchema.SCHEMA).setOverlap(1.5);
+	}
+}
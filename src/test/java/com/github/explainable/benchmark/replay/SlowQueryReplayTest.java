@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.server.LabelingClient;
+import com.github.explainable.server.LabelingDecision;
+import com.github.explainable.server.LabelingServer;
+import com.github.explainable.slowlog.SlowQueryLog;
+import com.github.explainable.slowlog.SlowQueryLogReader;
+import com.github.explainable.slowlog.SlowQueryRecord;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SlowQueryReplay}.
+ */
+public final class SlowQueryReplayTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S);
+
+	private static final List<String> QUERIES = ImmutableList.of(
+			"SELECT a FROM R",
+			"SELECT a FROM R, S WHERE R.b = S.c",
+			"SELECT c FROM S WHERE c IN (SELECT b FROM R)",
+			"SELECT d FROM R",
+			"DELETE FROM R");
+
+	private File file = null;
+
+	private List<View> securityViews = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("SlowQueryReplayTest", ".log");
+		file.delete();
+
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+		securityViews = Lists.newArrayList();
+		for (String sql : ImmutableList.of("SELECT * FROM R", "SELECT * FROM S")) {
+			securityViews.add(pipeline.execute((Select) parser.parse(new StringReader(sql))).get(0));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		file = null;
+		securityViews = null;
+	}
+
+	@Test
+	public void testReplayServerRecords() throws Exception {
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.build();
+		LabelingServer server = LabelingServer.builder(SCHEMA, securityViews)
+				.setThreadCount(2)
+				.setSlowQueryLog(log)
+				.build();
+		server.start();
+
+		List<LabelingDecision> decisions = Lists.newArrayList();
+		LabelingClient client = LabelingClient.connect(
+				new InetSocketAddress("127.0.0.1", server.port()));
+		try {
+			for (String sql : QUERIES) {
+				decisions.add(client.label(sql, 1, 2));
+			}
+		} finally {
+			client.close();
+			server.close();
+			log.close();
+		}
+
+		List<SlowQueryRecord> records = SlowQueryLogReader.readAll(file);
+		assertEquals(QUERIES.size(), records.size());
+
+		SlowQueryReplay replay = SlowQueryReplay.create(SCHEMA, securityViews);
+		try {
+			for (int i = 0; i < records.size(); i++) {
+				SlowQueryRecord record = records.get(i);
+				assertEquals(QUERIES.get(i), record.sql());
+				assertEquals(decisions.get(i).detail(), record.result());
+
+				SlowQueryRecord replayed = replay.replay(record);
+				assertEquals(record.sql(), replayed.sql());
+				assertEquals(record.schemaFingerprint(), replayed.schemaFingerprint());
+				assertEquals(record.securityViewsFingerprint(), replayed.securityViewsFingerprint());
+				assertEquals(record.views(), replayed.views());
+				assertEquals(record.result(), replayed.result());
+				assertFalse(replayed.stages().isEmpty());
+			}
+		} finally {
+			replay.close();
+		}
+
+		assertEquals(2, records.get(1).views().size());
+		assertTrue(records.get(3).result().startsWith("SqlException: "));
+		assertTrue(records.get(3).views().isEmpty());
+	}
+}
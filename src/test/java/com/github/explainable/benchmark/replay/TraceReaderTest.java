@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TraceWriter} and {@link TraceReader}.
+ */
+public final class TraceReaderTest {
+	private File file = null;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("TraceReaderTest", ".trace");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		file = null;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		List<TraceRecord> records = ImmutableList.of(
+				new TraceRecord(0L, 0, "SELECT * FROM R", "1"),
+				new TraceRecord(5L, 300, "SELECT a FROM R WHERE b = 'caf\u00e9'", "1|(2&3)"),
+				new TraceRecord(5L, 7, "", ""),
+				new TraceRecord(Long.MAX_VALUE / 2, Integer.MAX_VALUE, "SELECT", "!JSQLParserException"));
+
+		TraceWriter writer = TraceWriter.open(file);
+		for (TraceRecord record : records) {
+			writer.write(record);
+		}
+		writer.close();
+
+		assertEquals(records, TraceReader.readAll(file));
+	}
+
+	@Test
+	public void testRecordTimestamps() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceWriter writer = TraceWriter.wrap(bytes);
+		for (int i = 0; i < 100; i++) {
+			writer.record("SELECT " + i, i % 3, "true");
+		}
+		writer.close();
+
+		TraceReader reader = TraceReader.wrap(new ByteArrayInputStream(bytes.toByteArray()));
+		long lastTimestamp = 0L;
+		for (int i = 0; i < 100; i++) {
+			TraceRecord record = reader.next();
+			assertEquals("SELECT " + i, record.sql());
+			assertEquals(i % 3, record.grantedSetId());
+			assertTrue(record.timestampNanos() >= lastTimestamp);
+			lastTimestamp = record.timestampNanos();
+		}
+		assertNull(reader.next());
+	}
+
+	@Test
+	public void testCompact() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceWriter writer = TraceWriter.wrap(bytes);
+		writer.write(new TraceRecord(100L, 1, "ab", "c"));
+		writer.close();
+
+		// Header, then one byte each for the timestamp, the id and the two lengths.
+		assertEquals(5 + 4 + 3, bytes.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfOrder() throws IOException {
+		TraceWriter writer = TraceWriter.wrap(new ByteArrayOutputStream());
+		writer.write(new TraceRecord(10L, 0, "", ""));
+		writer.write(new TraceRecord(9L, 0, "", ""));
+	}
+
+	@Test(expected = EOFException.class)
+	public void testTruncated() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceWriter writer = TraceWriter.wrap(bytes);
+		writer.write(new TraceRecord(0L, 0, "SELECT * FROM R", "1"));
+		writer.close();
+
+		byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+		TraceReader reader = TraceReader.wrap(new ByteArrayInputStream(truncated));
+		reader.next();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotATrace() throws IOException {
+		TraceReader.wrap(new ByteArrayInputStream("SELECT * FROM R;".getBytes("UTF-8")));
+	}
+}
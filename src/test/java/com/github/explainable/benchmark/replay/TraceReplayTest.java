@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.benchmark.replay;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link RecordingLabeler} and {@link TraceReplay}.
+ */
+public final class TraceReplayTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S);
+
+	private static final ImmutableList<String> SECURITY_VIEWS = ImmutableList.of(
+			"SELECT a FROM R",
+			"SELECT * FROM R WHERE a = 1",
+			"SELECT c FROM S");
+
+	private static final ImmutableList<String> QUERIES = ImmutableList.of(
+			"SELECT a FROM R",
+			"SELECT b FROM R WHERE a = 1",
+			"SELECT a, c FROM R, S WHERE R.b = S.c",
+			"SELECT b FROM R",
+			"SELECT c FROM S");
+
+	private List<View> securityViews = null;
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+
+		securityViews = Lists.newArrayList();
+		for (String sql : SECURITY_VIEWS) {
+			securityViews.add(pipeline.execute((Select) parser.parse(new StringReader(sql))).get(0));
+		}
+
+		file = File.createTempFile("TraceReplayTest", ".trace");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		file = null;
+		securityViews = null;
+	}
+
+	private List<TraceRecord> record(int repetitions) throws Exception {
+		TraceWriter writer = TraceWriter.open(file);
+		RecordingLabeler labeler = RecordingLabeler.create(SCHEMA, securityViews, writer);
+		for (int i = 0; i < repetitions; i++) {
+			for (int j = 0; j < QUERIES.size(); j++) {
+				Policy policy = labeler.label(QUERIES.get(j), j % 2);
+				assertTrue(policy != null);
+			}
+		}
+
+		try {
+			labeler.label("SELECT FROM", 0);
+			fail();
+		} catch (JSQLParserException e) {
+			// Expected
+		}
+		writer.close();
+
+		return TraceReader.readAll(file);
+	}
+
+	@Test
+	public void testRecord() throws Exception {
+		List<TraceRecord> records = record(1);
+		assertEquals(QUERIES.size() + 1, records.size());
+		assertEquals("1", records.get(0).result());
+		assertEquals("2", records.get(1).result());
+		assertEquals("false", records.get(3).result());
+		assertEquals(1, records.get(3).grantedSetId());
+		assertEquals("!JSQLParserException", records.get(QUERIES.size()).result());
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		List<TraceRecord> records = record(20);
+
+		TraceReplay.Summary summary = TraceReplay.builder(SCHEMA, securityViews, records)
+				.setThreadCount(4)
+				.setGrantedSets(ImmutableMap.of(
+						0, ImmutableSet.of(securityViews.get(0), securityViews.get(2)),
+						1, ImmutableSet.of(securityViews.get(1))))
+				.build()
+				.run();
+
+		assertEquals(records.size(), summary.queries());
+		assertEquals(0, summary.mismatches());
+		assertEquals(records.size(), summary.latencies().count());
+
+		// Queries 0, 2 and 4 use granted set 0 and queries 1 and 3 use granted set 1. Queries 2
+		// and 3 are denied.
+		assertEquals(20 * 3, summary.allowed());
+		assertEquals(20 * 2, summary.denied());
+	}
+
+	@Test
+	public void testReplayAtRecordedRate() throws Exception {
+		List<TraceRecord> records = ImmutableList.of(
+				new TraceRecord(0L, 0, QUERIES.get(0), "1"),
+				new TraceRecord(20000000L, 0, QUERIES.get(1), "2"));
+
+		TraceReplay.Summary summary = TraceReplay.builder(SCHEMA, securityViews, records)
+				.setSpeedup(1.0)
+				.build()
+				.run();
+
+		assertEquals(0, summary.mismatches());
+		assertTrue(summary.elapsedNanos() >= 20000000L);
+	}
+
+	@Test
+	public void testMismatch() throws Exception {
+		List<TraceRecord> records = ImmutableList.of(
+				new TraceRecord(0L, 0, QUERIES.get(0), "1"),
+				new TraceRecord(1L, 0, QUERIES.get(3), "1"));
+
+		TraceReplay.Summary summary = TraceReplay.builder(SCHEMA, securityViews, records)
+				.build()
+				.run();
+
+		assertEquals(1, summary.mismatches());
+		assertEquals(ImmutableList.of("Query 1: expected 1 but got false: SELECT b FROM R"),
+				summary.reportedMismatches());
+	}
+}
@@ -25,6 +25,7 @@
 package com.github.explainable.corelang;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -213,4 +214,25 @@ public class AtomTest {
 
 		assertNull(atom1.unifyWith(atom2));
 	}
+
+	@Test
+	public void testUnifyWith_wideAtomWithRepeatedArguments() {
+		Relation wide = RelationImpl.create("Wide", ImmutableList.of(
+				"a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l"));
+
+		Term commonTerm = multiset();
+		List<Term> arguments = Lists.newArrayList();
+		List<Term> matching = Lists.newArrayList();
+		List<Term> conflicting = Lists.newArrayList();
+		for (int i = 0; i < wide.arity(); i++) {
+			arguments.add((i == 1 || i == 10) ? commonTerm : multiset());
+			matching.add((i == 1 || i == 10) ? constant(1L) : multiset());
+			conflicting.add((i == 1) ? constant(1L) : (i == 10) ? constant(2L) : multiset());
+		}
+		Atom atom = Atom.createMultisetAtom(wide, arguments);
+
+		Atom unifier = atom.unifyWith(Atom.createMultisetAtom(wide, matching));
+		assertEquals(constant(1L), unifier.arguments().get(10));
+		assertNull(atom.unifyWith(Atom.createMultisetAtom(wide, conflicting)));
+	}
 }
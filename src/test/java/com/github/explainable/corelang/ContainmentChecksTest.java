@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.corelang;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.github.explainable.corelang.Atom.asSetAtom;
+import static com.github.explainable.corelang.Terms.dist;
+import static com.github.explainable.corelang.Terms.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ContainmentChecks} and {@link SearchEffort}.
+ */
+public final class ContainmentChecksTest {
+	private static final Relation NODE = RelationImpl.create("Node", ImmutableList.of("id"));
+
+	private static final Relation EDGE
+			= RelationImpl.create("Edge", ImmutableList.of("src", "dst"));
+
+	@After
+	public void tearDown() {
+		ContainmentChecks.setEffortBudget(0L);
+	}
+
+	/**
+	 * A view over the nodes that are in a complete graph on {@code nodes} vertices, without
+	 * self-loops.
+	 */
+	private static View completeGraph(int nodes) {
+		Term dist = dist();
+		List<Term> vertices = Lists.newArrayList();
+		vertices.add(dist);
+		for (int i = 1; i < nodes; i++) {
+			vertices.add(set());
+		}
+
+		List<Atom> conditions = Lists.newArrayList();
+		for (Term from : vertices) {
+			for (Term to : vertices) {
+				if (from != to) {
+					conditions.add(asSetAtom(EDGE, from, to));
+				}
+			}
+		}
+		return View.convert("Complete", asSetAtom(NODE, dist), conditions);
+	}
+
+	/**
+	 * A view over the nodes that start a path of {@code length} edges which ends in a self-loop.
+	 * Checking it against {@link #completeGraph} tries every path before it finds no self-loop.
+	 */
+	private static View pathToLoop(int length) {
+		Term dist = dist();
+		List<Atom> conditions = Lists.newArrayList();
+		Term last = dist;
+		for (int i = 0; i < length; i++) {
+			Term next = set();
+			conditions.add(asSetAtom(EDGE, last, next));
+			last = next;
+		}
+		conditions.add(asSetAtom(EDGE, last, last));
+		return View.convert("PathToLoop", asSetAtom(NODE, dist), conditions);
+	}
+
+	@Test
+	public void testEffort() {
+		SearchEffort effort = new SearchEffort();
+		assertFalse(completeGraph(4).precedes(pathToLoop(3), effort));
+
+		assertEquals(1L, effort.checks());
+		assertTrue(effort.extendAttempts() > 100L);
+		assertTrue(effort.failedAugments() > 0L);
+		assertTrue(effort.backtracks() > 0L);
+		assertEquals(4, effort.maxDepth());
+		assertEquals(0L, effort.budgetExceeded());
+
+		assertTrue(completeGraph(4).precedes(completeGraph(4), effort));
+		assertEquals(2L, effort.checks());
+		assertEquals(0L, effort.budgetExceeded());
+	}
+
+	@Test
+	public void testBudgetFailsClosed() {
+		View complete = completeGraph(4);
+		View self = completeGraph(4);
+
+		SearchEffort unlimited = new SearchEffort();
+		assertTrue(complete.precedes(self, unlimited));
+
+		// The same check that succeeds without a budget fails if it can't finish in time.
+		ContainmentChecks.setEffortBudget(unlimited.extendAttempts() - 1);
+		SearchEffort limited = new SearchEffort();
+		assertFalse(complete.precedes(self, limited));
+		assertEquals(unlimited.extendAttempts() - 1, limited.extendAttempts());
+		assertEquals(1L, limited.budgetExceeded());
+
+		ContainmentChecks.setEffortBudget(unlimited.extendAttempts());
+		SearchEffort enough = new SearchEffort();
+		assertTrue(complete.precedes(self, enough));
+		assertEquals(0L, enough.budgetExceeded());
+	}
+
+	/**
+	 * A search that fails after using up exactly its budget finished, so it didn't exceed it.
+	 */
+	@Test
+	public void testBudgetUsedUpByFailedSearch() {
+		View complete = completeGraph(4);
+		View path = pathToLoop(3);
+
+		SearchEffort unlimited = new SearchEffort();
+		assertFalse(complete.precedes(path, unlimited));
+
+		ContainmentChecks.setEffortBudget(unlimited.extendAttempts());
+		SearchEffort exact = new SearchEffort();
+		assertFalse(complete.precedes(path, exact));
+		assertEquals(unlimited.extendAttempts(), exact.extendAttempts());
+		assertEquals(0L, exact.budgetExceeded());
+
+		ContainmentChecks.setEffortBudget(unlimited.extendAttempts() - 1);
+		SearchEffort limited = new SearchEffort();
+		assertFalse(complete.precedes(path, limited));
+		assertEquals(1L, limited.budgetExceeded());
+	}
+
+	@Test
+	public void testBudgetBoundsPathologicalCheck() {
+		ContainmentChecks.setEffortBudget(1000L);
+		SearchEffort effort = new SearchEffort();
+		assertFalse(completeGraph(8).precedes(pathToLoop(8), effort));
+		assertEquals(1000L, effort.extendAttempts());
+		assertEquals(1L, effort.budgetExceeded());
+	}
+
+	@Test
+	public void testTotalEffort() {
+		SearchEffort before = ContainmentChecks.totalEffort();
+		ContainmentChecks.setEffortBudget(10L);
+		SearchEffort effort = new SearchEffort();
+		completeGraph(4).precedes(pathToLoop(3), effort);
+		completeGraph(3).precedes(completeGraph(3), effort);
+		SearchEffort after = ContainmentChecks.totalEffort();
+
+		// The totals are process-wide, so checks on other threads may add to them too.
+		assertTrue(after.checks() - before.checks() >= 2L);
+		assertTrue(after.extendAttempts() - before.extendAttempts() >= effort.extendAttempts());
+		assertTrue(after.backtracks() - before.backtracks() >= effort.backtracks());
+		assertTrue(after.budgetExceeded() - before.budgetExceeded() >= 1L);
+		assertTrue(after.maxDepth() >= effort.maxDepth());
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.labeler.policy;
+
+import com.github.explainable.corelang.Relation;
+import com.github.explainable.corelang.RelationImpl;
+import com.github.explainable.corelang.Term;
+import com.github.explainable.corelang.View;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.explainable.corelang.Atom.asMultisetAtom;
+import static com.github.explainable.corelang.Atom.asSetAtom;
+import static com.github.explainable.corelang.Terms.constant;
+import static com.github.explainable.corelang.Terms.dist;
+import static com.github.explainable.corelang.Terms.multiset;
+import static com.github.explainable.corelang.Terms.set;
+import static com.github.explainable.corelang.View.asView;
+import static com.github.explainable.util.MoreAsserts.assertEquivalent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SecurityViewCatalog}.
+ */
+public final class SecurityViewCatalogTest {
+	private static final Relation R = RelationImpl.create("R", ImmutableList.of("a", "b"));
+
+	private static final Relation S = RelationImpl.create("S", ImmutableList.of("c", "d", "e"));
+
+	private static final Relation T = RelationImpl.create("T", ImmutableList.of("f"));
+
+	private static final ImmutableList<Relation> RELATIONS = ImmutableList.of(R, S, T);
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("SecurityViewCatalogTest", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		file = null;
+	}
+
+	private List<View> securityViews() {
+		Term x = dist();
+		Term y = dist();
+
+		return ImmutableList.of(
+				asView("V1", asMultisetAtom(R, dist(), multiset())),
+				asView("V2", asSetAtom(S, x, constant(3L), constant("it's")),
+						asSetAtom(R, x, set())),
+				asView("V3", asMultisetAtom(R, y, y)),
+				asView("V4", asMultisetAtom(S, x, constant(2.5), constant(7)),
+						asSetAtom(T, x),
+						asSetAtom(R, x, constant("\u00fc"))));
+	}
+
+	private static void assertSameViews(List<View> expected, List<View> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).name(), actual.get(i).name());
+			assertEquals(expected.get(i).toString(), actual.get(i).toString());
+			assertEquivalent(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog.write(views, file);
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(file, RELATIONS);
+
+		assertEquals(4, catalog.viewCount());
+		assertEquals(ImmutableList.of(R, S, T), catalog.relations());
+
+		// Views are grouped by body relation.
+		assertSameViews(
+				ImmutableList.of(views.get(0), views.get(2), views.get(1), views.get(3)),
+				catalog.views());
+	}
+
+	@Test
+	public void testViewsFor() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog.write(views, file);
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(file, RELATIONS);
+
+		assertSameViews(ImmutableList.of(views.get(1), views.get(3)), catalog.viewsFor(S));
+		assertEquals(ImmutableList.<View>of(), catalog.viewsFor(T));
+		assertEquals(ImmutableList.<View>of(),
+				catalog.viewsFor(RelationImpl.create("U", ImmutableList.of("g"))));
+
+		// Views are only decoded once.
+		assertSame(catalog.viewsFor(S), catalog.viewsFor(S));
+	}
+
+	@Test
+	public void testRepeatedVariable() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog.write(views, file);
+		View view = SecurityViewCatalog.open(file, RELATIONS).viewsFor(R).get(1);
+
+		assertSame(view.body().arguments().get(0), view.body().arguments().get(1));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		SecurityViewCatalog.write(ImmutableList.<View>of(), file);
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(file, RELATIONS);
+
+		assertEquals(0, catalog.viewCount());
+		assertEquals(ImmutableList.<View>of(), catalog.views());
+	}
+
+	@Test
+	public void testViewNumbers() throws Exception {
+		SecurityViewCatalog.write(securityViews(), file);
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(file, RELATIONS);
+
+		ImmutableList<View> views = catalog.views();
+		for (int i = 0; i < views.size(); i++) {
+			assertSame(views.get(i), catalog.view(i));
+			assertEquals(i, catalog.indexOf(views.get(i)));
+		}
+		assertEquals(-1, catalog.indexOf(securityViews().get(0)));
+		assertEquals(2, catalog.viewCount(S));
+		assertEquals(0, catalog.viewCount(T));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testViewNumberOutOfRange() throws Exception {
+		SecurityViewCatalog.write(securityViews(), file);
+		SecurityViewCatalog.open(file, RELATIONS).view(4);
+	}
+
+	@Test
+	public void testOpenWithoutRelations() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog.write(views, file);
+		SecurityViewCatalog catalog = SecurityViewCatalog.open(file);
+
+		Relation placeholder
+				= RelationImpl.create("S", ImmutableList.of("column1", "column2", "column3"));
+		assertEquals(placeholder, catalog.relations().get(1));
+		assertEquals(2, catalog.viewsFor(placeholder).size());
+		assertEquals("V4", catalog.viewsFor(placeholder).get(1).name());
+		assertEquals(placeholder, catalog.viewsFor(placeholder).get(1).bodyRelation());
+	}
+
+	@Test
+	public void testEncodeAndWrap() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog catalog = SecurityViewCatalog.wrap(SecurityViewCatalog.encode(views));
+
+		assertNull(catalog.file());
+		assertEquals(4, catalog.viewCount());
+		assertEquals("V4", catalog.view(3).name());
+	}
+
+	@Test
+	public void testLabelerMatchesInMemoryLabeler() throws Exception {
+		List<View> views = securityViews();
+		SecurityViewCatalog.write(views, file);
+
+		PolicyLabeler expected = PolicyLabeler.create(views);
+		PolicyLabeler actual = PolicyLabeler.create(SecurityViewCatalog.open(file, RELATIONS));
+
+		View query = asView(asMultisetAtom(R, dist(), multiset()));
+		ImmutableSet<String> expectedNames
+				= names(expected.label(query).whySo(ImmutableSet.copyOf(views)));
+		ImmutableSet<String> actualNames
+				= names(actual.label(query).whySo(ImmutableSet.copyOf(actual.securityViewsFor(R))));
+
+		assertTrue(expectedNames.contains("V1"));
+		assertEquals(expectedNames, actualNames);
+		assertEquals(2, actual.securityViewsFor(R).size());
+	}
+
+	private static ImmutableSet<String> names(Policy policy) {
+		ImmutableSet.Builder<String> result = ImmutableSet.builder();
+		for (String name : policy.simplify().toString().split(" or | and ")) {
+			result.add(name.replaceAll("[()]", ""));
+		}
+		return result.build();
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownRelation() throws Exception {
+		SecurityViewCatalog.write(securityViews(), file);
+		SecurityViewCatalog.open(file, ImmutableList.of(R, S));
+	}
+
+	@Test(expected = IOException.class)
+	public void testArityMismatch() throws Exception {
+		SecurityViewCatalog.write(securityViews(), file);
+		SecurityViewCatalog.open(file, ImmutableList.of(
+				R, RelationImpl.create("S", ImmutableList.of("c", "d")), T));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotACatalog() throws Exception {
+		Files.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, file);
+		SecurityViewCatalog.open(file, RELATIONS);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws Exception {
+		SecurityViewCatalog.write(securityViews(), file);
+		byte[] bytes = Files.toByteArray(file);
+		Files.write(Arrays.copyOf(bytes, 30), file);
+		SecurityViewCatalog.open(file, RELATIONS);
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.server.LabelingDecision.Outcome;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LabelingServer} and {@link LabelingClient}.
+ */
+public final class LabelingServerTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S);
+
+	private LabelingServer server = null;
+
+	private List<LabelingClient> clients = null;
+
+	private List<View> securityViews = null;
+
+	@Before
+	public void setUp() throws Exception {
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+
+		securityViews = Lists.newArrayList();
+		for (String sql : ImmutableList.of("SELECT * FROM R", "SELECT * FROM S")) {
+			securityViews.add(pipeline.execute((Select) parser.parse(new StringReader(sql))).get(0));
+		}
+
+		server = LabelingServer.builder(SCHEMA, securityViews)
+				.setThreadCount(3)
+				.setMaxInFlight(4)
+				.build();
+		server.start();
+		clients = Lists.newArrayList();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (LabelingClient client : clients) {
+			client.close();
+		}
+		server.close();
+		server = null;
+		clients = null;
+		securityViews = null;
+	}
+
+	private InetSocketAddress address() {
+		return new InetSocketAddress("127.0.0.1", server.port());
+	}
+
+	private LabelingClient connect() throws IOException {
+		LabelingClient client = LabelingClient.connect(address());
+		clients.add(client);
+		return client;
+	}
+
+	@Test
+	public void testAllow() throws Exception {
+		LabelingDecision decision = connect().label("SELECT a FROM R", 1);
+		assertEquals(Outcome.ALLOW, decision.outcome());
+		assertEquals("1", decision.detail());
+	}
+
+	@Test
+	public void testDeny() throws Exception {
+		LabelingDecision decision = connect().label("SELECT c FROM S", 1);
+		assertEquals(Outcome.DENY, decision.outcome());
+		assertEquals("2", decision.detail());
+	}
+
+	@Test
+	public void testConjunctivePolicy() throws Exception {
+		LabelingClient client = connect();
+		String sql = "SELECT R.a FROM R, S WHERE R.b = S.c";
+
+		assertEquals(Outcome.DENY, client.label(sql, 1).outcome());
+		assertEquals(Outcome.ALLOW, client.label(sql, 1, 2).outcome());
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		LabelingClient client = connect();
+
+		assertEquals(Outcome.ERROR, client.label("SELECT x FROM R").outcome());
+		assertEquals(Outcome.ERROR, client.label("DELETE FROM R").outcome());
+		assertEquals(Outcome.ERROR, client.label("SELECT a FROM R", 3).outcome());
+		assertEquals(Outcome.ERROR, client.label("NOT EVEN SQL").outcome());
+
+		// The connection is still usable after an error.
+		assertEquals(Outcome.ALLOW, client.label("SELECT a FROM R", 1).outcome());
+	}
+
+	@Test
+	public void testPipelining() throws Exception {
+		LabelingClient client = connect();
+
+		Map<Integer, Outcome> expected = Maps.newHashMap();
+		for (int i = 0; i < 1000; i++) {
+			if (i % 2 == 0) {
+				expected.put(client.send("SELECT a FROM R WHERE b = " + i, 2), Outcome.DENY);
+			} else {
+				expected.put(client.send("SELECT c FROM S WHERE c = " + i, 2), Outcome.ALLOW);
+			}
+		}
+		client.flush();
+
+		Map<Integer, Outcome> actual = Maps.newHashMap();
+		while (client.outstanding() > 0) {
+			LabelingDecision decision = client.receive();
+			actual.put(decision.requestId(), decision.outcome());
+		}
+
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * A client that sends all its requests before reading any responses, to a server that can only
+	 * queue a few bytes of responses per connection.
+	 */
+	@Test
+	public void testSlowReader() throws Exception {
+		server.close();
+		server = LabelingServer.builder(SCHEMA, securityViews)
+				.setThreadCount(3)
+				.setMaxQueuedBytes(64)
+				.build();
+		server.start();
+
+		LabelingClient client = connect();
+		for (int i = 0; i < 1000; i++) {
+			client.send("SELECT a FROM R WHERE b = " + i, 1);
+		}
+		client.flush();
+		Thread.sleep(100);
+
+		int allowed = 0;
+		while (client.outstanding() > 0) {
+			if (client.receive().outcome() == Outcome.ALLOW) {
+				allowed++;
+			}
+		}
+		assertEquals(1000, allowed);
+	}
+
+	@Test
+	public void testResponseTooLarge() {
+		char[] detail = new char[LabelingProtocol.MAX_FRAME_LENGTH];
+		Arrays.fill(detail, '1');
+		LabelingDecision large = new LabelingDecision(7, Outcome.ALLOW, new String(detail));
+		LabelingDecision checked = LabelingProtocol.checkResponseLength(large);
+		assertEquals(7, checked.requestId());
+		assertEquals(Outcome.ERROR, checked.outcome());
+		assertTrue(LabelingProtocol.responseLength(checked) < 100);
+
+		LabelingDecision small = new LabelingDecision(8, Outcome.DENY, "1|2");
+		assertSame(small, LabelingProtocol.checkResponseLength(small));
+	}
+
+	@Test
+	public void testConcurrentClients() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = Lists.newArrayList();
+			for (int i = 0; i < 8; i++) {
+				final LabelingClient client = connect();
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int allowed = 0;
+						for (int j = 0; j < 200; j++) {
+							client.send((j % 4 == 0) ? "SELECT a FROM R" : "SELECT c FROM S", 1);
+						}
+						client.flush();
+						for (int j = 0; j < 200; j++) {
+							if (client.receive().outcome() == Outcome.ALLOW) {
+								allowed++;
+							}
+						}
+						return allowed;
+					}
+				}));
+			}
+
+			for (Future<Integer> result : results) {
+				assertEquals(50, result.get().intValue());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testMalformedFrameClosesConnection() throws Exception {
+		Socket socket = new Socket();
+		socket.connect(address());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(-1);
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			try {
+				in.readInt();
+				assertTrue("Expected the server to close the connection", false);
+			} catch (EOFException e) {
+				// Expected
+			}
+		} finally {
+			socket.close();
+		}
+
+		// Other clients are unaffected.
+		assertEquals(Outcome.ALLOW, connect().label("SELECT a FROM R", 1).outcome());
+	}
+
+	/**
+	 * Frames too short to hold a request id and a grant count.
+	 */
+	@Test
+	public void testShortFrameClosesConnection() throws Exception {
+		for (int length = 0; length < LabelingProtocol.MIN_REQUEST_LENGTH; length++) {
+			Socket socket = new Socket();
+			socket.connect(address());
+			try {
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				out.writeInt(length);
+				out.write(new byte[length]);
+				out.flush();
+
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				try {
+					in.readInt();
+					assertTrue("Expected the server to close the connection", false);
+				} catch (EOFException e) {
+					// Expected
+				}
+			} finally {
+				socket.close();
+			}
+
+			// The server keeps serving other clients.
+			assertEquals(Outcome.ALLOW, connect().label("SELECT a FROM R", 1).outcome());
+		}
+	}
+
+	/**
+	 * Queries bigger than the server's initial read buffer.
+	 */
+	@Test
+	public void testLargeQuery() throws Exception {
+		StringBuilder sql = new StringBuilder("SELECT a FROM R WHERE b = 0");
+		for (int i = 1; i < 10000; i++) {
+			sql.append(" OR b = ").append(i);
+		}
+
+		LabelingDecision decision = connect().label(sql.toString(), 1);
+		assertEquals(Outcome.ALLOW, decision.outcome());
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.server;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.labeler.policy.SecurityViewCatalog;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ShardPlan}, {@link LabelingShard} and {@link ShardCoordinator}.
+ */
+public final class ShardedLabelingTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final TypedRelation T = TypedRelationImpl.builder().setName("T")
+			.addColumn("d", numeric())
+			.addColumn("e", numeric())
+			.build();
+
+	private static final TypedRelation U = TypedRelationImpl.builder().setName("U")
+			.addColumn("f", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S, T, U);
+
+	private static final ImmutableList<String> SECURITY_VIEWS = ImmutableList.of(
+			"SELECT a FROM R",
+			"SELECT * FROM R",
+			"SELECT b FROM R WHERE a = 1",
+			"SELECT c FROM S",
+			"SELECT d FROM T",
+			"SELECT * FROM T WHERE d = 2");
+
+	private static final ImmutableList<String> QUERIES = ImmutableList.of(
+			"SELECT a FROM R",
+			"SELECT b FROM R WHERE a = 1",
+			"SELECT a, c FROM R, S WHERE R.b = S.c",
+			"SELECT R.a, T.e FROM R, T WHERE R.a = T.d AND T.d = 2",
+			"SELECT c FROM S UNION SELECT d FROM T",
+			"SELECT f FROM U",
+			"SELECT a, f FROM R, U WHERE R.b = U.f");
+
+	private File catalogFile = null;
+
+	private SecurityViewCatalog catalog = null;
+
+	private List<LabelingShard> shards = null;
+
+	private List<Process> processes = null;
+
+	private ShardCoordinator coordinator = null;
+
+	@Before
+	public void setUp() throws Exception {
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+
+		List<View> securityViews = Lists.newArrayList();
+		for (String sql : SECURITY_VIEWS) {
+			securityViews.add(pipeline.execute((Select) parser.parse(new StringReader(sql))).get(0));
+		}
+
+		catalogFile = File.createTempFile("ShardedLabelingTest", ".bin");
+		SecurityViewCatalog.write(securityViews, catalogFile);
+		catalog = SecurityViewCatalog.open(catalogFile, SCHEMA.relations());
+
+		shards = Lists.newArrayList();
+		processes = Lists.newArrayList();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (coordinator != null) {
+			coordinator.close();
+		}
+		for (LabelingShard shard : shards) {
+			shard.close();
+		}
+		for (Process process : processes) {
+			process.getOutputStream().close();
+			process.waitFor();
+		}
+		catalogFile.delete();
+
+		catalogFile = null;
+		catalog = null;
+		shards = null;
+		processes = null;
+		coordinator = null;
+	}
+
+	private List<InetSocketAddress> startShards(int shardCount) throws IOException {
+		List<InetSocketAddress> addresses = Lists.newArrayList();
+		for (int i = 0; i < shardCount; i++) {
+			LabelingShard shard = LabelingShard.builder(catalogFile, i, shardCount).build();
+			shard.start();
+			shards.add(shard);
+			addresses.add(new InetSocketAddress("127.0.0.1", shard.port()));
+		}
+		return addresses;
+	}
+
+	private List<InetSocketAddress> startShardProcesses(int shardCount) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+		List<InetSocketAddress> addresses = Lists.newArrayList();
+		for (int i = 0; i < shardCount; i++) {
+			ProcessBuilder builder = new ProcessBuilder(
+					java,
+					"-cp", System.getProperty("java.class.path"),
+					LabelingShard.class.getName(),
+					catalogFile.getPath(),
+					Integer.toString(i),
+					Integer.toString(shardCount));
+			builder.redirectErrorStream(true);
+
+			Process process = builder.start();
+			processes.add(process);
+
+			BufferedReader output = new BufferedReader(
+					new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+			String line;
+			while ((line = output.readLine()) != null && !line.startsWith("port ")) {
+				// Skip anything the JVM prints before the shard is listening.
+			}
+			assertNotNull("Shard process " + i + " exited before listening", line);
+
+			int port = Integer.parseInt(line.substring("port ".length()));
+			addresses.add(new InetSocketAddress("127.0.0.1", port));
+		}
+		return addresses;
+	}
+
+	/**
+	 * Check that {@code coordinator} computes policies that are equivalent to the ones computed by
+	 * a single labeler that holds all the security views.
+	 */
+	private void assertMatchesSingleLabeler() throws Exception {
+		CCJSqlParserManager parser = new CCJSqlParserManager();
+		ViewExtractionPipeline pipeline = ViewExtractionPipeline.create(SCHEMA);
+		PolicyLabeler labeler = PolicyLabeler.create(catalog);
+
+		ImmutableList<View> securityViews = catalog.views();
+		for (String sql : QUERIES) {
+			Policy expected = labeler.label(
+					pipeline.execute((Select) parser.parse(new StringReader(sql))));
+			Policy actual = coordinator.label(sql);
+
+			for (int mask = 0; mask < (1 << securityViews.size()); mask++) {
+				ImmutableSet.Builder<View> granted = ImmutableSet.builder();
+				for (int i = 0; i < securityViews.size(); i++) {
+					if ((mask & (1 << i)) != 0) {
+						granted.add(securityViews.get(i));
+					}
+				}
+
+				ImmutableSet<View> grantedSet = granted.build();
+				assertEquals(sql + " with " + grantedSet,
+						expected.evaluate(grantedSet), actual.evaluate(grantedSet));
+			}
+		}
+	}
+
+	@Test
+	public void testPlanBalancesViews() {
+		ShardPlan plan = ShardPlan.create(catalog, 2);
+		assertEquals(ImmutableList.of("R"), plan.relations(0));
+		assertEquals(ImmutableList.of("T", "S"), plan.relations(1));
+		assertEquals(3, plan.viewCount(0));
+		assertEquals(3, plan.viewCount(1));
+		assertEquals(0, plan.shardFor(R));
+		assertEquals(1, plan.shardFor(S));
+		assertEquals(-1, plan.shardFor(U));
+	}
+
+	@Test
+	public void testPlanWithMoreShardsThanRelations() {
+		ShardPlan plan = ShardPlan.create(catalog, 5);
+		assertEquals(0, plan.viewCount(3));
+		assertEquals(ImmutableList.<String>of(), plan.relations(4));
+	}
+
+	@Test
+	public void testSingleShard() throws Exception {
+		coordinator = ShardCoordinator.connect(SCHEMA, catalog, startShards(1));
+		assertMatchesSingleLabeler();
+	}
+
+	@Test
+	public void testThreeShards() throws Exception {
+		coordinator = ShardCoordinator.connect(SCHEMA, catalog, startShards(3));
+		assertMatchesSingleLabeler();
+
+		int total = 0;
+		for (LabelingShard shard : shards) {
+			total += shard.viewCount();
+		}
+		assertEquals(SECURITY_VIEWS.size(), total);
+	}
+
+	@Test
+	public void testUnknownRelationDenied() throws Exception {
+		coordinator = ShardCoordinator.connect(SCHEMA, catalog, startShards(2));
+		assertTrue(!coordinator.label("SELECT f FROM U").evaluate(ImmutableSet.copyOf(catalog.views())));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongShardRejected() throws Exception {
+		// Shards that disagree with the coordinator about the plan refuse views they don't own.
+		List<InetSocketAddress> addresses = startShards(2);
+		coordinator = ShardCoordinator.connect(
+				SCHEMA, catalog, ImmutableList.of(addresses.get(1), addresses.get(0)));
+		coordinator.label("SELECT a FROM R");
+	}
+
+	@Test
+	public void testShardErrorDoesNotAffectLaterQueries() throws Exception {
+		// Both connections go to shard 1, which refuses the views over R that belong to shard 0
+		// but labels the views over S. The first shard's error is read before the second shard's
+		// answer, which the coordinator must still consume.
+		List<InetSocketAddress> addresses = startShards(2);
+		coordinator = ShardCoordinator.connect(
+				SCHEMA, catalog, ImmutableList.of(addresses.get(1), addresses.get(1)));
+		try {
+			coordinator.label("SELECT a, c FROM R, S WHERE R.b = S.c");
+			assertTrue("Expected shard 1 to refuse the views over R", false);
+		} catch (IOException e) {
+			// Expected
+		}
+
+		Policy policy = coordinator.label("SELECT c FROM S");
+		assertTrue(policy.evaluate(ImmutableSet.copyOf(catalog.views())));
+	}
+
+	@Test
+	public void testSeparateProcesses() throws Exception {
+		coordinator = ShardCoordinator.connect(SCHEMA, catalog, startShardProcesses(2));
+		assertMatchesSingleLabeler();
+	}
+}
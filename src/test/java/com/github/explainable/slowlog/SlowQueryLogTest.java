@@ -0,0 +1,286 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.slowlog;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.github.explainable.trace.QueryTracer;
+import com.github.explainable.trace.StageTiming;
+import com.github.explainable.trace.Tracing;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SlowQueryLog} and {@link SlowQueryLogReader}.
+ */
+public final class SlowQueryLogTest {
+	private static final TypedRelation R = TypedRelationImpl.builder().setName("R")
+			.addColumn("a", numeric())
+			.addColumn("b", numeric())
+			.build();
+
+	private static final TypedRelation S = TypedRelationImpl.builder().setName("S")
+			.addColumn("c", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(R, S);
+
+	private static final String QUERY = "SELECT a FROM R, S WHERE R.b = S.c";
+
+	private File file = null;
+
+	private List<View> securityViews = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("SlowQueryLogTest", ".log");
+		file.delete();
+
+		securityViews = Lists.newArrayList();
+		for (String sql : ImmutableList.of("SELECT * FROM R", "SELECT * FROM S")) {
+			securityViews.addAll(extract(sql));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (int i = 0; i < 4; i++) {
+			new File(file.getPath() + ((i > 0) ? "." + i : "")).delete();
+		}
+		file = null;
+		securityViews = null;
+	}
+
+	private static List<View> extract(String sql) throws Exception {
+		Select select = (Select) new CCJSqlParserManager().parse(new StringReader(sql));
+		return ViewExtractionPipeline.create(SCHEMA).execute(select);
+	}
+
+	private static List<String> stageNames(SlowQueryRecord record) {
+		List<String> names = Lists.newArrayList();
+		for (StageTiming stage : record.stages()) {
+			names.add(stage.name());
+		}
+		return names;
+	}
+
+	/**
+	 * Label {@link #QUERY} the way a server would, logging it to {@code log}.
+	 */
+	private SlowQueryRecord label(SlowQueryLog log) throws Exception {
+		SlowQueryLog.Capture capture = log.begin();
+		List<View> views = extract(QUERY);
+		capture.setViews(views);
+		String result = PolicyLabeler.create(securityViews).label(views).simplify().toString();
+		return capture.end(QUERY, result);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.build();
+		SlowQueryRecord first = label(log);
+		SlowQueryRecord second = log.begin().end("SELECT \u00e9 FROM R", "SqlException: Nope");
+		log.close();
+
+		assertEquals(ImmutableList.of(first, second), SlowQueryLogReader.readAll(file));
+		assertEquals(2L, log.loggedRequests());
+		assertEquals(0L, log.failedWrites());
+
+		assertEquals(QUERY, first.sql());
+		assertEquals(SlowQueryLog.fingerprint(SCHEMA), first.schemaFingerprint());
+		assertEquals(SlowQueryLog.fingerprint(securityViews), first.securityViewsFingerprint());
+		assertEquals(2, first.views().size());
+		assertTrue(first.elapsedNanos() > 0L);
+		assertEquals(ImmutableList.<String>of(), second.views());
+	}
+
+	@Test
+	public void testThreshold() throws Exception {
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(1L, TimeUnit.HOURS)
+				.build();
+		for (int i = 0; i < 10; i++) {
+			assertNull(label(log));
+		}
+		log.close();
+
+		assertEquals(ImmutableList.<SlowQueryRecord>of(), SlowQueryLogReader.readAll(file));
+		assertEquals(0L, log.loggedRequests());
+	}
+
+	@Test
+	public void testStages() throws Exception {
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.build();
+		SlowQueryRecord record = label(log);
+		assertFalse(Tracing.isActive());
+		log.close();
+
+		// Only the outermost spans are stages; containment checks happen inside "label".
+		List<String> names = stageNames(record);
+		assertEquals("convert", names.get(0));
+		assertTrue(names.contains("TypeChecker"));
+		assertTrue(names.contains("label"));
+		assertFalse(names.contains("extract"));
+		assertFalse(names.contains("precedes"));
+
+		long total = 0L;
+		for (StageTiming stage : record.stages()) {
+			total += stage.nanos();
+		}
+		assertTrue(total <= record.elapsedNanos());
+	}
+
+	@Test
+	public void testStagesWhileTraced() throws Exception {
+		File traceFile = new File(file.getPath() + ".json");
+		QueryTracer tracer = QueryTracer.builder(traceFile).setSamplingInterval(1).build();
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.build();
+
+		SlowQueryRecord record;
+		assertTrue(tracer.beginRequest("request", QUERY));
+		try {
+			record = label(log);
+		} finally {
+			tracer.endRequest();
+		}
+		log.close();
+		tracer.close();
+
+		String trace = Files.toString(traceFile, Charsets.UTF_8);
+		traceFile.delete();
+		assertTrue(trace.contains("{\"name\":\"precedes\""));
+		assertTrue(stageNames(record).contains("label"));
+		assertFalse(stageNames(record).contains("precedes"));
+	}
+
+	@Test
+	public void testStagesSurviveFullTraceBuffer() throws Exception {
+		File traceFile = new File(file.getPath() + ".json");
+		QueryTracer tracer = QueryTracer.builder(traceFile).setSamplingInterval(1).build();
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.build();
+
+		SlowQueryRecord record;
+		assertTrue(tracer.beginRequest("request", QUERY));
+		try {
+			SlowQueryLog.Capture capture = log.begin();
+			capture.setViews(extract(QUERY));
+
+			// Enough nested spans to overwrite the earlier stages in the tracer's span buffer.
+			Tracing.begin("label");
+			for (int i = 0; i < 10000; i++) {
+				Tracing.begin("precedes");
+				Tracing.end();
+			}
+			Tracing.end();
+			record = capture.end(QUERY, "");
+		} finally {
+			tracer.endRequest();
+		}
+		log.close();
+		tracer.close();
+		traceFile.delete();
+
+		List<String> names = stageNames(record);
+		assertEquals("convert", names.get(0));
+		assertTrue(names.contains("TypeChecker"));
+		assertEquals("label", names.get(names.size() - 1));
+		assertFalse(names.contains("precedes"));
+	}
+
+	@Test
+	public void testRotation() throws Exception {
+		SlowQueryLog log = SlowQueryLog.builder(file, SCHEMA, securityViews)
+				.setThreshold(0L, TimeUnit.MILLISECONDS)
+				.setMaxFileBytes(1000L)
+				.setMaxFiles(3)
+				.build();
+		for (int i = 0; i < 20; i++) {
+			label(log);
+		}
+		log.close();
+
+		File first = new File(file.getPath() + ".1");
+		File second = new File(file.getPath() + ".2");
+		assertFalse(new File(file.getPath() + ".3").exists());
+		int records = 0;
+		for (File rolled : new File[] {file, first, second}) {
+			for (SlowQueryRecord record : SlowQueryLogReader.readAll(rolled)) {
+				assertEquals(QUERY, record.sql());
+				records++;
+			}
+		}
+		assertTrue(records > 0 && records < 20);
+		assertEquals(20L, log.loggedRequests());
+	}
+
+	@Test
+	public void testFingerprint() throws Exception {
+		List<View> sameViews = Lists.newArrayList(extract("SELECT * FROM R"));
+		sameViews.addAll(extract("SELECT * FROM S"));
+
+		assertEquals(16, SlowQueryLog.fingerprint(securityViews).length());
+		assertEquals(SlowQueryLog.fingerprint(securityViews), SlowQueryLog.fingerprint(sameViews));
+		assertFalse(SlowQueryLog.fingerprint(securityViews)
+				.equals(SlowQueryLog.fingerprint(securityViews.subList(0, 1))));
+		assertFalse(SlowQueryLog.fingerprint(SCHEMA).equals(SlowQueryLog.fingerprint(Schema.of(R))));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotALog() throws IOException {
+		Files.write("not a log", file, Charsets.UTF_8);
+		SlowQueryLogReader.readAll(file);
+	}
+}
@@ -405,6 +405,30 @@ public final class NestedTest {
 				asView(asMultisetAtom(SAILORS, dist(), multiset(), multiset(), multiset())));
 	}
 
+	@Test
+	public void testInList_strings() throws Exception {
+		String sql = "SELECT 1 FROM Sailors S WHERE S.sname IN ('Dustin')";
+		List<View> views = extractor.execute((Select) parser.parse(new StringReader(sql)));
+
+		assertEquivalentElements(views,
+				asView(asMultisetAtom(
+						SAILORS, multiset(), constant("Dustin"), multiset(), multiset())));
+	}
+
+	@Test
+	public void testInList_large() throws Exception {
+		StringBuilder sql = new StringBuilder("SELECT 1 FROM Sailors S WHERE S.sid IN (");
+		for (int i = 0; i < 10000; i++) {
+			sql.append((i > 0) ? ", " : "").append(i);
+		}
+		sql.append(")");
+		List<View> views
+				= extractor.execute((Select) parser.parse(new StringReader(sql.toString())));
+
+		assertEquivalentElements(views,
+				asView(asMultisetAtom(SAILORS, dist(), multiset(), multiset(), multiset())));
+	}
+
 	@Test
 	public void testInSubSelect1() throws Exception {
 		String sql = "SELECT 1 FROM Sailors WHERE sid IN (SELECT 4)";
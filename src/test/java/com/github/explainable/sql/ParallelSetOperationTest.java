@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.sql.pipeline.Pipeline;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableList;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static com.github.explainable.sql.type.TypeSystem.string;
+import static com.github.explainable.util.MoreAsserts.assertEquivalentElements;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link ViewExtractionPipeline#createParallel}, which analyzes the branches of set
+ * operations concurrently.
+ */
+@SuppressWarnings("HardcodedLineSeparator")
+public final class ParallelSetOperationTest {
+	private static final TypedRelation SAILORS = TypedRelationImpl.builder().setName("Sailors")
+			.addColumn("sid", numeric())
+			.addColumn("sname", string())
+			.addColumn("rating", numeric())
+			.build();
+
+	private static final TypedRelation RESERVES = TypedRelationImpl.builder().setName("Reserves")
+			.addColumn("sid", numeric())
+			.addColumn("bid", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(SAILORS, RESERVES);
+
+	private CCJSqlParserManager parser = null;
+
+	private ExecutorService executor = null;
+
+	private Pipeline<ImmutableList<View>> sequential = null;
+
+	private Pipeline<ImmutableList<View>> parallel = null;
+
+	@Before
+	public void setUp() {
+		parser = new CCJSqlParserManager();
+		executor = Executors.newFixedThreadPool(4);
+		sequential = ViewExtractionPipeline.create(SCHEMA);
+		parallel = ViewExtractionPipeline.createParallel(SCHEMA, executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		parser = null;
+		executor = null;
+		sequential = null;
+		parallel = null;
+	}
+
+	private Select parse(String sql) throws Exception {
+		return (Select) parser.parse(new StringReader(sql));
+	}
+
+	private static String repeat(String branch, String operator, int count) {
+		StringBuilder sql = new StringBuilder(branch);
+		for (int i = 1; i < count; i++) {
+			sql.append(' ').append(operator).append(' ').append(branch);
+		}
+		return sql.toString();
+	}
+
+	@Test
+	public void testNoSetOperation() throws Exception {
+		String sql = "SELECT S.sname FROM Sailors S, Reserves R WHERE S.sid = R.sid AND R.bid = 3";
+		List<View> expected = sequential.execute(parse(sql));
+		List<View> actual = parallel.execute(parse(sql));
+
+		assertEquivalentElements(actual, expected.toArray(new View[expected.size()]));
+	}
+
+	@Test
+	public void testUnionOfDistinctBranches() throws Exception {
+		String sql = "SELECT sid FROM Sailors WHERE rating = 7\n"
+				+ "UNION SELECT sid FROM Reserves WHERE bid = 3\n"
+				+ "UNION SELECT R.sid FROM Sailors S, Reserves R WHERE S.sid = R.sid";
+		List<View> expected = sequential.execute(parse(sql));
+		List<View> actual = parallel.execute(parse(sql));
+
+		assertEquivalentElements(actual, expected.toArray(new View[expected.size()]));
+	}
+
+	@Test
+	public void testWideUnion_isomorphicBranchesCollapse() throws Exception {
+		String branch = "SELECT S.sname FROM Sailors S, Reserves R WHERE S.sid = R.sid";
+		List<View> expected = sequential.execute(parse(branch));
+		List<View> actual = parallel.execute(parse(repeat(branch, "UNION", 50)));
+
+		assertEquals(expected.size(), actual.size());
+		assertEquivalentElements(actual, expected.toArray(new View[expected.size()]));
+	}
+
+	@Test
+	public void testWideMixedSetOperations() throws Exception {
+		String sql = repeat("SELECT sid FROM Sailors WHERE rating = 7", "UNION", 20)
+				+ " INTERSECT " + repeat("SELECT sid FROM Reserves WHERE bid = 3", "EXCEPT", 20);
+		String distinct = "SELECT sid FROM Sailors WHERE rating = 7"
+				+ " INTERSECT SELECT sid FROM Reserves WHERE bid = 3";
+		List<View> expected = sequential.execute(parse(distinct));
+		List<View> actual = parallel.execute(parse(sql));
+
+		assertEquivalentElements(actual, expected.toArray(new View[expected.size()]));
+	}
+
+	@Test
+	public void testViewsRenamedInOrder() throws Exception {
+		String sql = "SELECT sid FROM Sailors UNION SELECT sid FROM Sailors"
+				+ " UNION SELECT sid FROM Reserves";
+		List<View> actual = parallel.execute(parse(sql));
+
+		assertEquals(2, actual.size());
+		assertEquals("Q1", actual.get(0).name());
+		assertEquals(SAILORS, actual.get(0).body().relation());
+		assertEquals("Q2", actual.get(1).name());
+		assertEquals(RESERVES, actual.get(1).body().relation());
+	}
+
+	@Test(expected = SqlException.class)
+	public void testAggregateErrorInBranch() throws Exception {
+		String sql = repeat("SELECT sid FROM Sailors", "UNION", 10)
+				+ " UNION SELECT sid FROM Sailors WHERE MAX(rating) = 3";
+		parallel.execute(parse(sql));
+	}
+
+	@Test(expected = SqlException.class)
+	public void testTypeErrorInSetOperation() throws Exception {
+		String sql = repeat("SELECT sid FROM Sailors", "UNION", 10)
+				+ " UNION SELECT sid, sname FROM Sailors";
+		parallel.execute(parse(sql));
+	}
+
+	@Test(expected = SqlException.class)
+	public void testUnknownTableInBranch() throws Exception {
+		parallel.execute(parse("SELECT sid FROM Sailors UNION SELECT sid FROM Boats"));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql;
+
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link SchemaCatalog}.
+ */
+public final class SchemaCatalogTest {
+	private static TypedRelation relation(String name) {
+		return TypedRelationImpl.builder().setName(name)
+				.addColumn("a", numeric())
+				.addColumn("b", numeric())
+				.build();
+	}
+
+	@Test
+	public void testFindRelation_exact() {
+		TypedRelation sailors = relation("Sailors");
+		TypedRelation boats = relation("Boats");
+		SchemaCatalog catalog = SchemaCatalog.create(ImmutableList.of(sailors, boats));
+
+		assertSame(sailors, catalog.findRelation("Sailors"));
+		assertSame(boats, catalog.findRelation("Boats"));
+		assertNull(catalog.findRelation("Reserves"));
+		assertEquals(2, catalog.size());
+	}
+
+	@Test
+	public void testFindRelation_caseInsensitive() {
+		TypedRelation sailors = relation("Sailors");
+		SchemaCatalog catalog = SchemaCatalog.create(ImmutableList.of(sailors));
+
+		assertSame(sailors, catalog.findRelation("sailors"));
+		assertSame(sailors, catalog.findRelation("SAILORS"));
+	}
+
+	@Test
+	public void testFindRelation_namesDifferingOnlyInCase() {
+		TypedRelation lower = relation("r");
+		TypedRelation upper = relation("R");
+		SchemaCatalog catalog = SchemaCatalog.create(ImmutableList.of(lower, upper));
+
+		assertSame(lower, catalog.findRelation("r"));
+		assertSame(upper, catalog.findRelation("R"));
+	}
+
+	@Test
+	public void testFindRelation_duplicateNamesKeepFirst() {
+		TypedRelation first = relation("R");
+		TypedRelation second = relation("R");
+		SchemaCatalog catalog = SchemaCatalog.create(ImmutableList.of(first, second));
+
+		assertSame(first, catalog.findRelation("R"));
+		assertSame(first, catalog.findRelation("r"));
+	}
+
+	@Test
+	public void testColumnOrdinal() {
+		TypedRelation sailors = relation("Sailors");
+
+		assertEquals(0, sailors.columnOrdinal("a"));
+		assertEquals(1, sailors.columnOrdinal("b"));
+		assertEquals(-1, sailors.columnOrdinal("c"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testColumnOrdinal_duplicateColumn() {
+		TypedRelationImpl.builder().setName("R")
+				.addColumn("a", numeric())
+				.addColumn("a", numeric())
+				.build();
+	}
+}
@@ -27,10 +27,12 @@ package com.github.explainable.sql;
 import com.github.explainable.corelang.Term;
 import com.github.explainable.corelang.View;
 import com.github.explainable.sql.pipeline.Pipeline;
+import com.github.explainable.sql.pipeline.PipelineResults;
 import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
 import com.github.explainable.sql.table.TypedRelation;
 import com.github.explainable.sql.table.TypedRelationImpl;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.Select;
 import org.junit.After;
@@ -50,6 +52,7 @@ import static com.github.explainable.corelang.View.asView;
 import static com.github.explainable.sql.type.TypeSystem.numeric;
 import static com.github.explainable.sql.type.TypeSystem.string;
 import static com.github.explainable.util.MoreAsserts.assertEquivalentElements;
+import static org.junit.Assert.assertEquals;
 
 /**
  * End-to-end unit tests for the SQL parser and converter framework using the Sailors-and-Boats
@@ -342,4 +345,71 @@ public final class SimpleTest {
 		assertEquivalentElements(views,
 				asView(asMultisetAtom(SAILORS, multiset(), dist(), multiset(), multiset())));
 	}
+
+	@Test
+	public void testColumnUsage() throws Exception {
+		String sql = "SELECT S.sname FROM Sailors S, Reserves R, Boats B\n"
+				+ "WHERE S.sid = R.sid AND R.bid = B.bid AND B.color = 'red'";
+		PipelineResults results = ViewExtractionPipeline.createWithColumnUsage(SCHEMA)
+				.execute((Select) parser.parse(new StringReader(sql)));
+
+		List<View> expectedViews = extractor.execute((Select) parser.parse(new StringReader(sql)));
+		assertEquivalentElements(results.get(ViewExtractionPipeline.VIEWS),
+				expectedViews.toArray(new View[expectedViews.size()]));
+		assertEquals(
+				ImmutableSetMultimap.builder()
+						.putAll("Sailors", "sname", "sid")
+						.putAll("Reserves", "sid", "bid")
+						.putAll("Boats", "bid", "color")
+						.build(),
+				results.get(ViewExtractionPipeline.COLUMN_USAGE));
+	}
+
+	/**
+	 * Column usage resolves aliases to base columns, but it's syntactic: a column of a derived
+	 * table that the outer query never reads is still reported.
+	 */
+	@Test
+	public void testColumnUsageThroughAliases() throws Exception {
+		String sql = "SELECT T.n FROM (SELECT X.sname AS n, X.age AS a FROM Sailors X) T";
+		PipelineResults results = ViewExtractionPipeline.createWithColumnUsage(SCHEMA)
+				.execute((Select) parser.parse(new StringReader(sql)));
+
+		assertEquals(
+				ImmutableSetMultimap.of("Sailors", "sname", "Sailors", "age"),
+				results.get(ViewExtractionPipeline.COLUMN_USAGE));
+	}
+
+	@Test
+	public void testLongConjunction() throws Exception {
+		StringBuilder sql = new StringBuilder("SELECT S.sname FROM Sailors S WHERE S.sid = 22");
+		for (int i = 0; i < 5000; i++) {
+			sql.append(" AND S.rating > ").append(i);
+		}
+		List<View> views = extractor.execute((Select) parser.parse(new StringReader(sql.toString())));
+
+		assertEquivalentElements(views,
+				asView(asMultisetAtom(SAILORS, constant(22L), dist(), dist(), multiset())));
+	}
+
+	@Test
+	public void testLongDisjunction() throws Exception {
+		StringBuilder sql = new StringBuilder("SELECT S.sname FROM Sailors S WHERE S.sid = 22");
+		for (int i = 0; i < 5000; i++) {
+			sql.append(" OR S.rating > ").append(i);
+		}
+		List<View> views = extractor.execute((Select) parser.parse(new StringReader(sql.toString())));
+
+		assertEquivalentElements(views,
+				asView(asMultisetAtom(SAILORS, dist(), dist(), dist(), multiset())));
+	}
+
+	@Test
+	public void testTableNameCaseInsensitive() throws Exception {
+		String sql = "SELECT S.sname, S.age FROM sailors S";
+		List<View> views = extractor.execute((Select) parser.parse(new StringReader(sql)));
+
+		assertEquivalentElements(views,
+				asView(asMultisetAtom(SAILORS, multiset(), dist(), multiset(), dist())));
+	}
 }
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link MultiOutputPipelineBuilder}.
+ */
+public final class MultiOutputPipelineBuilderTest {
+	private static final OutputKey<String> FIRST = OutputKey.named("first");
+
+	private static final OutputKey<Integer> SECOND = OutputKey.named("second");
+
+	private Select select = null;
+
+	@Before
+	public void setUp() throws Exception {
+		select = (Select) new CCJSqlParserManager().parse(new StringReader("SELECT 1"));
+	}
+
+	@Test
+	public void testBuild_sharesTransformations() {
+		CountingPass counter = new CountingPass();
+		PipelineResults results = MultiOutputPipelineBuilder.create()
+				.addTransformation(counter)
+				.addOutput(FIRST, new StringOutput())
+				.addOutput(SECOND, new IntegerOutput())
+				.build()
+				.execute(select);
+
+		assertEquals(1, counter.count);
+		assertEquals("SELECT 1", results.get(FIRST));
+		assertEquals(Integer.valueOf(42), results.get(SECOND));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGet_missingOutput() {
+		MultiOutputPipelineBuilder.create()
+				.addTransformation(new CountingPass())
+				.addOutput(FIRST, new StringOutput())
+				.build()
+				.execute(select)
+				.get(SECOND);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddOutput_duplicateName() {
+		MultiOutputPipelineBuilder.create()
+				.addTransformation(new CountingPass())
+				.addOutput(FIRST, new StringOutput())
+				.addOutput(OutputKey.<String>named("first"), new StringOutput());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddOutput_unsatisfiedDependency() {
+		MultiOutputPipelineBuilder.create().addOutput(FIRST, new StringOutput());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testBuild_noOutputs() {
+		MultiOutputPipelineBuilder.create().build();
+	}
+
+	private static final class CountingPass implements TransformationPass {
+		private int count = 0;
+
+		@Override
+		public void execute(SqlSelectStmt select) {
+			count++;
+		}
+	}
+
+	@DependsOn(CountingPass.class)
+	private static final class StringOutput implements OutputPass<String> {
+		@Override
+		public String execute(SqlSelectStmt select) {
+			return "SELECT 1";
+		}
+	}
+
+	@DependsOn(CountingPass.class)
+	private static final class IntegerOutput implements OutputPass<Integer> {
+		@Override
+		public Integer execute(SqlSelectStmt select) {
+			return 42;
+		}
+	}
+}
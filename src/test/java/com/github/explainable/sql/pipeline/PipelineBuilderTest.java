@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.pipeline;
+
+import com.github.explainable.sql.ast.select.SqlSelectStmt;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link PipelineBuilder}.
+ */
+public final class PipelineBuilderTest {
+	private List<String> executed = null;
+
+	private Select select = null;
+
+	@Before
+	public void setUp() throws Exception {
+		executed = Lists.newArrayList();
+		select = (Select) new CCJSqlParserManager().parse(new StringReader("SELECT 1"));
+	}
+
+	@Test
+	public void testBuild_runsDependenciesInOrder() {
+		List<String> result = PipelineBuilder.<List<String>>create()
+				.addTransformation(new First(executed))
+				.addTransformation(new Second(executed))
+				.setOutput(new NeedsSecond(executed))
+				.build()
+				.execute(select);
+
+		assertEquals(ImmutableList.of("First", "Second"), result);
+	}
+
+	@Test
+	public void testBuild_prunesUnusedTransformations() {
+		List<String> result = PipelineBuilder.<List<String>>create()
+				.addTransformation(new First(executed))
+				.addTransformation(new Second(executed))
+				.addTransformation(new Unused(executed))
+				.setOutput(new NeedsFirst(executed))
+				.build()
+				.execute(select);
+
+		assertEquals(ImmutableList.of("First"), result);
+	}
+
+	@Test
+	public void testBuild_keepsValidationByDefault() {
+		List<String> result = PipelineBuilder.<List<String>>create()
+				.addTransformation(new First(executed))
+				.addTransformation(new Validator(executed))
+				.addTransformation(new Second(executed))
+				.setOutput(new NeedsSecond(executed))
+				.build()
+				.execute(select);
+
+		assertEquals(ImmutableList.of("First", "Validator", "Second"), result);
+	}
+
+	@Test
+	public void testBuild_skipsValidationForTrustedInput() {
+		List<String> result = PipelineBuilder.<List<String>>create()
+				.setTrustedInput(true)
+				.addTransformation(new First(executed))
+				.addTransformation(new Validator(executed))
+				.addTransformation(new Second(executed))
+				.setOutput(new NeedsSecond(executed))
+				.build()
+				.execute(select);
+
+		assertEquals(ImmutableList.of("First", "Second"), result);
+	}
+
+	@Test
+	public void testBuild_keepsRequiredValidationForTrustedInput() {
+		List<String> result = PipelineBuilder.<List<String>>create()
+				.setTrustedInput(true)
+				.addTransformation(new First(executed))
+				.addTransformation(new Validator(executed))
+				.setOutput(new NeedsValidator(executed))
+				.build()
+				.execute(select);
+
+		assertEquals(ImmutableList.of("First", "Validator"), result);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddTransformation_unsatisfiedDependency() {
+		PipelineBuilder.<List<String>>create().addTransformation(new Second(executed));
+	}
+
+	private abstract static class RecordingPass implements TransformationPass {
+		private final List<String> executed;
+
+		RecordingPass(List<String> executed) {
+			this.executed = executed;
+		}
+
+		@Override
+		public void execute(SqlSelectStmt select) {
+			executed.add(getClass().getSimpleName());
+		}
+	}
+
+	private static final class First extends RecordingPass {
+		First(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	@DependsOn(First.class)
+	private static final class Second extends RecordingPass {
+		Second(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	@DependsOn(First.class)
+	private static final class Unused extends RecordingPass {
+		Unused(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	@ValidationPass
+	@DependsOn(First.class)
+	private static final class Validator extends RecordingPass {
+		Validator(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	private abstract static class RecordingOutput implements OutputPass<List<String>> {
+		private final List<String> executed;
+
+		RecordingOutput(List<String> executed) {
+			this.executed = executed;
+		}
+
+		@Override
+		public List<String> execute(SqlSelectStmt select) {
+			return ImmutableList.copyOf(executed);
+		}
+	}
+
+	@DependsOn(First.class)
+	private static final class NeedsFirst extends RecordingOutput {
+		NeedsFirst(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	@DependsOn(Second.class)
+	private static final class NeedsSecond extends RecordingOutput {
+		NeedsSecond(List<String> executed) {
+			super(executed);
+		}
+	}
+
+	@DependsOn(Validator.class)
+	private static final class NeedsValidator extends RecordingOutput {
+		NeedsValidator(List<String> executed) {
+			super(executed);
+		}
+	}
+}
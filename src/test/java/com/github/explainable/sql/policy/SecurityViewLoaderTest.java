@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.policy;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static com.github.explainable.sql.type.TypeSystem.string;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link SecurityViewLoader}.
+ */
+@SuppressWarnings("HardcodedLineSeparator")
+public final class SecurityViewLoaderTest {
+	private static final TypedRelation SAILORS = TypedRelationImpl.builder().setName("Sailors")
+			.addColumn("sid", numeric())
+			.addColumn("sname", string())
+			.addColumn("rating", numeric())
+			.build();
+
+	private static final TypedRelation RESERVES = TypedRelationImpl.builder().setName("Reserves")
+			.addColumn("sid", numeric())
+			.addColumn("bid", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(SAILORS, RESERVES);
+
+	private File first = null;
+
+	private File second = null;
+
+	private SecurityViewLoader loader = null;
+
+	@Before
+	public void setUp() throws IOException {
+		first = File.createTempFile("SecurityViewLoaderTest", ".sql");
+		second = File.createTempFile("SecurityViewLoaderTest", ".sql");
+
+		write(first, "SELECT sid, sname FROM Sailors;\n"
+				+ "-- Ratings are public.\n"
+				+ "SELECT rating FROM Sailors;\n");
+		write(second, "SELECT bid FROM Reserves;\n");
+
+		loader = SecurityViewLoader.builder(SCHEMA, ImmutableList.of(first, second))
+				.setThreadCount(2)
+				.setPollInterval(10, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		loader.close();
+		first.delete();
+		second.delete();
+		loader = null;
+		first = null;
+		second = null;
+	}
+
+	/**
+	 * Atomically replace the contents of {@code file}, making sure that its modification time changes
+	 * even on file systems with a coarse timestamp granularity.
+	 */
+	private static void write(File file, String contents) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		Files.write(contents, temp, Charsets.UTF_8);
+		assertTrue(temp.setLastModified(file.lastModified() + 2000));
+		assertTrue(temp.renameTo(file));
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		assertEquals(0, loader.generation());
+
+		loader.load();
+		assertEquals(1, loader.generation());
+		assertEquals(3, loader.securityViews().size());
+		assertEquals(3, loader.compiledStatementCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNotLoaded() {
+		loader.labeler();
+	}
+
+	@Test
+	public void testReloadIfUnchanged() throws Exception {
+		loader.load();
+		assertFalse(loader.reloadIfChanged());
+		assertEquals(1, loader.generation());
+	}
+
+	@Test
+	public void testReloadOnlyCompilesEditedViews() throws Exception {
+		loader.load();
+		ImmutableList<View> before = loader.securityViews();
+
+		write(first, "SELECT sid, sname FROM Sailors;\n"
+				+ "SELECT sid, rating FROM Sailors;\n");
+
+		assertTrue(loader.reloadIfChanged());
+		assertEquals(2, loader.generation());
+		assertEquals(4, loader.compiledStatementCount());
+
+		ImmutableList<View> after = loader.securityViews();
+		assertEquals(3, after.size());
+		assertSame(before.get(0), after.get(0));
+		assertNotSame(before.get(1), after.get(1));
+		assertSame(before.get(2), after.get(2));
+	}
+
+	@Test
+	public void testDuplicateViewsCompiledOnce() throws Exception {
+		write(second, "SELECT sid, sname FROM Sailors;\n");
+
+		loader.load();
+		assertEquals(3, loader.securityViews().size());
+		assertEquals(2, loader.compiledStatementCount());
+	}
+
+	@Test
+	public void testFailedReloadKeepsPreviousViews() throws Exception {
+		loader.load();
+		ImmutableList<View> before = loader.securityViews();
+
+		write(second, "SELECT bid FROM;\n");
+		try {
+			loader.reloadIfChanged();
+			fail("Expected a JSQLParserException");
+		} catch (JSQLParserException expected) {
+			// Expected.
+		}
+
+		assertEquals(1, loader.generation());
+		assertSame(before, loader.securityViews());
+
+		// The broken file isn't retried until it changes again.
+		assertFalse(loader.reloadIfChanged());
+
+		write(second, "SELECT sid, bid FROM Reserves;\n");
+		assertTrue(loader.reloadIfChanged());
+		assertEquals(2, loader.generation());
+	}
+
+	@Test(expected = SqlException.class)
+	public void testNotSelect() throws Exception {
+		write(second, "DELETE FROM Reserves;\n");
+		loader.load();
+	}
+
+	@Test
+	public void testLabelerSwappedOnReload() throws Exception {
+		loader.load();
+		assertSame(loader.labeler(), loader.labeler());
+
+		PolicyLabeler before = loader.labeler();
+		write(second, "SELECT sid FROM Reserves;\n");
+		loader.reloadIfChanged();
+		assertNotSame(before, loader.labeler());
+	}
+
+	@Test
+	public void testWatching() throws Exception {
+		final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+		loader.addListener(new SecurityViewLoader.Listener() {
+			@Override
+			public void reloaded(ImmutableList<View> securityViews) {
+				events.add(securityViews);
+			}
+
+			@Override
+			public void reloadFailed(Exception cause) {
+				events.add(cause);
+			}
+		});
+
+		loader.load();
+		loader.startWatching();
+
+		write(second, "SELECT sid, bid FROM Reserves;\nSELECT bid FROM Reserves;\n");
+		Object reloaded = events.poll(10, TimeUnit.SECONDS);
+		assertNotNull(reloaded);
+		assertEquals(4, ((ImmutableList<?>) reloaded).size());
+
+		write(second, "SELECT bid FROM;\n");
+		Object failed = events.poll(10, TimeUnit.SECONDS);
+		assertTrue(failed instanceof JSQLParserException);
+		assertEquals(4, loader.securityViews().size());
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.sql.prepared;
+
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.Policy;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.Schema;
+import com.github.explainable.sql.SqlException;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.github.explainable.sql.table.TypedRelation;
+import com.github.explainable.sql.table.TypedRelationImpl;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.explainable.sql.type.TypeSystem.numeric;
+import static com.github.explainable.sql.type.TypeSystem.string;
+import static com.github.explainable.util.MoreAsserts.assertEquivalentElements;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PreparedStatementRegistry} and {@link PreparedStatement}.
+ */
+public final class PreparedStatementRegistryTest {
+	private static final TypedRelation SAILORS = TypedRelationImpl.builder().setName("Sailors")
+			.addColumn("sid", numeric())
+			.addColumn("sname", string())
+			.addColumn("rating", numeric())
+			.addColumn("age", numeric())
+			.build();
+
+	private static final Schema SCHEMA = Schema.of(SAILORS);
+
+	private static final String QUERY
+			= "SELECT S.age FROM Sailors S WHERE S.sid = '$1' AND S.sname = '$2'";
+
+	private PreparedStatementRegistry registry = null;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = PreparedStatementRegistry.create(SCHEMA);
+		registry.prepare("q", QUERY, ParameterType.NUMERIC, ParameterType.STRING);
+	}
+
+	private static List<View> extract(String sql) throws Exception {
+		Select select = (Select) new CCJSqlParserManager().parse(new StringReader(sql));
+		return ViewExtractionPipeline.create(SCHEMA).execute(select);
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		List<View> expected
+				= extract("SELECT S.age FROM Sailors S WHERE S.sid = 22 AND S.sname = 'Dustin'");
+
+		assertEquivalentElements(registry.execute("q", 22L, "Dustin"),
+				expected.toArray(new View[expected.size()]));
+		assertEquivalentElements(registry.execute("q", 22, "Dustin"),
+				expected.toArray(new View[expected.size()]));
+	}
+
+	@Test
+	public void testExecute_noParameters() throws Exception {
+		String sql = "SELECT S.sname FROM Sailors S WHERE S.rating = 10";
+		List<View> expected = extract(sql);
+		registry.prepare("noParams", sql);
+
+		assertEquivalentElements(registry.execute("noParams"),
+				expected.toArray(new View[expected.size()]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecute_wrongArgumentCount() {
+		registry.execute("q", 22L);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecute_wrongArgumentType() {
+		registry.execute("q", "Dustin", 22L);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecute_unknownStatement() {
+		registry.execute("unknown", 22L, "Dustin");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPrepare_duplicateName() throws Exception {
+		registry.prepare("q", QUERY, ParameterType.NUMERIC, ParameterType.STRING);
+	}
+
+	@Test(expected = SqlException.class)
+	public void testPrepare_undeclaredParameter() throws Exception {
+		registry.prepare("undeclared", QUERY, ParameterType.NUMERIC);
+	}
+
+	@Test
+	public void testDeallocate() {
+		assertTrue(registry.deallocate("q"));
+		assertNull(registry.get("q"));
+		assertFalse(registry.deallocate("q"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLabel_noLabeler() {
+		registry.label("q", 22L, "Dustin");
+	}
+
+	@Test
+	public void testLabel() throws Exception {
+		List<View> securityViews = extract("SELECT S.sid, S.sname, S.age FROM Sailors S");
+		PreparedStatementRegistry labeled = PreparedStatementRegistry.builder(SCHEMA)
+				.setLabeler(PolicyLabeler.create(securityViews))
+				.build();
+		labeled.prepare("q", QUERY, ParameterType.NUMERIC, ParameterType.STRING);
+
+		Policy policy = labeled.label("q", 22L, "Dustin");
+		assertTrue(policy.evaluate(ImmutableSet.copyOf(securityViews)));
+		assertFalse(policy.evaluate(ImmutableSet.<View>of()));
+		assertSame(policy, labeled.label("q", 22L, "Dustin"));
+	}
+
+	@Test
+	public void testLabel_decisionTableMatchesLiveLabeling() throws Exception {
+		List<View> securityViews = Lists.newArrayList();
+		securityViews.addAll(extract("SELECT S.age FROM Sailors S WHERE S.sid = 22"));
+		securityViews.addAll(extract("SELECT S.age FROM Sailors S WHERE S.rating = 10"));
+		securityViews.addAll(extract("SELECT S.age FROM Sailors S WHERE S.sid = S.rating"));
+		securityViews.addAll(extract("SELECT S.sid, S.rating, S.age FROM Sailors S"));
+		PolicyLabeler labeler = PolicyLabeler.create(securityViews);
+
+		String sql = "SELECT S.age FROM Sailors S WHERE S.sid = '$1' AND S.rating = '$2'";
+		PreparedStatement tabulated = PreparedStatementRegistry.builder(SCHEMA)
+				.setLabeler(labeler)
+				.build()
+				.prepare("q", sql, ParameterType.NUMERIC, ParameterType.NUMERIC);
+		PreparedStatement live = PreparedStatementRegistry.builder(SCHEMA)
+				.setLabeler(labeler)
+				.setMaxDecisionTableSize(0)
+				.build()
+				.prepare("q", sql, ParameterType.NUMERIC, ParameterType.NUMERIC);
+
+		long[][] arguments = {
+				{ 22L, 10L }, { 22L, 22L }, { 10L, 10L }, { 22L, 7L }, { 7L, 10L },
+				{ 7L, 7L }, { 7L, 8L }, { 8L, 8L }, { 10L, 22L } };
+		Set<Set<View>> grantedSets = Sets.powerSet(ImmutableSet.copyOf(securityViews));
+		for (long[] args : arguments) {
+			Policy expected = live.label(args[0], args[1]);
+			Policy actual = tabulated.label(args[0], args[1]);
+			for (Set<View> granted : grantedSets) {
+				assertEquals(Arrays.toString(args) + " " + granted,
+						expected.evaluate(granted), actual.evaluate(granted));
+			}
+		}
+
+		Set<View> sameValueOnly = ImmutableSet.of(securityViews.get(2));
+		assertTrue(tabulated.label(7L, 7L).evaluate(sameValueOnly));
+		assertFalse(tabulated.label(7L, 8L).evaluate(sameValueOnly));
+	}
+}
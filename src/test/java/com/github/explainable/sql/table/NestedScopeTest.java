@@ -34,6 +34,7 @@ import org.junit.Test;
 
 import static com.github.explainable.sql.type.TypeSystem.primitive;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * Created with IntelliJ IDEA. User: gbender Date: 10/22/13 Time: 12:40 PM To change this template
@@ -233,4 +234,46 @@ public class NestedScopeTest {
 		scope.createBaseTable(RELATION, "AliasOfR");
 		scope.findColumn("R", "nonexistent_column");
 	}
+
+	@Test
+	public void testDepth() {
+		NestedScope sibling = NestedScope.create(select, outerNestedScope);
+		NestedScope nested = NestedScope.create(select, innerNestedScope);
+
+		assertEquals(0, outerNestedScope.depth());
+		assertEquals(1, innerNestedScope.depth());
+		assertEquals(1, sibling.depth());
+		assertEquals(2, nested.depth());
+	}
+
+	@Test
+	public void testGetColumn_innerAliasShadowsOuterAlias() {
+		NestedScope scope = NestedScope.create(select, innerNestedScope);
+		Table shadow = scope.createBaseTable(RELATION, "Outer");
+
+		assertEquals(shadow.columns().get(0), scope.findColumn("Outer", "a"));
+		assertEquals(outerTable.findColumn("X"), scope.findColumn("Outer", "X"));
+	}
+
+	@Test(expected = SqlException.class)
+	public void testGetColumn_siblingScopeNotVisible() {
+		NestedScope sibling = NestedScope.create(select, outerNestedScope);
+		sibling.findColumn("Inner", "X");
+	}
+
+	@Test
+	public void testCreateBaseTable_sameAliasInSiblingScopes() {
+		NestedScope sibling = NestedScope.create(select, outerNestedScope);
+		Table siblingTable = sibling.createBaseTable(RELATION, "Inner");
+
+		assertEquals(innerTable.findColumn("X"), innerNestedScope.findColumn("Inner", "X"));
+		assertEquals(siblingTable.findColumn("a"), sibling.findColumn("Inner", "a"));
+	}
+
+	@Test
+	public void testLocalColumns_notCopied() {
+		assertSame(outerNestedScope.localColumns(), outerNestedScope.localColumns());
+		assertSame(outerNestedScope.localBaseColumns(), outerNestedScope.localBaseColumns());
+		assertSame(outerNestedScope.localBaseTables(), outerNestedScope.localBaseTables());
+	}
 }
@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.trace;
+
+import com.github.explainable.benchmark.FBFlatSchema;
+import com.github.explainable.corelang.View;
+import com.github.explainable.labeler.policy.PolicyLabeler;
+import com.github.explainable.sql.pipeline.passes.ViewExtractionPipeline;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link QueryTracer}.
+ */
+public final class QueryTracerTest {
+	private File file = null;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("QueryTracerTest", ".json");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		for (int i = 0; i < 4; i++) {
+			new File(file.getPath() + ((i > 0) ? "." + i : "")).delete();
+		}
+		file = null;
+	}
+
+	private static int count(String text, String pattern) {
+		int count = 0;
+		for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	private String read(File from) throws IOException {
+		return Files.toString(from, Charsets.UTF_8);
+	}
+
+	private static void runRequest(QueryTracer tracer, String detail) {
+		boolean traced = tracer.beginRequest("request", detail);
+		try {
+			Tracing.begin("outer");
+			Tracing.begin("inner", "R");
+			Tracing.end("steps", 3L);
+			Tracing.end();
+		} finally {
+			if (traced) {
+				tracer.endRequest();
+			}
+		}
+	}
+
+	@Test
+	public void testNestedSpans() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(1).build();
+		assertFalse(Tracing.isActive());
+		runRequest(tracer, "SELECT \"x\"");
+		assertFalse(Tracing.isActive());
+		tracer.close();
+
+		String json = read(file);
+		assertTrue(json.startsWith("[\n"));
+		assertTrue(json.endsWith("\n]\n"));
+		assertEquals(1, count(json, "\"ph\":\"M\""));
+		assertEquals(3, count(json, "\"ph\":\"X\""));
+
+		// Spans are written in the order that they end.
+		int inner = json.indexOf("{\"name\":\"inner\"");
+		int outer = json.indexOf("{\"name\":\"outer\"");
+		int request = json.indexOf("{\"name\":\"request\"");
+		assertTrue(0 < inner && inner < outer && outer < request);
+		assertTrue(json.contains("\"args\":{\"detail\":\"R\",\"steps\":3}}"));
+		assertTrue(json.contains("\"args\":{\"detail\":\"SELECT \\\"x\\\"\","
+				+ "\"request\":0,\"droppedSpans\":0}}"));
+		assertEquals(1L, tracer.tracedRequests());
+		assertEquals(0L, tracer.failedWrites());
+	}
+
+	@Test
+	public void testSamplingInterval() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(10).build();
+		for (int i = 0; i < 25; i++) {
+			runRequest(tracer, null);
+		}
+		tracer.close();
+
+		String json = read(file);
+		assertEquals(3, count(json, "{\"name\":\"request\""));
+		assertTrue(json.contains("\"request\":0,"));
+		assertTrue(json.contains("\"request\":10,"));
+		assertTrue(json.contains("\"request\":20,"));
+		assertEquals(3L, tracer.tracedRequests());
+	}
+
+	@Test
+	public void testDisabled() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(0).build();
+		for (int i = 0; i < 10; i++) {
+			runRequest(tracer, null);
+		}
+		tracer.close();
+
+		assertFalse(file.exists());
+		assertEquals(0L, tracer.tracedRequests());
+	}
+
+	@Test
+	public void testNestedRequest() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(1).build();
+		assertTrue(tracer.beginRequest("request", null));
+		runRequest(tracer, null);
+		assertTrue(Tracing.isActive());
+		tracer.endRequest();
+		tracer.close();
+
+		assertEquals(1, count(read(file), "{\"name\":\"request\""));
+	}
+
+	@Test
+	public void testOpenSpansEndWithRequest() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(1).build();
+		try {
+			tracer.beginRequest("request", null);
+			Tracing.begin("failing");
+			throw new IllegalStateException("Expected");
+		} catch (IllegalStateException e) {
+			tracer.endRequest();
+		}
+		tracer.close();
+
+		String json = read(file);
+		assertTrue(json.indexOf("{\"name\":\"failing\"") < json.indexOf("{\"name\":\"request\""));
+		assertFalse(Tracing.isActive());
+	}
+
+	@Test
+	public void testDroppedSpans() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(1).build();
+		tracer.beginRequest("request", null);
+		for (int i = 0; i < SpanBuffer.CAPACITY + 10; i++) {
+			Tracing.begin("span");
+			Tracing.end();
+		}
+		tracer.endRequest();
+		tracer.close();
+
+		String json = read(file);
+		assertEquals(SpanBuffer.CAPACITY, count(json, "\"ph\":\"X\""));
+		assertTrue(json.contains("\"droppedSpans\":11}}"));
+	}
+
+	@Test
+	public void testRotation() throws IOException {
+		QueryTracer tracer = QueryTracer.builder(file)
+				.setSamplingInterval(1)
+				.setMaxFileBytes(1000L)
+				.setMaxFiles(3)
+				.build();
+		for (int i = 0; i < 20; i++) {
+			runRequest(tracer, null);
+		}
+		tracer.close();
+
+		File first = new File(file.getPath() + ".1");
+		File second = new File(file.getPath() + ".2");
+		assertTrue(first.exists());
+		assertTrue(second.exists());
+		assertFalse(new File(file.getPath() + ".3").exists());
+		for (File rolled : new File[] {first, second}) {
+			String json = read(rolled);
+			assertTrue(json.startsWith("[\n"));
+			assertTrue(json.endsWith("\n]\n"));
+		}
+		assertTrue(read(second).contains("\"request\":"));
+		assertFalse(read(second).contains("\"request\":19,"));
+		assertEquals(20L, tracer.tracedRequests());
+	}
+
+	@Test
+	public void testLabelingSpans() throws Exception {
+		ViewExtractionPipeline extractor = ViewExtractionPipeline.create(FBFlatSchema.SCHEMA);
+		Select select = (Select) new CCJSqlParserManager().parse(
+				new StringReader("SELECT aid, name FROM album WHERE owner = 1"));
+		List<View> views = extractor.execute(select);
+		PolicyLabeler labeler = PolicyLabeler.create(views);
+
+		QueryTracer tracer = QueryTracer.builder(file).setSamplingInterval(1).build();
+		tracer.beginRequest("request", null);
+		labeler.label(extractor.execute(select));
+		tracer.endRequest();
+		tracer.close();
+
+		String json = read(file);
+		assertTrue(json.contains("{\"name\":\"convert\""));
+		assertTrue(json.contains("{\"name\":\"extract\""));
+		assertTrue(json.contains("{\"name\":\"label\""));
+		assertTrue(json.contains("{\"name\":\"precedes\""));
+		assertTrue(json.contains("\"backtracks\":0"));
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.explainable.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link IntUnionFind}.
+ */
+public final class IntUnionFindTest {
+	@Test
+	public void testAdd() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		assertEquals(0, unionFind.add("a"));
+		assertEquals(1, unionFind.add("b"));
+		assertEquals(2, unionFind.size());
+		assertEquals("a", unionFind.get(0));
+		assertEquals("b", unionFind.get(1));
+	}
+
+	@Test
+	public void testAddAll() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		unionFind.add("a");
+		assertEquals(1, unionFind.addAll(ImmutableList.of("b", "c", "d")));
+		assertEquals(4, unionFind.size());
+		assertEquals("d", unionFind.get(3));
+	}
+
+	@Test
+	public void testAdd_growsPastInitialCapacity() {
+		IntUnionFind<Integer> unionFind = IntUnionFind.createWithCapacity(1);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, unionFind.add(i));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i), unionFind.get(i));
+		}
+	}
+
+	@Test
+	public void testSetValue_withParent() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		int node1 = unionFind.add("a");
+		int node2 = unionFind.add("a");
+		assertTrue(unionFind.merge(node1, node2));
+
+		unionFind.set(node2, "my value");
+		assertEquals("my value", unionFind.get(node1));
+		assertEquals("my value", unionFind.get(node2));
+	}
+
+	@Test
+	public void testMerge_threeWay() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		int node1 = unionFind.add("a");
+		int node2 = unionFind.add("a");
+		int node3 = unionFind.add("a");
+
+		assertTrue(unionFind.merge(node1, node2));
+		assertTrue(unionFind.merge(node2, node3));
+
+		assertTrue(unionFind.connected(node1, node3));
+		assertEquals(unionFind.find(node1), unionFind.find(node2));
+		assertEquals(unionFind.find(node1), unionFind.find(node3));
+	}
+
+	@Test
+	public void testMerge_differentValues() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		int node1 = unionFind.add("a");
+		int node2 = unionFind.add("b");
+
+		assertFalse(unionFind.merge(node1, node2));
+		assertFalse(unionFind.connected(node1, node2));
+		assertEquals("a", unionFind.get(node1));
+		assertEquals("b", unionFind.get(node2));
+	}
+
+	@Test
+	public void testMerge_withUnboundValue() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		int node1 = unionFind.add(null);
+		int node2 = unionFind.add("b");
+
+		assertTrue(unionFind.merge(node1, node2));
+		assertEquals("b", unionFind.get(node1));
+	}
+
+	@Test
+	public void testMerge_self() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		int node = unionFind.add("a");
+		assertTrue(unionFind.merge(node, node));
+		assertEquals(node, unionFind.find(node));
+	}
+
+	@Test
+	public void testMerge_longChain() {
+		IntUnionFind<Integer> unionFind = IntUnionFind.create();
+		for (int i = 0; i < 1000; i++) {
+			unionFind.add(null);
+		}
+
+		for (int i = 1; i < 1000; i++) {
+			assertTrue(unionFind.merge(i - 1, i));
+		}
+
+		int root = unionFind.find(0);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(root, unionFind.find(i));
+		}
+	}
+
+	@Test
+	public void testReset() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		unionFind.add("a");
+		unionFind.add("a");
+		unionFind.merge(0, 1);
+
+		unionFind.reset();
+		assertEquals(0, unionFind.size());
+
+		assertEquals(0, unionFind.add(null));
+		assertEquals(1, unionFind.add("b"));
+		assertNull(unionFind.get(0));
+		assertFalse(unionFind.connected(0, 1));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testFind_afterReset() {
+		IntUnionFind<String> unionFind = IntUnionFind.create();
+		unionFind.add("a");
+		unionFind.reset();
+		unionFind.find(0);
+	}
+}
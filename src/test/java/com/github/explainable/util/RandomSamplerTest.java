@@ -25,6 +25,7 @@
 package com.github.explainable.util;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +33,7 @@ import org.junit.Test;
 import java.util.List;
 import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -92,4 +94,14 @@ public class RandomSamplerTest {
 			}
 		}
 	}
+
+	@Test
+	public void testSample_wholePopulation() {
+		List<Integer> population = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		List<Integer> sample = RandomSampler.create(random).sample(population, population.size());
+
+		assertEquals(ImmutableSet.copyOf(population), ImmutableSet.copyOf(sample));
+		assertEquals(population.size(), sample.size());
+		assertTrue(RandomSampler.create(random).sample(population, 0).isEmpty());
+	}
 }
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Gabriel Bender
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.explainable.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link VarInts}.
+ */
+public final class VarIntsTest {
+	private static DataInputStream input(byte[] bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		long[] values = {0L, 1L, 127L, 128L, 300L, Integer.MAX_VALUE, Long.MAX_VALUE, -1L};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (long value : values) {
+			VarInts.writeVarLong(out, value);
+		}
+		VarInts.writeString(out, "SELECT \u00e9 FROM R");
+		out.flush();
+
+		DataInputStream in = input(bytes.toByteArray());
+		for (long value : values) {
+			assertEquals(value, VarInts.readVarLong(in));
+		}
+		assertEquals("SELECT \u00e9 FROM R", VarInts.readString(in, 100));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testEncoding() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		VarInts.writeVarLong(out, 300L);
+		out.flush();
+
+		byte[] encoded = bytes.toByteArray();
+		assertEquals(2, encoded.length);
+		assertEquals((byte) 0xAC, encoded[0]);
+		assertEquals((byte) 0x02, encoded[1]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTooLong() throws IOException {
+		byte[] bytes = new byte[11];
+		Arrays.fill(bytes, (byte) 0x80);
+		VarInts.readVarLong(input(bytes));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLengthLimit() throws IOException {
+		VarInts.readString(input(new byte[] {5, 'a', 'b', 'c', 'd', 'e'}), 4);
+	}
+}